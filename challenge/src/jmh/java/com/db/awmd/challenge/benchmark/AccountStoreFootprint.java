@@ -0,0 +1,112 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.exception.OverdraftsAccountException;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.AccountsRepositoryOffHeap;
+import com.db.awmd.challenge.repository.MoneyTransferRepositoryImpl;
+import com.db.awmd.challenge.service.MoneyTransferService;
+
+/**
+ * Compares the heap footprint and garbage collection cost of the account
+ * stores. Loads the accounts, measures the heap and direct memory they hold,
+ * times a full collection with them live, then runs transfers between random
+ * accounts and reports the collections they caused. Run each store in its own
+ * JVM with the same heap settings:
+ *
+ * <pre>
+ * gradle accountFootprint -Pfootprint.args="heap accounts seconds"
+ * gradle accountFootprint -Pfootprint.args="off-heap accounts seconds"
+ * </pre>
+ */
+public class AccountStoreFootprint {
+
+	private static final BigDecimal BALANCE = new BigDecimal(1000);
+	private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+	public static void main(String[] args) throws Exception {
+		String store = args.length > 0 ? args[0] : "heap";
+		int accounts = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+		fullGc();
+		long heapBefore = usedHeap();
+		long directBefore = usedDirect();
+		AccountsRepository repository = "off-heap".equals(store) ? new AccountsRepositoryOffHeap(accounts)
+				: new AccountsRepositoryInMemory();
+		long loadStarted = System.nanoTime();
+		for (int i = 0; i < accounts; i++) {
+			repository.createAccount(new Account("Id-" + i, BALANCE));
+		}
+		long loadNanos = System.nanoTime() - loadStarted;
+		long fullGcNanos = fullGc();
+		long heap = usedHeap() - heapBefore;
+		long direct = usedDirect() - directBefore;
+		System.out.printf("%s store, %,d accounts loaded in %d ms%n", store, accounts,
+				TimeUnit.NANOSECONDS.toMillis(loadNanos));
+		System.out.printf("  heap     %,15d bytes  %6.1f per account%n", heap, heap / (double) accounts);
+		System.out.printf("  off-heap %,15d bytes  %6.1f per account%n", direct, direct / (double) accounts);
+		System.out.printf("  full GC with the accounts live: %d ms%n", TimeUnit.NANOSECONDS.toMillis(fullGcNanos));
+
+		MoneyTransferService transferService = new MoneyTransferService(new MoneyTransferRepositoryImpl(1024));
+		long[] gcBefore = gcCountAndMillis();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		long transfers = 0;
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		while (System.nanoTime() < deadline) {
+			int from = random.nextInt(accounts);
+			int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+			try {
+				transferService.transferMoney(repository.getAccount("Id-" + from), repository.getAccount("Id-" + to),
+						AMOUNT);
+			} catch (OverdraftsAccountException oae) {
+				// only after a very long run
+			}
+			transfers++;
+		}
+		long[] gcAfter = gcCountAndMillis();
+		long collections = gcAfter[0] - gcBefore[0];
+		long gcMillis = gcAfter[1] - gcBefore[1];
+		System.out.printf("  %,d transfers in %d s: %d collections, %d ms in GC, %.1f ms per collection%n",
+				transfers, seconds, collections, gcMillis, collections == 0 ? 0.0 : gcMillis / (double) collections);
+		if (repository.countAccounts() != accounts) {
+			throw new IllegalStateException("Accounts went missing");
+		}
+	}
+
+	private static long fullGc() {
+		long started = System.nanoTime();
+		System.gc();
+		return System.nanoTime() - started;
+	}
+
+	private static long usedHeap() {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	private static long usedDirect() {
+		for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+			if ("direct".equals(pool.getName())) {
+				return pool.getMemoryUsed();
+			}
+		}
+		return 0;
+	}
+
+	private static long[] gcCountAndMillis() {
+		long[] countAndMillis = new long[2];
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			countAndMillis[0] += Math.max(0, collector.getCollectionCount());
+			countAndMillis[1] += Math.max(0, collector.getCollectionTime());
+		}
+		return countAndMillis;
+	}
+}
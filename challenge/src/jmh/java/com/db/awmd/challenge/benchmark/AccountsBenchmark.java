@@ -0,0 +1,120 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.AccountsRepositoryOffHeap;
+import com.db.awmd.challenge.service.AccountsService;
+
+/**
+ * Throughput of {@link AccountsService#getAccount} and
+ * {@link AccountsRepository#createAccount} for different account
+ * populations, account stores and thread counts.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountsBenchmark {
+
+	private static final BigDecimal BALANCE = new BigDecimal(1000);
+
+	@Param({ "1000", "100000", "1000000" })
+	public int accountCount;
+
+	@Param({ "heap", "off-heap" })
+	public String store;
+
+	private AccountsService accountsService;
+	private String[] accountIds;
+	private AccountsRepository createRepository;
+	private final AtomicLong nextAccountId = new AtomicLong();
+
+	@Setup
+	public void setUp() {
+		accountsService = new AccountsService(newRepository());
+		accountIds = new String[accountCount];
+		for (int i = 0; i < accountCount; i++) {
+			accountIds[i] = "Id-" + i;
+			accountsService.createAccount(new Account(accountIds[i], BALANCE));
+		}
+	}
+
+	/** Every iteration starts inserting into a repository already holding {@code accountCount} accounts. */
+	@Setup(Level.Iteration)
+	public void setUpCreateRepository() {
+		createRepository = newRepository();
+		for (int i = 0; i < accountCount; i++) {
+			createRepository.createAccount(new Account(accountIds[i], BALANCE));
+		}
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Account getAccount_1thread() {
+		return getAccount();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public Account getAccount_4threads() {
+		return getAccount();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public Account getAccount_maxThreads() {
+		return getAccount();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public void createAccount_1thread() {
+		createAccount();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void createAccount_4threads() {
+		createAccount();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public void createAccount_maxThreads() {
+		createAccount();
+	}
+
+	private AccountsRepository newRepository() {
+		return "off-heap".equals(store) ? new AccountsRepositoryOffHeap(accountCount) : new AccountsRepositoryInMemory();
+	}
+
+	private Account getAccount() {
+		return accountsService.getAccount(accountIds[ThreadLocalRandom.current().nextInt(accountCount)]);
+	}
+
+	private void createAccount() {
+		createRepository.createAccount(new Account("New-" + nextAccountId.incrementAndGet(), BALANCE));
+	}
+}
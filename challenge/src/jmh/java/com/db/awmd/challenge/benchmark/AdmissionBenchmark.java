@@ -0,0 +1,73 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.db.awmd.challenge.web.TransferAdmission;
+
+/**
+ * Cost {@link TransferAdmission} adds to a transfer: admit and release with
+ * all limits on, across a population of clients and source accounts. Rates
+ * are high enough that every request is admitted, which is the common case
+ * the limiter must stay cheap for.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AdmissionBenchmark {
+
+	@Param({ "16", "10000" })
+	public int keyCount;
+
+	private TransferAdmission admission;
+	private String[] clientIds;
+	private String[] accountIds;
+
+	@Setup
+	public void setUp() {
+		admission = new TransferAdmission(10_000, 50, 1e9, 1_000_000, 1e9, 1_000_000, 100_000);
+		clientIds = new String[keyCount];
+		accountIds = new String[keyCount];
+		for (int i = 0; i < keyCount; i++) {
+			clientIds[i] = "client-" + i;
+			accountIds[i] = "Id-" + i;
+		}
+	}
+
+	@Benchmark
+	@Threads(1)
+	public long admit_1thread() {
+		return admit();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public long admit_4threads() {
+		return admit();
+	}
+
+	private long admit() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long wait = admission.tryAdmit(clientIds[random.nextInt(keyCount)], accountIds[random.nextInt(keyCount)]);
+		if (wait == TransferAdmission.ADMITTED) {
+			admission.release();
+		}
+		return wait;
+	}
+}
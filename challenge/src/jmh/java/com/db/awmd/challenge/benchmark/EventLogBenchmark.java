@@ -0,0 +1,80 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.helpers.MessageFormatter;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.metrics.TransferEventLog;
+
+/**
+ * What logging costs a transfer's request thread. {@code formattedMessages}
+ * builds the messages the transfer endpoint used to produce for every
+ * transfer (the log lines and both notification descriptions) without
+ * writing them anywhere; {@code eventLog} records the structured event.
+ * Run with {@code -prof gc} to compare {@code gc.alloc.rate.norm}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventLogBenchmark {
+
+	private static final BigDecimal AMOUNT = new BigDecimal("12.50");
+
+	private final Account from = new Account("Id-1", new BigDecimal(1000));
+	private final Account to = new Account("Id-2", new BigDecimal(1000));
+	private File directory;
+	private TransferEventLog eventLog;
+
+	@Setup
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("event-log-benchmark").toFile();
+		eventLog = new TransferEventLog(new File(directory, "transfers.jsonl").getPath(), 1 << 16);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException, InterruptedException {
+		eventLog.close();
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	@Benchmark
+	public void formattedMessages(Blackhole blackhole) {
+		blackhole.consume(MessageFormatter.format("Money transfer initiated from account:{} to account:{}",
+				from.getAccountId(), to.getAccountId()).getMessage());
+		String outgoing = AMOUNT + " amount transfered to " + to.getAccountId();
+		String incoming = AMOUNT + " amount transfered from " + from.getAccountId();
+		blackhole.consume(MessageFormatter.format("Sending notification to owner of {}: {}", from.getAccountId(),
+				outgoing).getMessage());
+		blackhole.consume(MessageFormatter.format("Sending notification to owner of {}: {}", to.getAccountId(),
+				incoming).getMessage());
+		blackhole.consume(MessageFormatter.format("Money transfer completed sucessfully", null).getMessage());
+	}
+
+	@Benchmark
+	public void eventLog() {
+		eventLog.record(TransferEventLog.Outcome.COMPLETED, from, to, AMOUNT, 1_000);
+	}
+}
@@ -0,0 +1,93 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.LockFreeMoneyTransferRepository;
+import com.db.awmd.challenge.repository.MoneyTransferRepository;
+import com.db.awmd.challenge.repository.MoneyTransferRepositoryImpl;
+import com.db.awmd.challenge.service.MoneyTransferService;
+
+/**
+ * Fan-in of credits from many clients into one treasury account, with the
+ * treasury designated hot (striped balance) or not. Each thread transfers from
+ * its own client account, so the treasury is the only shared account.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HotAccountBenchmark {
+
+	private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+	private static final String TREASURY = "Id-treasury";
+
+	@Param({ "locking", "lock-free" })
+	public String engine;
+
+	@Param({ "false", "true" })
+	public boolean striped;
+
+	private MoneyTransferService transferService;
+	private Account treasury;
+	private final AtomicInteger nextClient = new AtomicInteger();
+
+	@Setup
+	public void setUp() {
+		MoneyTransferRepository repository = "lock-free".equals(engine) ? new LockFreeMoneyTransferRepository()
+				: new MoneyTransferRepositoryImpl(1024);
+		transferService = new MoneyTransferService(repository);
+		AccountsRepositoryInMemory accounts = new AccountsRepositoryInMemory();
+		accounts.setHotAccounts(striped ? new String[] { TREASURY } : new String[0], 16);
+		accounts.createAccount(new Account(TREASURY, BigDecimal.ONE));
+		treasury = accounts.getAccount(TREASURY);
+	}
+
+	@State(Scope.Thread)
+	public static class Client {
+
+		private Account account;
+
+		@Setup
+		public void setUp(HotAccountBenchmark benchmark) {
+			account = new Account("Id-client-" + benchmark.nextClient.incrementAndGet(),
+					new BigDecimal(1_000_000_000));
+		}
+	}
+
+	@Benchmark
+	@Threads(1)
+	public boolean creditTreasury_1thread(Client client) {
+		return transferService.transferMoney(client.account, treasury, AMOUNT);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public boolean creditTreasury_4threads(Client client) {
+		return transferService.transferMoney(client.account, treasury, AMOUNT);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public boolean creditTreasury_maxThreads(Client client) {
+		return transferService.transferMoney(client.account, treasury, AMOUNT);
+	}
+}
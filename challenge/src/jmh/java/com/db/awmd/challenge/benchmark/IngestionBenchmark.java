@@ -0,0 +1,85 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.db.awmd.challenge.domain.AccountMoneyTransferRequest;
+import com.db.awmd.challenge.web.TransferFrameCodec;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Cost of decoding a batch of transfer requests from a JSON array, as the
+ * batch endpoint does, against decoding the same transfers from binary frames.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IngestionBenchmark {
+
+	private static final int TRANSFERS = 1000;
+
+	private final ObjectReader requestReader = new ObjectMapper().readerFor(AccountMoneyTransferRequest.class);
+	private byte[] json;
+	private byte[] frames;
+	private final ByteBuffer frameBuffer = ByteBuffer.allocate(64 * 1024);
+
+	@Setup
+	public void setUp() {
+		StringBuilder array = new StringBuilder("[");
+		ByteBuffer encoded = ByteBuffer.allocate(TRANSFERS * 64);
+		for (int i = 0; i < TRANSFERS; i++) {
+			String from = "Id-" + i;
+			String to = "Id-" + (i + 1);
+			array.append(i == 0 ? "" : ",").append("{\"accountFromId\":\"").append(from).append("\",\"accountToId\":\"")
+					.append(to).append("\",\"transferAmount\":12.34}");
+			TransferFrameCodec.encode(encoded, from, to, 1234);
+		}
+		json = array.append(']').toString().getBytes(StandardCharsets.UTF_8);
+		frames = Arrays.copyOf(encoded.array(), encoded.position());
+	}
+
+	@Benchmark
+	public void decodeJson(Blackhole blackhole) throws IOException {
+		try (MappingIterator<AccountMoneyTransferRequest> requests = requestReader
+				.readValues(new ByteArrayInputStream(json))) {
+			while (requests.hasNextValue()) {
+				AccountMoneyTransferRequest request = requests.nextValue();
+				blackhole.consume(request.getAccountFromId());
+				blackhole.consume(request.getAccountToId());
+				blackhole.consume(request.getTransferAmount());
+			}
+		}
+	}
+
+	@Benchmark
+	public void decodeFrames(Blackhole blackhole) throws IOException {
+		TransferFrameCodec codec = new TransferFrameCodec(
+				TransferFrameCodec.channelOf(new ByteArrayInputStream(frames)), frameBuffer);
+		for (TransferFrameCodec.Frame frame = codec.next(); frame != null; frame = codec.next()) {
+			blackhole.consume(frame.getFromAccountId());
+			blackhole.consume(frame.getToAccountId());
+			blackhole.consume(frame.getAmount());
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.journal.JournalSnapshotter;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+
+/**
+ * Startup recovery time from the journal: {@code fullReplay} replays every
+ * segment, {@code snapshotPlusTail} loads a snapshot of the sealed segments
+ * and replays only the current one. Both journals hold the same accounts and
+ * four transfers per account.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JournalRecoveryBenchmark {
+
+	private static final int SEGMENT_SIZE = 1 << 20;
+
+	@Param({ "50000", "500000" })
+	public int accountCount;
+
+	private File fullReplayDirectory;
+	private File snapshotDirectory;
+
+	@Setup
+	public void setUp() throws IOException, InterruptedException {
+		fullReplayDirectory = Files.createTempDirectory("journal-full-replay").toFile();
+		snapshotDirectory = Files.createTempDirectory("journal-snapshot").toFile();
+		TransferJournal fullReplayJournal = writeJournal(fullReplayDirectory);
+		TransferJournal snapshotJournal = writeJournal(snapshotDirectory);
+		new JournalSnapshotter(snapshotJournal, 0).snapshot();
+		fullReplayJournal.close();
+		snapshotJournal.close();
+	}
+
+	@TearDown
+	public void tearDown() {
+		for (File directory : new File[] { fullReplayDirectory, snapshotDirectory }) {
+			for (File file : directory.listFiles()) {
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+
+	@Benchmark
+	public AccountsRepositoryInMemory fullReplay() throws IOException, InterruptedException {
+		return recover(fullReplayDirectory);
+	}
+
+	@Benchmark
+	public AccountsRepositoryInMemory snapshotPlusTail() throws IOException, InterruptedException {
+		return recover(snapshotDirectory);
+	}
+
+	private TransferJournal writeJournal(File directory) throws IOException {
+		TransferJournal journal = new TransferJournal(new AccountsRepositoryInMemory(), directory.getPath(),
+				SEGMENT_SIZE, false, 1);
+		Account[] accounts = new Account[accountCount];
+		for (int i = 0; i < accountCount; i++) {
+			accounts[i] = new Account("Id-" + i, new BigDecimal(100));
+			journal.accountCreating(accounts[i], 10000);
+		}
+		for (int i = 0; i < accountCount * 4; i++) {
+			journal.moneyTransferred(accounts[i % accountCount], accounts[(i * 7 + 1) % accountCount], i % 50);
+		}
+		return journal;
+	}
+
+	private static AccountsRepositoryInMemory recover(File directory) throws IOException, InterruptedException {
+		AccountsRepositoryInMemory recovered = new AccountsRepositoryInMemory();
+		new TransferJournal(recovered, directory.getPath(), SEGMENT_SIZE, false, 1).close();
+		return recovered;
+	}
+}
@@ -0,0 +1,79 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.MoneyTransferRepositoryImpl;
+import com.db.awmd.challenge.service.BalanceSnapshots;
+import com.db.awmd.challenge.service.MoneyTransferService;
+
+/**
+ * Per-transfer cost of {@link BalanceSnapshots}: the same uniform transfers on
+ * the locking engine, with and without versioned balances.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+
+	private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+	private static final int ACCOUNTS = 10000;
+
+	@Param({ "false", "true" })
+	public boolean snapshots;
+
+	private MoneyTransferService transferService;
+	private Account[] accounts;
+
+	@Setup
+	public void setUp() {
+		transferService = new MoneyTransferService(new MoneyTransferRepositoryImpl(1024));
+		if (snapshots) {
+			transferService.setBalanceSnapshots(new BalanceSnapshots(4096));
+		}
+		accounts = new Account[ACCOUNTS];
+		for (int i = 0; i < ACCOUNTS; i++) {
+			accounts[i] = new Account("Id-" + i, new BigDecimal(1_000_000_000));
+		}
+	}
+
+	@Benchmark
+	@Threads(1)
+	public boolean transfer_1thread() {
+		return transfer();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public boolean transfer_maxThreads() {
+		return transfer();
+	}
+
+	private boolean transfer() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int from = random.nextInt(ACCOUNTS);
+		int to = random.nextInt(ACCOUNTS - 1);
+		if (to >= from) {
+			to++;
+		}
+		return transferService.transferMoney(accounts[from], accounts[to], AMOUNT);
+	}
+}
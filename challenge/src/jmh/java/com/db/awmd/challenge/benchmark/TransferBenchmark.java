@@ -0,0 +1,125 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.LockFreeMoneyTransferRepository;
+import com.db.awmd.challenge.repository.MoneyTransferRepository;
+import com.db.awmd.challenge.repository.MoneyTransferRepositoryImpl;
+import com.db.awmd.challenge.repository.NettingMoneyTransferRepository;
+import com.db.awmd.challenge.repository.SequencedMoneyTransferRepository;
+import com.db.awmd.challenge.repository.ShardedMoneyTransferRepository;
+import com.db.awmd.challenge.service.MoneyTransferService;
+
+/**
+ * Throughput of {@link MoneyTransferService#transferMoney} per engine, account
+ * population and skew. {@code hotPairPercent} is the share of transfers that
+ * go back and forth between the same two accounts; the rest pick two distinct
+ * accounts uniformly.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransferBenchmark {
+
+	private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+	@Param({ "locking", "lock-free", "sharded", "sequencer", "netting" })
+	public String engine;
+
+	@Param({ "1000", "100000" })
+	public int accountCount;
+
+	@Param({ "0", "50", "90" })
+	public int hotPairPercent;
+
+	private MoneyTransferService transferService;
+	private Account[] accounts;
+
+	@Setup
+	public void setUp() {
+		MoneyTransferRepository repository;
+		if ("lock-free".equals(engine)) {
+			repository = new LockFreeMoneyTransferRepository();
+		} else if ("sharded".equals(engine)) {
+			repository = new ShardedMoneyTransferRepository(0);
+		} else if ("sequencer".equals(engine)) {
+			repository = new SequencedMoneyTransferRepository(1024);
+		} else if ("netting".equals(engine)) {
+			repository = new NettingMoneyTransferRepository(200, 4096);
+		} else {
+			repository = new MoneyTransferRepositoryImpl(1024);
+		}
+		transferService = new MoneyTransferService(repository);
+		accounts = new Account[accountCount];
+		for (int i = 0; i < accountCount; i++) {
+			accounts[i] = new Account("Id-" + i, new BigDecimal(1_000_000_000));
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws InterruptedException {
+		MoneyTransferRepository repository = transferService.getMoneyTransferRepository();
+		if (repository instanceof ShardedMoneyTransferRepository) {
+			((ShardedMoneyTransferRepository) repository).shutdown();
+		} else if (repository instanceof SequencedMoneyTransferRepository) {
+			((SequencedMoneyTransferRepository) repository).shutdown();
+		} else if (repository instanceof NettingMoneyTransferRepository) {
+			((NettingMoneyTransferRepository) repository).shutdown();
+		}
+	}
+
+	@Benchmark
+	@Threads(1)
+	public boolean transfer_1thread() {
+		return transfer();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public boolean transfer_4threads() {
+		return transfer();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public boolean transfer_maxThreads() {
+		return transfer();
+	}
+
+	private boolean transfer() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int from;
+		int to;
+		if (random.nextInt(100) < hotPairPercent) {
+			from = random.nextInt(2);
+			to = 1 - from;
+		} else {
+			from = random.nextInt(accountCount);
+			to = random.nextInt(accountCount - 1);
+			if (to >= from) {
+				to++;
+			}
+		}
+		return transferService.transferMoney(accounts[from], accounts[to], AMOUNT);
+	}
+}
@@ -0,0 +1,131 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+
+import com.db.awmd.challenge.DevChallengeApplication;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.metrics.LatencyHistogram;
+import com.db.awmd.challenge.service.AccountsService;
+
+/**
+ * HTTP load test comparing the blocking {@code /v1} transfer endpoint with the
+ * non-blocking {@code /v2} one. The application runs with the journal in
+ * sync-commit mode and a deliberately small servlet thread pool, and many
+ * concurrent clients transfer between random accounts. The blocking endpoint
+ * holds a servlet thread through every fsync, so its throughput is capped at
+ * the pool size per fsync; the non-blocking endpoint is not.
+ *
+ * <pre>
+ * gradle loadTest -Pload.args="concurrency seconds servletThreads"
+ * </pre>
+ */
+public class TransferLoadTest {
+
+	private static final int ACCOUNTS = 1000;
+
+	public static void main(String[] args) throws Exception {
+		int concurrency = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		int servletThreads = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+		System.setProperty("http.maxConnections", String.valueOf(concurrency));
+
+		EmbeddedWebApplicationContext context = (EmbeddedWebApplicationContext) SpringApplication.run(
+				DevChallengeApplication.class, "--server.port=0", "--server.tomcat.max-threads=" + servletThreads,
+				"--journal.enabled=true", "--journal.sync-commit=true",
+				"--journal.directory=" + Files.createTempDirectory("load-journal"),
+				"--logging.level.com.db.awmd=WARN");
+		try {
+			AccountsService accountsService = context.getBean(AccountsService.class);
+			for (int i = 0; i < ACCOUNTS; i++) {
+				accountsService.createAccount(new Account("Id-" + i, new BigDecimal(1_000_000_000)));
+			}
+			String base = "http://localhost:" + context.getEmbeddedServletContainer().getPort();
+			System.out.printf("%d clients, %d servlet threads, %d s per run%n", concurrency, servletThreads, seconds);
+			for (String path : new String[] { "/v1/accounts/transfer", "/v2/accounts/transfer" }) {
+				run(new URL(base + path), concurrency, 2);
+				Result result = run(new URL(base + path), concurrency, seconds);
+				System.out.printf("%-24s %10.0f req/s  errors %d  latency %s%n", path,
+						result.requests / (double) seconds, result.errors, result.latency.summary());
+			}
+		} finally {
+			context.close();
+		}
+	}
+
+	private static Result run(URL url, int concurrency, int seconds) throws InterruptedException {
+		Result result = new Result();
+		LongAdder requests = new LongAdder();
+		LongAdder errors = new LongAdder();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		List<Thread> clients = new ArrayList<>();
+		for (int i = 0; i < concurrency; i++) {
+			Thread client = new Thread(() -> {
+				while (System.nanoTime() < deadline) {
+					long started = System.nanoTime();
+					if (transfer(url)) {
+						requests.increment();
+					} else {
+						errors.increment();
+					}
+					result.latency.recordNanos(System.nanoTime() - started);
+				}
+			}, "load-client-" + i);
+			client.start();
+			clients.add(client);
+		}
+		for (Thread client : clients) {
+			client.join();
+		}
+		result.requests = requests.sum();
+		result.errors = errors.sum();
+		return result;
+	}
+
+	private static boolean transfer(URL url) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int from = random.nextInt(ACCOUNTS);
+		int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+		byte[] body = ("{\"accountFromId\":\"Id-" + from + "\",\"accountToId\":\"Id-" + to
+				+ "\",\"transferAmount\":0.01}").getBytes(StandardCharsets.UTF_8);
+		try {
+			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+			connection.setRequestMethod("PUT");
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "application/json");
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(body);
+			}
+			int status = connection.getResponseCode();
+			try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+				while (in != null && in.read() >= 0) {
+					// drain so the connection can be reused
+				}
+			}
+			return status == 200;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private static final class Result {
+
+		private final LatencyHistogram latency = new LatencyHistogram();
+		private long requests;
+		private long errors;
+	}
+}
@@ -1,34 +1,61 @@
 package com.db.awmd.challenge.domain;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import java.math.BigDecimal;
+import javax.validation.constraints.Digits;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import lombok.Data;
-import org.hibernate.validator.constraints.NotBlank;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import org.hibernate.validator.constraints.NotEmpty;
 
 @Data
+@JsonPropertyOrder({ "accountId", "balance" })
 public class Account {
 
   @NotNull
   @NotEmpty
   private final String accountId;
 
-  @NotNull
-  @Min(value = 0, message = "Initial balance must be positive.")
-  private BigDecimal balance;
+  // only replaced before the account is stored, e.g. to stripe a hot account
+  @JsonIgnore
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private AccountBalance minorUnitBalance;
 
   public Account(String accountId) {
     this.accountId = accountId;
-    this.balance = BigDecimal.ZERO;
+    this.minorUnitBalance = new AccountBalance(0);
+  }
+
+  public Account(String accountId, AccountBalance minorUnitBalance) {
+    this.accountId = accountId;
+    this.minorUnitBalance = minorUnitBalance;
   }
 
   @JsonCreator
   public Account(@JsonProperty("accountId") String accountId,
     @JsonProperty("balance") BigDecimal balance) {
+    if (balance == null) {
+      throw new IllegalArgumentException("Balance must be provided.");
+    }
     this.accountId = accountId;
-    this.balance = balance;
+    this.minorUnitBalance = new AccountBalance(AccountBalance.toMinorUnits(balance));
+  }
+
+  @NotNull
+  @Min(value = 0, message = "Initial balance must be positive.")
+  @Digits(integer = 16, fraction = AccountBalance.SCALE)
+  @ToString.Include(name = "balance")
+  public BigDecimal getBalance() {
+    return AccountBalance.toDecimal(minorUnitBalance.get());
+  }
+
+  public void setBalance(BigDecimal balance) {
+    minorUnitBalance.set(AccountBalance.toMinorUnits(balance));
   }
 }
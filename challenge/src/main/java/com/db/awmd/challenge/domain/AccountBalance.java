@@ -0,0 +1,144 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Account balance held as a fixed-scale count of minor units (cents) in an
+ * {@link AtomicLong}. Debits and credits are lock-free CAS operations and do
+ * not allocate; conversion to and from {@link BigDecimal} only happens at the
+ * API boundary.
+ */
+public class AccountBalance {
+
+	public static final int SCALE = 2;
+
+	private final AtomicLong minorUnits;
+
+	private volatile BalanceVersions versions;
+
+	public AccountBalance(long minorUnits) {
+		this.minorUnits = new AtomicLong(minorUnits);
+	}
+
+	/**
+	 * For subclasses that keep the units somewhere else; they override all of
+	 * {@link #load()}, {@link #store(long)}, {@link #compareAndSwap(long, long)}
+	 * and {@link #add(long)}.
+	 */
+	protected AccountBalance() {
+		this.minorUnits = null;
+	}
+
+	public long get() {
+		return load();
+	}
+
+	/**
+	 * Version chain for snapshot reads, started from the current value the
+	 * first time it is asked for. Transfers ask for it before they change the
+	 * balance, so that starting value never includes a transfer in flight.
+	 */
+	public BalanceVersions versions() {
+		BalanceVersions current = versions;
+		if (current == null) {
+			synchronized (this) {
+				current = versions;
+				if (current == null) {
+					current = new BalanceVersions(get());
+					versions = current;
+				}
+			}
+		}
+		return current;
+	}
+
+	public void set(long newMinorUnits) {
+		store(newMinorUnits);
+	}
+
+	/**
+	 * Debits the amount only if the remaining balance stays positive, the same
+	 * rule the transfer endpoint has always applied for overdrafts.
+	 */
+	public boolean tryDebit(long amount) {
+		return tryDebit(amount, 0);
+	}
+
+	/**
+	 * Debits with the check made against the stored units plus
+	 * {@code headroom}, for subclasses that hold part of the balance elsewhere.
+	 */
+	protected final boolean tryDebit(long amount, long headroom) {
+		while (true) {
+			long current = load();
+			if (!canDebit(current + headroom, amount)) {
+				return false;
+			}
+			if (compareAndSwap(current, current - amount)) {
+				return true;
+			}
+		}
+	}
+
+	public void credit(long amount) {
+		add(amount);
+	}
+
+	/**
+	 * Applies a signed change without any overdraft check. Only for callers
+	 * that have already validated the change while holding the account locks.
+	 */
+	public void adjust(long delta) {
+		add(delta);
+	}
+
+	protected long load() {
+		return minorUnits.get();
+	}
+
+	protected void store(long newMinorUnits) {
+		minorUnits.set(newMinorUnits);
+	}
+
+	protected boolean compareAndSwap(long expected, long updated) {
+		return minorUnits.compareAndSet(expected, updated);
+	}
+
+	protected void add(long delta) {
+		minorUnits.addAndGet(delta);
+	}
+
+	/**
+	 * Whether credits may be applied without holding the account's lock,
+	 * because they do not contend with each other.
+	 */
+	public boolean isStriped() {
+		return false;
+	}
+
+	public static boolean canDebit(long balance, long amount) {
+		return balance - amount > 0;
+	}
+
+	/**
+	 * @throws ArithmeticException if the amount has more than {@link #SCALE}
+	 *                             decimal places or does not fit in a long
+	 */
+	public static long toMinorUnits(BigDecimal amount) {
+		return amount.movePointRight(SCALE).longValueExact();
+	}
+
+	/**
+	 * Converts back to a decimal without trailing fractional zeros, so whole
+	 * amounts keep rendering as e.g. {@code 1000} rather than {@code 1000.00}.
+	 */
+	public static BigDecimal toDecimal(long minorUnits) {
+		int scale = SCALE;
+		while (scale > 0 && minorUnits % 10 == 0) {
+			minorUnits /= 10;
+			scale--;
+		}
+		return BigDecimal.valueOf(minorUnits, scale);
+	}
+}
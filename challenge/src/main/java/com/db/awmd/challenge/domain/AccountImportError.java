@@ -0,0 +1,17 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+@Data
+public class AccountImportError {
+
+	/** 1-based position of the row in the imported document. */
+	private final long row;
+
+	private final String accountId;
+
+	private final AccountImportStatus status;
+
+	private final String message;
+
+}
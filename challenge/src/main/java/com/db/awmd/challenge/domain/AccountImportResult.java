@@ -0,0 +1,19 @@
+package com.db.awmd.challenge.domain;
+
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class AccountImportResult {
+
+	private final long created;
+
+	private final long duplicates;
+
+	private final long invalid;
+
+	/** Only the rows that were not imported, in row order. */
+	private final List<AccountImportError> errors;
+
+}
@@ -0,0 +1,27 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+/**
+ * One parsed row of an account import. Rows that could not be parsed carry
+ * the parse error instead of an account.
+ */
+@Data
+public class AccountImportRow {
+
+	private final long row;
+
+	private final Account account;
+
+	private final String accountId;
+
+	private final String error;
+
+	public static AccountImportRow of(long row, Account account) {
+		return new AccountImportRow(row, account, account.getAccountId(), null);
+	}
+
+	public static AccountImportRow invalid(long row, String accountId, String error) {
+		return new AccountImportRow(row, null, accountId, error);
+	}
+}
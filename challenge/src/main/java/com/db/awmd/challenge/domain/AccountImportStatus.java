@@ -0,0 +1,6 @@
+package com.db.awmd.challenge.domain;
+
+/** Why a row of an account import was not imported. */
+public enum AccountImportStatus {
+	DUPLICATE, INVALID
+}
@@ -3,8 +3,10 @@ package com.db.awmd.challenge.domain;
 
 import java.math.BigDecimal;
 
+import javax.validation.constraints.Digits;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
 
 import org.hibernate.validator.constraints.NotEmpty;
 
@@ -26,15 +28,29 @@ public class AccountMoneyTransferRequest {
 
 	@NotNull
 	@Min(value = 0, message = "Trasfer amount must be positive")
+	@Digits(integer = 16, fraction = AccountBalance.SCALE)
 	private BigDecimal transferAmount;
 
+	/**
+	 * Optional client-chosen key; resubmitting a request with the same key
+	 * returns the original outcome instead of transferring again.
+	 */
+	@Size(max = 128)
+	private final String idempotencyKey;
+
+	public AccountMoneyTransferRequest(String accountFromId, String accountToId, BigDecimal transferAmount) {
+		this(accountFromId, accountToId, transferAmount, null);
+	}
+
 	@JsonCreator
 	public AccountMoneyTransferRequest(@JsonProperty("accountFromId") String accountFromId,
 			@JsonProperty("accountToId") String accountToId,
-			@JsonProperty("transferAmount") BigDecimal transferAmount) {
+			@JsonProperty("transferAmount") BigDecimal transferAmount,
+			@JsonProperty("idempotencyKey") String idempotencyKey) {
 		this.accountFromId = accountFromId;
 		this.accountToId = accountToId;
 		this.transferAmount = transferAmount;
+		this.idempotencyKey = idempotencyKey;
 	}
 
 }
@@ -0,0 +1,18 @@
+package com.db.awmd.challenge.domain;
+
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class AccountsSnapshot {
+
+	/** Snapshot version the balances were read at. */
+	private final long version;
+
+	/** In the order they were asked for. */
+	private final List<Account> accounts;
+
+	private final List<String> missingAccountIds;
+
+}
@@ -0,0 +1,17 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+
+import lombok.Data;
+
+@Data
+public class BalanceTotal {
+
+	/** Snapshot version the balances were read at. */
+	private final long version;
+
+	private final long accounts;
+
+	private final BigDecimal total;
+
+}
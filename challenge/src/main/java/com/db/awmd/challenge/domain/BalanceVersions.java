@@ -0,0 +1,79 @@
+package com.db.awmd.challenge.domain;
+
+import java.util.Arrays;
+
+/**
+ * Committed changes of one balance, tagged with the global commit version of
+ * the transfer that made them, for reading the balance as of an earlier
+ * version. Changes at or below the prune horizon are folded into the base,
+ * so the chain only holds the changes a snapshot that is still open might
+ * need to skip.
+ *
+ * <p>Transfers on the same account may commit out of version order, so the
+ * chain is kept sorted on insert; in practice a new change lands at or very
+ * near the end.
+ */
+public class BalanceVersions {
+
+	private static final int INITIAL_CAPACITY = 4;
+
+	// guarded by this
+	private long base;
+	private long baseVersion;
+	private long[] versions = new long[INITIAL_CAPACITY];
+	private long[] changes = new long[INITIAL_CAPACITY];
+	private int size;
+
+	public BalanceVersions(long initial) {
+		this.base = initial;
+	}
+
+	/**
+	 * @param horizon no open snapshot reads below this version, so every change
+	 *                up to it may be folded into the base
+	 */
+	public synchronized void install(long version, long change, long horizon) {
+		if (size == versions.length) {
+			versions = Arrays.copyOf(versions, size * 2);
+			changes = Arrays.copyOf(changes, size * 2);
+		}
+		int at = size;
+		while (at > 0 && versions[at - 1] > version) {
+			versions[at] = versions[at - 1];
+			changes[at] = changes[at - 1];
+			at--;
+		}
+		versions[at] = version;
+		changes[at] = change;
+		size++;
+		prune(horizon);
+	}
+
+	/**
+	 * Balance in minor units as of {@code version}, which must not be below
+	 * the horizon passed to any earlier {@link #install}.
+	 */
+	public synchronized long valueAt(long version) {
+		if (version < baseVersion) {
+			throw new IllegalStateException("Version " + version + " was pruned, oldest is " + baseVersion);
+		}
+		long value = base;
+		for (int i = 0; i < size && versions[i] <= version; i++) {
+			value += changes[i];
+		}
+		return value;
+	}
+
+	private void prune(long horizon) {
+		int folded = 0;
+		while (folded < size && versions[folded] <= horizon) {
+			base += changes[folded++];
+		}
+		if (folded > 0) {
+			System.arraycopy(versions, folded, versions, 0, size - folded);
+			System.arraycopy(changes, folded, changes, 0, size - folded);
+			size -= folded;
+		}
+		baseVersion = Math.max(baseVersion, horizon);
+	}
+}
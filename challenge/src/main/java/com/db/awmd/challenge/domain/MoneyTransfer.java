@@ -0,0 +1,19 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+/**
+ * A transfer between two resolved accounts, with the amount already converted
+ * to minor units. This is what the transfer engines operate on when several
+ * transfers have to be applied together.
+ */
+@Data
+public class MoneyTransfer {
+
+	private final Account fromAccount;
+
+	private final Account toAccount;
+
+	private final long amount;
+
+}
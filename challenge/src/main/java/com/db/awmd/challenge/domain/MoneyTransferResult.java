@@ -0,0 +1,17 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+@Data
+public class MoneyTransferResult {
+
+	private final int index;
+
+	private final TransferStatus status;
+
+	private final String message;
+
+	public static MoneyTransferResult completed(int index) {
+		return new MoneyTransferResult(index, TransferStatus.COMPLETED, null);
+	}
+}
@@ -0,0 +1,63 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Digits;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+import org.hibernate.validator.constraints.NotEmpty;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.Data;
+
+/**
+ * One debit paying many credits, e.g. a payroll run or a fee split. Either
+ * every leg is applied or none is.
+ */
+@Data
+public class MultiLegTransferRequest {
+
+	public static final int MAX_LEGS = 1000;
+
+	@NotNull
+	@NotEmpty
+	private final String accountFromId;
+
+	@NotNull
+	@Size(min = 1, max = MAX_LEGS)
+	@Valid
+	private final List<Leg> legs;
+
+	@JsonCreator
+	public MultiLegTransferRequest(@JsonProperty("accountFromId") String accountFromId,
+			@JsonProperty("legs") List<Leg> legs) {
+		this.accountFromId = accountFromId;
+		this.legs = legs;
+	}
+
+	@Data
+	public static class Leg {
+
+		@NotNull
+		@NotEmpty
+		private final String accountToId;
+
+		@NotNull
+		@Min(value = 0, message = "Trasfer amount must be positive")
+		@Digits(integer = 16, fraction = AccountBalance.SCALE)
+		private final BigDecimal transferAmount;
+
+		@JsonCreator
+		public Leg(@JsonProperty("accountToId") String accountToId,
+				@JsonProperty("transferAmount") BigDecimal transferAmount) {
+			this.accountToId = accountToId;
+			this.transferAmount = transferAmount;
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+
+import lombok.Data;
+
+/**
+ * A scheduled transfer and how far it has got. The scheduler thread updates
+ * it as executions happen; requests read it concurrently.
+ */
+@Data
+public class ScheduledTransfer {
+
+	private final String id;
+
+	private final String accountFromId;
+
+	private final String accountToId;
+
+	private final BigDecimal transferAmount;
+
+	private final long repeatIntervalMillis;
+
+	/** Epoch milliseconds of the next execution, or of the last one once none are left. */
+	private volatile long nextExecutionAt;
+
+	private volatile int remainingExecutions;
+
+	private volatile ScheduledTransferStatus status = ScheduledTransferStatus.PENDING;
+
+	/** Outcome of the most recent execution, null before the first. */
+	private volatile TransferStatus lastStatus;
+
+	private volatile String lastMessage;
+
+}
@@ -0,0 +1,62 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+
+import javax.validation.constraints.Digits;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import org.hibernate.validator.constraints.NotEmpty;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.Data;
+
+/**
+ * A transfer to execute at a given time, once for a value-dated payment or
+ * repeatedly for a standing order.
+ */
+@Data
+public class ScheduledTransferRequest {
+
+	@NotNull
+	@NotEmpty
+	private final String accountFromId;
+
+	@NotNull
+	@NotEmpty
+	private final String accountToId;
+
+	@NotNull
+	@Min(value = 0, message = "Trasfer amount must be positive")
+	@Digits(integer = 16, fraction = AccountBalance.SCALE)
+	private final BigDecimal transferAmount;
+
+	/** First execution, in epoch milliseconds; a time already past executes right away. */
+	@NotNull
+	private final Long executeAt;
+
+	/** Time between executions of a standing order. */
+	@Min(0)
+	private final long repeatIntervalMillis;
+
+	@Min(1)
+	private final int executions;
+
+	@JsonCreator
+	public ScheduledTransferRequest(@JsonProperty("accountFromId") String accountFromId,
+			@JsonProperty("accountToId") String accountToId,
+			@JsonProperty("transferAmount") BigDecimal transferAmount,
+			@JsonProperty("executeAt") Long executeAt,
+			@JsonProperty("repeatIntervalMillis") Long repeatIntervalMillis,
+			@JsonProperty("executions") Integer executions) {
+		this.accountFromId = accountFromId;
+		this.accountToId = accountToId;
+		this.transferAmount = transferAmount;
+		this.executeAt = executeAt;
+		this.repeatIntervalMillis = repeatIntervalMillis == null ? 0 : repeatIntervalMillis;
+		this.executions = executions == null ? 1 : executions;
+	}
+
+}
@@ -0,0 +1,15 @@
+package com.db.awmd.challenge.domain;
+
+public enum ScheduledTransferStatus {
+
+	/** Has executions left. */
+	PENDING,
+
+	/** All executions done and the last one completed. */
+	COMPLETED,
+
+	/** All executions done and the last one did not complete, e.g. for an overdraft. */
+	FAILED,
+
+	CANCELLED
+}
@@ -0,0 +1,98 @@
+package com.db.awmd.challenge.domain;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Balance of a hot account that receives credits from many threads at once.
+ * Credits are spread over padded stripes, so concurrent credits land on
+ * different cache lines instead of all retrying a CAS on one counter. Debits
+ * and adjustments go to the base counter.
+ *
+ * <p>A debit first checks the base alone, which never reads the stripes.
+ * Only when the base cannot cover it are the stripes folded into the base,
+ * under a lock, and the debit retried. Stripes only grow between folds, so
+ * leaving them out, or a fold moving money while {@link #get()} sums up, can
+ * only understate the balance: a debit may be refused while a credit is
+ * still landing, but never overdraws the account.
+ */
+public class StripedAccountBalance extends AccountBalance {
+
+	// one stripe per 64 byte cache line
+	private static final int PADDING = 8;
+
+	private final AtomicLongArray stripes;
+	private final int mask;
+	private final Object foldLock = new Object();
+
+	public StripedAccountBalance(long minorUnits, int stripeCount) {
+		super(minorUnits);
+		if (stripeCount <= 0 || Integer.bitCount(stripeCount) != 1) {
+			throw new IllegalArgumentException("Balance stripe count must be a positive power of two: " + stripeCount);
+		}
+		this.stripes = new AtomicLongArray(stripeCount * PADDING);
+		this.mask = stripeCount - 1;
+	}
+
+	@Override
+	public long get() {
+		return super.get() + credited();
+	}
+
+	/**
+	 * Credits that land in a stripe before it is cleared count as made before
+	 * the new balance, later ones as made after it.
+	 */
+	@Override
+	public void set(long newMinorUnits) {
+		synchronized (foldLock) {
+			for (int i = 0; i < stripes.length(); i += PADDING) {
+				stripes.set(i, 0);
+			}
+			super.set(newMinorUnits);
+		}
+	}
+
+	@Override
+	public boolean tryDebit(long amount) {
+		if (super.tryDebit(amount)) {
+			return true;
+		}
+		synchronized (foldLock) {
+			fold();
+			return super.tryDebit(amount);
+		}
+	}
+
+	@Override
+	public void credit(long amount) {
+		stripes.addAndGet(stripeOf(Thread.currentThread()) * PADDING, amount);
+	}
+
+	@Override
+	public boolean isStriped() {
+		return true;
+	}
+
+	/** Moves everything credited so far into the base counter. */
+	private void fold() {
+		for (int i = 0; i < stripes.length(); i += PADDING) {
+			long credited = stripes.getAndSet(i, 0);
+			if (credited != 0) {
+				super.credit(credited);
+			}
+		}
+	}
+
+	private long credited() {
+		long sum = 0;
+		for (int i = 0; i < stripes.length(); i += PADDING) {
+			sum += stripes.get(i);
+		}
+		return sum;
+	}
+
+	private int stripeOf(Thread thread) {
+		long id = thread.getId() * 0x9E3779B97F4A7C15L;
+		return (int) (id >>> 32) & mask;
+	}
+}
@@ -0,0 +1,10 @@
+package com.db.awmd.challenge.domain;
+
+public enum TransferBatchMode {
+
+	/** Either every transfer in the batch is applied or none is. */
+	ALL_OR_NOTHING,
+
+	/** Each transfer is applied on its own; failures do not affect the others. */
+	BEST_EFFORT
+}
@@ -0,0 +1,21 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+
+import lombok.Data;
+
+@Data
+public class TransferHistoryEntry {
+
+	/** Position of the entry in the account's history, starting at 0. */
+	private final long position;
+
+	/** Epoch milliseconds at which the transfer was recorded. */
+	private final long timestamp;
+
+	private final String counterpartyAccountId;
+
+	/** Negative for money leaving the account. */
+	private final BigDecimal amount;
+
+}
@@ -0,0 +1,16 @@
+package com.db.awmd.challenge.domain;
+
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class TransferHistoryPage {
+
+	/** Newest first. */
+	private final List<TransferHistoryEntry> transfers;
+
+	/** Cursor for the next, older page, or null when there is none. */
+	private final Long nextCursor;
+
+}
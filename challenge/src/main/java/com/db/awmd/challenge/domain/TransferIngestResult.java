@@ -0,0 +1,20 @@
+package com.db.awmd.challenge.domain;
+
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class TransferIngestResult {
+
+	private final long received;
+
+	private final long completed;
+
+	/** Only the frames that were not transferred, indexed by frame position. */
+	private final List<MoneyTransferResult> failures;
+
+	/** Why ingestion stopped early, or null when the whole stream was read. */
+	private final String error;
+
+}
@@ -0,0 +1,26 @@
+package com.db.awmd.challenge.domain;
+
+public enum TransferStatus {
+
+	COMPLETED,
+
+	OVERDRAFT,
+
+	ACCOUNT_NOT_FOUND,
+
+	INVALID,
+
+	/** Not applied because another transfer of an all-or-nothing batch failed. */
+	ABORTED,
+
+	/** Applied, but not recorded by the journal; must not be retried. */
+	NOT_DURABLE,
+
+	/** Failed with an unexpected error; it may or may not have been applied. */
+	FAILED;
+
+	/** Whether the money moved, recorded or not. */
+	public boolean isApplied() {
+		return this == COMPLETED || this == NOT_DURABLE;
+	}
+}
@@ -0,0 +1,9 @@
+package com.db.awmd.challenge.exception;
+
+public class MalformedFrameException extends RuntimeException {
+
+	public MalformedFrameException(String message) {
+		super(message);
+	}
+
+}
@@ -0,0 +1,14 @@
+package com.db.awmd.challenge.exception;
+
+/**
+ * The transfer was applied, but a listener such as the journal failed to
+ * record it afterwards, so it may not survive a restart. It must not be
+ * retried: the money has already moved.
+ */
+public class TransferNotDurableException extends RuntimeException {
+
+	public TransferNotDurableException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+}
@@ -0,0 +1,12 @@
+package com.db.awmd.challenge.journal;
+
+/**
+ * Receives the records of a journal segment in the order they were written.
+ * Amounts and balances are in minor units.
+ */
+public interface JournalRecordHandler {
+
+	void accountCreated(String accountId, long initialBalance);
+
+	void moneyTransferred(String fromAccountId, String toAccountId, long amount);
+}
@@ -0,0 +1,255 @@
+package com.db.awmd.challenge.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * One fixed-size, memory-mapped journal file. Records are laid out back to
+ * back as
+ *
+ * <pre>
+ * int length | byte type | payload | int crc32(type + payload)
+ * </pre>
+ *
+ * where {@code length} counts the type byte and the payload. The file is
+ * zero-filled when created, so a zero length marks the end of the data; a
+ * checksum mismatch marks a torn write and is treated the same way.
+ */
+class JournalSegment implements Closeable {
+
+	static final byte ACCOUNT_CREATED = 1;
+	static final byte MONEY_TRANSFERRED = 2;
+
+	private static final int HEADER_SIZE = 4;
+	private static final int CHECKSUM_SIZE = 4;
+	private static final byte[] ZEROS = new byte[64 * 1024];
+
+	private final long index;
+	private final Path file;
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	// guarded by this
+	private boolean closed;
+
+	private JournalSegment(long index, Path file, FileChannel channel, MappedByteBuffer buffer) {
+		this.index = index;
+		this.file = file;
+		this.channel = channel;
+		this.buffer = buffer;
+	}
+
+	static JournalSegment open(Path directory, long index, int size) throws IOException {
+		Path file = directory.resolve(fileName(index));
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		long mappedSize = Math.max(size, channel.size());
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, mappedSize);
+		return new JournalSegment(index, file, channel, buffer);
+	}
+
+	/** Maps a sealed segment read-only, for replaying it without touching the file. */
+	static JournalSegment openReadOnly(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		return new JournalSegment(indexOf(file), file, channel, buffer);
+	}
+
+	static String fileName(long index) {
+		return String.format("journal-%016d.seg", index);
+	}
+
+	/** Returns the segment index encoded in a file name, or -1 if it is not a segment. */
+	static long indexOf(Path file) {
+		String name = file.getFileName().toString();
+		if (!name.startsWith("journal-") || !name.endsWith(".seg")) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(name.substring("journal-".length(), name.length() - ".seg".length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	long getIndex() {
+		return index;
+	}
+
+	Path getFile() {
+		return file;
+	}
+
+	int position() {
+		return buffer.position();
+	}
+
+	int capacity() {
+		return buffer.capacity();
+	}
+
+	static int recordSize(byte[] firstId, byte[] secondId) {
+		int payload = 1 + 2 + firstId.length + (secondId == null ? 0 : 2 + secondId.length) + 8;
+		return HEADER_SIZE + payload + CHECKSUM_SIZE;
+	}
+
+	/**
+	 * Writes one record at the current position. The caller must have checked
+	 * that {@link #recordSize} bytes are still free.
+	 */
+	void append(byte type, byte[] firstId, byte[] secondId, long amount) {
+		int start = buffer.position();
+		buffer.position(start + HEADER_SIZE);
+		buffer.put(type);
+		buffer.putShort((short) firstId.length);
+		buffer.put(firstId);
+		if (secondId != null) {
+			buffer.putShort((short) secondId.length);
+			buffer.put(secondId);
+		}
+		buffer.putLong(amount);
+		int end = buffer.position();
+		buffer.putInt(checksum(start + HEADER_SIZE, end));
+		buffer.putInt(start, end - start - HEADER_SIZE);
+	}
+
+	/**
+	 * Replays the records starting at {@code offset}.
+	 *
+	 * @return the offset just past the last intact record
+	 */
+	int replay(int offset, JournalRecordHandler handler) {
+		ByteBuffer view = buffer.duplicate();
+		while (offset + HEADER_SIZE <= view.capacity()) {
+			int length = view.getInt(offset);
+			if (length <= 0 || length > view.capacity() - offset - HEADER_SIZE - CHECKSUM_SIZE) {
+				break;
+			}
+			int end = offset + HEADER_SIZE + length;
+			if (view.getInt(end) != checksum(offset + HEADER_SIZE, end)) {
+				break;
+			}
+			view.position(offset + HEADER_SIZE);
+			byte type = view.get();
+			String firstId = readId(view);
+			if (type == ACCOUNT_CREATED) {
+				handler.accountCreated(firstId, view.getLong());
+			} else if (type == MONEY_TRANSFERRED) {
+				String secondId = readId(view);
+				handler.moneyTransferred(firstId, secondId, view.getLong());
+			}
+			offset = end + CHECKSUM_SIZE;
+		}
+		return offset;
+	}
+
+	/**
+	 * Positions the segment for appending and wipes anything left behind a torn
+	 * write. Pages written out of order may have left garbage anywhere behind
+	 * the offset, so the rest of the file is scanned, but only chunks that are
+	 * not already zero are written, so a clean tail is not dirtied.
+	 */
+	void truncateAt(int offset) {
+		int alignedOffset = Math.min(buffer.capacity(), (offset + 7) & ~7);
+		for (int i = offset; i < alignedOffset; i++) {
+			buffer.put(i, (byte) 0);
+		}
+		for (int chunk = alignedOffset; chunk < buffer.capacity(); chunk += ZEROS.length) {
+			int length = Math.min(ZEROS.length, buffer.capacity() - chunk);
+			if (!isZero(chunk, length)) {
+				ByteBuffer region = buffer.duplicate();
+				region.position(chunk);
+				region.put(ZEROS, 0, length);
+			}
+		}
+		buffer.position(offset);
+	}
+
+	synchronized void force() {
+		if (!closed) {
+			buffer.force();
+		}
+	}
+
+	/**
+	 * Closes the file and unmaps it right away instead of waiting for the
+	 * buffer to be collected, which could keep sealed segments mapped for a
+	 * long time. Safe against a concurrent {@link #force()}.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		channel.close();
+		unmap(buffer);
+	}
+
+	private boolean isZero(int from, int length) {
+		int i = from;
+		for (int end = from + (length & ~7); i < end; i += 8) {
+			if (buffer.getLong(i) != 0) {
+				return false;
+			}
+		}
+		for (int end = from + length; i < end; i++) {
+			if (buffer.get(i) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Releases the mapping through the JDK's cleaner, found reflectively since
+	 * it moved between Java 8 and 9. If neither is available the mapping is
+	 * left to the garbage collector.
+	 */
+	private static void unmap(MappedByteBuffer mapped) {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			invokeCleaner.invoke(theUnsafe.get(null), mapped);
+			return;
+		} catch (NoSuchMethodException e) {
+			// Java 8, see below
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return;
+		}
+		try {
+			Method cleanerMethod = mapped.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(mapped);
+			if (cleaner != null) {
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+			}
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// left to the garbage collector
+		}
+	}
+
+	private int checksum(int from, int to) {
+		ByteBuffer region = buffer.duplicate();
+		region.limit(to).position(from);
+		CRC32 crc = new CRC32();
+		crc.update(region);
+		return (int) crc.getValue();
+	}
+
+	private static String readId(ByteBuffer view) {
+		byte[] id = new byte[view.getShort() & 0xFFFF];
+		view.get(id);
+		return new String(id, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,135 @@
+package com.db.awmd.challenge.journal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reads and writes compressed balance snapshots. A snapshot named after
+ * segment {@code N} holds the balances obtained by replaying every journal
+ * segment before {@code N}, so recovery only has to replay segments from
+ * {@code N} onwards.
+ *
+ * <pre>
+ * int magic | long segmentIndex | int count | count * (short idLength | id | long balance)
+ * </pre>
+ */
+final class JournalSnapshots {
+
+	static final long NONE = -1;
+
+	private static final int MAGIC = 0x534e4150;
+	private static final String PREFIX = "snapshot-";
+	private static final String SUFFIX = ".bin.gz";
+
+	private JournalSnapshots() {
+	}
+
+	/** Segment index of the newest snapshot in the directory, or {@link #NONE}. */
+	static long latest(Path directory) throws IOException {
+		long latest = NONE;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+			for (Path file : stream) {
+				latest = Math.max(latest, indexOf(file));
+			}
+		}
+		return latest;
+	}
+
+	static void load(Path directory, long segmentIndex, ReplayedBalances balances) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new GZIPInputStream(Files.newInputStream(directory.resolve(fileName(segmentIndex))), 1 << 16)))) {
+			if (in.readInt() != MAGIC || in.readLong() != segmentIndex) {
+				throw new IOException("Corrupt snapshot " + fileName(segmentIndex));
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				byte[] id = new byte[in.readShort() & 0xFFFF];
+				in.readFully(id);
+				balances.accountCreated(new String(id, StandardCharsets.UTF_8), in.readLong());
+			}
+		}
+	}
+
+	/**
+	 * Writes the snapshot to a temporary file, forces it to disk, moves it into
+	 * place and forces the directory, so that once this returns the snapshot
+	 * survives a crash and the segments it covers may be deleted. A crash
+	 * mid-write never leaves a partial snapshot behind.
+	 */
+	static void write(Path directory, long segmentIndex, ReplayedBalances balances) throws IOException {
+		Path target = directory.resolve(fileName(segmentIndex));
+		Path temporary = directory.resolve(fileName(segmentIndex) + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temporary), 1 << 16)))) {
+			out.writeInt(MAGIC);
+			out.writeLong(segmentIndex);
+			out.writeInt(balances.size());
+			for (Map.Entry<String, long[]> entry : balances.entries()) {
+				byte[] id = entry.getKey().getBytes(StandardCharsets.UTF_8);
+				out.writeShort(id.length);
+				out.write(id);
+				out.writeLong(entry.getValue()[0]);
+			}
+		}
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+			channel.force(true);
+		}
+		Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		forceDirectory(directory);
+	}
+
+	/**
+	 * Makes the rename durable. Some platforms, Windows among them, cannot
+	 * open a directory; there the filesystem is trusted with it.
+	 */
+	private static void forceDirectory(Path directory) throws IOException {
+		FileChannel channel;
+		try {
+			channel = FileChannel.open(directory, StandardOpenOption.READ);
+		} catch (IOException e) {
+			return;
+		}
+		try {
+			channel.force(true);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/** Removes snapshots older than the given one. */
+	static void deleteBefore(Path directory, long segmentIndex) throws IOException {
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+			for (Path file : stream) {
+				if (indexOf(file) < segmentIndex) {
+					Files.deleteIfExists(file);
+				}
+			}
+		}
+	}
+
+	private static String fileName(long segmentIndex) {
+		return String.format(PREFIX + "%016d" + SUFFIX, segmentIndex);
+	}
+
+	private static long indexOf(Path file) {
+		String name = file.getFileName().toString();
+		try {
+			return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+		} catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+			return NONE;
+		}
+	}
+}
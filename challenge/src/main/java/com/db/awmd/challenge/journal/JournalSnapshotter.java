@@ -0,0 +1,102 @@
+package com.db.awmd.challenge.journal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Periodically folds sealed journal segments into a new snapshot.
+ *
+ * <p>The snapshot is built from the journal rather than from the live account
+ * map: the previous snapshot is loaded and every segment sealed since then is
+ * replayed on top of it. The result is exactly the state at a segment
+ * boundary, it never reads a balance mid-transfer, and transfers keep running
+ * on the current segment while it is written. Once the snapshot is durably
+ * in place the segments it covers are deleted.
+ */
+@Component
+@ConditionalOnProperty(name = "journal.enabled", havingValue = "true")
+@Slf4j
+public class JournalSnapshotter {
+
+	private final TransferJournal journal;
+	private final ScheduledExecutorService scheduler;
+
+	@Autowired
+	public JournalSnapshotter(TransferJournal journal,
+			@Value("${journal.snapshot-interval-ms:60000}") long snapshotIntervalMillis) {
+		this.journal = journal;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "journal-snapshotter");
+			thread.setDaemon(true);
+			return thread;
+		});
+		if (snapshotIntervalMillis > 0) {
+			scheduler.scheduleWithFixedDelay(this::snapshotQuietly, snapshotIntervalMillis, snapshotIntervalMillis,
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * Writes a snapshot covering every sealed segment.
+	 *
+	 * @return false if no segment was sealed since the last snapshot
+	 */
+	public synchronized boolean snapshot() throws IOException {
+		Path directory = journal.getDirectory();
+		long sealedBefore = journal.currentSegmentIndex();
+		long previous = JournalSnapshots.latest(directory);
+		if (sealedBefore <= previous || sealedBefore == 0) {
+			return false;
+		}
+		long started = System.nanoTime();
+		ReplayedBalances balances = new ReplayedBalances();
+		if (previous != JournalSnapshots.NONE) {
+			JournalSnapshots.load(directory, previous, balances);
+		}
+		for (Path file : journal.segmentFiles()) {
+			long index = JournalSegment.indexOf(file);
+			if (index >= previous && index < sealedBefore) {
+				try (JournalSegment segment = JournalSegment.openReadOnly(file)) {
+					segment.replay(0, balances);
+				}
+			}
+		}
+		// returns only once the snapshot and its directory entry are on disk
+		JournalSnapshots.write(directory, sealedBefore, balances);
+		JournalSnapshots.deleteBefore(directory, sealedBefore);
+		for (Path file : journal.segmentFiles()) {
+			if (JournalSegment.indexOf(file) < sealedBefore) {
+				Files.deleteIfExists(file);
+			}
+		}
+		log.info("Wrote snapshot of {} accounts up to journal segment {} in {} ms", balances.size(), sealedBefore,
+				(System.nanoTime() - started) / 1_000_000);
+		return true;
+	}
+
+	private void snapshotQuietly() {
+		try {
+			snapshot();
+		} catch (IOException | RuntimeException e) {
+			log.warn("Journal snapshot failed, will retry on the next run", e);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package com.db.awmd.challenge.journal;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountBalance;
+import com.db.awmd.challenge.repository.AccountsRepository;
+
+/**
+ * Rebuilds balances from journal records. Every transfer is applied as a
+ * signed change, so the result does not depend on the order in which
+ * concurrent transfers reached the journal. Only the first creation of an id
+ * counts: a later one was a duplicate that the repository refused.
+ *
+ * <p>Intermediate balances depend on that order and may dip below zero, but
+ * no account can end below zero when every journaled transfer passed the
+ * overdraft check. One that does means a lost or foreign record, and the
+ * journal is refused rather than restored.
+ */
+class ReplayedBalances implements JournalRecordHandler {
+
+	private final Map<String, long[]> balances = new LinkedHashMap<>();
+	private final Set<String> created = new HashSet<>();
+
+	@Override
+	public void accountCreated(String accountId, long initialBalance) {
+		if (created.add(accountId)) {
+			balanceOf(accountId)[0] += initialBalance;
+		}
+	}
+
+	@Override
+	public void moneyTransferred(String fromAccountId, String toAccountId, long amount) {
+		balanceOf(fromAccountId)[0] -= amount;
+		balanceOf(toAccountId)[0] += amount;
+	}
+
+	int size() {
+		return balances.size();
+	}
+
+	Set<Map.Entry<String, long[]>> entries() {
+		return balances.entrySet();
+	}
+
+	void restoreInto(AccountsRepository accountsRepository) {
+		for (Map.Entry<String, long[]> entry : balances.entrySet()) {
+			if (entry.getValue()[0] < 0) {
+				throw new IllegalStateException("Journal replay leaves account " + entry.getKey()
+						+ " overdrawn at " + AccountBalance.toDecimal(entry.getValue()[0]));
+			}
+		}
+		for (Map.Entry<String, long[]> entry : balances.entrySet()) {
+			accountsRepository.createAccount(
+					new Account(entry.getKey(), AccountBalance.toDecimal(entry.getValue()[0])));
+		}
+	}
+
+	private long[] balanceOf(String accountId) {
+		long[] balance = balances.get(accountId);
+		if (balance == null) {
+			balance = new long[1];
+			balances.put(accountId, balance);
+		}
+		return balance;
+	}
+}
@@ -0,0 +1,370 @@
+package com.db.awmd.challenge.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.service.AccountEventListener;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only journal of account creations and committed transfers, written
+ * to memory-mapped segment files of a fixed size.
+ *
+ * <p>Appends only copy a few bytes into the mapped segment. A background
+ * flusher forces the segment to disk and wakes every caller waiting for
+ * durability at once (group commit), so one fsync covers all transfers
+ * appended since the previous one. On startup the latest snapshot written by
+ * the {@link JournalSnapshotter} is loaded and only the segments after it are
+ * replayed to rebuild the balances in the {@link AccountsRepository}.
+ *
+ * <p>It is not a write-ahead log: a transfer is appended right after the
+ * engine has applied it, so a transfer whose append or fsync fails has still
+ * moved the money, and the caller learns that it may not survive a restart.
+ * A failed fsync breaks the journal for good. Every caller still waiting for
+ * durability fails with the cause, later appends fail, and
+ * {@link #transferring} refuses new transfers so no more money moves
+ * unjournaled. Nothing is reported durable after {@link #close()} either.
+ *
+ * Enabled with {@code journal.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "journal.enabled", havingValue = "true")
+@Slf4j
+public class TransferJournal implements AccountEventListener {
+
+	private final Path directory;
+	private final int segmentSize;
+	private final boolean syncCommit;
+	private final long flushIntervalMillis;
+
+	// guarded by this
+	private JournalSegment current;
+	private long appendedPosition;
+
+	private final Object durableMonitor = new Object();
+	private volatile long durablePosition;
+	private int durabilityWaiters;
+	// guarded by durableMonitor, ordered by position
+	private final PriorityQueue<PendingCommit> pendingCommits = new PriorityQueue<>();
+
+	private final Thread flusher;
+	private volatile boolean running = true;
+	// set once, when a force fails or the journal is closed
+	private volatile IllegalStateException failure;
+
+	@Autowired
+	public TransferJournal(AccountsRepository accountsRepository,
+			@Value("${journal.directory:data/journal}") String directory,
+			@Value("${journal.segment-size:67108864}") int segmentSize,
+			@Value("${journal.sync-commit:true}") boolean syncCommit,
+			@Value("${journal.flush-interval-ms:5}") long flushIntervalMillis) throws IOException {
+		this.directory = Paths.get(directory);
+		this.segmentSize = segmentSize;
+		this.syncCommit = syncCommit;
+		this.flushIntervalMillis = flushIntervalMillis;
+		Files.createDirectories(this.directory);
+
+		recover(accountsRepository);
+
+		this.flusher = new Thread(this::flushLoop, "journal-flusher");
+		this.flusher.setDaemon(true);
+		this.flusher.start();
+	}
+
+	/** Journals the account before it is visible, so its record precedes every transfer on it. */
+	@Override
+	public void accountCreating(Account account, long initialBalance) {
+		long position = append(JournalSegment.ACCOUNT_CREATED, account.getAccountId(), null, initialBalance);
+		if (syncCommit) {
+			awaitDurable(position);
+		}
+	}
+
+	/** Refuses the transfer once the journal can no longer record it. */
+	@Override
+	public void transferring(Account fromAccount, Account toAccount) {
+		checkHealthy();
+	}
+
+	@Override
+	public void moneyTransferred(Account fromAccount, Account toAccount, long amount) {
+		long position = append(JournalSegment.MONEY_TRANSFERRED, fromAccount.getAccountId(),
+				toAccount.getAccountId(), amount);
+		if (syncCommit) {
+			awaitDurable(position);
+		}
+	}
+
+	/**
+	 * Appends the transfer without waiting; with {@code sync-commit} the future
+	 * completes once the flusher has forced it to disk.
+	 */
+	@Override
+	public CompletableFuture<Void> moneyTransferredAsync(Account fromAccount, Account toAccount, long amount) {
+		long position = append(JournalSegment.MONEY_TRANSFERRED, fromAccount.getAccountId(),
+				toAccount.getAccountId(), amount);
+		return syncCommit ? whenDurable(position) : CompletableFuture.completedFuture(null);
+	}
+
+	/** Blocks until everything appended so far has been forced to disk. */
+	public void sync() {
+		long position;
+		synchronized (this) {
+			position = appendedPosition;
+		}
+		awaitDurable(position);
+	}
+
+	@PreDestroy
+	public void close() throws IOException, InterruptedException {
+		running = false;
+		synchronized (durableMonitor) {
+			durableMonitor.notifyAll();
+		}
+		flusher.join();
+		// whatever the last flush did not cover will never be forced now
+		fail(new IllegalStateException("Journal is closed"));
+		synchronized (this) {
+			current.close();
+		}
+	}
+
+	/** Segment files currently in the journal directory, oldest first. */
+	List<Path> segmentFiles() throws IOException {
+		List<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "journal-*.seg")) {
+			for (Path file : stream) {
+				if (JournalSegment.indexOf(file) >= 0) {
+					files.add(file);
+				}
+			}
+		}
+		Collections.sort(files);
+		return files;
+	}
+
+	Path getDirectory() {
+		return directory;
+	}
+
+	/** Index of the segment currently appended to; every segment before it is sealed. */
+	synchronized long currentSegmentIndex() {
+		return current.getIndex();
+	}
+
+	/**
+	 * Loads the newest snapshot, if any, and replays only the segments written
+	 * after it. The last segment is reopened for appending.
+	 */
+	private void recover(AccountsRepository accountsRepository) throws IOException {
+		long started = System.nanoTime();
+		ReplayedBalances balances = new ReplayedBalances();
+		long snapshot = JournalSnapshots.latest(directory);
+		if (snapshot != JournalSnapshots.NONE) {
+			JournalSnapshots.load(directory, snapshot, balances);
+		}
+		List<Path> files = new ArrayList<>();
+		for (Path file : segmentFiles()) {
+			if (JournalSegment.indexOf(file) >= snapshot) {
+				files.add(file);
+			}
+		}
+		for (int i = 0; i < files.size(); i++) {
+			long index = JournalSegment.indexOf(files.get(i));
+			JournalSegment segment = JournalSegment.open(directory, index, segmentSize);
+			int end = segment.replay(0, balances);
+			if (i == files.size() - 1) {
+				segment.truncateAt(end);
+				current = segment;
+			} else {
+				segment.close();
+			}
+		}
+		if (current == null) {
+			current = JournalSegment.open(directory, Math.max(snapshot, 0), segmentSize);
+		}
+		balances.restoreInto(accountsRepository);
+		appendedPosition = positionOf(current);
+		durablePosition = appendedPosition;
+		log.info("Recovered {} accounts from snapshot {} and {} journal segments in {} ms", balances.size(),
+				snapshot, files.size(), (System.nanoTime() - started) / 1_000_000);
+	}
+
+	private synchronized long append(byte type, String firstId, String secondId, long amount) {
+		checkHealthy();
+		byte[] firstBytes = firstId.getBytes(StandardCharsets.UTF_8);
+		byte[] secondBytes = secondId == null ? null : secondId.getBytes(StandardCharsets.UTF_8);
+		int recordSize = JournalSegment.recordSize(firstBytes, secondBytes);
+		if (current.position() + recordSize > current.capacity()) {
+			roll(recordSize);
+		}
+		current.append(type, firstBytes, secondBytes, amount);
+		appendedPosition = positionOf(current);
+		return appendedPosition;
+	}
+
+	private void roll(int recordSize) {
+		if (recordSize > segmentSize) {
+			throw new IllegalArgumentException("Journal record of " + recordSize + " bytes exceeds segment size");
+		}
+		try {
+			// Force the full segment here so the flusher only ever deals with the current one.
+			current.force();
+			current.close();
+			current = JournalSegment.open(directory, current.getIndex() + 1, segmentSize);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not roll journal segment", e);
+		}
+	}
+
+	private void awaitDurable(long position) {
+		if (durablePosition >= position) {
+			return;
+		}
+		synchronized (durableMonitor) {
+			durabilityWaiters++;
+			durableMonitor.notifyAll();
+			try {
+				while (durablePosition < position && failure == null) {
+					durableMonitor.wait();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for the journal to sync", e);
+			} finally {
+				durabilityWaiters--;
+			}
+		}
+		if (durablePosition < position) {
+			checkHealthy();
+		}
+	}
+
+	private CompletableFuture<Void> whenDurable(long position) {
+		CompletableFuture<Void> durable = new CompletableFuture<>();
+		synchronized (durableMonitor) {
+			if (durablePosition >= position) {
+				durable.complete(null);
+			} else if (failure != null) {
+				durable.completeExceptionally(failure);
+			} else {
+				pendingCommits.add(new PendingCommit(position, durable));
+				durableMonitor.notifyAll();
+			}
+		}
+		return durable;
+	}
+
+	private void flushLoop() {
+		try {
+			while (running) {
+				synchronized (durableMonitor) {
+					if (durabilityWaiters == 0 && pendingCommits.isEmpty()) {
+						try {
+							durableMonitor.wait(flushIntervalMillis);
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+				}
+				flush();
+			}
+			flush();
+		} catch (Throwable t) {
+			log.error("Journal flush failed, the journal no longer accepts records", t);
+			fail(new IllegalStateException("Journal flush failed", t));
+		}
+	}
+
+	/**
+	 * Breaks the journal with the given cause, unless it already is, and
+	 * fails everything still waiting to become durable.
+	 */
+	private void fail(IllegalStateException cause) {
+		List<CompletableFuture<Void>> abandoned = new ArrayList<>();
+		synchronized (durableMonitor) {
+			if (failure == null) {
+				failure = cause;
+			}
+			durableMonitor.notifyAll();
+			while (!pendingCommits.isEmpty()) {
+				abandoned.add(pendingCommits.poll().durable);
+			}
+		}
+		for (CompletableFuture<Void> durable : abandoned) {
+			durable.completeExceptionally(failure);
+		}
+	}
+
+	private void checkHealthy() {
+		IllegalStateException cause = failure;
+		if (cause != null) {
+			throw cause;
+		}
+	}
+
+	private void flush() {
+		JournalSegment segment;
+		long target;
+		synchronized (this) {
+			segment = current;
+			target = appendedPosition;
+		}
+		if (target <= durablePosition) {
+			return;
+		}
+		segment.force();
+		List<CompletableFuture<Void>> committed = new ArrayList<>();
+		synchronized (durableMonitor) {
+			durablePosition = target;
+			durableMonitor.notifyAll();
+			while (!pendingCommits.isEmpty() && pendingCommits.peek().position <= target) {
+				committed.add(pendingCommits.poll().durable);
+			}
+		}
+		// completed outside the monitor, the callbacks may run on this thread
+		for (CompletableFuture<Void> durable : committed) {
+			durable.complete(null);
+		}
+	}
+
+	private static long positionOf(JournalSegment segment) {
+		return (segment.getIndex() << 32) | segment.position();
+	}
+
+	private static final class PendingCommit implements Comparable<PendingCommit> {
+
+		private final long position;
+		private final CompletableFuture<Void> durable;
+
+		private PendingCommit(long position, CompletableFuture<Void> durable) {
+			this.position = position;
+			this.durable = durable;
+		}
+
+		@Override
+		public int compareTo(PendingCommit other) {
+			return Long.compare(position, other.position);
+		}
+	}
+}
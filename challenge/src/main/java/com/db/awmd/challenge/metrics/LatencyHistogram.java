@@ -0,0 +1,43 @@
+package com.db.awmd.challenge.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Cumulative latency distribution backed by an HdrHistogram {@link Recorder}.
+ * Recording is wait-free and allocation-free, so it is safe on the transfer
+ * hot path; readers fold the recorder's interval histogram into a running
+ * total when a summary is requested.
+ */
+public class LatencyHistogram {
+
+	private final Recorder recorder = new Recorder(3);
+	private final Histogram total = new Histogram(3);
+	private Histogram interval;
+
+	public void recordNanos(long nanos) {
+		recorder.recordValue(Math.max(0, nanos));
+	}
+
+	/** Count, percentiles and max in microseconds. */
+	public synchronized Map<String, Object> summary() {
+		interval = recorder.getIntervalHistogram(interval);
+		total.add(interval);
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("count", total.getTotalCount());
+		summary.put("p50", micros(total.getValueAtPercentile(50)));
+		summary.put("p90", micros(total.getValueAtPercentile(90)));
+		summary.put("p99", micros(total.getValueAtPercentile(99)));
+		summary.put("p999", micros(total.getValueAtPercentile(99.9)));
+		summary.put("max", micros(total.getMaxValue()));
+		return summary;
+	}
+
+	private static double micros(long nanos) {
+		return nanos / (double) TimeUnit.MICROSECONDS.toNanos(1);
+	}
+}
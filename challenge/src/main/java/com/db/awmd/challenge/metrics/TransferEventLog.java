@@ -0,0 +1,348 @@
+package com.db.awmd.challenge.metrics;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.domain.Account;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Structured log of transfer outcomes, one JSON object per line, e.g.
+ * <pre>{"time":1700000000000,"outcome":"COMPLETED","from":"Id-1","to":"Id-2","amount":12.5,"latencyMicros":14}</pre>
+ *
+ * <p>Recording an event copies a few fields into a pre-allocated slot of a
+ * ring and allocates nothing; a background thread encodes the events into a
+ * reused buffer and writes them out. When the writer falls behind by a whole
+ * ring the new event is dropped and counted rather than blocking the
+ * transfer.
+ *
+ * <p>{@link #close()} writes out everything recorded before it, but waits
+ * at most a second for an event whose recording thread never finished
+ * it; that event and any after it are then counted as dropped. Events
+ * recorded after closing are dropped as well.
+ */
+@Component
+@Slf4j
+public class TransferEventLog {
+
+	public enum Outcome {
+		COMPLETED, OVERDRAFT, FAILED;
+
+		private final byte[] json = ('"' + name() + '"').getBytes(StandardCharsets.US_ASCII);
+	}
+
+	private static final byte[] TIME = "{\"time\":".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] OUTCOME = ",\"outcome\":".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] FROM = ",\"from\":".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] TO = ",\"to\":".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] AMOUNT = ",\"amount\":".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] LATENCY = ",\"latencyMicros\":".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long CLOSE_WAIT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private final Event[] ring;
+	private final int mask;
+	private final AtomicLong claimed = new AtomicLong();
+	private final AtomicLong consumed = new AtomicLong();
+	private final LongAdder dropped = new LongAdder();
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+	private final byte[] digits = new byte[20];
+	private final Thread writer;
+	private volatile boolean running = true;
+
+	/**
+	 * @param file     appended to; an empty path turns the log off
+	 * @param ringSize events that may wait for the writer, rounded up to a
+	 *                 power of two
+	 */
+	@Autowired
+	public TransferEventLog(@Value("${transfer.event-log.file:data/events/transfers.jsonl}") String file,
+			@Value("${transfer.event-log.ring-size:8192}") int ringSize) throws IOException {
+		int size = Integer.highestOneBit(Math.max(2, ringSize - 1)) << 1;
+		this.ring = new Event[size];
+		this.mask = size - 1;
+		for (int i = 0; i < size; i++) {
+			ring[i] = new Event();
+		}
+		if (file.isEmpty()) {
+			this.channel = null;
+			this.writer = null;
+			return;
+		}
+		Path path = Paths.get(file);
+		if (path.getParent() != null) {
+			Files.createDirectories(path.getParent());
+		}
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+		this.writer = new Thread(this::drain, "transfer-event-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/** Records the outcome of a transfer requested as a decimal amount. */
+	public void record(Outcome outcome, Account fromAccount, Account toAccount, BigDecimal amount,
+			long latencyNanos) {
+		Event event = claim();
+		if (event != null) {
+			event.decimalAmount = amount;
+			publish(event, outcome, fromAccount, toAccount, latencyNanos);
+		}
+	}
+
+	/** Records the outcome of a transfer in minor units, as batches carry them. */
+	public void record(Outcome outcome, Account fromAccount, Account toAccount, long amount, long latencyNanos) {
+		Event event = claim();
+		if (event != null) {
+			event.decimalAmount = null;
+			event.minorUnits = amount;
+			publish(event, outcome, fromAccount, toAccount, latencyNanos);
+		}
+	}
+
+	public long getWritten() {
+		return consumed.get();
+	}
+
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	/** Writes out what has been recorded so far and closes the file. */
+	@PreDestroy
+	public void close() throws IOException, InterruptedException {
+		if (writer == null) {
+			return;
+		}
+		running = false;
+		writer.join();
+		channel.close();
+	}
+
+	private Event claim() {
+		if (channel == null) {
+			return null;
+		}
+		if (!running) {
+			dropped.increment();
+			return null;
+		}
+		while (true) {
+			long sequence = claimed.get();
+			if (sequence - consumed.get() >= ring.length) {
+				dropped.increment();
+				return null;
+			}
+			if (claimed.compareAndSet(sequence, sequence + 1)) {
+				Event event = ring[(int) sequence & mask];
+				event.claimedSequence = sequence;
+				return event;
+			}
+		}
+	}
+
+	private void publish(Event event, Outcome outcome, Account fromAccount, Account toAccount, long latencyNanos) {
+		event.timeMillis = System.currentTimeMillis();
+		event.outcome = outcome;
+		event.fromAccountId = fromAccount == null ? null : fromAccount.getAccountId();
+		event.toAccountId = toAccount == null ? null : toAccount.getAccountId();
+		event.latencyNanos = latencyNanos;
+		event.published = event.claimedSequence;
+	}
+
+	private void drain() {
+		long next = 0;
+		long closeDeadline = 0;
+		while (running || next != claimed.get()) {
+			Event event = ring[(int) next & mask];
+			if (event.published != next) {
+				if (!running) {
+					// closing: a claimed event may never be published, e.g. if its recorder threw
+					long now = System.nanoTime();
+					if (closeDeadline == 0) {
+						closeDeadline = now + CLOSE_WAIT_NANOS;
+					} else if (now - closeDeadline >= 0) {
+						long abandoned = claimed.get() - next;
+						dropped.add(abandoned);
+						log.warn("{} transfer events were never completed by their recorders and are dropped", abandoned);
+						break;
+					}
+				}
+				flush();
+				LockSupport.parkNanos(IDLE_PARK_NANOS);
+				continue;
+			}
+			encode(event);
+			event.fromAccountId = null;
+			event.toAccountId = null;
+			event.decimalAmount = null;
+			next++;
+			consumed.lazySet(next);
+		}
+		flush();
+	}
+
+	private void encode(Event event) {
+		put(TIME);
+		putLong(event.timeMillis);
+		put(OUTCOME);
+		put(event.outcome.json);
+		put(FROM);
+		putString(event.fromAccountId);
+		put(TO);
+		putString(event.toAccountId);
+		put(AMOUNT);
+		if (event.decimalAmount != null) {
+			// rendered on this thread, never on the transfer's
+			putAscii(event.decimalAmount.toPlainString());
+		} else {
+			putMinorUnits(event.minorUnits);
+		}
+		put(LATENCY);
+		putLong(TimeUnit.NANOSECONDS.toMicros(event.latencyNanos));
+		putByte((byte) '}');
+		putByte((byte) '\n');
+	}
+
+	private void putMinorUnits(long minorUnits) {
+		if (minorUnits < 0) {
+			putByte((byte) '-');
+			minorUnits = -minorUnits;
+		}
+		long cents = minorUnits % 100;
+		putLong(minorUnits / 100);
+		if (cents != 0) {
+			putByte((byte) '.');
+			putByte((byte) ('0' + cents / 10));
+			if (cents % 10 != 0) {
+				putByte((byte) ('0' + cents % 10));
+			}
+		}
+	}
+
+	private void putLong(long value) {
+		if (value < 0) {
+			putByte((byte) '-');
+			value = -value;
+		}
+		int length = 0;
+		do {
+			digits[length++] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value > 0);
+		while (length > 0) {
+			putByte(digits[--length]);
+		}
+	}
+
+	private void putAscii(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			putByte((byte) value.charAt(i));
+		}
+	}
+
+	/** JSON string, escaped and encoded as UTF-8. */
+	private void putString(String value) {
+		if (value == null) {
+			put(NULL);
+			return;
+		}
+		putByte((byte) '"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				putByte((byte) '\\');
+				putByte((byte) c);
+			} else if (c < 0x20) {
+				putByte((byte) '\\');
+				putByte((byte) 'u');
+				putByte((byte) '0');
+				putByte((byte) '0');
+				putByte(HEX[c >> 4]);
+				putByte(HEX[c & 0xf]);
+			} else if (c < 0x80) {
+				putByte((byte) c);
+			} else if (c < 0x800) {
+				putByte((byte) (0xc0 | c >> 6));
+				putByte((byte) (0x80 | c & 0x3f));
+			} else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+					&& Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				putByte((byte) (0xf0 | codePoint >> 18));
+				putByte((byte) (0x80 | codePoint >> 12 & 0x3f));
+				putByte((byte) (0x80 | codePoint >> 6 & 0x3f));
+				putByte((byte) (0x80 | codePoint & 0x3f));
+			} else {
+				putByte((byte) (0xe0 | c >> 12));
+				putByte((byte) (0x80 | c >> 6 & 0x3f));
+				putByte((byte) (0x80 | c & 0x3f));
+			}
+		}
+		putByte((byte) '"');
+	}
+
+	private void put(byte[] bytes) {
+		for (byte b : bytes) {
+			putByte(b);
+		}
+	}
+
+	private void putByte(byte b) {
+		if (!buffer.hasRemaining()) {
+			flush();
+		}
+		buffer.put(b);
+	}
+
+	private void flush() {
+		if (buffer.position() == 0) {
+			return;
+		}
+		buffer.flip();
+		try {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} catch (IOException e) {
+			log.warn("Could not write transfer events, {} bytes lost", buffer.remaining(), e);
+		} finally {
+			buffer.clear();
+		}
+	}
+
+	private static final class Event {
+
+		// slot is readable by the writer once this equals the claimed sequence
+		private volatile long published = -1;
+		private long claimedSequence;
+		private long timeMillis;
+		private Outcome outcome;
+		private String fromAccountId;
+		private String toAccountId;
+		private BigDecimal decimalAmount;
+		private long minorUnits;
+		private long latencyNanos;
+	}
+}
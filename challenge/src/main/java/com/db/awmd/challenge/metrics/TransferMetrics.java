@@ -0,0 +1,69 @@
+package com.db.awmd.challenge.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Counters and latency distributions for the transfer path. Counters are
+ * {@link LongAdder}s so concurrent transfers do not contend on them.
+ */
+@Component
+public class TransferMetrics {
+
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder overdrafts = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final LatencyHistogram batchLatency = new LatencyHistogram();
+	private final LatencyHistogram lockWait = new LatencyHistogram();
+
+	public void transferCompleted(long latencyNanos) {
+		completed.increment();
+		latency.recordNanos(latencyNanos);
+	}
+
+	/**
+	 * An all-or-nothing batch applied in full. Its transfers are counted one by
+	 * one, but its latency goes to the batch distribution, so a large batch
+	 * neither counts as one slow transfer nor as many fast ones.
+	 */
+	public void batchCompleted(int transfers, long latencyNanos) {
+		completed.add(transfers);
+		batchLatency.recordNanos(latencyNanos);
+	}
+
+	/** An all-or-nothing batch refused because one of its transfers would overdraw. */
+	public void batchOverdrawn(long latencyNanos) {
+		overdrafts.increment();
+		batchLatency.recordNanos(latencyNanos);
+	}
+
+	public void transferOverdrawn(long latencyNanos) {
+		overdrafts.increment();
+		latency.recordNanos(latencyNanos);
+	}
+
+	public void transferFailed(long latencyNanos) {
+		errors.increment();
+		latency.recordNanos(latencyNanos);
+	}
+
+	/** Time spent waiting for account locks; only recorded when a lock was contended. */
+	public void lockWaited(long nanos) {
+		lockWait.recordNanos(nanos);
+	}
+
+	public Map<String, Object> summary() {
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("completed", completed.sum());
+		summary.put("overdrafts", overdrafts.sum());
+		summary.put("errors", errors.sum());
+		summary.put("latencyMicros", latency.summary());
+		summary.put("batchLatencyMicros", batchLatency.summary());
+		summary.put("contendedLockWaitMicros", lockWait.summary());
+		return summary;
+	}
+}
@@ -0,0 +1,115 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.db.awmd.challenge.domain.MoneyTransfer;
+
+/**
+ * Striped lock table keyed by account id. Accounts hashing to the same stripe
+ * share a lock, and stripes are always acquired in ascending index order so
+ * that concurrent transfers between the same accounts in opposite directions
+ * can never deadlock.
+ */
+public class AccountLocks {
+
+	private final ReentrantLock[] stripes;
+	private final int mask;
+
+	public AccountLocks(int stripeCount) {
+		if (stripeCount <= 0 || Integer.bitCount(stripeCount) != 1) {
+			throw new IllegalArgumentException("Lock stripe count must be a positive power of two: " + stripeCount);
+		}
+		this.stripes = new ReentrantLock[stripeCount];
+		for (int i = 0; i < stripeCount; i++) {
+			this.stripes[i] = new ReentrantLock();
+		}
+		this.mask = stripeCount - 1;
+	}
+
+	public int stripeOf(String accountId) {
+		int h = accountId.hashCode();
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	/**
+	 * @return nanoseconds spent waiting for the stripe, 0 when it was free
+	 */
+	public long lock(String accountId) {
+		return acquire(stripeOf(accountId));
+	}
+
+	public void unlock(String accountId) {
+		stripes[stripeOf(accountId)].unlock();
+	}
+
+	/**
+	 * @return nanoseconds spent waiting for contended stripes, 0 when every
+	 *         stripe was free
+	 */
+	public long lock(String firstAccountId, String secondAccountId) {
+		int first = stripeOf(firstAccountId);
+		int second = stripeOf(secondAccountId);
+		if (first == second) {
+			return acquire(first);
+		}
+		return acquire(Math.min(first, second)) + acquire(Math.max(first, second));
+	}
+
+	public void unlock(String firstAccountId, String secondAccountId) {
+		int first = stripeOf(firstAccountId);
+		int second = stripeOf(secondAccountId);
+		if (first == second) {
+			stripes[first].unlock();
+		} else {
+			stripes[Math.max(first, second)].unlock();
+			stripes[Math.min(first, second)].unlock();
+		}
+	}
+
+	/**
+	 * Returns the distinct stripes covering every account of the transfers, in
+	 * the ascending order they must be locked in.
+	 */
+	public int[] stripesOf(List<MoneyTransfer> transfers) {
+		int[] result = new int[transfers.size() * 2];
+		int n = 0;
+		for (MoneyTransfer transfer : transfers) {
+			result[n++] = stripeOf(transfer.getFromAccount().getAccountId());
+			result[n++] = stripeOf(transfer.getToAccount().getAccountId());
+		}
+		Arrays.sort(result);
+		int distinct = 0;
+		for (int i = 0; i < n; i++) {
+			if (distinct == 0 || result[distinct - 1] != result[i]) {
+				result[distinct++] = result[i];
+			}
+		}
+		return Arrays.copyOf(result, distinct);
+	}
+
+	public long lockAll(int[] sortedStripes) {
+		long waited = 0;
+		for (int stripe : sortedStripes) {
+			waited += acquire(stripe);
+		}
+		return waited;
+	}
+
+	public void unlockAll(int[] sortedStripes) {
+		for (int i = sortedStripes.length - 1; i >= 0; i--) {
+			stripes[sortedStripes[i]].unlock();
+		}
+	}
+
+	private long acquire(int stripe) {
+		ReentrantLock lock = stripes[stripe];
+		if (lock.tryLock()) {
+			return 0;
+		}
+		long started = System.nanoTime();
+		lock.lock();
+		return System.nanoTime() - started;
+	}
+}
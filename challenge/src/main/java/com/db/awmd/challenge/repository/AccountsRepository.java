@@ -1,5 +1,7 @@
 package com.db.awmd.challenge.repository;
 
+import java.util.stream.Stream;
+
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 
@@ -10,6 +12,11 @@ public interface AccountsRepository {
   Account getAccount(String accountId);
   
   void clearAccounts();
+
+  int countAccounts();
+
+  /** Every stored account, for scans; accounts created meanwhile may or may not be included. */
+  Stream<Account> streamAccounts();
   
 
 }
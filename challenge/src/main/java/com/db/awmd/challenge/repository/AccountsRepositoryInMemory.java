@@ -1,20 +1,53 @@
 package com.db.awmd.challenge.repository;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.StripedAccountBalance;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 
 @Repository
+@ConditionalOnProperty(name = "account.store", havingValue = "heap", matchIfMissing = true)
 public class AccountsRepositoryInMemory implements AccountsRepository {
 
 	private final Map<String, Account> accounts = new ConcurrentHashMap<>();
 
+	private Set<String> hotAccountIds = Collections.emptySet();
+	private int hotAccountStripes;
+
+	/**
+	 * Designates accounts that receive credits from many concurrent transfers.
+	 * They are stored with a {@link StripedAccountBalance}, whichever way they
+	 * are created.
+	 */
+	@Autowired
+	public void setHotAccounts(@Value("${transfer.hot-accounts:}") String[] hotAccountIds,
+			@Value("${transfer.hot-account-stripes:16}") int hotAccountStripes) {
+		this.hotAccountIds = new HashSet<>(Arrays.asList(hotAccountIds));
+		this.hotAccountStripes = hotAccountStripes;
+	}
+
+	/**
+	 * Stores the account; a hot account first has its balance moved into
+	 * stripes, so the caller's object stays the stored one.
+	 */
 	@Override
 	public void createAccount(Account account) throws DuplicateAccountIdException {
+		if (hotAccountIds.contains(account.getAccountId()) && !account.getMinorUnitBalance().isStriped()) {
+			account.setMinorUnitBalance(
+					new StripedAccountBalance(account.getMinorUnitBalance().get(), hotAccountStripes));
+		}
 		Account previousAccount = accounts.putIfAbsent(account.getAccountId(), account);
 		if (previousAccount != null) {
 			throw new DuplicateAccountIdException("Account id " + account.getAccountId() + " already exists!");
@@ -31,6 +64,16 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
 		accounts.clear();
 	}
 
+	@Override
+	public int countAccounts() {
+		return accounts.size();
+	}
+
+	@Override
+	public Stream<Account> streamAccounts() {
+		return accounts.values().stream();
+	}
+
 	
 
 }
@@ -0,0 +1,114 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.StripedAccountBalance;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+
+/**
+ * Accounts kept in an {@link OffHeapAccountTable} instead of a map of
+ * {@link Account} objects, for populations large enough that the heap and
+ * its collection pauses become the problem. An account with a short id takes
+ * about 60 bytes of direct memory, index included, where the heap store
+ * spends over 160 bytes of heap on several objects per account.
+ *
+ * <p>Lookups return a new {@link Account} whose balance is a view of the
+ * stored one, so accounts must not be compared by identity. Hot accounts are
+ * few and keep their striped balance on the heap, as in
+ * {@link AccountsRepositoryInMemory}.
+ */
+@Repository
+@ConditionalOnProperty(name = "account.store", havingValue = "off-heap")
+public class AccountsRepositoryOffHeap implements AccountsRepository {
+
+	private final OffHeapAccountTable table;
+
+	private final Map<String, Account> hotAccounts = new ConcurrentHashMap<>();
+	private Set<String> hotAccountIds = Collections.emptySet();
+	private int hotAccountStripes;
+
+	/**
+	 * @param expectedAccounts sizes the index up front, so that loading this
+	 *                         many accounts never has to rebuild it
+	 */
+	@Autowired
+	public AccountsRepositoryOffHeap(@Value("${account.off-heap.expected-accounts:1000000}") int expectedAccounts) {
+		this.table = new OffHeapAccountTable(expectedAccounts);
+	}
+
+	@Autowired
+	public void setHotAccounts(@Value("${transfer.hot-accounts:}") String[] hotAccountIds,
+			@Value("${transfer.hot-account-stripes:16}") int hotAccountStripes) {
+		this.hotAccountIds = new HashSet<>(Arrays.asList(hotAccountIds));
+		this.hotAccountStripes = hotAccountStripes;
+	}
+
+	/**
+	 * Copies the account's id and balance into the table, so callers must look
+	 * it up again to use it.
+	 *
+	 * @throws IllegalArgumentException if the id is longer than the table
+	 *                                  stores
+	 */
+	@Override
+	public void createAccount(Account account) throws DuplicateAccountIdException {
+		boolean created;
+		if (hotAccountIds.contains(account.getAccountId())) {
+			created = hotAccounts.putIfAbsent(account.getAccountId(), new Account(account.getAccountId(),
+					new StripedAccountBalance(account.getMinorUnitBalance().get(), hotAccountStripes))) == null;
+		} else {
+			created = table.insert(account.getAccountId(), account.getMinorUnitBalance().get()) >= 0;
+		}
+		if (!created) {
+			throw new DuplicateAccountIdException("Account id " + account.getAccountId() + " already exists!");
+		}
+	}
+
+	@Override
+	public Account getAccount(String accountId) {
+		if (!hotAccounts.isEmpty()) {
+			Account hotAccount = hotAccounts.get(accountId);
+			if (hotAccount != null) {
+				return hotAccount;
+			}
+		}
+		int slot = table.find(accountId);
+		return slot < 0 ? null : new Account(accountId, new OffHeapAccountBalance(table, slot));
+	}
+
+	/** Accounts looked up before must not be used afterwards, their memory is reused. */
+	@Override
+	public void clearAccounts() {
+		table.clear();
+		hotAccounts.clear();
+	}
+
+	@Override
+	public int countAccounts() {
+		return table.size() + hotAccounts.size();
+	}
+
+	@Override
+	public Stream<Account> streamAccounts() {
+		return Stream.concat(hotAccounts.values().stream(), IntStream.range(0, table.size())
+				.mapToObj(slot -> new Account(table.accountIdOf(slot), new OffHeapAccountBalance(table, slot))));
+	}
+
+	/** Direct memory reserved for the table, which grows a page at a time. */
+	public long getOffHeapBytes() {
+		return table.reservedBytes();
+	}
+}
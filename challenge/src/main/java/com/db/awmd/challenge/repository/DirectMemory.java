@@ -0,0 +1,196 @@
+package com.db.awmd.challenge.repository;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Absolute reads and writes of direct memory, with the volatile and atomic
+ * variants that off-heap balances need and that a {@link ByteBuffer} lacks
+ * before Java 9. They are {@code sun.misc.Unsafe}'s, reached through
+ * constant method handles: no class refers to Unsafe when compiled, so javac
+ * has no internal API to warn about, and the JIT inlines the handles into
+ * plain memory accesses. The off-heap account store goes through here only.
+ */
+final class DirectMemory {
+
+	private static final long ADDRESS_OFFSET;
+	private static final MethodHandle GET_OBJECT_LONG;
+	private static final MethodHandle GET_LONG;
+	private static final MethodHandle PUT_LONG;
+	private static final MethodHandle GET_LONG_VOLATILE;
+	private static final MethodHandle PUT_LONG_VOLATILE;
+	private static final MethodHandle COMPARE_AND_SWAP_LONG;
+	private static final MethodHandle GET_AND_ADD_LONG;
+	private static final MethodHandle GET_INT;
+	private static final MethodHandle PUT_INT;
+	private static final MethodHandle GET_BYTE;
+	private static final MethodHandle PUT_BYTE;
+	private static final MethodHandle GET_CHAR;
+	private static final MethodHandle PUT_CHAR;
+	private static final MethodHandle SET_MEMORY;
+
+	static {
+		try {
+			Field field = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			Object unsafe = field.get(null);
+			ADDRESS_OFFSET = (long) unsafe.getClass().getMethod("objectFieldOffset", Field.class).invoke(unsafe,
+					Buffer.class.getDeclaredField("address"));
+			GET_OBJECT_LONG = handle(unsafe, "getLong", long.class, Object.class, long.class);
+			GET_LONG = handle(unsafe, "getLong", long.class, long.class);
+			PUT_LONG = handle(unsafe, "putLong", void.class, long.class, long.class);
+			GET_LONG_VOLATILE = onNull(handle(unsafe, "getLongVolatile", long.class, Object.class, long.class));
+			PUT_LONG_VOLATILE = onNull(handle(unsafe, "putLongVolatile", void.class, Object.class, long.class, long.class));
+			COMPARE_AND_SWAP_LONG = onNull(
+					handle(unsafe, "compareAndSwapLong", boolean.class, Object.class, long.class, long.class, long.class));
+			GET_AND_ADD_LONG = onNull(handle(unsafe, "getAndAddLong", long.class, Object.class, long.class, long.class));
+			GET_INT = handle(unsafe, "getInt", int.class, long.class);
+			PUT_INT = handle(unsafe, "putInt", void.class, long.class, int.class);
+			GET_BYTE = handle(unsafe, "getByte", byte.class, long.class);
+			PUT_BYTE = handle(unsafe, "putByte", void.class, long.class, byte.class);
+			GET_CHAR = handle(unsafe, "getChar", char.class, long.class);
+			PUT_CHAR = handle(unsafe, "putChar", void.class, long.class, char.class);
+			SET_MEMORY = handle(unsafe, "setMemory", void.class, long.class, long.class, byte.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private DirectMemory() {
+	}
+
+	/** Address of the first byte of a direct buffer. */
+	static long addressOf(ByteBuffer directBuffer) {
+		try {
+			return (long) GET_OBJECT_LONG.invokeExact((Object) directBuffer, ADDRESS_OFFSET);
+		} catch (Throwable t) {
+			throw failure(t);
+		}
+	}
+
+	static long getLong(long address) {
+		try {
+			return (long) GET_LONG.invokeExact(address);
+		} catch (Throwable t) {
+			throw failure(t);
+		}
+	}
+
+	static void putLong(long address, long value) {
+		try {
+			PUT_LONG.invokeExact(address, value);
+		} catch (Throwable t) {
+			throw failure(t);
+		}
+	}
+
+	static long getLongVolatile(long address) {
+		try {
+			return (long) GET_LONG_VOLATILE.invokeExact(address);
+		} catch (Throwable t) {
+			throw failure(t);
+		}
+	}
+
+	static void putLongVolatile(long address, long value) {
+		try {
+			PUT_LONG_VOLATILE.invokeExact(address, value);
+		} catch (Throwable t) {
+			throw failure(t);
+		}
+	}
+
+	static boolean compareAndSwapLong(long address, long expected, long updated) {
+		try {
+			return (boolean) COMPARE_AND_SWAP_LONG.invokeExact(address, expected, updated);
+		} catch (Throwable t) {
+			throw failure(t);
+		}
+	}
+
+	static long getAndAddLong(long address, long delta) {
+		try {
+			return (long) GET_AND_ADD_LONG.invokeExact(address, delta);
+		} catch (Throwable t) {
+			throw failure(t);
+		}
+	}
+
+	static int getInt(long address) {
+		try {
+			return (int) GET_INT.invokeExact(address);
+		} catch (Throwable t) {
+			throw failure(t);
+		}
+	}
+
+	static void putInt(long address, int value) {
+		try {
+			PUT_INT.invokeExact(address, value);
+		} catch (Throwable t) {
+			throw failure(t);
+		}
+	}
+
+	static byte getByte(long address) {
+		try {
+			return (byte) GET_BYTE.invokeExact(address);
+		} catch (Throwable t) {
+			throw failure(t);
+		}
+	}
+
+	static void putByte(long address, byte value) {
+		try {
+			PUT_BYTE.invokeExact(address, value);
+		} catch (Throwable t) {
+			throw failure(t);
+		}
+	}
+
+	static char getChar(long address) {
+		try {
+			return (char) GET_CHAR.invokeExact(address);
+		} catch (Throwable t) {
+			throw failure(t);
+		}
+	}
+
+	static void putChar(long address, char value) {
+		try {
+			PUT_CHAR.invokeExact(address, value);
+		} catch (Throwable t) {
+			throw failure(t);
+		}
+	}
+
+	static void setMemory(long address, long bytes, byte value) {
+		try {
+			SET_MEMORY.invokeExact(address, bytes, value);
+		} catch (Throwable t) {
+			throw failure(t);
+		}
+	}
+
+	private static MethodHandle handle(Object unsafe, String name, Class<?> returnType, Class<?>... parameterTypes)
+			throws ReflectiveOperationException {
+		return MethodHandles.publicLookup()
+				.findVirtual(unsafe.getClass(), name, MethodType.methodType(returnType, parameterTypes)).bindTo(unsafe);
+	}
+
+	/** Fixes the object of an object-relative access to null, making the offset an address. */
+	private static MethodHandle onNull(MethodHandle handle) {
+		return MethodHandles.insertArguments(handle, 0, (Object) null);
+	}
+
+	private static RuntimeException failure(Throwable t) {
+		if (t instanceof Error) {
+			throw (Error) t;
+		}
+		return t instanceof RuntimeException ? (RuntimeException) t : new IllegalStateException(t);
+	}
+}
@@ -0,0 +1,77 @@
+package com.db.awmd.challenge.repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountBalance;
+import com.db.awmd.challenge.domain.MoneyTransfer;
+import com.db.awmd.challenge.exception.OverdraftsAccountException;
+
+/**
+ * Transfer engine that takes no locks at all: the debit is a CAS that only
+ * succeeds while funds are sufficient, and the credit is an atomic add. Money
+ * is conserved, but a reader may briefly observe it in flight between the two
+ * accounts. Enabled with {@code transfer.engine=lock-free}.
+ */
+@Repository
+@ConditionalOnProperty(name = "transfer.engine", havingValue = "lock-free")
+public class LockFreeMoneyTransferRepository implements MoneyTransferRepository {
+
+	@Override
+	public boolean transferMoney(Account fromAccount, Account toAccount, BigDecimal transferAmount) {
+		return transferMoney(fromAccount, toAccount, transferAmount, OrderingPoint.NONE);
+	}
+
+	@Override
+	public boolean transferMoney(Account fromAccount, Account toAccount, BigDecimal transferAmount,
+			OrderingPoint orderingPoint) {
+		long amount = AccountBalance.toMinorUnits(transferAmount);
+		if (!fromAccount.getMinorUnitBalance().tryDebit(amount)) {
+			throw new OverdraftsAccountException("Transfer of " + transferAmount + " not possible ,"
+					+ fromAccount.getAccountId() + " going overdafts ");
+		}
+		orderingPoint.reached();
+		toAccount.getMinorUnitBalance().credit(amount);
+		return true;
+	}
+
+	/**
+	 * Validates the batch against current balances, then reserves every net
+	 * debit with a CAS. If a concurrent transfer drained one of the accounts in
+	 * the meantime, the debits already taken are credited back and the batch is
+	 * rejected; credits are only applied once all debits are secured.
+	 */
+	@Override
+	public int transferMoneyAtomically(List<MoneyTransfer> transfers) {
+		return transferMoneyAtomically(transfers, OrderingPoint.NONE);
+	}
+
+	@Override
+	public int transferMoneyAtomically(List<MoneyTransfer> transfers, OrderingPoint orderingPoint) {
+		NetPositions positions = new NetPositions();
+		int rejected = positions.simulate(transfers);
+		if (rejected != ALL_APPLIED) {
+			return rejected;
+		}
+		Account uncovered = positions.reserveDebits();
+		if (uncovered != null) {
+			return firstDebitOf(transfers, uncovered);
+		}
+		orderingPoint.reached();
+		positions.applyCredits();
+		return ALL_APPLIED;
+	}
+
+	private static int firstDebitOf(List<MoneyTransfer> transfers, Account account) {
+		for (int i = 0; i < transfers.size(); i++) {
+			if (transfers.get(i).getFromAccount().getAccountId().equals(account.getAccountId())) {
+				return i;
+			}
+		}
+		return 0;
+	}
+}
@@ -1,12 +1,52 @@
 package com.db.awmd.challenge.repository;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.MoneyTransfer;
 
 public interface MoneyTransferRepository {
 
+	/** Returned by {@link #transferMoneyAtomically(List)} when every transfer was applied. */
+	int ALL_APPLIED = -1;
+
 	//Code added for Dev challege
 	  boolean transferMoney(Account fromAccount , Account toAccount , BigDecimal transferAmount);
 
+	/**
+	 * Same as {@link #transferMoney(Account, Account, BigDecimal)}, calling
+	 * {@code orderingPoint} between the debit and the credit. Engines that
+	 * cannot tell where that is call it once the transfer is done.
+	 */
+	default boolean transferMoney(Account fromAccount, Account toAccount, BigDecimal transferAmount,
+			OrderingPoint orderingPoint) {
+		boolean transferred = transferMoney(fromAccount, toAccount, transferAmount);
+		orderingPoint.reached();
+		return transferred;
+	}
+
+	/**
+	 * Applies the transfers in order as one unit: either all of them succeed or
+	 * no balance is changed. Each transfer is checked for overdraft against the
+	 * balances left by the transfers before it.
+	 *
+	 * @return {@link #ALL_APPLIED}, or the index of the first transfer that
+	 *         would have overdrawn its account
+	 */
+	int transferMoneyAtomically(List<MoneyTransfer> transfers);
+
+	/**
+	 * Same as {@link #transferMoneyAtomically(List)}, calling
+	 * {@code orderingPoint} once all debits of the batch are taken and before
+	 * any of its credits, if the batch is applied.
+	 */
+	default int transferMoneyAtomically(List<MoneyTransfer> transfers, OrderingPoint orderingPoint) {
+		int rejected = transferMoneyAtomically(transfers);
+		if (rejected == ALL_APPLIED) {
+			orderingPoint.reached();
+		}
+		return rejected;
+	}
+
 }
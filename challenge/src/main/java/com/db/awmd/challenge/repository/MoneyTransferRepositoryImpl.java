@@ -1,29 +1,122 @@
 package com.db.awmd.challenge.repository;
 
 import java.math.BigDecimal;
+import java.util.List;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountBalance;
+import com.db.awmd.challenge.domain.MoneyTransfer;
 import com.db.awmd.challenge.exception.OverdraftsAccountException;
+import com.db.awmd.challenge.metrics.TransferMetrics;
 
 @Repository
+@ConditionalOnProperty(name = "transfer.engine", havingValue = "locking", matchIfMissing = true)
 public class MoneyTransferRepositoryImpl  implements MoneyTransferRepository{
 
-	
+	// Only the two accounts involved are locked, so transfers between
+	// disjoint account pairs run in parallel.
+	private final AccountLocks accountLocks;
+
+	private TransferMetrics transferMetrics;
+
+	@Autowired
+	public MoneyTransferRepositoryImpl(@Value("${transfer.lock-stripes:1024}") int lockStripes) {
+		this.accountLocks = new AccountLocks(lockStripes);
+	}
+
+	@Autowired(required = false)
+	public void setTransferMetrics(TransferMetrics transferMetrics) {
+		this.transferMetrics = transferMetrics;
+	}
+
 	// Code added for Dev challege
 		@Override
-		public synchronized boolean transferMoney(Account fromAccount, Account toAccount, BigDecimal transferAmount) {
+		public boolean transferMoney(Account fromAccount, Account toAccount, BigDecimal transferAmount) {
+			return transferMoney(fromAccount, toAccount, transferAmount, OrderingPoint.NONE);
+		}
+
+		@Override
+		public boolean transferMoney(Account fromAccount, Account toAccount, BigDecimal transferAmount,
+				OrderingPoint orderingPoint) {
+
+			if (toAccount.getMinorUnitBalance().isStriped()) {
+				return transferToStriped(fromAccount, toAccount, transferAmount, orderingPoint);
+			}
+			long amount = AccountBalance.toMinorUnits(transferAmount);
+			recordLockWait(accountLocks.lock(fromAccount.getAccountId(), toAccount.getAccountId()));
+			try {
+				if (fromAccount.getMinorUnitBalance().tryDebit(amount)) {
+					orderingPoint.reached();
+					toAccount.getMinorUnitBalance().credit(amount);
+					return true;
+				} else
+					throw overdraft(fromAccount, transferAmount);
+			} finally {
+				accountLocks.unlock(fromAccount.getAccountId(), toAccount.getAccountId());
+			}
+
+		}
 
-			if (fromAccount.getBalance().subtract(transferAmount).compareTo(BigDecimal.ZERO) > 0) {
-				fromAccount.setBalance(fromAccount.getBalance().subtract(transferAmount));
-				toAccount.setBalance(toAccount.getBalance().add(transferAmount));
+		/**
+		 * Credits to a striped (hot) account do not contend with each other, so
+		 * only the source account is locked and the target's lock stays free.
+		 * That is safe because a striped credit only ever adds to a stripe, and
+		 * whoever holds the target's lock can at worst miss it and understate the
+		 * balance (see {@link com.db.awmd.challenge.domain.StripedAccountBalance}).
+		 * The credit still lands before the source is unlocked, so the transfer
+		 * is complete for the next holder of the source's lock.
+		 */
+		private boolean transferToStriped(Account fromAccount, Account toAccount, BigDecimal transferAmount,
+				OrderingPoint orderingPoint) {
+			long amount = AccountBalance.toMinorUnits(transferAmount);
+			recordLockWait(accountLocks.lock(fromAccount.getAccountId()));
+			try {
+				if (!fromAccount.getMinorUnitBalance().tryDebit(amount)) {
+					throw overdraft(fromAccount, transferAmount);
+				}
+				orderingPoint.reached();
+				toAccount.getMinorUnitBalance().credit(amount);
 				return true;
-			} else
-				throw new OverdraftsAccountException("Transfer of " + transferAmount + " not possible ,"
-						+ fromAccount.getAccountId() + " going overdafts ");
-			
-		
+			} finally {
+				accountLocks.unlock(fromAccount.getAccountId());
+			}
+		}
+
+		@Override
+		public int transferMoneyAtomically(List<MoneyTransfer> transfers) {
+			return transferMoneyAtomically(transfers, OrderingPoint.NONE);
+		}
+
+		@Override
+		public int transferMoneyAtomically(List<MoneyTransfer> transfers, OrderingPoint orderingPoint) {
+			int[] stripes = accountLocks.stripesOf(transfers);
+			recordLockWait(accountLocks.lockAll(stripes));
+			try {
+				NetPositions positions = new NetPositions();
+				int rejected = positions.simulate(transfers);
+				if (rejected == ALL_APPLIED) {
+					orderingPoint.reached();
+					positions.forEach((account, change) -> account.getMinorUnitBalance().adjust(change));
+				}
+				return rejected;
+			} finally {
+				accountLocks.unlockAll(stripes);
+			}
+		}
+
+		private static OverdraftsAccountException overdraft(Account fromAccount, BigDecimal transferAmount) {
+			return new OverdraftsAccountException("Transfer of " + transferAmount + " not possible ,"
+					+ fromAccount.getAccountId() + " going overdafts ");
+		}
 
+		private void recordLockWait(long waitedNanos) {
+			if (waitedNanos > 0 && transferMetrics != null) {
+				transferMetrics.lockWaited(waitedNanos);
+			}
 		}
 }
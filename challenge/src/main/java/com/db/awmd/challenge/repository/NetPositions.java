@@ -0,0 +1,125 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjLongConsumer;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountBalance;
+import com.db.awmd.challenge.domain.MoneyTransfer;
+
+/**
+ * Net balance change per account for a list of transfers, computed in one
+ * pass while checking every transfer against the balance the previous ones
+ * would have left. Accounts are told apart by id rather than identity, since
+ * a store handing out views may return a new object on every lookup.
+ */
+class NetPositions {
+
+	private final Map<Account, long[]> changes = new HashMap<>();
+
+	/**
+	 * @return {@link MoneyTransferRepository#ALL_APPLIED}, or the index of the
+	 *         first transfer that would overdraw its account
+	 */
+	int simulate(List<MoneyTransfer> transfers) {
+		for (int i = 0; i < transfers.size(); i++) {
+			MoneyTransfer transfer = transfers.get(i);
+			if (!offer(transfer.getFromAccount(), transfer.getToAccount(), transfer.getAmount())) {
+				return i;
+			}
+		}
+		return MoneyTransferRepository.ALL_APPLIED;
+	}
+
+	/**
+	 * Adds one transfer unless it would overdraw its account, given the
+	 * balance and the transfers added before it.
+	 */
+	boolean offer(Account fromAccount, Account toAccount, long amount) {
+		long[] fromChange = changeOf(fromAccount);
+		long balance = fromAccount.getMinorUnitBalance().get() + fromChange[0];
+		if (!AccountBalance.canDebit(balance, amount)) {
+			return false;
+		}
+		fromChange[0] -= amount;
+		changeOf(toAccount)[0] += amount;
+		return true;
+	}
+
+	/** Adds a change computed elsewhere, e.g. when splitting positions up by owner. */
+	void add(Account account, long change) {
+		changeOf(account)[0] += change;
+	}
+
+	/** Accounts whose balance actually changes, i.e. the writes applying the positions takes. */
+	int changedAccounts() {
+		int changed = 0;
+		for (long[] change : changes.values()) {
+			if (change[0] != 0) {
+				changed++;
+			}
+		}
+		return changed;
+	}
+
+	void forEach(ObjLongConsumer<Account> action) {
+		for (Map.Entry<Account, long[]> entry : changes.entrySet()) {
+			if (entry.getValue()[0] != 0) {
+				action.accept(entry.getKey(), entry.getValue()[0]);
+			}
+		}
+	}
+
+	/**
+	 * Takes every net debit with {@link AccountBalance#tryDebit(long)}. If one
+	 * of them no longer fits, the debits already taken are credited back.
+	 *
+	 * @return null when all debits were taken, otherwise the account that
+	 *         could not cover its debit
+	 */
+	Account reserveDebits() {
+		for (Map.Entry<Account, long[]> entry : changes.entrySet()) {
+			long change = entry.getValue()[0];
+			if (change < 0 && !entry.getKey().getMinorUnitBalance().tryDebit(-change)) {
+				releaseDebitsBefore(entry.getKey());
+				return entry.getKey();
+			}
+		}
+		return null;
+	}
+
+	void applyCredits() {
+		for (Map.Entry<Account, long[]> entry : changes.entrySet()) {
+			if (entry.getValue()[0] > 0) {
+				entry.getKey().getMinorUnitBalance().credit(entry.getValue()[0]);
+			}
+		}
+	}
+
+	/** Credits back every debit taken by {@link #reserveDebits()}. */
+	void releaseDebits() {
+		releaseDebitsBefore(null);
+	}
+
+	private void releaseDebitsBefore(Account failed) {
+		for (Map.Entry<Account, long[]> entry : changes.entrySet()) {
+			if (entry.getKey() == failed) {
+				return;
+			}
+			if (entry.getValue()[0] < 0) {
+				entry.getKey().getMinorUnitBalance().credit(-entry.getValue()[0]);
+			}
+		}
+	}
+
+	private long[] changeOf(Account account) {
+		long[] change = changes.get(account);
+		if (change == null) {
+			change = new long[1];
+			changes.put(account, change);
+		}
+		return change;
+	}
+}
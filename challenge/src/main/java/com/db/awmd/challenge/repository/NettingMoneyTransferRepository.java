@@ -0,0 +1,399 @@
+package com.db.awmd.challenge.repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountBalance;
+import com.db.awmd.challenge.domain.MoneyTransfer;
+import com.db.awmd.challenge.exception.OverdraftsAccountException;
+
+/**
+ * Transfer engine that collects transfers for a short window and applies only
+ * their net effect. Much of the flow is reciprocal, A to B followed by B to A
+ * within milliseconds, and each such pair costs four balance writes when
+ * applied one by one but none once netted.
+ *
+ * <p>A single netting thread takes the first waiting transfer, keeps
+ * collecting until the window has passed or the batch is full, and then checks
+ * every transfer in arrival order against the balance the ones before it
+ * would have left, exactly as if they were applied one at a time. A transfer
+ * that would overdraw is refused on its own; the rest are applied as one net
+ * change per account, debits first, and their callers are woken together.
+ * Callers wait up to one window longer than with the other engines.
+ *
+ * <p>Net debits are taken with {@link AccountBalance#tryDebit(long)}, so a
+ * balance lowered outside the engine in the meantime cannot go negative: the
+ * window then falls back to applying its transfers one by one. An atomic batch
+ * settles the transfers netted before it and is then applied on its own, so
+ * the order of arrival is kept.
+ *
+ * <p>Whatever settling a window throws, {@link Error}s included, goes back to
+ * the callers it concerns and the netting thread carries on. After
+ * {@link #shutdown()} new transfers are refused, and callers still waiting
+ * when the thread ends fail with an {@link IllegalStateException}.
+ *
+ * Enabled with {@code transfer.engine=netting}.
+ */
+@Repository
+@ConditionalOnProperty(name = "transfer.engine", havingValue = "netting")
+public class NettingMoneyTransferRepository implements MoneyTransferRepository {
+
+	private static final int WAITING = 0;
+	private static final int DONE = 1;
+
+	private static final int SPINS_BEFORE_PARKING = 200;
+
+	private final long windowNanos;
+	private final int maxBatch;
+	private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+	private final Thread netter;
+	private volatile boolean netterParked;
+	private volatile boolean running = true;
+
+	// written by the netting thread only
+	private volatile long windows;
+	private volatile long appliedTransfers;
+	private volatile long accountWrites;
+	private volatile long fallbacks;
+
+	/**
+	 * @param windowMicros how long a window stays open after its first
+	 *                     transfer arrived; 0 nets only what is already waiting
+	 * @param maxBatch     transfers that close a window early
+	 */
+	@Autowired
+	public NettingMoneyTransferRepository(@Value("${transfer.netting.window-micros:200}") long windowMicros,
+			@Value("${transfer.netting.max-batch:4096}") int maxBatch) {
+		if (windowMicros < 0 || maxBatch <= 0) {
+			throw new IllegalArgumentException("Netting window must not be negative and batches not empty: "
+					+ windowMicros + " micros, " + maxBatch + " transfers");
+		}
+		this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+		this.maxBatch = maxBatch;
+		this.netter = new Thread(this::run, "transfer-netting");
+		this.netter.setDaemon(true);
+		this.netter.start();
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		running = false;
+		LockSupport.unpark(netter);
+		netter.join();
+	}
+
+	@Override
+	public boolean transferMoney(Account fromAccount, Account toAccount, BigDecimal transferAmount) {
+		return transferMoney(fromAccount, toAccount, transferAmount, OrderingPoint.NONE);
+	}
+
+	/**
+	 * The transfers of a netted window pass their ordering points in arrival
+	 * order, once the net debits are taken and before the net credits.
+	 */
+	@Override
+	public boolean transferMoney(Account fromAccount, Account toAccount, BigDecimal transferAmount,
+			OrderingPoint orderingPoint) {
+		Pending pending = new Pending(Thread.currentThread());
+		pending.fromAccount = fromAccount;
+		pending.toAccount = toAccount;
+		pending.amount = AccountBalance.toMinorUnits(transferAmount);
+		pending.orderingPoint = orderingPoint;
+		if (execute(pending) == 0) {
+			throw new OverdraftsAccountException("Transfer of " + transferAmount + " not possible ,"
+					+ fromAccount.getAccountId() + " going overdafts ");
+		}
+		return true;
+	}
+
+	@Override
+	public int transferMoneyAtomically(List<MoneyTransfer> transfers) {
+		return transferMoneyAtomically(transfers, OrderingPoint.NONE);
+	}
+
+	@Override
+	public int transferMoneyAtomically(List<MoneyTransfer> transfers, OrderingPoint orderingPoint) {
+		Pending pending = new Pending(Thread.currentThread());
+		pending.batch = transfers;
+		pending.orderingPoint = orderingPoint;
+		return execute(pending);
+	}
+
+	/** Windows settled so far. */
+	public long getWindows() {
+		return windows;
+	}
+
+	/** Single transfers applied, netted or one by one. */
+	public long getAppliedTransfers() {
+		return appliedTransfers;
+	}
+
+	/** Balance writes made for the applied transfers. */
+	public long getAccountWrites() {
+		return accountWrites;
+	}
+
+	/** Windows applied one by one because a net debit no longer fit. */
+	public long getFallbacks() {
+		return fallbacks;
+	}
+
+	/**
+	 * Share of balance writes saved against applying each transfer on its own,
+	 * which takes two.
+	 */
+	public double getWriteReduction() {
+		long applied = appliedTransfers;
+		return applied == 0 ? 0.0 : 1.0 - accountWrites / (2.0 * applied);
+	}
+
+	/** Queues the transfer, waits for its window to be settled and returns the outcome. */
+	private int execute(Pending pending) {
+		if (!running) {
+			throw shutDown();
+		}
+		queue.add(pending);
+		// queued after the netting thread drained the queue on the way out
+		if (!running && queue.remove(pending)) {
+			throw shutDown();
+		}
+		if (netterParked) {
+			LockSupport.unpark(netter);
+		}
+		for (int spins = 0; pending.state != DONE; spins++) {
+			if (spins < SPINS_BEFORE_PARKING) {
+				Thread.yield();
+			} else {
+				pending.waiterParked = true;
+				if (pending.state != DONE) {
+					LockSupport.park(this);
+				}
+				pending.waiterParked = false;
+			}
+		}
+		if (pending.failure instanceof Error) {
+			throw (Error) pending.failure;
+		}
+		if (pending.failure != null) {
+			throw (RuntimeException) pending.failure;
+		}
+		return pending.result;
+	}
+
+	private void run() {
+		List<Pending> window = new ArrayList<>();
+		try {
+			netWindows(window);
+		} finally {
+			running = false;
+			for (Pending pending : window) {
+				fail(pending, shutDown());
+			}
+			Pending pending;
+			while ((pending = queue.poll()) != null) {
+				fail(pending, shutDown());
+			}
+		}
+	}
+
+	private void netWindows(List<Pending> window) {
+		while (running || !queue.isEmpty()) {
+			Pending first = queue.poll();
+			if (first == null) {
+				netterParked = true;
+				if (queue.isEmpty() && running) {
+					LockSupport.park(this);
+				}
+				netterParked = false;
+				continue;
+			}
+			window.add(first);
+			long deadline = System.nanoTime() + windowNanos;
+			while (window.size() < maxBatch) {
+				Pending next = queue.poll();
+				if (next != null) {
+					window.add(next);
+					continue;
+				}
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0 || !running) {
+					break;
+				}
+				LockSupport.parkNanos(this, remaining);
+			}
+			try {
+				settle(window);
+			} catch (Throwable t) {
+				// settle answers each caller as it goes; whoever is left shares the failure
+				for (Pending pending : window) {
+					fail(pending, t);
+				}
+			}
+			window.clear();
+			windows++;
+		}
+	}
+
+	private void settle(List<Pending> window) {
+		NetPositions positions = new NetPositions();
+		int netted = 0;
+		for (int i = 0; i < window.size(); i++) {
+			Pending pending = window.get(i);
+			if (pending.batch != null) {
+				apply(positions, window, netted, i);
+				positions = new NetPositions();
+				netted = i + 1;
+				applyAtomically(pending);
+				complete(pending);
+				continue;
+			}
+			try {
+				pending.result = positions.offer(pending.fromAccount, pending.toAccount, pending.amount) ? 1 : 0;
+			} catch (Throwable t) {
+				pending.failure = t;
+			}
+		}
+		apply(positions, window, netted, window.size());
+	}
+
+	/** Applies the net positions of {@code window[from, to)} and wakes their callers. */
+	private void apply(NetPositions positions, List<Pending> window, int from, int to) {
+		int applied = 0;
+		for (int i = from; i < to; i++) {
+			if (window.get(i).result == 1) {
+				applied++;
+			}
+		}
+		if (applied > 0) {
+			try {
+				Account uncovered = positions.reserveDebits();
+				if (uncovered == null) {
+					for (int i = from; i < to; i++) {
+						if (window.get(i).result == 1) {
+							window.get(i).orderingPoint.reached();
+						}
+					}
+					positions.applyCredits();
+					accountWrites += positions.changedAccounts();
+				} else {
+					applied = applyOneByOne(window, from, to);
+					fallbacks++;
+				}
+				appliedTransfers += applied;
+			} catch (Throwable t) {
+				for (int i = from; i < to; i++) {
+					if (window.get(i).result == 1) {
+						window.get(i).failure = t;
+					}
+				}
+			}
+		}
+		for (int i = from; i < to; i++) {
+			complete(window.get(i));
+		}
+	}
+
+	private int applyOneByOne(List<Pending> window, int from, int to) {
+		int applied = 0;
+		for (int i = from; i < to; i++) {
+			Pending pending = window.get(i);
+			if (pending.result != 1) {
+				continue;
+			}
+			if (pending.fromAccount.getMinorUnitBalance().tryDebit(pending.amount)) {
+				pending.orderingPoint.reached();
+				pending.toAccount.getMinorUnitBalance().credit(pending.amount);
+				accountWrites += 2;
+				applied++;
+			} else {
+				pending.result = 0;
+			}
+		}
+		return applied;
+	}
+
+	private static void applyAtomically(Pending pending) {
+		try {
+			NetPositions positions = new NetPositions();
+			int rejected = positions.simulate(pending.batch);
+			if (rejected == ALL_APPLIED) {
+				Account uncovered = positions.reserveDebits();
+				if (uncovered == null) {
+					pending.orderingPoint.reached();
+					positions.applyCredits();
+				} else {
+					rejected = firstDebitOf(pending.batch, uncovered);
+				}
+			}
+			pending.result = rejected;
+		} catch (Throwable t) {
+			pending.failure = t;
+		}
+	}
+
+	private static int firstDebitOf(List<MoneyTransfer> transfers, Account account) {
+		for (int i = 0; i < transfers.size(); i++) {
+			if (transfers.get(i).getFromAccount().getAccountId().equals(account.getAccountId())) {
+				return i;
+			}
+		}
+		return 0;
+	}
+
+	/** Completes a caller that has not been answered yet with the failure. */
+	private static void fail(Pending pending, Throwable failure) {
+		if (pending.state != DONE) {
+			pending.failure = failure;
+			complete(pending);
+		}
+	}
+
+	private static IllegalStateException shutDown() {
+		return new IllegalStateException("Transfer engine is shut down");
+	}
+
+	private static void complete(Pending pending) {
+		pending.state = DONE;
+		if (pending.waiterParked) {
+			LockSupport.unpark(pending.waiter);
+		}
+	}
+
+	/**
+	 * One waiting call. Plain fields are written by the caller before the queue
+	 * publishes it, and by the netting thread before it sets {@code state} to
+	 * DONE.
+	 */
+	private static final class Pending {
+
+		private volatile int state = WAITING;
+		private final Thread waiter;
+		private volatile boolean waiterParked;
+
+		private Account fromAccount;
+		private Account toAccount;
+		private long amount;
+		private List<MoneyTransfer> batch;
+		private OrderingPoint orderingPoint;
+		private int result;
+		private Throwable failure;
+
+		private Pending(Thread waiter) {
+			this.waiter = waiter;
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.AccountBalance;
+import com.db.awmd.challenge.domain.BalanceVersions;
+
+/**
+ * View of a balance kept in an {@link OffHeapAccountTable} slot. It only holds
+ * the slot's address, so views are cheap to hand out per lookup; every view of
+ * the same account reads and updates the same memory.
+ */
+class OffHeapAccountBalance extends AccountBalance {
+
+	private final OffHeapAccountTable table;
+	private final int slot;
+	private final long address;
+
+	OffHeapAccountBalance(OffHeapAccountTable table, int slot) {
+		this.table = table;
+		this.slot = slot;
+		this.address = table.balanceAddress(slot);
+	}
+
+	@Override
+	public BalanceVersions versions() {
+		return table.versionsOf(slot);
+	}
+
+	@Override
+	protected long load() {
+		return DirectMemory.getLongVolatile(address);
+	}
+
+	@Override
+	protected void store(long newMinorUnits) {
+		DirectMemory.putLongVolatile(address, newMinorUnits);
+	}
+
+	@Override
+	protected boolean compareAndSwap(long expected, long updated) {
+		return DirectMemory.compareAndSwapLong(address, expected, updated);
+	}
+
+	@Override
+	protected void add(long delta) {
+		DirectMemory.getAndAddLong(address, delta);
+	}
+}
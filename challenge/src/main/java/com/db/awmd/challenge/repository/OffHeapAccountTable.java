@@ -0,0 +1,288 @@
+package com.db.awmd.challenge.repository;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.db.awmd.challenge.domain.BalanceVersions;
+
+/**
+ * Account ids and balances in direct memory, outside the garbage collected
+ * heap. Every account gets the next free slot, numbered from 0, and keeps it:
+ * a slot is 16 bytes holding the balance in minor units and a reference to
+ * the id, which is stored once in a key area as Latin-1 bytes when it fits,
+ * UTF-16 otherwise. Slots are allocated a page at a time and never move, so
+ * the address of a balance stays valid for as long as the table exists.
+ *
+ * <p>Ids are found through an open-addressing index of 8-byte entries, each
+ * the id's hash next to its slot number, kept at most half full. Lookups take
+ * no lock; inserts are serialized, write the slot and key before publishing
+ * the index entry, and replace the index with one twice the size when it
+ * fills up. Replaced indexes are kept until the table goes away, so a lookup
+ * still probing one never reads freed memory.
+ */
+final class OffHeapAccountTable {
+
+	static final int MAX_ID_LENGTH = 0xffff;
+
+	private static final int SLOT_BYTES = 16;
+	private static final int KEY_REF = 8;
+	private static final int PAGE_SHIFT = 16;
+	private static final int PAGE_SLOTS = 1 << PAGE_SHIFT;
+	private static final int PAGE_MASK = PAGE_SLOTS - 1;
+	private static final int KEY_CHUNK_BYTES = 1 << 20;
+	private static final int MIN_INDEX_CAPACITY = 1 << 10;
+	// largest index a direct buffer can hold, good for 2^26 accounts
+	private static final int MAX_INDEX_CAPACITY = 1 << 27;
+	static final int MAX_ACCOUNTS = MAX_INDEX_CAPACITY / 2;
+	private static final int MAX_PAGES = MAX_ACCOUNTS >>> PAGE_SHIFT;
+
+	private final List<ByteBuffer> memory = new ArrayList<>();
+	private volatile Index index;
+	private volatile long[] pageAddresses = new long[0];
+	private volatile long[] keyChunkAddresses = new long[0];
+	private int keyChunk = -1;
+	private int keyOffset = KEY_CHUNK_BYTES;
+	private volatile int size;
+	private volatile AtomicReferenceArray<AtomicReferenceArray<BalanceVersions>> versionPages = new AtomicReferenceArray<>(
+			MAX_PAGES);
+
+	/**
+	 * @param expectedAccounts sizes the first index so that loading this many
+	 *                         accounts never has to grow it
+	 */
+	OffHeapAccountTable(int expectedAccounts) {
+		int capacity = MIN_INDEX_CAPACITY;
+		while (capacity < Math.min(expectedAccounts, MAX_ACCOUNTS) * 2L) {
+			capacity <<= 1;
+		}
+		this.index = new Index(capacity);
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return the account's slot, or -1 if there is no such account
+	 */
+	int find(String accountId) {
+		int hash = hash(accountId);
+		Index current = index;
+		for (int i = hash & current.mask;; i = (i + 1) & current.mask) {
+			long entry = DirectMemory.getLongVolatile(current.address + ((long) i << 3));
+			if (entry == 0) {
+				return -1;
+			}
+			if ((int) (entry >>> 32) == hash) {
+				int slot = (int) entry - 1;
+				if (keyEquals(slot, accountId)) {
+					return slot;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the new account's slot, or -1 if the id is taken
+	 * @throws IllegalArgumentException if the id is longer than
+	 *                                  {@value #MAX_ID_LENGTH} characters
+	 */
+	synchronized int insert(String accountId, long minorUnits) {
+		if (accountId.length() > MAX_ID_LENGTH) {
+			throw new IllegalArgumentException("Account id is longer than " + MAX_ID_LENGTH + " characters");
+		}
+		if (find(accountId) >= 0) {
+			return -1;
+		}
+		int slot = size;
+		if (slot == MAX_ACCOUNTS) {
+			throw new IllegalStateException("Account table is full at " + MAX_ACCOUNTS + " accounts");
+		}
+		if ((slot >>> PAGE_SHIFT) == pageAddresses.length) {
+			addPage();
+		}
+		long address = balanceAddress(slot);
+		DirectMemory.putLong(address, minorUnits);
+		DirectMemory.putLong(address + KEY_REF, appendKey(accountId));
+		if ((slot + 1) * 2L > index.capacity) {
+			grow();
+		}
+		index.put(hash(accountId), slot);
+		size = slot + 1;
+		return slot;
+	}
+
+	/** Address of the slot's balance, which may be updated with the {@link DirectMemory} atomics. */
+	long balanceAddress(int slot) {
+		return pageAddresses[slot >>> PAGE_SHIFT] + (long) (slot & PAGE_MASK) * SLOT_BYTES;
+	}
+
+	String accountIdOf(int slot) {
+		long keyAddress = keyAddress(slot);
+		int header = DirectMemory.getInt(keyAddress);
+		char[] chars = new char[header >>> 1];
+		boolean latin1 = (header & 1) != 0;
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = latin1 ? (char) (DirectMemory.getByte(keyAddress + 4 + i) & 0xff)
+					: DirectMemory.getChar(keyAddress + 4 + 2L * i);
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Version chain of the slot's balance, kept on the heap and only for
+	 * accounts that have been asked for one. It is started from the current
+	 * balance the first time, as {@code AccountBalance#versions()} does.
+	 */
+	BalanceVersions versionsOf(int slot) {
+		AtomicReferenceArray<AtomicReferenceArray<BalanceVersions>> pages = versionPages;
+		int page = slot >>> PAGE_SHIFT;
+		AtomicReferenceArray<BalanceVersions> versions = pages.get(page);
+		if (versions == null) {
+			pages.compareAndSet(page, null, new AtomicReferenceArray<>(PAGE_SLOTS));
+			versions = pages.get(page);
+		}
+		BalanceVersions current = versions.get(slot & PAGE_MASK);
+		if (current == null) {
+			versions.compareAndSet(slot & PAGE_MASK, null,
+					new BalanceVersions(DirectMemory.getLongVolatile(balanceAddress(slot))));
+			current = versions.get(slot & PAGE_MASK);
+		}
+		return current;
+	}
+
+	/**
+	 * Forgets every account but keeps the memory for the next ones. Accounts
+	 * looked up before must not be used afterwards: their slots are handed out
+	 * again.
+	 */
+	synchronized void clear() {
+		DirectMemory.setMemory(index.address, (long) index.capacity << 3, (byte) 0);
+		size = 0;
+		keyChunk = keyChunkAddresses.length == 0 ? -1 : 0;
+		keyOffset = keyChunkAddresses.length == 0 ? KEY_CHUNK_BYTES : 0;
+		versionPages = new AtomicReferenceArray<>(MAX_PAGES);
+	}
+
+	/** Direct memory held for slots, keys and indexes, including replaced indexes. */
+	synchronized long reservedBytes() {
+		long bytes = 0;
+		for (ByteBuffer buffer : memory) {
+			bytes += buffer.capacity();
+		}
+		return bytes;
+	}
+
+	private boolean keyEquals(int slot, String accountId) {
+		long keyAddress = keyAddress(slot);
+		int header = DirectMemory.getInt(keyAddress);
+		if (header >>> 1 != accountId.length()) {
+			return false;
+		}
+		if ((header & 1) != 0) {
+			for (int i = 0; i < accountId.length(); i++) {
+				if ((DirectMemory.getByte(keyAddress + 4 + i) & 0xff) != accountId.charAt(i)) {
+					return false;
+				}
+			}
+		} else {
+			for (int i = 0; i < accountId.length(); i++) {
+				if (DirectMemory.getChar(keyAddress + 4 + 2L * i) != accountId.charAt(i)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private long keyAddress(int slot) {
+		long keyRef = DirectMemory.getLong(balanceAddress(slot) + KEY_REF);
+		return keyChunkAddresses[(int) (keyRef >>> 32)] + (int) keyRef;
+	}
+
+	private long appendKey(String accountId) {
+		boolean latin1 = true;
+		for (int i = 0; i < accountId.length() && latin1; i++) {
+			latin1 = accountId.charAt(i) < 0x100;
+		}
+		int bytes = 4 + (latin1 ? accountId.length() : 2 * accountId.length());
+		// keep headers 4-byte aligned
+		int length = (bytes + 3) & ~3;
+		if (keyOffset + length > KEY_CHUNK_BYTES) {
+			keyChunk++;
+			keyOffset = 0;
+			if (keyChunk == keyChunkAddresses.length) {
+				long[] addresses = Arrays.copyOf(keyChunkAddresses, keyChunk + 1);
+				addresses[keyChunk] = allocate(KEY_CHUNK_BYTES);
+				keyChunkAddresses = addresses;
+			}
+		}
+		long keyAddress = keyChunkAddresses[keyChunk] + keyOffset;
+		DirectMemory.putInt(keyAddress, accountId.length() << 1 | (latin1 ? 1 : 0));
+		for (int i = 0; i < accountId.length(); i++) {
+			if (latin1) {
+				DirectMemory.putByte(keyAddress + 4 + i, (byte) accountId.charAt(i));
+			} else {
+				DirectMemory.putChar(keyAddress + 4 + 2L * i, accountId.charAt(i));
+			}
+		}
+		long keyRef = (long) keyChunk << 32 | keyOffset;
+		keyOffset += length;
+		return keyRef;
+	}
+
+	private void addPage() {
+		long[] addresses = Arrays.copyOf(pageAddresses, pageAddresses.length + 1);
+		addresses[addresses.length - 1] = allocate(PAGE_SLOTS * SLOT_BYTES);
+		pageAddresses = addresses;
+	}
+
+	private void grow() {
+		Index current = index;
+		Index grown = new Index(current.capacity << 1);
+		for (int i = 0; i < current.capacity; i++) {
+			long entry = DirectMemory.getLong(current.address + ((long) i << 3));
+			if (entry != 0) {
+				grown.put((int) (entry >>> 32), (int) entry - 1);
+			}
+		}
+		index = grown;
+	}
+
+	private long allocate(int bytes) {
+		// direct buffers come zeroed; holding on to all of them, replaced indexes
+		// included, keeps the memory until the table itself is collected
+		ByteBuffer buffer = ByteBuffer.allocateDirect(bytes + 8);
+		memory.add(buffer);
+		return (DirectMemory.addressOf(buffer) + 7) & ~7L;
+	}
+
+	private static int hash(String accountId) {
+		int h = accountId.hashCode() * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private final class Index {
+
+		private final int capacity;
+		private final int mask;
+		private final long address;
+
+		private Index(int capacity) {
+			this.capacity = capacity;
+			this.mask = capacity - 1;
+			this.address = allocate(capacity << 3);
+		}
+
+		private void put(int hash, int slot) {
+			int i = hash & mask;
+			while (DirectMemory.getLong(address + ((long) i << 3)) != 0) {
+				i = (i + 1) & mask;
+			}
+			DirectMemory.putLongVolatile(address + ((long) i << 3), (long) hash << 32 | (slot + 1L));
+		}
+	}
+}
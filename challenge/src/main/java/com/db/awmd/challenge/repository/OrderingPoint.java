@@ -0,0 +1,18 @@
+package com.db.awmd.challenge.repository;
+
+/**
+ * Called by a transfer engine at the moment a transfer's place among all
+ * balance changes is fixed: once its debits have been taken and before any
+ * of its credits can be seen by another transfer. Whatever is ordered there,
+ * e.g. a snapshot version, therefore comes after every transfer whose credit
+ * this one relied on. Runs on whichever thread applies the transfer, at most
+ * once, and only for transfers that are applied.
+ */
+@FunctionalInterface
+public interface OrderingPoint {
+
+	OrderingPoint NONE = () -> {
+	};
+
+	void reached();
+}
@@ -0,0 +1,275 @@
+package com.db.awmd.challenge.repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountBalance;
+import com.db.awmd.challenge.domain.MoneyTransfer;
+import com.db.awmd.challenge.exception.OverdraftsAccountException;
+
+/**
+ * Transfer engine in the style of the LMAX disruptor. Callers claim the next
+ * sequence number, write their command into the pre-allocated slot for it in
+ * a ring buffer and publish it; a single sequencer thread applies the commands
+ * strictly in sequence order, writes the outcome back into the slot and wakes
+ * the caller. All balance changes happen on that one thread, so transfers are
+ * totally ordered and need no locks, and the steady state allocates nothing.
+ *
+ * <p>A slot goes FREE, CLAIMED, PUBLISHED, DONE and back to FREE once its
+ * caller has read the outcome. A caller that laps the ring waits until the
+ * caller one lap before it has freed the slot, then takes it with a CAS from
+ * FREE to CLAIMED, so no two callers ever write the same slot.
+ *
+ * <p>Whatever a command throws, {@link Error}s included, goes back to its
+ * caller and the sequencer carries on. After {@link #shutdown()} new
+ * transfers are refused, and callers whose command was not applied yet fail
+ * with an {@link IllegalStateException} instead of waiting forever.
+ *
+ * Enabled with {@code transfer.engine=sequencer}.
+ */
+@Repository
+@ConditionalOnProperty(name = "transfer.engine", havingValue = "sequencer")
+public class SequencedMoneyTransferRepository implements MoneyTransferRepository {
+
+	private static final int FREE = 0;
+	private static final int CLAIMED = 1;
+	private static final int PUBLISHED = 2;
+	private static final int DONE = 3;
+
+	private static final int SPINS_BEFORE_PARKING = 200;
+
+	private final Slot[] ring;
+	private final int mask;
+	private final AtomicLong nextSequence = new AtomicLong();
+	private final Thread sequencer;
+	private volatile boolean sequencerParked;
+	private volatile boolean running = true;
+	private volatile boolean stopped;
+
+	@Autowired
+	public SequencedMoneyTransferRepository(@Value("${transfer.sequencer.ring-size:1024}") int ringSize) {
+		if (ringSize <= 0 || Integer.bitCount(ringSize) != 1) {
+			throw new IllegalArgumentException("Ring size must be a positive power of two: " + ringSize);
+		}
+		this.ring = new Slot[ringSize];
+		for (int i = 0; i < ringSize; i++) {
+			ring[i] = new Slot(i - ringSize);
+		}
+		this.mask = ringSize - 1;
+		this.sequencer = new Thread(this::run, "transfer-sequencer");
+		this.sequencer.setDaemon(true);
+		this.sequencer.start();
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		running = false;
+		LockSupport.unpark(sequencer);
+		sequencer.join();
+	}
+
+	@Override
+	public boolean transferMoney(Account fromAccount, Account toAccount, BigDecimal transferAmount) {
+		return transferMoney(fromAccount, toAccount, transferAmount, OrderingPoint.NONE);
+	}
+
+	/** The ordering point is passed on the sequencer thread, between debit and credit. */
+	@Override
+	public boolean transferMoney(Account fromAccount, Account toAccount, BigDecimal transferAmount,
+			OrderingPoint orderingPoint) {
+		long amount = AccountBalance.toMinorUnits(transferAmount);
+		Slot slot = claim();
+		slot.fromAccount = fromAccount;
+		slot.toAccount = toAccount;
+		slot.amount = amount;
+		slot.batch = null;
+		slot.orderingPoint = orderingPoint;
+		int applied = execute(slot);
+		if (applied == 0) {
+			throw new OverdraftsAccountException("Transfer of " + transferAmount + " not possible ,"
+					+ fromAccount.getAccountId() + " going overdafts ");
+		}
+		return true;
+	}
+
+	@Override
+	public int transferMoneyAtomically(List<MoneyTransfer> transfers) {
+		return transferMoneyAtomically(transfers, OrderingPoint.NONE);
+	}
+
+	@Override
+	public int transferMoneyAtomically(List<MoneyTransfer> transfers, OrderingPoint orderingPoint) {
+		Slot slot = claim();
+		slot.batch = transfers;
+		slot.orderingPoint = orderingPoint;
+		return execute(slot);
+	}
+
+	private Slot claim() {
+		if (!running) {
+			throw shutDown();
+		}
+		long sequence = nextSequence.getAndIncrement();
+		Slot slot = ring[(int) sequence & mask];
+		// the ring has wrapped: wait until the caller of sequence - ring.length is done with the slot
+		for (int spins = 0; slot.sequence != sequence - ring.length || !Slot.STATE.compareAndSet(slot, FREE, CLAIMED);
+				spins++) {
+			if (stopped) {
+				throw shutDown();
+			}
+			backOff(spins);
+		}
+		slot.sequence = sequence;
+		slot.waiter = Thread.currentThread();
+		return slot;
+	}
+
+	/** Publishes the claimed slot, waits for the sequencer and frees the slot again. */
+	private int execute(Slot slot) {
+		slot.state = PUBLISHED;
+		if (sequencerParked) {
+			LockSupport.unpark(sequencer);
+		}
+		for (int spins = 0; slot.state != DONE; spins++) {
+			if (stopped && slot.state != DONE) {
+				// the sequencer is gone and nobody else touches the slot any more
+				slot.failure = shutDown();
+				break;
+			}
+			if (spins < SPINS_BEFORE_PARKING) {
+				Thread.yield();
+			} else {
+				slot.waiterParked = true;
+				if (slot.state != DONE && !stopped) {
+					LockSupport.park(this);
+				}
+				slot.waiterParked = false;
+			}
+		}
+		int result = slot.result;
+		Throwable failure = slot.failure;
+		slot.fromAccount = null;
+		slot.toAccount = null;
+		slot.batch = null;
+		slot.orderingPoint = null;
+		slot.failure = null;
+		slot.state = FREE;
+		if (failure instanceof Error) {
+			throw (Error) failure;
+		}
+		if (failure != null) {
+			throw (RuntimeException) failure;
+		}
+		return result;
+	}
+
+	private void run() {
+		long sequence = 0;
+		int spins = 0;
+		try {
+			while (running) {
+				Slot slot = ring[(int) sequence & mask];
+				if (slot.state == PUBLISHED && slot.sequence == sequence) {
+					apply(slot);
+					slot.state = DONE;
+					if (slot.waiterParked) {
+						LockSupport.unpark(slot.waiter);
+					}
+					sequence++;
+					spins = 0;
+				} else if (spins++ < SPINS_BEFORE_PARKING) {
+					Thread.yield();
+				} else {
+					sequencerParked = true;
+					if (!(slot.state == PUBLISHED && slot.sequence == sequence) && running) {
+						LockSupport.park(this);
+					}
+					sequencerParked = false;
+				}
+			}
+		} finally {
+			stopped = true;
+			// a caller sets waiterParked before it checks stopped, so either it sees
+			// stopped and does not park, or it is unparked here
+			for (Slot slot : ring) {
+				if (slot.waiterParked) {
+					LockSupport.unpark(slot.waiter);
+				}
+			}
+		}
+	}
+
+	private static void apply(Slot slot) {
+		try {
+			if (slot.batch != null) {
+				NetPositions positions = new NetPositions();
+				int rejected = positions.simulate(slot.batch);
+				if (rejected == ALL_APPLIED) {
+					slot.orderingPoint.reached();
+					positions.forEach((account, change) -> account.getMinorUnitBalance().adjust(change));
+				}
+				slot.result = rejected;
+			} else if (slot.fromAccount.getMinorUnitBalance().tryDebit(slot.amount)) {
+				slot.orderingPoint.reached();
+				slot.toAccount.getMinorUnitBalance().credit(slot.amount);
+				slot.result = 1;
+			} else {
+				slot.result = 0;
+			}
+		} catch (Throwable t) {
+			slot.failure = t;
+		}
+	}
+
+	private static IllegalStateException shutDown() {
+		return new IllegalStateException("Transfer engine is shut down");
+	}
+
+	private static void backOff(int spins) {
+		if (spins < SPINS_BEFORE_PARKING) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(1000);
+		}
+	}
+
+	/**
+	 * One pre-allocated command. Plain fields are written by the caller before
+	 * the volatile write of {@code state} publishes them, and by the sequencer
+	 * before it sets {@code state} to DONE.
+	 */
+	private static final class Slot {
+
+		// declared here, where the field is accessible to the updater
+		private static final AtomicIntegerFieldUpdater<Slot> STATE = AtomicIntegerFieldUpdater.newUpdater(Slot.class,
+				"state");
+
+		private volatile int state = FREE;
+		private volatile long sequence;
+		private Thread waiter;
+		private volatile boolean waiterParked;
+
+		private Account fromAccount;
+		private Account toAccount;
+		private long amount;
+		private List<MoneyTransfer> batch;
+		private OrderingPoint orderingPoint;
+		private int result;
+		private Throwable failure;
+
+		private Slot(long previousSequence) {
+			this.sequence = previousSequence;
+		}
+	}
+}
@@ -0,0 +1,363 @@
+package com.db.awmd.challenge.repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountBalance;
+import com.db.awmd.challenge.domain.MoneyTransfer;
+import com.db.awmd.challenge.exception.OverdraftsAccountException;
+
+/**
+ * Transfer engine that partitions accounts over single-writer shards. Every
+ * account is owned by one shard, chosen by a consistent hash of its id, and
+ * only the shard's thread ever changes its balance; callers hand commands to
+ * the shard's queue and wait for the outcome.
+ *
+ * <p>A transfer between two accounts of the same shard is one command and
+ * needs no coordination at all. A transfer across shards runs in two phases:
+ * the owner of the source reserves the amount (the overdraft check and the
+ * debit), then the owner of the target commits the credit. An atomic batch
+ * reserves its net debits on every shard involved first, and either commits
+ * the credits everywhere or releases the reservations if one shard refused.
+ * Between the phases the money is in flight and visible in neither account.
+ *
+ * <p>A command that throws fails only its own caller; the shard carries on.
+ * After {@link #shutdown()} queued and new commands fail with an
+ * {@link IllegalStateException} instead of waiting for a shard that is gone.
+ * The second phase is the exception: once a debit or reservation is taken,
+ * its credit or release is never refused but applied by the caller when the
+ * shard has stopped, and a credit that throws gives the debit back, so money
+ * is never left in flight.
+ *
+ * Enabled with {@code transfer.engine=sharded}.
+ */
+@Repository
+@ConditionalOnProperty(name = "transfer.engine", havingValue = "sharded")
+public class ShardedMoneyTransferRepository implements MoneyTransferRepository {
+
+	private final Shard[] shards;
+
+	@Autowired
+	public ShardedMoneyTransferRepository(@Value("${transfer.shards:0}") int shardCount) {
+		int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+		this.shards = new Shard[count];
+		for (int i = 0; i < count; i++) {
+			shards[i] = new Shard("transfer-shard-" + (i + 1));
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		for (Shard shard : shards) {
+			shard.stop();
+		}
+	}
+
+	@Override
+	public boolean transferMoney(Account fromAccount, Account toAccount, BigDecimal transferAmount) {
+		return transferMoney(fromAccount, toAccount, transferAmount, OrderingPoint.NONE);
+	}
+
+	/** The ordering point is passed on the source's shard, right after the debit. */
+	@Override
+	public boolean transferMoney(Account fromAccount, Account toAccount, BigDecimal transferAmount,
+			OrderingPoint orderingPoint) {
+		long amount = AccountBalance.toMinorUnits(transferAmount);
+		AccountBalance fromBalance = fromAccount.getMinorUnitBalance();
+		AccountBalance toBalance = toAccount.getMinorUnitBalance();
+		Shard fromShard = shardOf(fromAccount);
+		Shard toShard = shardOf(toAccount);
+		boolean debited;
+		if (fromShard == toShard) {
+			debited = fromShard.call(() -> {
+				if (!fromBalance.tryDebit(amount)) {
+					return false;
+				}
+				orderingPoint.reached();
+				toBalance.credit(amount);
+				return true;
+			});
+		} else {
+			debited = fromShard.call(() -> {
+				if (!fromBalance.tryDebit(amount)) {
+					return false;
+				}
+				orderingPoint.reached();
+				return true;
+			});
+			if (debited) {
+				try {
+					toShard.settle(() -> {
+						toBalance.credit(amount);
+						return true;
+					});
+				} catch (RuntimeException | Error e) {
+					// the credit failed on its shard: give the money back rather than lose it
+					fromShard.settle(() -> {
+						fromBalance.credit(amount);
+						return true;
+					});
+					throw e;
+				}
+			}
+		}
+		if (!debited) {
+			throw new OverdraftsAccountException("Transfer of " + transferAmount + " not possible ,"
+					+ fromAccount.getAccountId() + " going overdafts ");
+		}
+		return true;
+	}
+
+	@Override
+	public int transferMoneyAtomically(List<MoneyTransfer> transfers) {
+		return transferMoneyAtomically(transfers, OrderingPoint.NONE);
+	}
+
+	@Override
+	public int transferMoneyAtomically(List<MoneyTransfer> transfers, OrderingPoint orderingPoint) {
+		NetPositions positions = new NetPositions();
+		int rejected = positions.simulate(transfers);
+		if (rejected != ALL_APPLIED) {
+			return rejected;
+		}
+		NetPositions[] byShard = new NetPositions[shards.length];
+		positions.forEach((account, change) -> {
+			int shard = shardIndexOf(account);
+			if (byShard[shard] == null) {
+				byShard[shard] = new NetPositions();
+			}
+			byShard[shard].add(account, change);
+		});
+
+		// phase one: every shard reserves the net debits of its own accounts
+		List<CompletableFuture<Account>> reservations = new ArrayList<>(shards.length);
+		for (int i = 0; i < shards.length; i++) {
+			NetPositions part = byShard[i];
+			reservations.add(part == null ? null : shards[i].submit(part::reserveDebits));
+		}
+		boolean[] reserved = new boolean[shards.length];
+		Account uncovered = null;
+		Throwable failure = null;
+		for (int i = 0; i < shards.length; i++) {
+			if (reservations.get(i) != null) {
+				try {
+					Account refused = join(reservations.get(i));
+					reserved[i] = refused == null;
+					uncovered = uncovered == null ? refused : uncovered;
+				} catch (RuntimeException | Error e) {
+					failure = failure == null ? e : failure;
+				}
+			}
+		}
+
+		// phase two: commit the credits everywhere, or release what was reserved
+		boolean commit = uncovered == null && failure == null;
+		if (commit) {
+			orderingPoint.reached();
+		}
+		List<CompletableFuture<Void>> outcomes = new ArrayList<>(shards.length);
+		for (int i = 0; i < shards.length; i++) {
+			NetPositions part = byShard[i];
+			if (!reserved[i]) {
+				continue;
+			}
+			outcomes.add(shards[i].submitSettlement(() -> {
+				if (commit) {
+					part.applyCredits();
+				} else {
+					part.releaseDebits();
+				}
+				return null;
+			}));
+		}
+		// every shard settles its part, whatever happened to the others
+		for (CompletableFuture<Void> outcome : outcomes) {
+			try {
+				join(outcome);
+			} catch (RuntimeException | Error e) {
+				failure = failure == null ? e : failure;
+			}
+		}
+		if (failure instanceof Error) {
+			throw (Error) failure;
+		}
+		if (failure != null) {
+			throw (RuntimeException) failure;
+		}
+		return uncovered == null ? ALL_APPLIED : firstDebitOf(transfers, uncovered);
+	}
+
+	private int shardIndexOf(Account account) {
+		return jumpConsistentHash(account.getAccountId().hashCode() * 0x9E3779B97F4A7C15L, shards.length);
+	}
+
+	private Shard shardOf(Account account) {
+		return shards[shardIndexOf(account)];
+	}
+
+	/**
+	 * Jump consistent hash (Lamping and Veach): when the shard count changes,
+	 * only the accounts that have to move to the new shards change owner.
+	 */
+	static int jumpConsistentHash(long key, int buckets) {
+		long bucket = -1;
+		long next = 0;
+		while (next < buckets) {
+			bucket = next;
+			key = key * 2862933555777941757L + 1;
+			next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+		}
+		return (int) bucket;
+	}
+
+	private static int firstDebitOf(List<MoneyTransfer> transfers, Account account) {
+		for (int i = 0; i < transfers.size(); i++) {
+			if (transfers.get(i).getFromAccount().getAccountId().equals(account.getAccountId())) {
+				return i;
+			}
+		}
+		return 0;
+	}
+
+	private static <T> T join(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/** A queue of commands and the one thread that applies them, in order. */
+	private static final class Shard {
+
+		private final BlockingQueue<Command<?>> commands = new LinkedBlockingQueue<>();
+		private final Thread thread;
+		private volatile boolean running = true;
+
+		private Shard(String name) {
+			this.thread = new Thread(this::run, name);
+			this.thread.setDaemon(true);
+			this.thread.start();
+		}
+
+		private <T> CompletableFuture<T> submit(Supplier<T> command) {
+			Command<T> queued = new Command<>(command);
+			commands.add(queued);
+			// a command queued after the shard drained its queue on the way out
+			if (!running && commands.remove(queued)) {
+				queued.reject();
+			}
+			return queued.result;
+		}
+
+		private <T> T call(Supplier<T> command) {
+			return join(submit(command));
+		}
+
+		/**
+		 * Queues the second half of something the shard's accounts are already
+		 * part of, a credit after a debit or the release of a reservation. It
+		 * must not be refused, so once the shard has stopped it runs on the
+		 * completing thread instead: the shard no longer writes and the
+		 * balance updates are atomic.
+		 */
+		private <T> CompletableFuture<T> submitSettlement(Supplier<T> command) {
+			return submit(command).handle((result, failure) -> {
+				if (failure == null) {
+					return result;
+				}
+				Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+				if (cause instanceof ShutDownException) {
+					return command.get();
+				}
+				throw failure instanceof CompletionException ? (CompletionException) failure
+						: new CompletionException(failure);
+			});
+		}
+
+		private <T> T settle(Supplier<T> command) {
+			return join(submitSettlement(command));
+		}
+
+		private void stop() {
+			running = false;
+			thread.interrupt();
+		}
+
+		private void run() {
+			List<Command<?>> batch = new ArrayList<>();
+			try {
+				while (running) {
+					batch.add(commands.take());
+					commands.drainTo(batch);
+					for (Command<?> command : batch) {
+						command.run();
+					}
+					batch.clear();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				running = false;
+				for (Command<?> command : batch) {
+					command.reject();
+				}
+				Command<?> command;
+				while ((command = commands.poll()) != null) {
+					command.reject();
+				}
+			}
+		}
+	}
+
+	private static final class Command<T> {
+
+		private final Supplier<T> command;
+		private final CompletableFuture<T> result = new CompletableFuture<>();
+
+		private Command(Supplier<T> command) {
+			this.command = command;
+		}
+
+		private void run() {
+			try {
+				result.complete(command.get());
+			} catch (Throwable t) {
+				result.completeExceptionally(t);
+			}
+		}
+
+		private void reject() {
+			result.completeExceptionally(new ShutDownException());
+		}
+	}
+
+	private static final class ShutDownException extends IllegalStateException {
+
+		private static final long serialVersionUID = 1L;
+
+		private ShutDownException() {
+			super("Transfer engine is shut down");
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package com.db.awmd.challenge.service;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.db.awmd.challenge.domain.Account;
+
+/**
+ * Callback for components that need to follow account state changes, such as
+ * the transfer journal. Listeners are invoked on the caller's thread after the
+ * change has been applied, so they should be cheap, and a listener that
+ * throws cannot undo the change. Only the {@code ...ing} hooks run before it
+ * and may still refuse it.
+ */
+public interface AccountEventListener {
+
+	/**
+	 * Called before the account becomes visible, so nothing can transfer from
+	 * or to it yet. A listener that must record the account ahead of any
+	 * transfer on it, like the journal, does so here. Creating the account may
+	 * still fail as a duplicate afterwards.
+	 */
+	default void accountCreating(Account account, long initialBalance) {
+	}
+
+	/**
+	 * @param initialBalance balance the account was created with, in minor
+	 *                       units; the live balance may already have moved on
+	 */
+	default void accountCreated(Account account, long initialBalance) {
+	}
+
+	/**
+	 * Called before a transfer is applied. A listener that could not record
+	 * it afterwards, like a journal that has failed, throws here so the money
+	 * does not move.
+	 */
+	default void transferring(Account fromAccount, Account toAccount) {
+	}
+
+	/**
+	 * @param amount transferred amount in minor units, see
+	 *               {@link com.db.awmd.challenge.domain.AccountBalance}
+	 */
+	default void moneyTransferred(Account fromAccount, Account toAccount, long amount) {
+	}
+
+	/**
+	 * Same as {@link #moneyTransferred}, for the non-blocking transfer path. A
+	 * listener that would wait inside {@code moneyTransferred}, like the journal
+	 * waiting for its fsync, returns a future for that wait instead.
+	 */
+	default CompletableFuture<Void> moneyTransferredAsync(Account fromAccount, Account toAccount, long amount) {
+		moneyTransferred(fromAccount, toAccount, amount);
+		return CompletableFuture.completedFuture(null);
+	}
+}
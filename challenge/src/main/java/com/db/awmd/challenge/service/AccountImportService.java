@@ -0,0 +1,160 @@
+package com.db.awmd.challenge.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountImportError;
+import com.db.awmd.challenge.domain.AccountImportResult;
+import com.db.awmd.challenge.domain.AccountImportRow;
+import com.db.awmd.challenge.domain.AccountImportStatus;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Creates accounts in bulk. Rows are pulled from the source one at a time and
+ * handed to a worker pool in chunks, so only a bounded number of rows is ever
+ * held in memory however large the import is. Every account goes through
+ * {@link AccountsService#createAccount}, so event listeners such as the
+ * journal see imported accounts like any other.
+ *
+ * <p>A row that is invalid or names an existing account is reported and
+ * skipped; it does not abort the rest of the import. When the same id occurs
+ * twice in one import, whichever row is inserted first wins.
+ */
+@Service
+@Slf4j
+public class AccountImportService {
+
+	private final AccountsService accountsService;
+	private final Validator validator;
+	private final ExecutorService executor;
+	private final int chunkSize;
+	private final int maxChunksInFlight;
+
+	@Autowired
+	public AccountImportService(AccountsService accountsService, Validator validator,
+			@Value("${account.import.parallelism:0}") int parallelism,
+			@Value("${account.import.chunk-size:1000}") int chunkSize) {
+		this.accountsService = accountsService;
+		this.validator = validator;
+		this.chunkSize = chunkSize;
+		int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+		this.maxChunksInFlight = threads * 2;
+		AtomicInteger threadCount = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "account-import-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Imports every row of the source. If reading the source fails part way,
+	 * the rows read so far stay imported and the failure is rethrown once they
+	 * have been processed.
+	 */
+	public AccountImportResult importAccounts(Iterator<AccountImportRow> rows) {
+		Tally tally = new Tally();
+		Semaphore inFlight = new Semaphore(maxChunksInFlight);
+		try {
+			List<AccountImportRow> chunk = new ArrayList<>(chunkSize);
+			while (rows.hasNext()) {
+				chunk.add(rows.next());
+				if (chunk.size() == chunkSize) {
+					submit(chunk, tally, inFlight);
+					chunk = new ArrayList<>(chunkSize);
+				}
+			}
+			if (!chunk.isEmpty()) {
+				submit(chunk, tally, inFlight);
+			}
+		} finally {
+			inFlight.acquireUninterruptibly(maxChunksInFlight);
+		}
+		List<AccountImportError> errors = new ArrayList<>(tally.errors);
+		Collections.sort(errors, Comparator.comparingLong(AccountImportError::getRow));
+		log.info("Imported {} accounts, {} duplicates, {} invalid rows", tally.created.get(),
+				tally.duplicates.get(), tally.invalid.get());
+		return new AccountImportResult(tally.created.get(), tally.duplicates.get(), tally.invalid.get(), errors);
+	}
+
+	private void submit(List<AccountImportRow> chunk, Tally tally, Semaphore inFlight) {
+		inFlight.acquireUninterruptibly();
+		try {
+			executor.execute(() -> {
+				try {
+					for (AccountImportRow row : chunk) {
+						importRow(row, tally);
+					}
+				} finally {
+					inFlight.release();
+				}
+			});
+		} catch (RuntimeException e) {
+			inFlight.release();
+			throw e;
+		}
+	}
+
+	private void importRow(AccountImportRow row, Tally tally) {
+		if (row.getError() != null) {
+			tally.reject(row, AccountImportStatus.INVALID, row.getError());
+			return;
+		}
+		Account account = row.getAccount();
+		Set<ConstraintViolation<Account>> violations = validator.validate(account);
+		if (!violations.isEmpty()) {
+			ConstraintViolation<Account> violation = violations.iterator().next();
+			tally.reject(row, AccountImportStatus.INVALID, violation.getPropertyPath() + " " + violation.getMessage());
+			return;
+		}
+		try {
+			accountsService.createAccount(account);
+			tally.created.incrementAndGet();
+		} catch (DuplicateAccountIdException daie) {
+			tally.reject(row, AccountImportStatus.DUPLICATE, daie.getMessage());
+		} catch (RuntimeException e) {
+			log.warn("Could not import account {} from row {}", row.getAccountId(), row.getRow(), e);
+			tally.reject(row, AccountImportStatus.INVALID, e.getMessage());
+		}
+	}
+
+	private static final class Tally {
+
+		private final AtomicLong created = new AtomicLong();
+		private final AtomicLong duplicates = new AtomicLong();
+		private final AtomicLong invalid = new AtomicLong();
+		private final Queue<AccountImportError> errors = new ConcurrentLinkedQueue<>();
+
+		private void reject(AccountImportRow row, AccountImportStatus status, String message) {
+			(status == AccountImportStatus.DUPLICATE ? duplicates : invalid).incrementAndGet();
+			errors.add(new AccountImportError(row.getRow(), row.getAccountId(), status, message));
+		}
+	}
+}
@@ -1,9 +1,16 @@
 package com.db.awmd.challenge.service;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountBalance;
+import com.db.awmd.challenge.domain.AccountsSnapshot;
+import com.db.awmd.challenge.domain.BalanceTotal;
+import com.db.awmd.challenge.repository.AccountLocks;
 import com.db.awmd.challenge.repository.AccountsRepository;
 
 import lombok.Getter;
@@ -14,18 +21,106 @@ public class AccountsService {
   @Getter
   private final AccountsRepository accountsRepository;
 
+  private AccountEventListener[] listeners = new AccountEventListener[0];
+
+  private BalanceSnapshots balanceSnapshots;
+
+  private final AccountLocks creationLocks = new AccountLocks(256);
+
   @Autowired
   public AccountsService(AccountsRepository accountsRepository) {
     this.accountsRepository = accountsRepository;
   }
 
+  @Autowired(required = false)
+  public void setAccountEventListeners(List<AccountEventListener> listeners) {
+    this.listeners = listeners.toArray(new AccountEventListener[0]);
+  }
+
+  @Autowired(required = false)
+  public void setBalanceSnapshots(BalanceSnapshots balanceSnapshots) {
+    this.balanceSnapshots = balanceSnapshots;
+  }
+
+  /**
+   * Listeners hear about the account before it can be used, then once it
+   * exists. Creations of the same id are serialised, so the first of them to
+   * reach the listeners is the one that succeeds.
+   */
   public void createAccount(Account account) {
-    this.accountsRepository.createAccount(account);
+    long initialBalance = account.getMinorUnitBalance().get();
+    creationLocks.lock(account.getAccountId());
+    try {
+      for (AccountEventListener listener : listeners) {
+        listener.accountCreating(account, initialBalance);
+      }
+      this.accountsRepository.createAccount(account);
+    } finally {
+      creationLocks.unlock(account.getAccountId());
+    }
+    for (AccountEventListener listener : listeners) {
+      listener.accountCreated(account, initialBalance);
+    }
   }
 
   public Account getAccount(String accountId) {
     return this.accountsRepository.getAccount(accountId);
   }
+
+  /**
+   * The accounts as detached copies holding their balances at a single point
+   * in time, so no transfer is seen on one account and missed on another.
+   */
+  public AccountsSnapshot getAccounts(List<String> accountIds) {
+    List<Account> accounts = new ArrayList<>(accountIds.size());
+    List<String> missingAccountIds = new ArrayList<>();
+    if (balanceSnapshots == null) {
+      for (String accountId : accountIds) {
+        Account account = this.accountsRepository.getAccount(accountId);
+        if (account == null) {
+          missingAccountIds.add(accountId);
+        } else {
+          accounts.add(new Account(accountId, account.getBalance()));
+        }
+      }
+      return new AccountsSnapshot(0, accounts, missingAccountIds);
+    }
+    try (BalanceSnapshots.Snapshot snapshot = balanceSnapshots.open()) {
+      for (String accountId : accountIds) {
+        Account account = this.accountsRepository.getAccount(accountId);
+        if (account == null) {
+          missingAccountIds.add(accountId);
+        } else {
+          accounts.add(new Account(accountId, snapshot.balanceOf(account)));
+        }
+      }
+      return new AccountsSnapshot(snapshot.getVersion(), accounts, missingAccountIds);
+    }
+  }
+
+  /**
+   * Sum of all balances at a single point in time, added up in parallel. With
+   * snapshots disabled the balances are read live and the total may be off by
+   * transfers in flight.
+   */
+  public BalanceTotal getTotalBalance() {
+    if (balanceSnapshots == null) {
+      long total = this.accountsRepository.streamAccounts().parallel()
+          .mapToLong(account -> account.getMinorUnitBalance().get()).sum();
+      return new BalanceTotal(0, this.accountsRepository.countAccounts(), AccountBalance.toDecimal(total));
+    }
+    try (BalanceSnapshots.Snapshot snapshot = balanceSnapshots.open()) {
+      long[] countAndTotal = this.accountsRepository.streamAccounts().parallel()
+          .collect(() -> new long[2], (sums, account) -> {
+            sums[0]++;
+            sums[1] += snapshot.minorUnitsOf(account);
+          }, (left, right) -> {
+            left[0] += right[0];
+            left[1] += right[1];
+          });
+      return new BalanceTotal(snapshot.getVersion(), countAndTotal[0], AccountBalance.toDecimal(countAndTotal[1]));
+    }
+  }
   
  
 }
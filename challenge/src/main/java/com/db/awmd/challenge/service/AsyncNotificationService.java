@@ -0,0 +1,280 @@
+package com.db.awmd.challenge.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.metrics.LatencyHistogram;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Takes notifications off the transfer request path. Callers only enqueue
+ * into a bounded queue; a small pool of worker threads drains it in batches
+ * and hands each notification to the delegate, retrying failed deliveries.
+ * What happens when the queue is full is decided by the {@link OverflowPolicy}.
+ *
+ * <p>A failed delivery is not retried on the spot but set aside in a delay
+ * queue, with a backoff that doubles per attempt up to a bound, so a failing
+ * delegate is not hammered and the notifications behind it keep flowing.
+ * Retries still waiting at shutdown get one last attempt.
+ */
+@Service
+@Primary
+@Slf4j
+public class AsyncNotificationService implements NotificationService {
+
+	public enum OverflowPolicy {
+		/** Discard the new notification and count it as dropped. */
+		DROP,
+		/** Block the caller until there is room in the queue. */
+		BLOCK,
+		/** Deliver the notification on the caller's thread. */
+		CALLER_RUNS
+	}
+
+	private final NotificationService delegate;
+	private final BlockingQueue<Notification> queue;
+	private final OverflowPolicy overflowPolicy;
+	private final int batchSize;
+	private final int maxRetries;
+	private final long retryBackoffNanos;
+	private final long maxRetryBackoffNanos;
+	private final DelayQueue<Notification> retries = new DelayQueue<>();
+	private final List<Thread> workers = new ArrayList<>();
+	private volatile boolean running = true;
+
+	private final AtomicLong enqueued = new AtomicLong();
+	private final AtomicLong delivered = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong retried = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final LatencyHistogram deliveryLag = new LatencyHistogram();
+
+	public AsyncNotificationService(NotificationService delegate, int queueCapacity, int workerCount, int batchSize,
+			int maxRetries, OverflowPolicy overflowPolicy) {
+		this(delegate, queueCapacity, workerCount, batchSize, maxRetries, 100, 5000, overflowPolicy);
+	}
+
+	/**
+	 * @param retryBackoffMillis    wait before the first retry, doubled for each
+	 *                              further one
+	 * @param maxRetryBackoffMillis longest wait between two attempts
+	 */
+	@Autowired
+	public AsyncNotificationService(@Qualifier("emailNotificationService") NotificationService delegate,
+			@Value("${notification.queue-capacity:10000}") int queueCapacity,
+			@Value("${notification.workers:2}") int workerCount,
+			@Value("${notification.batch-size:64}") int batchSize,
+			@Value("${notification.max-retries:3}") int maxRetries,
+			@Value("${notification.retry-backoff-ms:100}") long retryBackoffMillis,
+			@Value("${notification.max-retry-backoff-ms:5000}") long maxRetryBackoffMillis,
+			@Value("${notification.overflow-policy:DROP}") OverflowPolicy overflowPolicy) {
+		this.delegate = delegate;
+		this.retryBackoffNanos = Math.max(1, TimeUnit.MILLISECONDS.toNanos(retryBackoffMillis));
+		this.maxRetryBackoffNanos = Math.max(retryBackoffNanos, TimeUnit.MILLISECONDS.toNanos(maxRetryBackoffMillis));
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.overflowPolicy = overflowPolicy;
+		this.batchSize = batchSize;
+		this.maxRetries = maxRetries;
+		for (int i = 0; i < workerCount; i++) {
+			Thread worker = new Thread(this::drain, "notification-worker-" + (i + 1));
+			worker.setDaemon(true);
+			worker.start();
+			workers.add(worker);
+		}
+	}
+
+	@Override
+	public void notifyAboutTransfer(Account account, String transferDescription) {
+		enqueue(new Notification(account, transferDescription, null, null, false, System.nanoTime()));
+	}
+
+	/** Queues the transfer's details; the description is only built by the worker delivering it. */
+	@Override
+	public void notifyAboutTransfer(Account account, Account counterparty, BigDecimal amount, boolean outgoing) {
+		enqueue(new Notification(account, null, counterparty, amount, outgoing, System.nanoTime()));
+	}
+
+	private void enqueue(Notification notification) {
+		switch (overflowPolicy) {
+		case BLOCK:
+			try {
+				queue.put(notification);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				dropped.incrementAndGet();
+				return;
+			}
+			break;
+		case CALLER_RUNS:
+			if (!queue.offer(notification)) {
+				deliver(notification, true);
+				return;
+			}
+			break;
+		default:
+			if (!queue.offer(notification)) {
+				dropped.incrementAndGet();
+				return;
+			}
+		}
+		enqueued.incrementAndGet();
+	}
+
+	/**
+	 * Stops accepting work and gives the workers a moment to flush what is
+	 * still queued.
+	 */
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		running = false;
+		for (Thread worker : workers) {
+			worker.join(TimeUnit.SECONDS.toMillis(5));
+		}
+	}
+
+	public long getEnqueued() {
+		return enqueued.get();
+	}
+
+	public long getDelivered() {
+		return delivered.get();
+	}
+
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	public long getRetried() {
+		return retried.get();
+	}
+
+	public long getFailed() {
+		return failed.get();
+	}
+
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	/** Failed deliveries waiting for their next attempt. */
+	public int getPendingRetries() {
+		return retries.size();
+	}
+
+	/** Time delivered notifications spent waiting in the queue. */
+	public LatencyHistogram getDeliveryLag() {
+		return deliveryLag;
+	}
+
+	private void drain() {
+		List<Notification> batch = new ArrayList<>(batchSize);
+		while (running || !queue.isEmpty()) {
+			try {
+				retries.drainTo(batch, batchSize);
+				Notification first = batch.isEmpty() ? queue.poll(pollNanos(), TimeUnit.NANOSECONDS) : queue.poll();
+				if (first != null) {
+					batch.add(first);
+					queue.drainTo(batch, batchSize - batch.size());
+				}
+				for (Notification notification : batch) {
+					deliver(notification, true);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} finally {
+				batch.clear();
+			}
+		}
+		// last attempt for retries not yet due; remove() decides which worker takes one
+		Notification retry;
+		while ((retry = retries.peek()) != null) {
+			if (retries.remove(retry)) {
+				deliver(retry, false);
+			}
+		}
+	}
+
+	/** Waits for new work no longer than until the next retry is due. */
+	private long pollNanos() {
+		long wait = TimeUnit.MILLISECONDS.toNanos(100);
+		Notification next = retries.peek();
+		return next == null ? wait : Math.max(0, Math.min(wait, next.getDelay(TimeUnit.NANOSECONDS)));
+	}
+
+	private void deliver(Notification notification, boolean mayRetry) {
+		try {
+			delegate.notifyAboutTransfer(notification.account, notification.description());
+			delivered.incrementAndGet();
+			deliveryLag.recordNanos(System.nanoTime() - notification.enqueuedAtNanos);
+		} catch (RuntimeException e) {
+			int attempt = notification.attempts++;
+			if (attempt >= maxRetries || !mayRetry) {
+				failed.incrementAndGet();
+				log.warn("Giving up on notification for {} after {} attempts", notification.account.getAccountId(),
+						attempt + 1, e);
+				return;
+			}
+			retried.incrementAndGet();
+			long backoff = retryBackoffNanos << Math.min(attempt, 30);
+			notification.retryAtNanos = System.nanoTime()
+					+ (backoff <= 0 || backoff > maxRetryBackoffNanos ? maxRetryBackoffNanos : backoff);
+			retries.add(notification);
+		}
+	}
+
+	private static final class Notification implements Delayed {
+
+		private final Account account;
+		private final String transferDescription;
+		private final Account counterparty;
+		private final BigDecimal amount;
+		private final boolean outgoing;
+		private final long enqueuedAtNanos;
+		// owned by the thread delivering it; handed over through the retry queue
+		private int attempts;
+		private long retryAtNanos;
+
+		private Notification(Account account, String transferDescription, Account counterparty, BigDecimal amount,
+				boolean outgoing, long enqueuedAtNanos) {
+			this.account = account;
+			this.transferDescription = transferDescription;
+			this.counterparty = counterparty;
+			this.amount = amount;
+			this.outgoing = outgoing;
+			this.enqueuedAtNanos = enqueuedAtNanos;
+		}
+
+		private String description() {
+			return transferDescription != null ? transferDescription
+					: NotificationService.describeTransfer(counterparty, amount, outgoing);
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(retryAtNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			return Long.signum(retryAtNanos - ((Notification) other).retryAtNanos);
+		}
+	}
+}
@@ -0,0 +1,244 @@
+package com.db.awmd.challenge.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountBalance;
+import com.db.awmd.challenge.domain.MoneyTransfer;
+import com.db.awmd.challenge.repository.OrderingPoint;
+
+/**
+ * Multi-version reads of account balances. Every transfer passing through
+ * {@link MoneyTransferService} takes a {@link Ticket} before it runs; the
+ * engine claims the ticket's version from a global clock at the transfer's
+ * {@link OrderingPoint}, after its debit and before its credit, and the
+ * balance changes are installed under that version once the transfer has
+ * been applied. A transfer that spends money credited by another one is
+ * therefore always versioned after it, so versions are a serial order in
+ * which every transfer was covered. The watermark is the highest version at
+ * or below which every transfer has finished, so a {@link Snapshot} taken at
+ * the watermark sees each transfer on all of its accounts or on none of them,
+ * and only states that this serial order passes through, however long the
+ * reads take, while transfers carry on unhindered.
+ *
+ * <p>Versions finish out of order; a ring of completion marks lets the
+ * watermark move past a version only once everything before it is done.
+ * Transfers are admitted before they run, and only while the ring has room
+ * for their version, so claiming one inside the engine never waits. A
+ * transfer that finds the ring full waits for the oldest ones to finish; it
+ * is held back, never failed, and every ticket is finished by the transfer
+ * that took it, so the wait always ends.
+ *
+ * <p>Versioning costs every transfer a few contended atomic updates, see
+ * {@code SnapshotBenchmark}, so it is off unless enabled with
+ * {@code snapshots.enabled=true}.
+ */
+@Service
+@ConditionalOnProperty(name = "snapshots.enabled", havingValue = "true")
+public class BalanceSnapshots {
+
+	private static final int SPINS_BEFORE_PARKING = 100;
+	private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final AtomicLong clock = new AtomicLong();
+	private final AtomicLong admitted = new AtomicLong();
+	private final AtomicLong watermark = new AtomicLong();
+	private final AtomicLongArray completed;
+	private final int mask;
+	private final Set<Snapshot> open = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * @param inFlight ring size, rounded up to a power of two; a transfer waits
+	 *                 to be admitted when this many are still unfinished
+	 */
+	@Autowired
+	public BalanceSnapshots(@Value("${snapshots.max-in-flight:4096}") int inFlight) {
+		int size = Integer.highestOneBit(Math.max(2, inFlight - 1)) << 1;
+		this.completed = new AtomicLongArray(size);
+		this.mask = size - 1;
+		for (int i = 0; i < size; i++) {
+			// no version is complete yet, and slot i next holds version i
+			completed.set(i, i - (long) size);
+		}
+	}
+
+	/**
+	 * Admits a transfer between the two accounts. Must be called before the
+	 * transfer changes either balance; the ticket is handed to the engine as
+	 * the transfer's ordering point and then to exactly one {@link #commit} or
+	 * {@link #abort}.
+	 */
+	public Ticket begin(Account fromAccount, Account toAccount) {
+		fromAccount.getMinorUnitBalance().versions();
+		toAccount.getMinorUnitBalance().versions();
+		admit();
+		return new Ticket();
+	}
+
+	/** Same as {@link #begin(Account, Account)} for all accounts of the transfers. */
+	public Ticket begin(List<MoneyTransfer> transfers) {
+		for (MoneyTransfer transfer : transfers) {
+			transfer.getFromAccount().getMinorUnitBalance().versions();
+			transfer.getToAccount().getMinorUnitBalance().versions();
+		}
+		admit();
+		return new Ticket();
+	}
+
+	public void commit(Ticket ticket, Account fromAccount, Account toAccount, long amount) {
+		long version = ticket.claim();
+		long horizon = horizon();
+		fromAccount.getMinorUnitBalance().versions().install(version, -amount, horizon);
+		toAccount.getMinorUnitBalance().versions().install(version, amount, horizon);
+		complete(version);
+	}
+
+	public void commit(Ticket ticket, List<MoneyTransfer> transfers) {
+		long version = ticket.claim();
+		long horizon = horizon();
+		for (MoneyTransfer transfer : transfers) {
+			transfer.getFromAccount().getMinorUnitBalance().versions().install(version, -transfer.getAmount(), horizon);
+			transfer.getToAccount().getMinorUnitBalance().versions().install(version, transfer.getAmount(), horizon);
+		}
+		complete(version);
+	}
+
+	/** Finishes a ticket whose transfer changed nothing. */
+	public void abort(Ticket ticket) {
+		complete(ticket.claim());
+	}
+
+	/**
+	 * Opens a consistent view of all balances as of the current watermark. It
+	 * must be closed, as it keeps the changes it may still need from being
+	 * folded away.
+	 */
+	public Snapshot open() {
+		long registered = watermark.get();
+		Snapshot snapshot = new Snapshot(registered);
+		open.add(snapshot);
+		// anything pruned before the registration was visible is at or below
+		// the watermark as read now
+		snapshot.version = watermark.get();
+		return snapshot;
+	}
+
+	public long getWatermark() {
+		return watermark.get();
+	}
+
+	/**
+	 * Takes one place in the ring. Every admitted ticket claims exactly one
+	 * version, so the clock never runs ahead of the admissions and a claimed
+	 * version always has its slot free.
+	 */
+	private void admit() {
+		for (int spins = 0;; spins++) {
+			long current = admitted.get();
+			if (current - watermark.get() < mask) {
+				if (admitted.compareAndSet(current, current + 1)) {
+					return;
+				}
+				continue;
+			}
+			// the ring is full of unfinished transfers, wait for the oldest
+			if (spins < SPINS_BEFORE_PARKING) {
+				Thread.yield();
+				continue;
+			}
+			LockSupport.parkNanos(this, Math.min(MAX_PARK_NANOS, 1000L << Math.min(10, spins - SPINS_BEFORE_PARKING)));
+		}
+	}
+
+	private void complete(long version) {
+		completed.set((int) version & mask, version);
+		long current = watermark.get();
+		while (completed.get((int) (current + 1) & mask) == current + 1) {
+			if (watermark.compareAndSet(current, current + 1)) {
+				current++;
+			} else {
+				current = watermark.get();
+			}
+		}
+	}
+
+	private long horizon() {
+		long horizon = watermark.get();
+		if (!open.isEmpty()) {
+			for (Snapshot snapshot : open) {
+				horizon = Math.min(horizon, snapshot.registered);
+			}
+		}
+		return horizon;
+	}
+
+	/**
+	 * Place of one admitted transfer. Its version is claimed when the engine
+	 * reaches the transfer's ordering point, or when the transfer is committed
+	 * or aborted if the engine never did.
+	 */
+	public final class Ticket implements OrderingPoint {
+
+		private volatile long version;
+
+		private Ticket() {
+		}
+
+		@Override
+		public void reached() {
+			claim();
+		}
+
+		/** The claimed version, or 0 before the ordering point was reached. */
+		public long getVersion() {
+			return version;
+		}
+
+		private long claim() {
+			if (version == 0) {
+				version = clock.incrementAndGet();
+			}
+			return version;
+		}
+	}
+
+	/** Balances as of one version; safe to read from several threads at once. */
+	public final class Snapshot implements AutoCloseable {
+
+		private final long registered;
+		private volatile long version;
+
+		private Snapshot(long registered) {
+			this.registered = registered;
+		}
+
+		public long getVersion() {
+			return version;
+		}
+
+		public long minorUnitsOf(Account account) {
+			return account.getMinorUnitBalance().versions().valueAt(version);
+		}
+
+		public BigDecimal balanceOf(Account account) {
+			return AccountBalance.toDecimal(minorUnitsOf(account));
+		}
+
+		@Override
+		public void close() {
+			open.remove(this);
+		}
+	}
+}
@@ -0,0 +1,270 @@
+package com.db.awmd.challenge.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountBalance;
+import com.db.awmd.challenge.domain.AccountMoneyTransferRequest;
+import com.db.awmd.challenge.domain.MoneyTransfer;
+import com.db.awmd.challenge.domain.MoneyTransferResult;
+import com.db.awmd.challenge.domain.MultiLegTransferRequest;
+import com.db.awmd.challenge.domain.TransferBatchMode;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.OverdraftsAccountException;
+import com.db.awmd.challenge.exception.TransferNotDurableException;
+import com.db.awmd.challenge.repository.MoneyTransferRepository;
+
+/**
+ * Executes many transfers per call. Best-effort batches are split into groups
+ * of transfers that share accounts; each group runs in submission order and
+ * independent groups run in parallel. All-or-nothing batches and multi-leg
+ * transfers are handed to the transfer engine as a single atomic unit.
+ */
+@Service
+public class BatchMoneyTransferService {
+
+	private final AccountsService accountsService;
+	private final MoneyTransferService moneyTransferService;
+	private final Validator validator;
+	private final ExecutorService executor;
+
+	@Autowired
+	public BatchMoneyTransferService(AccountsService accountsService, MoneyTransferService moneyTransferService,
+			Validator validator, @Value("${transfer.batch.parallelism:0}") int parallelism) {
+		this.accountsService = accountsService;
+		this.moneyTransferService = moneyTransferService;
+		this.validator = validator;
+		int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+		AtomicInteger threadCount = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "transfer-batch-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	public List<MoneyTransferResult> transferMoney(List<AccountMoneyTransferRequest> requests,
+			TransferBatchMode mode) {
+		return transferMoney(requests, mode, new MoneyTransferResult[requests.size()]);
+	}
+
+	/**
+	 * Same as {@link #transferMoney(List, TransferBatchMode)} for a batch in
+	 * which some transfers already have an outcome, replayed from an earlier
+	 * submission. Those are not executed again; in an all-or-nothing batch a
+	 * completed one counts as applied and any other fails the batch.
+	 *
+	 * @param results one slot per request, {@code null} where the transfer has
+	 *                to be executed; filled in and returned as the list
+	 */
+	public List<MoneyTransferResult> transferMoney(List<AccountMoneyTransferRequest> requests,
+			TransferBatchMode mode, MoneyTransferResult[] results) {
+		MoneyTransfer[] transfers = resolve(requests, results);
+		if (mode == TransferBatchMode.ALL_OR_NOTHING) {
+			transferAllOrNothing(transfers, results);
+		} else {
+			transferBestEffort(requests, transfers, results);
+		}
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * Applies every leg of the request, which must have been validated, as one
+	 * atomic unit: the engine takes the locks of all accounts involved once and
+	 * checks the debit against the legs' running total. Results come one per
+	 * leg, in the same order.
+	 */
+	public List<MoneyTransferResult> transferMultiLeg(MultiLegTransferRequest request) {
+		List<MultiLegTransferRequest.Leg> legs = request.getLegs();
+		MoneyTransferResult[] results = new MoneyTransferResult[legs.size()];
+		MoneyTransfer[] transfers = new MoneyTransfer[legs.size()];
+		Account fromAccount = accountsService.getAccount(request.getAccountFromId());
+		for (int i = 0; i < legs.size(); i++) {
+			MultiLegTransferRequest.Leg leg = legs.get(i);
+			Account toAccount = accountsService.getAccount(leg.getAccountToId());
+			if (fromAccount == null || toAccount == null) {
+				results[i] = new MoneyTransferResult(i, TransferStatus.ACCOUNT_NOT_FOUND, "Account id "
+						+ (fromAccount == null ? request.getAccountFromId() : leg.getAccountToId()) + " not found");
+				continue;
+			}
+			transfers[i] = new MoneyTransfer(fromAccount, toAccount,
+					AccountBalance.toMinorUnits(leg.getTransferAmount()));
+		}
+		transferAllOrNothing(transfers, results);
+		return Arrays.asList(results);
+	}
+
+	private MoneyTransfer[] resolve(List<AccountMoneyTransferRequest> requests, MoneyTransferResult[] results) {
+		MoneyTransfer[] transfers = new MoneyTransfer[requests.size()];
+		for (int i = 0; i < requests.size(); i++) {
+			if (results[i] != null) {
+				continue;
+			}
+			AccountMoneyTransferRequest request = requests.get(i);
+			Set<ConstraintViolation<AccountMoneyTransferRequest>> violations = validator.validate(request);
+			if (!violations.isEmpty()) {
+				ConstraintViolation<AccountMoneyTransferRequest> violation = violations.iterator().next();
+				results[i] = new MoneyTransferResult(i, TransferStatus.INVALID,
+						violation.getPropertyPath() + " " + violation.getMessage());
+				continue;
+			}
+			Account fromAccount = accountsService.getAccount(request.getAccountFromId());
+			Account toAccount = accountsService.getAccount(request.getAccountToId());
+			if (fromAccount == null || toAccount == null) {
+				results[i] = new MoneyTransferResult(i, TransferStatus.ACCOUNT_NOT_FOUND, "Account id "
+						+ (fromAccount == null ? request.getAccountFromId() : request.getAccountToId()) + " not found");
+				continue;
+			}
+			transfers[i] = new MoneyTransfer(fromAccount, toAccount,
+					AccountBalance.toMinorUnits(request.getTransferAmount()));
+		}
+		return transfers;
+	}
+
+	private void transferAllOrNothing(MoneyTransfer[] transfers, MoneyTransferResult[] results) {
+		int rejected = MoneyTransferRepository.ALL_APPLIED;
+		List<MoneyTransfer> pending = new ArrayList<>(transfers.length);
+		List<Integer> pendingIndex = new ArrayList<>(transfers.length);
+		for (int i = 0; i < results.length && rejected == MoneyTransferRepository.ALL_APPLIED; i++) {
+			if (results[i] == null) {
+				pending.add(transfers[i]);
+				pendingIndex.add(i);
+			} else if (!results[i].getStatus().isApplied()) {
+				rejected = i;
+			}
+		}
+		if (rejected == MoneyTransferRepository.ALL_APPLIED && !pending.isEmpty()) {
+			try {
+				rejected = moneyTransferService.transferMoneyAtomically(pending);
+			} catch (TransferNotDurableException tnde) {
+				for (int i : pendingIndex) {
+					results[i] = new MoneyTransferResult(i, TransferStatus.NOT_DURABLE, tnde.getMessage());
+				}
+			}
+			if (rejected != MoneyTransferRepository.ALL_APPLIED) {
+				rejected = pendingIndex.get(rejected);
+				MoneyTransfer transfer = transfers[rejected];
+				results[rejected] = new MoneyTransferResult(rejected, TransferStatus.OVERDRAFT,
+						"Transfer of " + AccountBalance.toDecimal(transfer.getAmount()) + " not possible ,"
+								+ transfer.getFromAccount().getAccountId() + " going overdafts ");
+			}
+		}
+		for (int i = 0; i < results.length; i++) {
+			if (results[i] == null) {
+				results[i] = rejected == MoneyTransferRepository.ALL_APPLIED ? MoneyTransferResult.completed(i)
+						: new MoneyTransferResult(i, TransferStatus.ABORTED, "Transfer " + rejected + " failed");
+			}
+		}
+	}
+
+	private void transferBestEffort(List<AccountMoneyTransferRequest> requests, MoneyTransfer[] transfers,
+			MoneyTransferResult[] results) {
+		List<List<Integer>> groups = groupBySharedAccounts(transfers);
+		if (groups.size() <= 1) {
+			for (List<Integer> group : groups) {
+				transferGroup(group, requests, transfers, results);
+			}
+			return;
+		}
+		List<Callable<Void>> tasks = new ArrayList<>(groups.size());
+		for (List<Integer> group : groups) {
+			tasks.add(() -> {
+				transferGroup(group, requests, transfers, results);
+				return null;
+			});
+		}
+		try {
+			for (Future<Void> future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while executing transfer batch", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Transfer batch failed", e.getCause());
+		}
+	}
+
+	private void transferGroup(List<Integer> group, List<AccountMoneyTransferRequest> requests,
+			MoneyTransfer[] transfers, MoneyTransferResult[] results) {
+		for (int i : group) {
+			MoneyTransfer transfer = transfers[i];
+			try {
+				moneyTransferService.transferMoney(transfer.getFromAccount(), transfer.getToAccount(),
+						requests.get(i).getTransferAmount());
+				results[i] = MoneyTransferResult.completed(i);
+			} catch (OverdraftsAccountException ode) {
+				results[i] = new MoneyTransferResult(i, TransferStatus.OVERDRAFT, ode.getMessage());
+			} catch (TransferNotDurableException tnde) {
+				results[i] = new MoneyTransferResult(i, TransferStatus.NOT_DURABLE, tnde.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Union-find over account ids: transfers end up in the same group when they
+	 * are connected through any shared account. Groups keep submission order.
+	 */
+	private static List<List<Integer>> groupBySharedAccounts(MoneyTransfer[] transfers) {
+		Map<String, Integer> accountIndex = new HashMap<>();
+		int[] parent = new int[transfers.length * 2];
+		for (MoneyTransfer transfer : transfers) {
+			if (transfer != null) {
+				int from = indexOf(accountIndex, parent, transfer.getFromAccount().getAccountId());
+				int to = indexOf(accountIndex, parent, transfer.getToAccount().getAccountId());
+				parent[find(parent, from)] = find(parent, to);
+			}
+		}
+		Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+		for (int i = 0; i < transfers.length; i++) {
+			if (transfers[i] != null) {
+				int root = find(parent, accountIndex.get(transfers[i].getFromAccount().getAccountId()));
+				groups.computeIfAbsent(root, key -> new ArrayList<>()).add(i);
+			}
+		}
+		return new ArrayList<>(groups.values());
+	}
+
+	private static int indexOf(Map<String, Integer> accountIndex, int[] parent, String accountId) {
+		Integer index = accountIndex.get(accountId);
+		if (index == null) {
+			index = accountIndex.size();
+			accountIndex.put(accountId, index);
+			parent[index] = index;
+		}
+		return index;
+	}
+
+	private static int find(int[] parent, int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+}
@@ -1,11 +1,21 @@
 package com.db.awmd.challenge.service;
 
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountBalance;
+import com.db.awmd.challenge.domain.MoneyTransfer;
+import com.db.awmd.challenge.exception.OverdraftsAccountException;
+import com.db.awmd.challenge.exception.TransferNotDurableException;
+import com.db.awmd.challenge.metrics.TransferEventLog;
+import com.db.awmd.challenge.metrics.TransferEventLog.Outcome;
+import com.db.awmd.challenge.metrics.TransferMetrics;
 import com.db.awmd.challenge.repository.MoneyTransferRepository;
 
 import lombok.Getter;
@@ -16,12 +26,231 @@ public class MoneyTransferService {
 	@Getter
 	  private final MoneyTransferRepository moneyTransferRepository;
 
+	  private AccountEventListener[] listeners = new AccountEventListener[0];
+
+	  private TransferMetrics transferMetrics;
+
+	  private BalanceSnapshots balanceSnapshots;
+
+	  private TransferEventLog transferEventLog;
+
 	  @Autowired
 	  public MoneyTransferService(MoneyTransferRepository moneyTransferRepository) {
 	    this.moneyTransferRepository = moneyTransferRepository;
 	  }
+
+	  @Autowired(required = false)
+	  public void setAccountEventListeners(List<AccountEventListener> listeners) {
+	    this.listeners = listeners.toArray(new AccountEventListener[0]);
+	  }
+
+	  @Autowired(required = false)
+	  public void setTransferMetrics(TransferMetrics transferMetrics) {
+	    this.transferMetrics = transferMetrics;
+	  }
+
+	  @Autowired(required = false)
+	  public void setTransferEventLog(TransferEventLog transferEventLog) {
+	    this.transferEventLog = transferEventLog;
+	  }
+
+	  @Autowired(required = false)
+	  public void setBalanceSnapshots(BalanceSnapshots balanceSnapshots) {
+	    this.balanceSnapshots = balanceSnapshots;
+	  }
 	
+	  /**
+	   * Listeners record the transfer after it has been applied. If one fails
+	   * then, e.g. the journal's fsync, the money has still moved: the outcome
+	   * is recorded as completed and a {@link TransferNotDurableException} tells
+	   * the caller not to treat the transfer as failed.
+	   */
 	  public boolean transferMoney(Account fromAccount , Account toAccount , BigDecimal transferAmount) {
-		    return this.moneyTransferRepository.transferMoney(fromAccount,toAccount,transferAmount);
+		    long started = System.nanoTime();
+		    boolean transferred;
+		    try {
+		      announceTransfer(fromAccount, toAccount);
+		      transferred = applyTransfer(fromAccount, toAccount, transferAmount);
+		    } catch (OverdraftsAccountException ode) {
+		      recordOutcome(Outcome.OVERDRAFT, fromAccount, toAccount, transferAmount, started);
+		      throw ode;
+		    } catch (RuntimeException e) {
+		      recordOutcome(Outcome.FAILED, fromAccount, toAccount, transferAmount, started);
+		      throw e;
+		    }
+		    try {
+		      if (transferred && listeners.length > 0) {
+		        publishTransfer(fromAccount, toAccount, AccountBalance.toMinorUnits(transferAmount));
+		      }
+		      return transferred;
+		    } catch (RuntimeException e) {
+		      throw notDurable(e);
+		    } finally {
+		      recordOutcome(Outcome.COMPLETED, fromAccount, toAccount, transferAmount, started);
+		    }
+		  }
+
+	  /**
+	   * Transfers without waiting for listeners: the balances are updated on the
+	   * caller's thread and the returned future completes once every listener
+	   * has acknowledged the transfer, e.g. once the journal has forced it to
+	   * disk. Overdrafts are thrown right away, as with {@link #transferMoney};
+	   * a listener failure fails the future with a
+	   * {@link TransferNotDurableException}.
+	   */
+	  public CompletableFuture<Boolean> transferMoneyAsync(Account fromAccount, Account toAccount,
+	      BigDecimal transferAmount) {
+		    long started = System.nanoTime();
+		    boolean transferred;
+		    try {
+		      announceTransfer(fromAccount, toAccount);
+		      transferred = applyTransfer(fromAccount, toAccount, transferAmount);
+		    } catch (OverdraftsAccountException ode) {
+		      recordOutcome(Outcome.OVERDRAFT, fromAccount, toAccount, transferAmount, started);
+		      throw ode;
+		    } catch (RuntimeException e) {
+		      recordOutcome(Outcome.FAILED, fromAccount, toAccount, transferAmount, started);
+		      throw e;
+		    }
+		    CompletableFuture<Void> acknowledged = CompletableFuture.completedFuture(null);
+		    if (transferred && listeners.length > 0) {
+		      long amount = AccountBalance.toMinorUnits(transferAmount);
+		      CompletableFuture<?>[] acknowledgements = new CompletableFuture<?>[listeners.length];
+		      for (int i = 0; i < listeners.length; i++) {
+		        try {
+		          acknowledgements[i] = listeners[i].moneyTransferredAsync(fromAccount, toAccount, amount);
+		        } catch (RuntimeException e) {
+		          CompletableFuture<Void> failed = new CompletableFuture<>();
+		          failed.completeExceptionally(e);
+		          acknowledgements[i] = failed;
+		        }
+		      }
+		      acknowledged = CompletableFuture.allOf(acknowledgements);
+		    }
+		    return acknowledged.handle((ignored, failure) -> {
+		      recordOutcome(Outcome.COMPLETED, fromAccount, toAccount, transferAmount, started);
+		      if (failure != null) {
+		        throw notDurable(failure instanceof CompletionException ? failure.getCause() : failure);
+		      }
+		      return transferred;
+		    });
+		  }
+
+	  /**
+	   * As with {@link #transferMoney}, a listener failure after the batch has
+	   * been applied throws a {@link TransferNotDurableException}, once every
+	   * transfer of the batch has been published and recorded.
+	   */
+	  public int transferMoneyAtomically(List<MoneyTransfer> transfers) {
+		    long started = System.nanoTime();
+		    for (MoneyTransfer transfer : transfers) {
+		      announceTransfer(transfer.getFromAccount(), transfer.getToAccount());
+		    }
+		    int rejected = applyAtomically(transfers);
+		    long latency = System.nanoTime() - started;
+		    RuntimeException unpublished = null;
+		    if (rejected == MoneyTransferRepository.ALL_APPLIED) {
+		      for (MoneyTransfer transfer : transfers) {
+		        try {
+		          publishTransfer(transfer.getFromAccount(), transfer.getToAccount(), transfer.getAmount());
+		        } catch (RuntimeException e) {
+		          unpublished = unpublished == null ? e : unpublished;
+		        }
+		        if (transferEventLog != null) {
+		          transferEventLog.record(Outcome.COMPLETED, transfer.getFromAccount(), transfer.getToAccount(),
+		              transfer.getAmount(), latency);
+		        }
+		      }
+		      if (transferMetrics != null) {
+		        transferMetrics.batchCompleted(transfers.size(), latency);
+		      }
+		      if (unpublished != null) {
+		        throw notDurable(unpublished);
+		      }
+		    } else {
+		      if (transferMetrics != null) {
+		        transferMetrics.batchOverdrawn(latency);
+		      }
+		      if (transferEventLog != null) {
+		        MoneyTransfer transfer = transfers.get(rejected);
+		        transferEventLog.record(Outcome.OVERDRAFT, transfer.getFromAccount(), transfer.getToAccount(),
+		            transfer.getAmount(), latency);
+		      }
+		    }
+		    return rejected;
+		  }
+
+	  /**
+	   * Runs the transfer on the engine between admitting and finishing its
+	   * snapshot ticket, so snapshot reads see it on both accounts or on neither.
+	   * The engine claims the version at the transfer's ordering point.
+	   */
+	  private boolean applyTransfer(Account fromAccount, Account toAccount, BigDecimal transferAmount) {
+		    if (balanceSnapshots == null) {
+		      return this.moneyTransferRepository.transferMoney(fromAccount, toAccount, transferAmount);
+		    }
+		    BalanceSnapshots.Ticket ticket = balanceSnapshots.begin(fromAccount, toAccount);
+		    boolean transferred = false;
+		    try {
+		      transferred = this.moneyTransferRepository.transferMoney(fromAccount, toAccount, transferAmount, ticket);
+		      return transferred;
+		    } finally {
+		      if (transferred) {
+		        balanceSnapshots.commit(ticket, fromAccount, toAccount, AccountBalance.toMinorUnits(transferAmount));
+		      } else {
+		        balanceSnapshots.abort(ticket);
+		      }
+		    }
+		  }
+
+	  private int applyAtomically(List<MoneyTransfer> transfers) {
+		    if (balanceSnapshots == null) {
+		      return this.moneyTransferRepository.transferMoneyAtomically(transfers);
+		    }
+		    BalanceSnapshots.Ticket ticket = balanceSnapshots.begin(transfers);
+		    int rejected = 0;
+		    try {
+		      rejected = this.moneyTransferRepository.transferMoneyAtomically(transfers, ticket);
+		      return rejected;
+		    } finally {
+		      if (rejected == MoneyTransferRepository.ALL_APPLIED) {
+		        balanceSnapshots.commit(ticket, transfers);
+		      } else {
+		        balanceSnapshots.abort(ticket);
+		      }
+		    }
+		  }
+
+	  private void recordOutcome(Outcome outcome, Account fromAccount, Account toAccount, BigDecimal transferAmount,
+	      long started) {
+		    long latency = System.nanoTime() - started;
+		    if (transferMetrics != null) {
+		      if (outcome == Outcome.COMPLETED) {
+		        transferMetrics.transferCompleted(latency);
+		      } else if (outcome == Outcome.OVERDRAFT) {
+		        transferMetrics.transferOverdrawn(latency);
+		      } else {
+		        transferMetrics.transferFailed(latency);
+		      }
+		    }
+		    if (transferEventLog != null) {
+		      transferEventLog.record(outcome, fromAccount, toAccount, transferAmount, latency);
+		    }
+		  }
+
+	  private void announceTransfer(Account fromAccount, Account toAccount) {
+		    for (AccountEventListener listener : listeners) {
+		      listener.transferring(fromAccount, toAccount);
+		    }
+		  }
+
+	  private static TransferNotDurableException notDurable(Throwable cause) {
+		    return new TransferNotDurableException("Transfer applied but not recorded: " + cause.getMessage(), cause);
+		  }
+
+	  private void publishTransfer(Account fromAccount, Account toAccount, long amount) {
+		    for (AccountEventListener listener : listeners) {
+		      listener.moneyTransferred(fromAccount, toAccount, amount);
+		    }
 		  }
 }
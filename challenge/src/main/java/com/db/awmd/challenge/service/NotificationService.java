@@ -1,8 +1,23 @@
 package com.db.awmd.challenge.service;
 
+import java.math.BigDecimal;
+
 import com.db.awmd.challenge.domain.Account;
 
 public interface NotificationService {
 
   void notifyAboutTransfer(Account account, String transferDescription);
+
+  /**
+   * Notifies the owner of one side of a transfer. The description is built
+   * right away here; an implementation that delivers later overrides this to
+   * build it at delivery, off the transfer's thread.
+   */
+  default void notifyAboutTransfer(Account account, Account counterparty, BigDecimal amount, boolean outgoing) {
+    notifyAboutTransfer(account, describeTransfer(counterparty, amount, outgoing));
+  }
+
+  static String describeTransfer(Account counterparty, BigDecimal amount, boolean outgoing) {
+    return amount + (outgoing ? " amount transfered to " : " amount transfered from ") + counterparty.getAccountId();
+  }
 }
@@ -0,0 +1,108 @@
+package com.db.awmd.challenge.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel: {@value #LEVELS} levels of {@value #SLOTS}
+ * slots, each level's slot spanning a whole turn of the level below. A timer
+ * goes into the coarsest slot that still tells its deadline apart and moves
+ * down a level each time the wheel reaches that slot, so scheduling is O(1)
+ * and advancing costs O(1) per tick plus O(levels) moves per timer, however
+ * many timers are pending. With 10 ms ticks the wheel spans about 21 years;
+ * timers further out wait in the last slot and are placed again when it
+ * comes round.
+ *
+ * <p>Not thread-safe; it belongs to the one thread that advances it.
+ */
+public final class TimingWheel<T> {
+
+	private static final int BITS = 6;
+	static final int SLOTS = 1 << BITS;
+	static final int LEVELS = 6;
+	private static final int MASK = SLOTS - 1;
+	private static final long SPAN = 1L << (BITS * LEVELS);
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private final Timer<T>[][] slots = new Timer[LEVELS][SLOTS];
+	private long currentTick;
+	private int size;
+
+	public TimingWheel(long startTick) {
+		this.currentTick = startTick;
+	}
+
+	/** Expires the value on the first advance reaching the deadline tick; past deadlines expire on the next one. */
+	public void schedule(T value, long deadlineTick) {
+		place(new Timer<>(value, Math.max(deadlineTick, currentTick + 1)));
+		size++;
+	}
+
+	/** Moves the wheel up to the tick, handing the values that expire to the consumer tick by tick. */
+	public void advanceTo(long tick, Consumer<? super T> expired) {
+		while (currentTick < tick) {
+			currentTick++;
+			int level = 1;
+			while (level < LEVELS && (currentTick & ((1L << (BITS * level)) - 1)) == 0) {
+				level++;
+			}
+			// move timers down from the coarsest level whose slot was reached
+			for (level--; level > 0; level--) {
+				Timer<T> timer = detach(level, (int) (currentTick >>> (BITS * level)) & MASK);
+				while (timer != null) {
+					Timer<T> next = timer.next;
+					place(timer);
+					timer = next;
+				}
+			}
+			Timer<T> timer = detach(0, (int) currentTick & MASK);
+			while (timer != null) {
+				Timer<T> next = timer.next;
+				timer.next = null;
+				size--;
+				expired.accept(timer.value);
+				timer = next;
+			}
+		}
+	}
+
+	public long getCurrentTick() {
+		return currentTick;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private Timer<T> detach(int level, int index) {
+		Timer<T> head = slots[level][index];
+		slots[level][index] = null;
+		return head;
+	}
+
+	private void place(Timer<T> timer) {
+		long delta = timer.deadlineTick - currentTick;
+		long slotTick = timer.deadlineTick;
+		int level = 0;
+		while (level < LEVELS - 1 && delta >= 1L << (BITS * (level + 1))) {
+			level++;
+		}
+		if (delta >= SPAN) {
+			slotTick = currentTick + SPAN - 1;
+		}
+		int index = (int) (slotTick >>> (BITS * level)) & MASK;
+		timer.next = slots[level][index];
+		slots[level][index] = timer;
+	}
+
+	private static final class Timer<T> {
+
+		private final T value;
+		private final long deadlineTick;
+		private Timer<T> next;
+
+		private Timer(T value, long deadlineTick) {
+			this.value = value;
+			this.deadlineTick = deadlineTick;
+		}
+	}
+}
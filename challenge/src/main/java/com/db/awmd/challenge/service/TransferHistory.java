@@ -0,0 +1,144 @@
+package com.db.awmd.challenge.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountBalance;
+import com.db.awmd.challenge.domain.TransferHistoryEntry;
+import com.db.awmd.challenge.domain.TransferHistoryPage;
+
+/**
+ * In-memory statement of the most recent transfers of every account. Each
+ * account keeps its entries in parallel primitive arrays used as a ring, so
+ * only the last {@code history.max-entries-per-account} transfers are kept.
+ *
+ * <p>Entries are numbered per account and timestamps never decrease within an
+ * account, so a page is found by a binary search on the time range followed
+ * by a walk over the page itself, however long the history is.
+ */
+@Service
+public class TransferHistory implements AccountEventListener {
+
+	private final ConcurrentHashMap<String, AccountHistory> histories = new ConcurrentHashMap<>();
+	private final int maxEntriesPerAccount;
+
+	@Autowired
+	public TransferHistory(@Value("${history.max-entries-per-account:1000}") int maxEntriesPerAccount) {
+		this.maxEntriesPerAccount = maxEntriesPerAccount;
+	}
+
+	@Override
+	public void moneyTransferred(Account fromAccount, Account toAccount, long amount) {
+		if (maxEntriesPerAccount <= 0) {
+			return;
+		}
+		historyOf(fromAccount.getAccountId()).append(toAccount.getAccountId(), -amount);
+		historyOf(toAccount.getAccountId()).append(fromAccount.getAccountId(), amount);
+	}
+
+	/**
+	 * Returns up to {@code limit} transfers recorded in {@code [fromTime, toTime)}
+	 * (epoch milliseconds), newest first.
+	 *
+	 * @param cursor {@code nextCursor} of the previous page, or null for the
+	 *               newest entries
+	 */
+	public TransferHistoryPage getTransfers(String accountId, long fromTime, long toTime, Long cursor, int limit) {
+		AccountHistory history = histories.get(accountId);
+		if (history == null) {
+			return new TransferHistoryPage(Collections.emptyList(), null);
+		}
+		return history.page(fromTime, toTime, cursor == null ? Long.MAX_VALUE : cursor, limit);
+	}
+
+	private AccountHistory historyOf(String accountId) {
+		AccountHistory history = histories.get(accountId);
+		if (history == null) {
+			history = histories.computeIfAbsent(accountId, id -> new AccountHistory(maxEntriesPerAccount));
+		}
+		return history;
+	}
+
+	private static final class AccountHistory {
+
+		private static final int INITIAL_CAPACITY = 8;
+
+		private final int maxEntries;
+		// guarded by this; entry n lives at index n % capacity
+		private long[] timestamps;
+		private long[] amounts;
+		private String[] counterparties;
+		private long appended;
+
+		private AccountHistory(int maxEntries) {
+			this.maxEntries = maxEntries;
+			int capacity = Math.min(INITIAL_CAPACITY, maxEntries);
+			this.timestamps = new long[capacity];
+			this.amounts = new long[capacity];
+			this.counterparties = new String[capacity];
+		}
+
+		private synchronized void append(String counterpartyId, long amount) {
+			if (appended == timestamps.length && timestamps.length < maxEntries) {
+				grow();
+			}
+			long now = System.currentTimeMillis();
+			long timestamp = appended == 0 ? now : Math.max(now, timestamps[indexOf(appended - 1)]);
+			int index = indexOf(appended);
+			timestamps[index] = timestamp;
+			amounts[index] = amount;
+			counterparties[index] = counterpartyId;
+			appended++;
+		}
+
+		private synchronized TransferHistoryPage page(long fromTime, long toTime, long cursor, int limit) {
+			long oldest = Math.max(0, appended - timestamps.length);
+			// newest entry before the cursor that is also before toTime
+			long position = Math.min(cursor, firstAtOrAfter(oldest, appended, toTime)) - 1;
+			List<TransferHistoryEntry> entries = new ArrayList<>(Math.min(limit, 64));
+			while (position >= oldest && entries.size() < limit) {
+				int index = indexOf(position);
+				if (timestamps[index] < fromTime) {
+					return new TransferHistoryPage(entries, null);
+				}
+				entries.add(new TransferHistoryEntry(position, timestamps[index], counterparties[index],
+						AccountBalance.toDecimal(amounts[index])));
+				position--;
+			}
+			boolean more = position >= oldest && timestamps[indexOf(position)] >= fromTime;
+			return new TransferHistoryPage(entries, more ? position + 1 : null);
+		}
+
+		/** First position in {@code [low, high)} recorded at or after {@code time}, or {@code high}. */
+		private long firstAtOrAfter(long low, long high, long time) {
+			while (low < high) {
+				long middle = (low + high) >>> 1;
+				if (timestamps[indexOf(middle)] < time) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+
+		private int indexOf(long position) {
+			return (int) (position % timestamps.length);
+		}
+
+		private void grow() {
+			int capacity = Math.min(timestamps.length * 2, maxEntries);
+			timestamps = Arrays.copyOf(timestamps, capacity);
+			amounts = Arrays.copyOf(amounts, capacity);
+			counterparties = Arrays.copyOf(counterparties, capacity);
+		}
+	}
+}
@@ -0,0 +1,214 @@
+package com.db.awmd.challenge.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountMoneyTransferRequest;
+import com.db.awmd.challenge.domain.MoneyTransferResult;
+import com.db.awmd.challenge.domain.ScheduledTransfer;
+import com.db.awmd.challenge.domain.ScheduledTransferRequest;
+import com.db.awmd.challenge.domain.ScheduledTransferStatus;
+import com.db.awmd.challenge.domain.TransferBatchMode;
+import com.db.awmd.challenge.domain.TransferStatus;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Executes value-dated transfers and standing orders when they fall due.
+ * Pending transfers wait in a {@link TimingWheel} owned by a single
+ * {@code transfer-scheduler} thread; new ones are handed to it through a
+ * queue, so scheduling is O(1) for the caller too. Each tick the thread
+ * collects what is due and runs it as one best-effort batch through
+ * {@link BatchMoneyTransferService}, so listeners, metrics and the journal
+ * see scheduled transfers like any other.
+ *
+ * <p>Finished and cancelled transfers stay visible for a retention period,
+ * after which the wheel fires once more to forget them. A batch that fails
+ * as a whole counts as a failed execution of each of its transfers rather
+ * than being retried, as some of them may already have been applied.
+ */
+@Service
+@Slf4j
+public class TransferScheduler {
+
+	private final BatchMoneyTransferService batchMoneyTransferService;
+	private final AccountsService accountsService;
+	private final NotificationService notificationService;
+	private final long tickMillis;
+	private final int batchSize;
+	private final long retainFinishedMillis;
+
+	private final ConcurrentHashMap<String, ScheduledTransfer> transfers = new ConcurrentHashMap<>();
+	private final Queue<ScheduledTransfer> incoming = new ConcurrentLinkedQueue<>();
+	private final TimingWheel<ScheduledTransfer> wheel;
+	private final List<ScheduledTransfer> due = new ArrayList<>();
+	private final Thread ticker;
+	private volatile boolean running = true;
+
+	@Autowired
+	public TransferScheduler(BatchMoneyTransferService batchMoneyTransferService, AccountsService accountsService,
+			NotificationService notificationService, @Value("${transfer.scheduler.tick-ms:10}") long tickMillis,
+			@Value("${transfer.scheduler.batch-size:10000}") int batchSize,
+			@Value("${transfer.scheduler.retain-finished-ms:86400000}") long retainFinishedMillis) {
+		this.batchMoneyTransferService = batchMoneyTransferService;
+		this.accountsService = accountsService;
+		this.notificationService = notificationService;
+		this.tickMillis = tickMillis;
+		this.batchSize = batchSize;
+		this.retainFinishedMillis = retainFinishedMillis;
+		this.wheel = new TimingWheel<>(tickOf(System.currentTimeMillis()));
+		this.ticker = new Thread(this::tick, "transfer-scheduler");
+		this.ticker.setDaemon(true);
+		this.ticker.start();
+	}
+
+	/** Accepts the request, which must have been validated, and returns its tracking record. */
+	public ScheduledTransfer schedule(ScheduledTransferRequest request) {
+		ScheduledTransfer transfer = new ScheduledTransfer(UUID.randomUUID().toString(), request.getAccountFromId(),
+				request.getAccountToId(), request.getTransferAmount(), request.getRepeatIntervalMillis());
+		transfer.setNextExecutionAt(request.getExecuteAt());
+		transfer.setRemainingExecutions(request.getExecutions());
+		transfers.put(transfer.getId(), transfer);
+		incoming.add(transfer);
+		return transfer;
+	}
+
+	public ScheduledTransfer getScheduledTransfer(String id) {
+		return transfers.get(id);
+	}
+
+	/**
+	 * Cancels the executions still to come.
+	 *
+	 * @return false if there is no such transfer or it has already finished
+	 */
+	public boolean cancel(String id) {
+		ScheduledTransfer transfer = transfers.get(id);
+		if (transfer == null) {
+			return false;
+		}
+		synchronized (transfer) {
+			if (transfer.getStatus() != ScheduledTransferStatus.PENDING) {
+				return false;
+			}
+			transfer.setStatus(ScheduledTransferStatus.CANCELLED);
+			return true;
+		}
+	}
+
+	/** Transfers waiting in the wheel, including finished ones waiting to be forgotten. */
+	public int getPending() {
+		return wheel.size() + incoming.size();
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		running = false;
+		ticker.interrupt();
+		ticker.join(TimeUnit.SECONDS.toMillis(5));
+	}
+
+	private void tick() {
+		while (running) {
+			try {
+				ScheduledTransfer transfer;
+				while ((transfer = incoming.poll()) != null) {
+					wheel.schedule(transfer, tickOf(transfer.getNextExecutionAt()));
+				}
+				wheel.advanceTo(tickOf(System.currentTimeMillis()), this::expired);
+				for (int from = 0; from < due.size(); from += batchSize) {
+					execute(due.subList(from, Math.min(due.size(), from + batchSize)));
+				}
+			} catch (RuntimeException e) {
+				log.warn("Scheduled transfers of this tick could not be executed", e);
+			} finally {
+				due.clear();
+			}
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(tickMillis));
+		}
+	}
+
+	private void expired(ScheduledTransfer transfer) {
+		if (transfer.getStatus() == ScheduledTransferStatus.PENDING) {
+			due.add(transfer);
+		} else if (transfer.getStatus() == ScheduledTransferStatus.CANCELLED && transfer.getRemainingExecutions() > 0) {
+			// was waiting for its next execution, keep it around for the retention period
+			transfer.setRemainingExecutions(0);
+			wheel.schedule(transfer, tickOf(System.currentTimeMillis() + retainFinishedMillis));
+		} else {
+			transfers.remove(transfer.getId(), transfer);
+		}
+	}
+
+	private void execute(List<ScheduledTransfer> batch) {
+		List<AccountMoneyTransferRequest> requests = new ArrayList<>(batch.size());
+		for (ScheduledTransfer transfer : batch) {
+			requests.add(new AccountMoneyTransferRequest(transfer.getAccountFromId(), transfer.getAccountToId(),
+					transfer.getTransferAmount()));
+		}
+		List<MoneyTransferResult> results;
+		try {
+			results = batchMoneyTransferService.transferMoney(requests, TransferBatchMode.BEST_EFFORT);
+		} catch (RuntimeException e) {
+			log.warn("Batch of {} scheduled transfers failed", batch.size(), e);
+			results = new ArrayList<>(batch.size());
+			for (int i = 0; i < batch.size(); i++) {
+				results.add(new MoneyTransferResult(i, TransferStatus.FAILED, "Transfer failed: " + e.getMessage()));
+			}
+		}
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < batch.size(); i++) {
+			ScheduledTransfer transfer = batch.get(i);
+			MoneyTransferResult result = results.get(i);
+			if (result.getStatus().isApplied()) {
+				try {
+					notifyAboutTransfer(transfer);
+				} catch (RuntimeException e) {
+					log.warn("Could not notify about scheduled transfer {}", transfer.getId(), e);
+				}
+			}
+			synchronized (transfer) {
+				transfer.setLastStatus(result.getStatus());
+				transfer.setLastMessage(result.getMessage());
+				transfer.setRemainingExecutions(transfer.getRemainingExecutions() - 1);
+				if (transfer.getStatus() != ScheduledTransferStatus.PENDING) {
+					// cancelled while executing; this was its last execution
+					transfer.setRemainingExecutions(0);
+				} else if (transfer.getRemainingExecutions() > 0 && transfer.getRepeatIntervalMillis() > 0) {
+					transfer.setNextExecutionAt(transfer.getNextExecutionAt() + transfer.getRepeatIntervalMillis());
+					wheel.schedule(transfer, tickOf(transfer.getNextExecutionAt()));
+					continue;
+				} else {
+					transfer.setRemainingExecutions(0);
+					transfer.setStatus(result.getStatus().isApplied() ? ScheduledTransferStatus.COMPLETED
+							: ScheduledTransferStatus.FAILED);
+				}
+			}
+			wheel.schedule(transfer, tickOf(now + retainFinishedMillis));
+		}
+	}
+
+	private void notifyAboutTransfer(ScheduledTransfer transfer) {
+		Account fromAccount = accountsService.getAccount(transfer.getAccountFromId());
+		Account toAccount = accountsService.getAccount(transfer.getAccountToId());
+		notificationService.notifyAboutTransfer(fromAccount, toAccount, transfer.getTransferAmount(), true);
+		notificationService.notifyAboutTransfer(toAccount, fromAccount, transfer.getTransferAmount(), false);
+	}
+
+	private long tickOf(long epochMillis) {
+		return epochMillis / tickMillis;
+	}
+}
@@ -0,0 +1,163 @@
+package com.db.awmd.challenge.web;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountImportRow;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Turns an import body into a lazy sequence of rows, reading no further
+ * ahead than the row being returned. A row that cannot be parsed becomes an
+ * invalid row rather than an error, so the rest of the body is still imported.
+ * Failing to read the body itself surfaces as {@link UncheckedIOException}.
+ */
+final class AccountImportReaders {
+
+	private AccountImportReaders() {
+	}
+
+	/**
+	 * One {@code accountId,balance} pair per line. A first line starting with
+	 * {@code accountId} is taken as a header; blank lines are ignored. Fields may
+	 * be wrapped in double quotes but may not contain commas.
+	 */
+	static Iterator<AccountImportRow> csv(BufferedReader reader) {
+		return new LineRows(reader) {
+			@Override
+			AccountImportRow parse(long row, String line) {
+				if (row == 1 && line.regionMatches(true, 0, "accountId", 0, "accountId".length())) {
+					return null;
+				}
+				String[] fields = line.split(",", -1);
+				String accountId = unquote(fields[0]);
+				if (fields.length != 2) {
+					return AccountImportRow.invalid(row, accountId, "Expected accountId,balance");
+				}
+				try {
+					return AccountImportRow.of(row, new Account(accountId, new BigDecimal(unquote(fields[1]))));
+				} catch (NumberFormatException | ArithmeticException e) {
+					return AccountImportRow.invalid(row, accountId, "Invalid balance " + fields[1].trim());
+				}
+			}
+		};
+	}
+
+	/** One JSON account object per line. */
+	static Iterator<AccountImportRow> ndjson(BufferedReader reader, ObjectReader accountReader) {
+		return new LineRows(reader) {
+			@Override
+			AccountImportRow parse(long row, String line) {
+				try {
+					return AccountImportRow.of(row, accountReader.readValue(line));
+				} catch (JsonProcessingException jpe) {
+					return AccountImportRow.invalid(row, null, jpe.getOriginalMessage());
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Elements of a JSON array of accounts. Each element is read as a tree
+	 * first, so an element that does not bind to an account only invalidates
+	 * its own row.
+	 */
+	static Iterator<AccountImportRow> jsonArray(MappingIterator<JsonNode> elements, ObjectReader accountReader) {
+		return new Iterator<AccountImportRow>() {
+
+			private long row;
+
+			@Override
+			public boolean hasNext() {
+				try {
+					return elements.hasNextValue();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+
+			@Override
+			public AccountImportRow next() {
+				JsonNode element;
+				try {
+					element = elements.nextValue();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				row++;
+				JsonNode accountId = element.get("accountId");
+				try {
+					return AccountImportRow.of(row, accountReader.readValue(element));
+				} catch (JsonProcessingException jpe) {
+					return AccountImportRow.invalid(row, accountId == null ? null : accountId.asText(),
+							jpe.getOriginalMessage());
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		};
+	}
+
+	private static String unquote(String field) {
+		String trimmed = field.trim();
+		if (trimmed.length() >= 2 && trimmed.startsWith("\"") && trimmed.endsWith("\"")) {
+			return trimmed.substring(1, trimmed.length() - 1);
+		}
+		return trimmed;
+	}
+
+	private abstract static class LineRows implements Iterator<AccountImportRow> {
+
+		private final BufferedReader reader;
+		private long lineNumber;
+		private AccountImportRow next;
+		private boolean done;
+
+		LineRows(BufferedReader reader) {
+			this.reader = reader;
+		}
+
+		/** Returns the row for a non-blank line, or null to skip it. */
+		abstract AccountImportRow parse(long row, String line);
+
+		@Override
+		public boolean hasNext() {
+			while (next == null && !done) {
+				String line;
+				try {
+					line = reader.readLine();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				if (line == null) {
+					done = true;
+				} else if (!line.trim().isEmpty()) {
+					next = parse(++lineNumber, line);
+				} else {
+					lineNumber++;
+				}
+			}
+			return next != null;
+		}
+
+		@Override
+		public AccountImportRow next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			AccountImportRow row = next;
+			next = null;
+			return row;
+		}
+	}
+}
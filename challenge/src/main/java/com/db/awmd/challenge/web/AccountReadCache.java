@@ -0,0 +1,222 @@
+package com.db.awmd.challenge.web;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.service.AccountEventListener;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Serves single-account reads from the controller layer. Recently read
+ * accounts are kept as their serialized JSON in a fixed number of slots, one
+ * account per slot by hash, so a popular account stays while rarely read ones
+ * overwrite each other; a transfer or creation touching the account empties
+ * its slot. Ids that were never created are answered from a Bloom filter of
+ * all account ids, without looking them up.
+ *
+ * <p>The filter is filled from the repository once the application has
+ * started, which covers accounts restored from the journal, and follows
+ * account creations from then on. Until then every read goes to the
+ * repository. A filter sized for fewer accounts than exist only answers fewer
+ * unknown ids by itself.
+ */
+@Component
+public class AccountReadCache implements AccountEventListener {
+
+	private final AccountsRepository accountsRepository;
+	private final ObjectWriter accountWriter;
+	private final AtomicReferenceArray<Entry> entries;
+	// bumped by every invalidation, so a fill racing with one can tell
+	private final AtomicLongArray stamps;
+	private final int slotMask;
+	private final BloomFilter knownIds;
+	private volatile boolean knownIdsLoaded;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder unknownIds = new LongAdder();
+
+	/**
+	 * @param slots            accounts kept serialized, rounded up to a power
+	 *                         of two; 0 turns the cache off
+	 * @param expectedAccounts sizes the Bloom filter for about 1% of unknown
+	 *                         ids getting through to the repository
+	 */
+	@Autowired
+	public AccountReadCache(AccountsRepository accountsRepository, ObjectMapper objectMapper,
+			@Value("${account.read-cache.slots:4096}") int slots,
+			@Value("${account.read-cache.expected-accounts:1000000}") int expectedAccounts) {
+		this.accountsRepository = accountsRepository;
+		this.accountWriter = objectMapper.writerFor(Account.class);
+		int size = slots <= 0 ? 0 : Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+		this.entries = new AtomicReferenceArray<>(size);
+		this.stamps = new AtomicLongArray(size);
+		this.slotMask = size - 1;
+		this.knownIds = new BloomFilter(expectedAccounts);
+	}
+
+	@EventListener(ContextRefreshedEvent.class)
+	public void loadKnownIds() {
+		accountsRepository.streamAccounts().forEach(account -> knownIds.add(account.getAccountId()));
+		knownIdsLoaded = true;
+	}
+
+	/**
+	 * @return the account as JSON, or null if there is no such account
+	 */
+	public byte[] getJson(String accountId) throws JsonProcessingException {
+		if (knownIdsLoaded && !knownIds.mightContain(accountId)) {
+			unknownIds.increment();
+			return null;
+		}
+		if (entries.length() == 0) {
+			misses.increment();
+			Account account = accountsRepository.getAccount(accountId);
+			return account == null ? null : accountWriter.writeValueAsBytes(account);
+		}
+		int slot = slotOf(accountId);
+		Entry cached = entries.get(slot);
+		if (cached != null && cached.accountId.equals(accountId)) {
+			hits.increment();
+			return cached.json;
+		}
+		misses.increment();
+		long stamp = stamps.get(slot);
+		Account account = accountsRepository.getAccount(accountId);
+		if (account == null) {
+			return null;
+		}
+		Entry filled = new Entry(accountId, accountWriter.writeValueAsBytes(account));
+		entries.set(slot, filled);
+		if (stamps.get(slot) != stamp) {
+			// the balance may have changed after it was read
+			entries.compareAndSet(slot, filled, null);
+		}
+		return filled.json;
+	}
+
+	@Override
+	public void accountCreated(Account account, long initialBalance) {
+		knownIds.add(account.getAccountId());
+		invalidate(account.getAccountId());
+	}
+
+	@Override
+	public void moneyTransferred(Account fromAccount, Account toAccount, long amount) {
+		invalidate(fromAccount.getAccountId());
+		invalidate(toAccount.getAccountId());
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getUnknownIds() {
+		return unknownIds.sum();
+	}
+
+	private void invalidate(String accountId) {
+		if (entries.length() == 0) {
+			return;
+		}
+		int slot = slotOf(accountId);
+		stamps.incrementAndGet(slot);
+		Entry cached = entries.get(slot);
+		if (cached != null && cached.accountId.equals(accountId)) {
+			entries.compareAndSet(slot, cached, null);
+		}
+	}
+
+	private int slotOf(String accountId) {
+		int h = accountId.hashCode();
+		return (h ^ (h >>> 16)) & slotMask;
+	}
+
+	private static final class Entry {
+
+		private final String accountId;
+		private final byte[] json;
+
+		private Entry(String accountId, byte[] json) {
+			this.accountId = accountId;
+			this.json = json;
+		}
+	}
+
+	/**
+	 * Bit set probed at {@value #PROBES} positions per id, derived from one
+	 * 64-bit hash. Bits are only ever set, so concurrent adds need no lock.
+	 */
+	static final class BloomFilter {
+
+		private static final int PROBES = 7;
+		// 10 bits per expected id give about 1% false positives with 7 probes
+		private static final int BITS_PER_ID = 10;
+
+		private final AtomicLongArray words;
+		private final long bitCount;
+
+		BloomFilter(int expectedIds) {
+			long bits = Math.max(64, (long) Math.max(1, expectedIds) * BITS_PER_ID);
+			this.words = new AtomicLongArray((int) Math.min(Integer.MAX_VALUE, (bits + 63) >>> 6));
+			this.bitCount = (long) words.length() << 6;
+		}
+
+		void add(String id) {
+			long hash = hash(id);
+			int h1 = (int) hash;
+			int h2 = (int) (hash >>> 32);
+			for (int i = 0; i < PROBES; i++) {
+				long bit = ((h1 + i * h2) & 0xffffffffL) % bitCount;
+				long mask = 1L << bit;
+				int word = (int) (bit >>> 6);
+				long current = words.get(word);
+				while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+					current = words.get(word);
+				}
+			}
+		}
+
+		boolean mightContain(String id) {
+			long hash = hash(id);
+			int h1 = (int) hash;
+			int h2 = (int) (hash >>> 32);
+			for (int i = 0; i < PROBES; i++) {
+				long bit = ((h1 + i * h2) & 0xffffffffL) % bitCount;
+				if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		// FNV-1a over the chars, finished with the MurmurHash3 mixer
+		private static long hash(String id) {
+			long h = 0xcbf29ce484222325L;
+			for (int i = 0; i < id.length(); i++) {
+				h ^= id.charAt(i);
+				h *= 0x100000001b3L;
+			}
+			h ^= h >>> 33;
+			h *= 0xff51afd7ed558ccdL;
+			h ^= h >>> 33;
+			h *= 0xc4ceb3f99fcb1af5L;
+			return h ^ (h >>> 33);
+		}
+	}
+}
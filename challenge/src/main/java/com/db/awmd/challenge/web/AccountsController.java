@@ -1,5 +1,14 @@
 package com.db.awmd.challenge.web;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+
 import javax.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,11 +20,22 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountImportResult;
+import com.db.awmd.challenge.domain.AccountImportRow;
+import com.db.awmd.challenge.domain.BalanceTotal;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.service.AccountImportService;
 import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.TransferHistory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -24,12 +44,28 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class AccountsController {
 
+	static final String TEXT_CSV_VALUE = "text/csv";
+	static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+	private static final int MAX_PAGE_SIZE = 1000;
+
 	private final AccountsService accountsService;
+	private final AccountImportService accountImportService;
+	private final TransferHistory transferHistory;
+	private final AccountReadCache accountReadCache;
+	private final ObjectReader accountReader;
+	private final ObjectReader treeReader;
 	
 
 	@Autowired
-	public AccountsController(AccountsService accountsService) {
+	public AccountsController(AccountsService accountsService, AccountImportService accountImportService,
+			TransferHistory transferHistory, AccountReadCache accountReadCache, ObjectMapper objectMapper) {
 		this.accountsService = accountsService;
+		this.accountImportService = accountImportService;
+		this.transferHistory = transferHistory;
+		this.accountReadCache = accountReadCache;
+		this.accountReader = objectMapper.readerFor(Account.class);
+		this.treeReader = objectMapper.readerFor(JsonNode.class);
 	}
 
 	@PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
@@ -45,11 +81,102 @@ public class AccountsController {
 		return new ResponseEntity<>(HttpStatus.CREATED);
 	}
 
+	/** The account as JSON, served from {@link AccountReadCache}; unknown ids are answered with 404. */
 	@GetMapping(path = "/{accountId}")
-	public Account getAccount(@PathVariable String accountId) {
-		log.info("Retrieving account for id {}", accountId);
-		return this.accountsService.getAccount(accountId);
+	public ResponseEntity<Object> getAccount(@PathVariable String accountId) throws JsonProcessingException {
+		byte[] json = this.accountReadCache.getJson(accountId);
+		if (json == null) {
+			return new ResponseEntity<>("Account id " + accountId + " not found", HttpStatus.NOT_FOUND);
+		}
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(json);
+	}
+
+	/**
+	 * Several accounts with their balances read at one point in time, e.g.
+	 * {@code ?ids=Id-1,Id-2}. Unknown ids are listed as missing.
+	 */
+	@GetMapping(params = "ids")
+	public ResponseEntity<Object> getAccounts(@RequestParam List<String> ids) {
+		if (ids.size() > MAX_PAGE_SIZE) {
+			return new ResponseEntity<>("At most " + MAX_PAGE_SIZE + " ids can be asked for at once",
+					HttpStatus.BAD_REQUEST);
+		}
+		log.info("Retrieving {} accounts", ids.size());
+		return new ResponseEntity<>(this.accountsService.getAccounts(ids), HttpStatus.OK);
 	}
 
+	/** Sum of all account balances, read at one point in time. */
+	@GetMapping(path = "/total-balance")
+	public BalanceTotal getTotalBalance() {
+		return this.accountsService.getTotalBalance();
+	}
+
+	/**
+	 * Statement of the account's recent transfers, newest first. {@code from}
+	 * and {@code to} bound the time range in epoch milliseconds ({@code to}
+	 * exclusive); pass the returned {@code nextCursor} to get the next page.
+	 */
+	@GetMapping(path = "/{accountId}/transfers")
+	public ResponseEntity<Object> getTransfers(@PathVariable String accountId,
+			@RequestParam(defaultValue = "0") long from, @RequestParam(defaultValue = "" + Long.MAX_VALUE) long to,
+			@RequestParam(required = false) Long cursor, @RequestParam(defaultValue = "50") int limit) {
+		if (this.accountsService.getAccount(accountId) == null) {
+			return new ResponseEntity<>("Account id " + accountId + " not found", HttpStatus.NOT_FOUND);
+		}
+		if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+			return new ResponseEntity<>("limit must be between 1 and " + MAX_PAGE_SIZE, HttpStatus.BAD_REQUEST);
+		}
+		return new ResponseEntity<>(this.transferHistory.getTransfers(accountId, from, to, cursor, limit),
+				HttpStatus.OK);
+	}
+
+	/**
+	 * Creates every account of a JSON array, read element by element from the
+	 * request stream. Answers with the number of accounts created and one error
+	 * per rejected element, such as an id that already exists.
+	 */
+	@PostMapping(path = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<Object> createAccounts(InputStream body) throws IOException {
+		try (MappingIterator<JsonNode> elements = treeReader.readValues(body)) {
+			return importAccounts(AccountImportReaders.jsonArray(elements, accountReader));
+		} catch (JsonProcessingException jpe) {
+			log.info("Bulk account creation rejected, malformed request body");
+			return new ResponseEntity<>(jpe.getOriginalMessage(), HttpStatus.BAD_REQUEST);
+		}
+	}
+
+	/** Imports accounts from {@code accountId,balance} lines. */
+	@PostMapping(path = "/import", consumes = TEXT_CSV_VALUE)
+	public ResponseEntity<Object> importCsv(InputStream body) throws IOException {
+		try (BufferedReader reader = readerOf(body)) {
+			return importAccounts(AccountImportReaders.csv(reader));
+		}
+	}
+
+	/** Imports accounts from newline-delimited JSON, one account object per line. */
+	@PostMapping(path = "/import", consumes = APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<Object> importNdjson(InputStream body) throws IOException {
+		try (BufferedReader reader = readerOf(body)) {
+			return importAccounts(AccountImportReaders.ndjson(reader, accountReader));
+		}
+	}
+
+	private ResponseEntity<Object> importAccounts(Iterator<AccountImportRow> rows) {
+		log.info("Account import started");
+		try {
+			AccountImportResult result = this.accountImportService.importAccounts(rows);
+			return new ResponseEntity<>(result, HttpStatus.OK);
+		} catch (UncheckedIOException uioe) {
+			log.info("Account import stopped, unreadable request body");
+			String message = uioe.getCause() instanceof JsonProcessingException
+					? ((JsonProcessingException) uioe.getCause()).getOriginalMessage()
+					: uioe.getCause().getMessage();
+			return new ResponseEntity<>(message, HttpStatus.BAD_REQUEST);
+		}
+	}
+
+	private static BufferedReader readerOf(InputStream body) {
+		return new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+	}
 	
 }
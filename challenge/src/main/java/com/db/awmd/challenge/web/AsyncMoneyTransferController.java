@@ -0,0 +1,175 @@
+package com.db.awmd.challenge.web;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.Valid;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountMoneyTransferRequest;
+import com.db.awmd.challenge.exception.OverdraftsAccountException;
+import com.db.awmd.challenge.exception.TransferNotDurableException;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.MoneyTransferService;
+import com.db.awmd.challenge.service.NotificationService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Non-blocking variant of the account and transfer API. A transfer updates the
+ * balances on the request thread, which takes microseconds, and then hands the
+ * request back to the container until the transfer is committed, e.g. until
+ * the journal has forced it to disk. No request thread is held while waiting,
+ * so the number of transfers in flight is no longer bounded by the servlet
+ * thread pool.
+ *
+ * <p>Commits are completed by the journal's flusher thread. The response,
+ * and the notifications that go with it, are then produced on a small pool
+ * of completion threads, so a notification queue that blocks or runs work on
+ * the caller never holds up the group commit of other transfers.
+ */
+@RestController
+@RequestMapping("/v2/accounts")
+@Slf4j
+public class AsyncMoneyTransferController {
+
+	private final AccountsService accountsService;
+	private final MoneyTransferService moneyTransferService;
+	private final NotificationService notificationService;
+	private final IdempotencyCache idempotencyCache;
+	private final TransferAdmission transferAdmission;
+	private final ExecutorService completionExecutor;
+
+	@Autowired
+	public AsyncMoneyTransferController(AccountsService accountsService, MoneyTransferService moneyTransferService,
+			NotificationService notificationService, IdempotencyCache idempotencyCache,
+			TransferAdmission transferAdmission,
+			@Value("${transfer.async.completion-threads:2}") int completionThreads) {
+		this.accountsService = accountsService;
+		this.moneyTransferService = moneyTransferService;
+		this.notificationService = notificationService;
+		this.idempotencyCache = idempotencyCache;
+		this.transferAdmission = transferAdmission;
+		int threads = completionThreads > 0 ? completionThreads : Runtime.getRuntime().availableProcessors();
+		AtomicInteger threadCount = new AtomicInteger();
+		this.completionExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "transfer-completion-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		completionExecutor.shutdown();
+	}
+
+	/** Account lookups are served from memory and never block. */
+	@GetMapping(path = "/{accountId}")
+	public Account getAccount(@PathVariable String accountId) {
+		return this.accountsService.getAccount(accountId);
+	}
+
+	/**
+	 * Same contract as {@code PUT /v1/accounts/transfer}, including the optional
+	 * idempotency key and the 429 on admission, except that an unknown account
+	 * is answered with 404. A transfer holds its admission permit until it is
+	 * committed, not just while it has a thread.
+	 */
+	@PutMapping(path = "/transfer", consumes = MediaType.APPLICATION_JSON_VALUE)
+	public CompletableFuture<ResponseEntity<Object>> transferMoney(
+			@RequestBody @Valid AccountMoneyTransferRequest accountMoneyTransferRequest,
+			@RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKeyHeader,
+			@RequestHeader(name = "X-Client-Id", required = false) String clientIdHeader,
+			HttpServletRequest servletRequest) {
+
+		long wait = transferAdmission.tryAdmit(transferAdmission.clientIdOf(clientIdHeader, servletRequest),
+				accountMoneyTransferRequest.getAccountFromId());
+		if (wait != TransferAdmission.ADMITTED) {
+			return CompletableFuture.completedFuture(TransferAdmission.tooManyRequests(wait));
+		}
+		CompletableFuture<ResponseEntity<Object>> response;
+		try {
+			response = admittedTransfer(accountMoneyTransferRequest, idempotencyKeyHeader);
+		} catch (RuntimeException e) {
+			transferAdmission.release();
+			throw e;
+		}
+		return response.whenComplete((completed, failure) -> transferAdmission.release());
+	}
+
+	private CompletableFuture<ResponseEntity<Object>> admittedTransfer(
+			AccountMoneyTransferRequest accountMoneyTransferRequest, String idempotencyKeyHeader) {
+		String idempotencyKey = idempotencyKeyHeader != null ? idempotencyKeyHeader
+				: accountMoneyTransferRequest.getIdempotencyKey();
+		if (idempotencyKey == null) {
+			return executeTransfer(accountMoneyTransferRequest);
+		}
+		return idempotencyCache.executeAsync(idempotencyKey,
+				MoneyTransferController.fingerprintOf(accountMoneyTransferRequest),
+				() -> executeTransfer(accountMoneyTransferRequest),
+				() -> new ResponseEntity<>("Idempotency key " + idempotencyKey + " was used for a different transfer",
+						HttpStatus.UNPROCESSABLE_ENTITY))
+				.thenCompose(response -> response != null ? CompletableFuture.completedFuture(response)
+						// the key's first request released it: submit again, on our own executor
+						// rather than the thread that completed the other request
+						: CompletableFuture.supplyAsync(
+								() -> admittedTransfer(accountMoneyTransferRequest, idempotencyKeyHeader),
+								completionExecutor).thenCompose(Function.identity()));
+	}
+
+	private CompletableFuture<ResponseEntity<Object>> executeTransfer(AccountMoneyTransferRequest request) {
+		Account fromAccount = accountsService.getAccount(request.getAccountFromId());
+		Account toAccount = accountsService.getAccount(request.getAccountToId());
+		if (fromAccount == null || toAccount == null) {
+			String missing = fromAccount == null ? request.getAccountFromId() : request.getAccountToId();
+			return CompletableFuture.completedFuture(
+					new ResponseEntity<>("Account id " + missing + " not found", HttpStatus.NOT_FOUND));
+		}
+		BigDecimal transferAmount = request.getTransferAmount();
+		try {
+			CompletableFuture<Boolean> committed = this.moneyTransferService.transferMoneyAsync(fromAccount, toAccount,
+					transferAmount);
+			BiFunction<Boolean, Throwable, ResponseEntity<Object>> respond = (transferred, failure) -> {
+				Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+				if (cause != null && !(cause instanceof TransferNotDurableException)) {
+					log.info("Money transfer can not completed", cause);
+					return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+				}
+				TransferNotifications.notifyAboutTransfer(this.notificationService, fromAccount, toAccount,
+						transferAmount);
+				// a transfer the journal did not record has still moved the money
+				return cause == null ? new ResponseEntity<>(HttpStatus.OK)
+						: new ResponseEntity<>(cause.getMessage(), HttpStatus.ACCEPTED);
+			};
+			// already committed, e.g. without a journal: answer on the request thread
+			return committed.isDone() ? committed.handle(respond) : committed.handleAsync(respond, completionExecutor);
+		} catch (OverdraftsAccountException ode) {
+			return CompletableFuture.completedFuture(new ResponseEntity<>(ode.getMessage(), HttpStatus.BAD_REQUEST));
+		} catch (RuntimeException e) {
+			log.info("Money transfer can not completed");
+			return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR));
+		}
+	}
+}
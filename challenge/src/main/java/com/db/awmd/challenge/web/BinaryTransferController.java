@@ -0,0 +1,181 @@
+package com.db.awmd.challenge.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountBalance;
+import com.db.awmd.challenge.domain.MoneyTransferResult;
+import com.db.awmd.challenge.domain.TransferIngestResult;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.MalformedFrameException;
+import com.db.awmd.challenge.exception.OverdraftsAccountException;
+import com.db.awmd.challenge.exception.TransferNotDurableException;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.MoneyTransferService;
+import com.db.awmd.challenge.service.NotificationService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * High-volume ingestion of transfers as a stream of binary frames, see
+ * {@link TransferFrameCodec}. Frames are decoded and executed one by one as
+ * they arrive, in order, through the same {@link MoneyTransferService} as the
+ * JSON endpoint; the answer lists only the frames that failed.
+ *
+ * <p>A stream holds one admission permit and each frame is charged to the
+ * client and its source account like a single transfer. A frame over the
+ * rate ends the stream with 429; the frames before it stand and
+ * {@code received} tells the client where to resume.
+ *
+ * <p>A frame that fails unexpectedly also ends the stream, answered with 500
+ * and the counts so far; so does a stream longer than
+ * {@code transfer.ingest.max-frames}, with 400.
+ */
+@RestController
+@RequestMapping("/v1/accounts/transfer")
+@Slf4j
+public class BinaryTransferController {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final AccountsService accountsService;
+	private final MoneyTransferService moneyTransferService;
+	private final NotificationService notificationService;
+	private final TransferAdmission transferAdmission;
+	private final BlockingQueue<ByteBuffer> buffers;
+	private final int maxFrames;
+
+	@Autowired
+	public BinaryTransferController(AccountsService accountsService, MoneyTransferService moneyTransferService,
+			NotificationService notificationService, TransferAdmission transferAdmission,
+			@Value("${transfer.ingest.pooled-buffers:16}") int pooledBuffers,
+			@Value("${transfer.ingest.max-frames:1000000}") int maxFrames) {
+		this.accountsService = accountsService;
+		this.moneyTransferService = moneyTransferService;
+		this.notificationService = notificationService;
+		this.transferAdmission = transferAdmission;
+		this.maxFrames = maxFrames;
+		this.buffers = new ArrayBlockingQueue<>(pooledBuffers);
+	}
+
+	@PutMapping(path = "/frames", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+	public ResponseEntity<Object> ingest(InputStream body,
+			@RequestHeader(name = "X-Client-Id", required = false) String clientIdHeader,
+			HttpServletRequest servletRequest) throws IOException {
+		String clientId = transferAdmission.clientIdOf(clientIdHeader, servletRequest);
+		long wait = transferAdmission.tryAdmit(clientId, Collections.<String>emptyList());
+		if (wait != TransferAdmission.ADMITTED) {
+			return TransferAdmission.tooManyRequests(wait);
+		}
+		try {
+			return admittedIngest(body, clientId);
+		} finally {
+			transferAdmission.release();
+		}
+	}
+
+	private ResponseEntity<Object> admittedIngest(InputStream body, String clientId) throws IOException {
+		ByteBuffer buffer = buffers.poll();
+		if (buffer == null) {
+			buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		}
+		try {
+			TransferFrameCodec frames = new TransferFrameCodec(TransferFrameCodec.channelOf(body), buffer);
+			long received = 0;
+			long completed = 0;
+			List<MoneyTransferResult> failures = new ArrayList<>();
+			String error = null;
+			HttpStatus errorStatus = HttpStatus.BAD_REQUEST;
+			long wait = TransferAdmission.ADMITTED;
+			try {
+				for (TransferFrameCodec.Frame frame = frames.next(); frame != null; frame = frames.next()) {
+					if (received == maxFrames) {
+						error = "More than " + maxFrames + " frames in one request";
+						break;
+					}
+					wait = transferAdmission.tryCharge(clientId, frame.getFromAccountId());
+					if (wait != TransferAdmission.ADMITTED) {
+						error = "Too many transfers, retry in " + TransferAdmission.waitMillisOf(wait)
+								+ " ms from frame " + received;
+						break;
+					}
+					int index = (int) received++;
+					MoneyTransferResult failure;
+					try {
+						failure = transfer(index, frame);
+					} catch (RuntimeException e) {
+						log.warn("Transfer of frame {} failed, ingestion stopped", index, e);
+						failures.add(new MoneyTransferResult(index, TransferStatus.FAILED, "Transfer failed: " + e));
+						error = "Transfer of frame " + index + " failed";
+						errorStatus = HttpStatus.INTERNAL_SERVER_ERROR;
+						break;
+					}
+					if (failure == null || failure.getStatus().isApplied()) {
+						completed++;
+					}
+					if (failure != null) {
+						failures.add(failure);
+					}
+				}
+			} catch (MalformedFrameException mfe) {
+				log.info("Transfer ingestion stopped, {}", mfe.getMessage());
+				error = mfe.getMessage();
+			}
+			log.info("Ingested {} transfer frames, {} completed", received, completed);
+			TransferIngestResult result = new TransferIngestResult(received, completed, failures, error);
+			if (wait != TransferAdmission.ADMITTED) {
+				return TransferAdmission.tooManyRequests(wait, result);
+			}
+			return new ResponseEntity<>(result, error == null ? HttpStatus.OK : errorStatus);
+		} finally {
+			buffers.offer(buffer);
+		}
+	}
+
+	/** @return null when the transfer completed, otherwise why it did not or was not recorded */
+	private MoneyTransferResult transfer(int index, TransferFrameCodec.Frame frame) {
+		if (frame.getFromAccountId().isEmpty() || frame.getToAccountId().isEmpty()) {
+			return new MoneyTransferResult(index, TransferStatus.INVALID, "Account ids may not be empty");
+		}
+		if (frame.getAmount() <= 0) {
+			return new MoneyTransferResult(index, TransferStatus.INVALID, "Trasfer amount must be positive");
+		}
+		Account fromAccount = accountsService.getAccount(frame.getFromAccountId());
+		Account toAccount = accountsService.getAccount(frame.getToAccountId());
+		if (fromAccount == null || toAccount == null) {
+			return new MoneyTransferResult(index, TransferStatus.ACCOUNT_NOT_FOUND, "Account id "
+					+ (fromAccount == null ? frame.getFromAccountId() : frame.getToAccountId()) + " not found");
+		}
+		BigDecimal transferAmount = AccountBalance.toDecimal(frame.getAmount());
+		try {
+			moneyTransferService.transferMoney(fromAccount, toAccount, transferAmount);
+		} catch (OverdraftsAccountException ode) {
+			return new MoneyTransferResult(index, TransferStatus.OVERDRAFT, ode.getMessage());
+		} catch (TransferNotDurableException tnde) {
+			TransferNotifications.notifyAboutTransfer(notificationService, fromAccount, toAccount, transferAmount);
+			return new MoneyTransferResult(index, TransferStatus.NOT_DURABLE, tnde.getMessage());
+		}
+		TransferNotifications.notifyAboutTransfer(notificationService, fromAccount, toAccount, transferAmount);
+		return null;
+	}
+}
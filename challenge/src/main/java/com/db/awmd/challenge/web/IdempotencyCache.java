@@ -0,0 +1,166 @@
+package com.db.awmd.challenge.web;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers the response of recent requests by idempotency key, so a retried
+ * submission gets the stored response instead of executing again.
+ *
+ * <p>The first request for a key claims it and runs; concurrent duplicates
+ * wait for its response. Entries expire after a fixed time and the oldest
+ * are evicted first once the cache is full. A claim whose request is still
+ * running is neither expired nor evicted, since a retry would then run the
+ * request a second time; the cache can therefore exceed its limit by the
+ * number of requests in flight. Server errors are not kept, so a retry after
+ * a 5xx runs again.
+ *
+ * <p>A duplicate that waited for a request whose response was not kept is
+ * told to submit again, and does so on its own thread: the cache never runs
+ * one caller's request on the thread that completed another's.
+ */
+@Component
+public class IdempotencyCache {
+
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+	private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+	private final int maxEntries;
+	private final long ttlNanos;
+
+	@Autowired
+	public IdempotencyCache(@Value("${transfer.idempotency.max-entries:100000}") int maxEntries,
+			@Value("${transfer.idempotency.ttl-seconds:86400}") long ttlSeconds) {
+		this.maxEntries = maxEntries;
+		this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+	}
+
+	/**
+	 * Returns the stored response for the key, or runs the request and stores
+	 * its response.
+	 *
+	 * @param fingerprint identifies the request content; reusing a key for a
+	 *                    different request yields {@code conflict} instead
+	 */
+	public ResponseEntity<Object> execute(String key, Object fingerprint, Supplier<ResponseEntity<Object>> request,
+			Supplier<ResponseEntity<Object>> conflict) {
+		while (true) {
+			ResponseEntity<Object> response;
+			try {
+				response = executeAsync(key, fingerprint, () -> CompletableFuture.completedFuture(request.get()),
+						conflict).join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw e;
+			}
+			if (response != null) {
+				return response;
+			}
+		}
+	}
+
+	/**
+	 * Same as {@link #execute}, for requests that complete later. A duplicate
+	 * of a request still in flight gets a future of the original's response
+	 * rather than blocking. That future completes with {@code null} if the
+	 * original released the key without a response to keep; the caller then
+	 * submits again, on a thread of its own.
+	 */
+	public CompletableFuture<ResponseEntity<Object>> executeAsync(String key, Object fingerprint,
+			Supplier<CompletableFuture<ResponseEntity<Object>>> request, Supplier<ResponseEntity<Object>> conflict) {
+		while (true) {
+			long now = System.nanoTime();
+			evict(now);
+			Entry claimed = new Entry(key, fingerprint, now + ttlNanos);
+			Entry existing = entries.putIfAbsent(key, claimed);
+			if (existing != null && existing.response.isDone() && existing.expiresAtNanos - now < 0) {
+				entries.remove(key, existing);
+				continue;
+			}
+			if (existing != null) {
+				return existing.response.thenApply(response -> {
+					if (response == null) {
+						return null;
+					}
+					return existing.fingerprint.equals(fingerprint) ? response : conflict.get();
+				});
+			}
+			insertionOrder.add(claimed);
+			CompletableFuture<ResponseEntity<Object>> response;
+			try {
+				response = request.get();
+			} catch (RuntimeException e) {
+				release(claimed);
+				throw e;
+			}
+			return response.whenComplete((completed, failure) -> {
+				if (completed == null || completed.getStatusCode().is5xxServerError()) {
+					release(claimed);
+				} else {
+					claimed.response.complete(completed);
+				}
+			});
+		}
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	/** Forgets a claim whose response is not kept and wakes its duplicates to submit again. */
+	private void release(Entry claimed) {
+		entries.remove(claimed.key, claimed);
+		insertionOrder.remove(claimed);
+		claimed.response.complete(null);
+	}
+
+	/**
+	 * Removes completed entries oldest first while they are expired or the
+	 * cache is over its limit, stepping over claims still in flight and
+	 * dropping entries that were already replaced or released.
+	 */
+	private void evict(long now) {
+		Iterator<Entry> oldestFirst = insertionOrder.iterator();
+		while (oldestFirst.hasNext()) {
+			Entry oldest = oldestFirst.next();
+			if (entries.get(oldest.key) != oldest) {
+				oldestFirst.remove();
+				continue;
+			}
+			if (!oldest.response.isDone()) {
+				continue;
+			}
+			if (oldest.expiresAtNanos - now >= 0 && entries.size() <= maxEntries) {
+				return;
+			}
+			oldestFirst.remove();
+			entries.remove(oldest.key, oldest);
+		}
+	}
+
+	private static final class Entry {
+
+		private final String key;
+		private final Object fingerprint;
+		private final long expiresAtNanos;
+		private final CompletableFuture<ResponseEntity<Object>> response = new CompletableFuture<>();
+
+		private Entry(String key, Object fingerprint, long expiresAtNanos) {
+			this.key = key;
+			this.fingerprint = fingerprint;
+			this.expiresAtNanos = expiresAtNanos;
+		}
+	}
+}
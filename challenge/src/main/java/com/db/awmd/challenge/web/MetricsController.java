@@ -0,0 +1,103 @@
+package com.db.awmd.challenge.web;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.db.awmd.challenge.metrics.TransferEventLog;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.repository.NettingMoneyTransferRepository;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.AsyncNotificationService;
+import com.db.awmd.challenge.service.TransferScheduler;
+
+/**
+ * Actuator-style view of the transfer, account, read cache, notification, admission and event log
+ * metrics, plus the write savings of the netting engine when it is enabled.
+ * Latencies are reported in microseconds since application start.
+ */
+@RestController
+@RequestMapping("/v1/metrics")
+public class MetricsController {
+
+	private final TransferMetrics transferMetrics;
+	private final AccountsService accountsService;
+	private final AsyncNotificationService notificationService;
+	private final TransferAdmission transferAdmission;
+	private final TransferEventLog transferEventLog;
+	private final TransferScheduler transferScheduler;
+	private final AccountReadCache accountReadCache;
+	private NettingMoneyTransferRepository nettingEngine;
+
+	@Autowired
+	public MetricsController(TransferMetrics transferMetrics, AccountsService accountsService,
+			AsyncNotificationService notificationService, TransferAdmission transferAdmission,
+			TransferEventLog transferEventLog, TransferScheduler transferScheduler, AccountReadCache accountReadCache) {
+		this.transferMetrics = transferMetrics;
+		this.accountsService = accountsService;
+		this.notificationService = notificationService;
+		this.transferAdmission = transferAdmission;
+		this.transferEventLog = transferEventLog;
+		this.transferScheduler = transferScheduler;
+		this.accountReadCache = accountReadCache;
+	}
+
+	@Autowired(required = false)
+	public void setNettingEngine(NettingMoneyTransferRepository nettingEngine) {
+		this.nettingEngine = nettingEngine;
+	}
+
+	@GetMapping
+	public Map<String, Object> metrics() {
+		Map<String, Object> accounts = new LinkedHashMap<>();
+		accounts.put("count", accountsService.getAccountsRepository().countAccounts());
+
+		Map<String, Object> readCache = new LinkedHashMap<>();
+		readCache.put("hits", accountReadCache.getHits());
+		readCache.put("misses", accountReadCache.getMisses());
+		readCache.put("unknownIds", accountReadCache.getUnknownIds());
+		accounts.put("readCache", readCache);
+
+		Map<String, Object> notifications = new LinkedHashMap<>();
+		notifications.put("enqueued", notificationService.getEnqueued());
+		notifications.put("delivered", notificationService.getDelivered());
+		notifications.put("dropped", notificationService.getDropped());
+		notifications.put("retried", notificationService.getRetried());
+		notifications.put("failed", notificationService.getFailed());
+		notifications.put("queueDepth", notificationService.getQueueDepth());
+		notifications.put("pendingRetries", notificationService.getPendingRetries());
+		notifications.put("lagMicros", notificationService.getDeliveryLag().summary());
+
+		Map<String, Object> admission = new LinkedHashMap<>();
+		admission.put("inFlight", transferAdmission.getInFlight());
+		admission.put("rejectedBusy", transferAdmission.getRejectedBusy());
+		admission.put("rejectedClient", transferAdmission.getRejectedClient());
+		admission.put("rejectedAccount", transferAdmission.getRejectedAccount());
+
+		Map<String, Object> eventLog = new LinkedHashMap<>();
+		eventLog.put("written", transferEventLog.getWritten());
+		eventLog.put("dropped", transferEventLog.getDropped());
+
+		Map<String, Object> metrics = new LinkedHashMap<>();
+		metrics.put("transfers", transferMetrics.summary());
+		if (nettingEngine != null) {
+			Map<String, Object> netting = new LinkedHashMap<>();
+			netting.put("windows", nettingEngine.getWindows());
+			netting.put("appliedTransfers", nettingEngine.getAppliedTransfers());
+			netting.put("accountWrites", nettingEngine.getAccountWrites());
+			netting.put("writeReduction", nettingEngine.getWriteReduction());
+			netting.put("fallbacks", nettingEngine.getFallbacks());
+			metrics.put("netting", netting);
+		}
+		metrics.put("accounts", accounts);
+		metrics.put("notifications", notifications);
+		metrics.put("admission", admission);
+		metrics.put("eventLog", eventLog);
+		metrics.put("scheduledPending", transferScheduler.getPending());
+		return metrics;
+	}
+}
@@ -1,7 +1,15 @@
 package com.db.awmd.challenge.web;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,15 +18,27 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.domain.AccountMoneyTransferRequest;
+import com.db.awmd.challenge.domain.MoneyTransferResult;
+import com.db.awmd.challenge.domain.MultiLegTransferRequest;
+import com.db.awmd.challenge.domain.TransferBatchMode;
+import com.db.awmd.challenge.domain.TransferStatus;
 import com.db.awmd.challenge.exception.OverdraftsAccountException;
+import com.db.awmd.challenge.exception.TransferNotDurableException;
 import com.db.awmd.challenge.service.AccountsService;
-import com.db.awmd.challenge.service.EmailNotificationService;
+import com.db.awmd.challenge.service.BatchMoneyTransferService;
 import com.db.awmd.challenge.service.MoneyTransferService;
+import com.db.awmd.challenge.service.NotificationService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -29,22 +49,65 @@ public class MoneyTransferController {
 	
 	private final AccountsService accountsService;
 	private final MoneyTransferService moneyTransferService;
-	private final EmailNotificationService emailNotificationService;
+	private final NotificationService notificationService;
+	private final BatchMoneyTransferService batchMoneyTransferService;
+	private final ObjectReader transferRequestReader;
+	private final IdempotencyCache idempotencyCache;
+	private final TransferAdmission transferAdmission;
 	
 	
 	@Autowired
-	public MoneyTransferController(AccountsService accountsService , MoneyTransferService moneyTransferService) {
+	public MoneyTransferController(AccountsService accountsService , MoneyTransferService moneyTransferService,
+			NotificationService notificationService, BatchMoneyTransferService batchMoneyTransferService,
+			ObjectMapper objectMapper, IdempotencyCache idempotencyCache, TransferAdmission transferAdmission) {
 		this.accountsService = accountsService;
 		this.moneyTransferService = moneyTransferService;
-		this.emailNotificationService = new EmailNotificationService();
+		this.notificationService = notificationService;
+		this.batchMoneyTransferService = batchMoneyTransferService;
+		this.transferRequestReader = objectMapper.readerFor(AccountMoneyTransferRequest.class);
+		this.idempotencyCache = idempotencyCache;
+		this.transferAdmission = transferAdmission;
 	}
 
+		/**
+		 * Transfers money between two accounts. When an idempotency key is given,
+		 * either as the {@code Idempotency-Key} header or in the body, a repeated
+		 * submission returns the first outcome without transferring or notifying
+		 * again. Transfers over the client's or the source account's rate, or
+		 * beyond the cap on transfers in flight, are answered with 429.
+		 */
 		@PutMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
 		public ResponseEntity<Object> transferMoney(
-				@RequestBody @Valid AccountMoneyTransferRequest accountMoneyTransferRequest) {
+				@RequestBody @Valid AccountMoneyTransferRequest accountMoneyTransferRequest,
+				@RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKeyHeader,
+				@RequestHeader(name = "X-Client-Id", required = false) String clientIdHeader,
+				HttpServletRequest servletRequest) {
+
+			long wait = transferAdmission.tryAdmit(transferAdmission.clientIdOf(clientIdHeader, servletRequest),
+					accountMoneyTransferRequest.getAccountFromId());
+			if (wait != TransferAdmission.ADMITTED) {
+				return TransferAdmission.tooManyRequests(wait);
+			}
+			try {
+				return admittedTransfer(accountMoneyTransferRequest, idempotencyKeyHeader);
+			} finally {
+				transferAdmission.release();
+			}
+		}
+
+		private ResponseEntity<Object> admittedTransfer(AccountMoneyTransferRequest accountMoneyTransferRequest,
+				String idempotencyKeyHeader) {
+			String idempotencyKey = idempotencyKeyHeader != null ? idempotencyKeyHeader
+					: accountMoneyTransferRequest.getIdempotencyKey();
+			if (idempotencyKey == null) {
+				return executeTransfer(accountMoneyTransferRequest);
+			}
+			return idempotencyCache.execute(idempotencyKey, fingerprintOf(accountMoneyTransferRequest),
+					() -> executeTransfer(accountMoneyTransferRequest), () -> conflict(idempotencyKey));
+		}
+
+		private ResponseEntity<Object> executeTransfer(AccountMoneyTransferRequest accountMoneyTransferRequest) {
 
-			log.info("Money transfer initiated from account:{} to account:{}",
-					accountMoneyTransferRequest.getAccountFromId(), accountMoneyTransferRequest.getAccountToId());
 			try {
 				Account fromAccount = accountsService.getAccount(accountMoneyTransferRequest.getAccountFromId());
 				Account toAccount = accountsService.getAccount(accountMoneyTransferRequest.getAccountToId());
@@ -52,16 +115,17 @@ public class MoneyTransferController {
 
 				try {
 					if (this.moneyTransferService.transferMoney(fromAccount, toAccount, trasferAmount)) {
-						this.emailNotificationService.notifyAboutTransfer(fromAccount,
-								trasferAmount + " amount transfered to " + toAccount.getAccountId());
-						this.emailNotificationService.notifyAboutTransfer(toAccount,
-								trasferAmount + " amount transfered from " + fromAccount.getAccountId());
-						log.info("Money transfer completed sucessfully");
+						TransferNotifications.notifyAboutTransfer(this.notificationService, fromAccount, toAccount,
+								trasferAmount);
 						return new ResponseEntity<>(HttpStatus.OK);
 					}
 				} catch (OverdraftsAccountException ode) {
-					log.info("Overdraft!! Money transfer can not completed");
 					return new ResponseEntity<>(ode.getMessage(), HttpStatus.BAD_REQUEST);
+				} catch (TransferNotDurableException tnde) {
+					// the money has moved: not an error the client should retry
+					TransferNotifications.notifyAboutTransfer(this.notificationService, fromAccount, toAccount,
+							trasferAmount);
+					return new ResponseEntity<>(tnde.getMessage(), HttpStatus.ACCEPTED);
 				}
 			} catch (Exception e) {
 				log.info("Money transfer can not completed");
@@ -70,4 +134,230 @@ public class MoneyTransferController {
 			return new ResponseEntity<>(HttpStatus.OK);
 		}
 
+		/**
+		 * Accepts a JSON array of transfer requests. The array is read element by
+		 * element from the request stream and answered with one result per element,
+		 * in the same order. An element carrying an idempotency key runs at most
+		 * once across submissions and within the batch; a repeat is answered with
+		 * the first outcome without transferring or notifying again. The batch is
+		 * admitted as a whole and charged one token per transfer.
+		 */
+		@PutMapping(path = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+		public ResponseEntity<Object> transferMoneyBatch(InputStream body,
+				@RequestParam(defaultValue = "BEST_EFFORT") TransferBatchMode mode,
+				@RequestHeader(name = "X-Client-Id", required = false) String clientIdHeader,
+				HttpServletRequest servletRequest) throws IOException {
+
+			List<AccountMoneyTransferRequest> requests = new ArrayList<>();
+			try (MappingIterator<AccountMoneyTransferRequest> items = transferRequestReader.readValues(body)) {
+				while (items.hasNextValue()) {
+					requests.add(items.nextValue());
+				}
+			} catch (JsonProcessingException jpe) {
+				log.info("Money transfer batch rejected, malformed request body");
+				return new ResponseEntity<>(jpe.getOriginalMessage(), HttpStatus.BAD_REQUEST);
+			}
+			log.info("Money transfer batch of {} transfers initiated in mode {}", requests.size(), mode);
+
+			List<String> fromAccountIds = new ArrayList<>(requests.size());
+			for (AccountMoneyTransferRequest request : requests) {
+				fromAccountIds.add(request.getAccountFromId());
+			}
+			long wait = transferAdmission.tryAdmit(transferAdmission.clientIdOf(clientIdHeader, servletRequest),
+					fromAccountIds);
+			if (wait != TransferAdmission.ADMITTED) {
+				return TransferAdmission.tooManyRequests(wait);
+			}
+			try {
+				return admittedBatch(requests, mode);
+			} finally {
+				transferAdmission.release();
+			}
+		}
+
+		private ResponseEntity<Object> admittedBatch(List<AccountMoneyTransferRequest> requests, TransferBatchMode mode) {
+			MoneyTransferResult[] settled = new MoneyTransferResult[requests.size()];
+			Map<Integer, CompletableFuture<ResponseEntity<Object>>> claims = new HashMap<>();
+			Map<Integer, CompletableFuture<ResponseEntity<Object>>> inFlight = new HashMap<>();
+			Map<Integer, Integer> repeats = new HashMap<>();
+			claimIdempotencyKeys(requests, settled, claims, inFlight, repeats);
+
+			List<MoneyTransferResult> results;
+			try {
+				results = this.batchMoneyTransferService.transferMoney(requests, mode, settled);
+				storeOutcomes(claims, results, mode);
+			} finally {
+				// claims left open by a failure are released, so a retry runs again
+				for (CompletableFuture<ResponseEntity<Object>> claim : claims.values()) {
+					claim.complete(null);
+				}
+			}
+			if (mode == TransferBatchMode.BEST_EFFORT) {
+				for (Map.Entry<Integer, CompletableFuture<ResponseEntity<Object>>> replay : inFlight.entrySet()) {
+					results.set(replay.getKey(), resultOf(replay.getKey(), replay.getValue().join()));
+				}
+			}
+			for (Map.Entry<Integer, Integer> repeat : repeats.entrySet()) {
+				MoneyTransferResult first = results.get(repeat.getValue());
+				results.set(repeat.getKey(), new MoneyTransferResult(repeat.getKey(), first.getStatus(), first.getMessage()));
+			}
+
+			boolean allCompleted = true;
+			for (MoneyTransferResult result : results) {
+				if (!result.getStatus().isApplied()) {
+					allCompleted = false;
+				} else if (requests.get(result.getIndex()).getIdempotencyKey() == null
+						|| claims.containsKey(result.getIndex())) {
+					notifyAboutTransfer(requests.get(result.getIndex()));
+				}
+			}
+			log.info("Money transfer batch finished");
+			return new ResponseEntity<>(results,
+					allCompleted || mode == TransferBatchMode.BEST_EFFORT ? HttpStatus.OK : HttpStatus.BAD_REQUEST);
+		}
+
+		/**
+		 * Claims the idempotency key of every keyed element. Elements whose key
+		 * is claimed here are left to run; the others are settled with the stored
+		 * outcome, or with a placeholder while the key's first request is still in
+		 * flight elsewhere. A key repeated within the batch settles the repeat as
+		 * completed for now, to be replaced by the first element's outcome.
+		 */
+		private void claimIdempotencyKeys(List<AccountMoneyTransferRequest> requests, MoneyTransferResult[] settled,
+				Map<Integer, CompletableFuture<ResponseEntity<Object>>> claims,
+				Map<Integer, CompletableFuture<ResponseEntity<Object>>> inFlight, Map<Integer, Integer> repeats) {
+			Map<String, Integer> firstWithKey = new HashMap<>();
+			for (int i = 0; i < requests.size(); i++) {
+				AccountMoneyTransferRequest request = requests.get(i);
+				String key = request.getIdempotencyKey();
+				if (key == null || request.getTransferAmount() == null) {
+					continue;
+				}
+				Integer first = firstWithKey.putIfAbsent(key, i);
+				if (first != null) {
+					if (fingerprintOf(requests.get(first)).equals(fingerprintOf(request))) {
+						repeats.put(i, first);
+						settled[i] = MoneyTransferResult.completed(i);
+					} else {
+						settled[i] = resultOf(i, conflict(key));
+					}
+					continue;
+				}
+				CompletableFuture<ResponseEntity<Object>> claim = new CompletableFuture<>();
+				boolean[] claimed = new boolean[1];
+				CompletableFuture<ResponseEntity<Object>> response = idempotencyCache.executeAsync(key,
+						fingerprintOf(request), () -> {
+							claimed[0] = true;
+							return claim;
+						}, () -> conflict(key));
+				if (claimed[0]) {
+					claims.put(i, claim);
+				} else if (response.isDone()) {
+					settled[i] = resultOf(i, response.join());
+				} else {
+					inFlight.put(i, response);
+					settled[i] = new MoneyTransferResult(i, TransferStatus.ABORTED,
+							"Transfer with idempotency key " + key + " is still in progress");
+				}
+			}
+		}
+
+		/**
+		 * Keeps the outcome of every claimed element that changed nothing a retry
+		 * could do differently: completed and overdrawn transfers of a best-effort
+		 * batch, and all transfers of an all-or-nothing batch that completed.
+		 * Other claims are released.
+		 */
+		private static void storeOutcomes(Map<Integer, CompletableFuture<ResponseEntity<Object>>> claims,
+				List<MoneyTransferResult> results, TransferBatchMode mode) {
+			boolean allCompleted = true;
+			for (MoneyTransferResult result : results) {
+				allCompleted &= result.getStatus().isApplied();
+			}
+			for (Map.Entry<Integer, CompletableFuture<ResponseEntity<Object>>> claim : claims.entrySet()) {
+				MoneyTransferResult result = results.get(claim.getKey());
+				boolean keep = mode == TransferBatchMode.ALL_OR_NOTHING ? allCompleted
+						: result.getStatus().isApplied() || result.getStatus() == TransferStatus.OVERDRAFT;
+				claim.getValue().complete(keep ? new ResponseEntity<>(result, statusOf(result)) : null);
+			}
+		}
+
+		private static HttpStatus statusOf(MoneyTransferResult result) {
+			if (result.getStatus() == TransferStatus.COMPLETED) {
+				return HttpStatus.OK;
+			}
+			return result.getStatus() == TransferStatus.NOT_DURABLE ? HttpStatus.ACCEPTED : HttpStatus.BAD_REQUEST;
+		}
+
+		/**
+		 * Turns a stored response, which may come from the single transfer
+		 * endpoint, into the result of batch element {@code index}.
+		 */
+		private static MoneyTransferResult resultOf(int index, ResponseEntity<Object> response) {
+			if (response == null) {
+				return new MoneyTransferResult(index, TransferStatus.ABORTED, "Transfer did not complete, submit it again");
+			}
+			if (response.getBody() instanceof MoneyTransferResult) {
+				MoneyTransferResult stored = (MoneyTransferResult) response.getBody();
+				return new MoneyTransferResult(index, stored.getStatus(), stored.getMessage());
+			}
+			if (response.getStatusCode() == HttpStatus.ACCEPTED) {
+				return new MoneyTransferResult(index, TransferStatus.NOT_DURABLE, String.valueOf(response.getBody()));
+			}
+			if (response.getStatusCode().is2xxSuccessful()) {
+				return MoneyTransferResult.completed(index);
+			}
+			return new MoneyTransferResult(index,
+					response.getStatusCode() == HttpStatus.UNPROCESSABLE_ENTITY ? TransferStatus.INVALID
+							: TransferStatus.OVERDRAFT,
+					String.valueOf(response.getBody()));
+		}
+
+		private static ResponseEntity<Object> conflict(String idempotencyKey) {
+			return new ResponseEntity<>("Idempotency key " + idempotencyKey + " was used for a different transfer",
+					HttpStatus.UNPROCESSABLE_ENTITY);
+		}
+
+		/**
+		 * Debits one account and credits every leg in a single atomic transfer,
+		 * answered with one result per leg. It counts as one transfer from the
+		 * debited account for admission.
+		 */
+		@PutMapping(path = "/multi-leg", consumes = MediaType.APPLICATION_JSON_VALUE)
+		public ResponseEntity<Object> transferMultiLeg(@RequestBody @Valid MultiLegTransferRequest request,
+				@RequestHeader(name = "X-Client-Id", required = false) String clientIdHeader,
+				HttpServletRequest servletRequest) {
+
+			long wait = transferAdmission.tryAdmit(transferAdmission.clientIdOf(clientIdHeader, servletRequest),
+					request.getAccountFromId());
+			if (wait != TransferAdmission.ADMITTED) {
+				return TransferAdmission.tooManyRequests(wait);
+			}
+			try {
+				List<MoneyTransferResult> results = this.batchMoneyTransferService.transferMultiLeg(request);
+				boolean completed = results.get(0).getStatus().isApplied();
+				if (completed) {
+					Account fromAccount = accountsService.getAccount(request.getAccountFromId());
+					for (MultiLegTransferRequest.Leg leg : request.getLegs()) {
+						TransferNotifications.notifyAboutTransfer(this.notificationService, fromAccount,
+								accountsService.getAccount(leg.getAccountToId()), leg.getTransferAmount());
+					}
+				}
+				return new ResponseEntity<>(results, completed ? HttpStatus.OK : HttpStatus.BAD_REQUEST);
+			} finally {
+				transferAdmission.release();
+			}
+		}
+
+		static String fingerprintOf(AccountMoneyTransferRequest request) {
+			return request.getAccountFromId() + '|' + request.getAccountToId() + '|'
+					+ request.getTransferAmount().stripTrailingZeros().toPlainString();
+		}
+
+		private void notifyAboutTransfer(AccountMoneyTransferRequest request) {
+			TransferNotifications.notifyAboutTransfer(this.notificationService,
+					accountsService.getAccount(request.getAccountFromId()),
+					accountsService.getAccount(request.getAccountToId()), request.getTransferAmount());
+		}
+
 }
@@ -0,0 +1,80 @@
+package com.db.awmd.challenge.web;
+
+import javax.validation.Valid;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.db.awmd.challenge.domain.ScheduledTransfer;
+import com.db.awmd.challenge.domain.ScheduledTransferRequest;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.TransferScheduler;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Value-dated transfers and standing orders. The transfer is accepted now and
+ * executed by the {@link TransferScheduler} when due; poll it by id to see
+ * how its executions went.
+ */
+@RestController
+@RequestMapping("/v1/accounts/transfer/scheduled")
+@Slf4j
+public class ScheduledTransferController {
+
+	private final AccountsService accountsService;
+	private final TransferScheduler transferScheduler;
+
+	@Autowired
+	public ScheduledTransferController(AccountsService accountsService, TransferScheduler transferScheduler) {
+		this.accountsService = accountsService;
+		this.transferScheduler = transferScheduler;
+	}
+
+	@PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<Object> scheduleTransfer(@RequestBody @Valid ScheduledTransferRequest request) {
+		if (request.getExecutions() > 1 && request.getRepeatIntervalMillis() <= 0) {
+			return new ResponseEntity<>("repeatIntervalMillis must be positive for more than one execution",
+					HttpStatus.BAD_REQUEST);
+		}
+		for (String accountId : new String[] { request.getAccountFromId(), request.getAccountToId() }) {
+			if (this.accountsService.getAccount(accountId) == null) {
+				return new ResponseEntity<>("Account id " + accountId + " not found", HttpStatus.NOT_FOUND);
+			}
+		}
+		ScheduledTransfer transfer = this.transferScheduler.schedule(request);
+		log.info("Transfer {} scheduled from account:{} to account:{}", transfer.getId(), request.getAccountFromId(),
+				request.getAccountToId());
+		return new ResponseEntity<>(transfer, HttpStatus.CREATED);
+	}
+
+	@GetMapping(path = "/{id}")
+	public ResponseEntity<Object> getScheduledTransfer(@PathVariable String id) {
+		ScheduledTransfer transfer = this.transferScheduler.getScheduledTransfer(id);
+		if (transfer == null) {
+			return new ResponseEntity<>("Scheduled transfer " + id + " not found", HttpStatus.NOT_FOUND);
+		}
+		return new ResponseEntity<>(transfer, HttpStatus.OK);
+	}
+
+	/** Cancels the executions still to come; 409 once it has finished. */
+	@DeleteMapping(path = "/{id}")
+	public ResponseEntity<Object> cancelScheduledTransfer(@PathVariable String id) {
+		if (this.transferScheduler.getScheduledTransfer(id) == null) {
+			return new ResponseEntity<>("Scheduled transfer " + id + " not found", HttpStatus.NOT_FOUND);
+		}
+		if (!this.transferScheduler.cancel(id)) {
+			return new ResponseEntity<>("Scheduled transfer " + id + " has already finished", HttpStatus.CONFLICT);
+		}
+		return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+	}
+}
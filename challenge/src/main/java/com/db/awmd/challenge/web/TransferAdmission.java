@@ -0,0 +1,316 @@
+package com.db.awmd.challenge.web;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * Admission control in front of the transfer endpoints: a cap on transfers in
+ * flight across all clients, and a token bucket per client and per source
+ * account. A request over any limit is turned away at once with a hint of
+ * how long to wait, instead of queueing for a servlet thread.
+ *
+ * <p>Each bucket is a single {@link AtomicLong} holding the time at which it
+ * will be full again (the generic cell rate algorithm), so admitting takes
+ * one compare-and-set per bucket and allocates nothing once a key has been
+ * seen. A bucket that has refilled carries no state worth keeping and is
+ * dropped when the table grows past its bound.
+ *
+ * <p>A request carrying many transfers holds one permit and is charged a
+ * token per transfer. It is admitted while its buckets are not empty and may
+ * run them into debt, which later requests then wait out, so a batch cannot
+ * move more than the rate allows just by being one request.
+ *
+ * <p>Clients are told apart by their authenticated principal, else by their
+ * remote address. The {@code X-Client-Id} header is only believed with
+ * {@code transfer.admission.trust-client-id-header}, for deployments behind
+ * a proxy that sets it; otherwise any caller could pick a fresh bucket.
+ */
+@Component
+public class TransferAdmission {
+
+	/** Returned by {@link #tryAdmit} when the request may proceed. */
+	public static final long ADMITTED = 0;
+
+	private static final long NEVER_USED = Long.MIN_VALUE;
+
+	private final int maxConcurrent;
+	private final long busyRetryNanos;
+	private final boolean trustClientIdHeader;
+	private final Buckets clients;
+	private final Buckets accounts;
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private final LongAdder rejectedBusy = new LongAdder();
+	private final LongAdder rejectedClient = new LongAdder();
+	private final LongAdder rejectedAccount = new LongAdder();
+
+	public TransferAdmission(int maxConcurrent, long busyRetryMillis, double clientRate, int clientBurst,
+			double accountRate, int accountBurst, int maxTrackedKeys) {
+		this(maxConcurrent, busyRetryMillis, clientRate, clientBurst, accountRate, accountBurst, maxTrackedKeys, false);
+	}
+
+	/**
+	 * Limits of zero or less are off. Rates are per second, bursts are the
+	 * number of requests a full bucket admits back to back.
+	 */
+	@Autowired
+	public TransferAdmission(@Value("${transfer.admission.max-concurrent:0}") int maxConcurrent,
+			@Value("${transfer.admission.busy-retry-ms:50}") long busyRetryMillis,
+			@Value("${transfer.admission.client-rate:0}") double clientRate,
+			@Value("${transfer.admission.client-burst:1}") int clientBurst,
+			@Value("${transfer.admission.account-rate:0}") double accountRate,
+			@Value("${transfer.admission.account-burst:1}") int accountBurst,
+			@Value("${transfer.admission.max-tracked-keys:100000}") int maxTrackedKeys,
+			@Value("${transfer.admission.trust-client-id-header:false}") boolean trustClientIdHeader) {
+		this.maxConcurrent = maxConcurrent;
+		this.trustClientIdHeader = trustClientIdHeader;
+		this.busyRetryNanos = Math.max(1, TimeUnit.MILLISECONDS.toNanos(busyRetryMillis));
+		this.clients = clientRate > 0 ? new Buckets(clientRate, clientBurst, maxTrackedKeys) : null;
+		this.accounts = accountRate > 0 ? new Buckets(accountRate, accountBurst, maxTrackedKeys) : null;
+	}
+
+	/**
+	 * Admits a transfer from the client out of the account. When admitted the
+	 * caller holds a concurrency permit and must {@link #release} it once the
+	 * transfer has finished.
+	 *
+	 * @return {@link #ADMITTED}, or the nanoseconds to wait before retrying
+	 */
+	public long tryAdmit(String clientId, String accountId) {
+		if (!acquirePermit()) {
+			rejectedBusy.increment();
+			return busyRetryNanos;
+		}
+		long wait = tryCharge(clientId, accountId);
+		if (wait != ADMITTED) {
+			release();
+		}
+		return wait;
+	}
+
+	/**
+	 * Admits a request carrying one transfer out of each of the accounts, in
+	 * any number: one permit, and a token per transfer from the client's and
+	 * from each account's bucket. Ids that are null, of transfers that will
+	 * be refused as invalid, are charged to the client only.
+	 *
+	 * @return {@link #ADMITTED}, or the nanoseconds to wait before retrying
+	 */
+	public long tryAdmit(String clientId, List<String> accountIds) {
+		if (!acquirePermit()) {
+			rejectedBusy.increment();
+			return busyRetryNanos;
+		}
+		long now = System.nanoTime();
+		long wait = clients == null ? ADMITTED : clients.take(clientId, now, accountIds.size());
+		if (wait != ADMITTED) {
+			release();
+			rejectedClient.increment();
+			return wait;
+		}
+		if (accounts == null) {
+			return ADMITTED;
+		}
+		Map<String, Integer> debits = new HashMap<>();
+		for (String accountId : accountIds) {
+			if (accountId != null) {
+				debits.merge(accountId, 1, Integer::sum);
+			}
+		}
+		List<Map.Entry<String, Integer>> charged = new ArrayList<>(debits.size());
+		for (Map.Entry<String, Integer> debit : debits.entrySet()) {
+			wait = accounts.take(debit.getKey(), now, debit.getValue());
+			if (wait != ADMITTED) {
+				for (Map.Entry<String, Integer> taken : charged) {
+					accounts.giveBack(taken.getKey(), taken.getValue());
+				}
+				if (clients != null) {
+					clients.giveBack(clientId, accountIds.size());
+				}
+				release();
+				rejectedAccount.increment();
+				return wait;
+			}
+			charged.add(debit);
+		}
+		return ADMITTED;
+	}
+
+	/**
+	 * Charges one more transfer to the client and the account, for a request
+	 * that already holds its permit and learns its transfers one at a time.
+	 *
+	 * @return {@link #ADMITTED}, or the nanoseconds to wait before retrying
+	 */
+	public long tryCharge(String clientId, String accountId) {
+		long now = System.nanoTime();
+		long wait = clients == null ? ADMITTED : clients.take(clientId, now, 1);
+		if (wait != ADMITTED) {
+			rejectedClient.increment();
+			return wait;
+		}
+		wait = accounts == null ? ADMITTED : accounts.take(accountId, now, 1);
+		if (wait != ADMITTED) {
+			if (clients != null) {
+				clients.giveBack(clientId, 1);
+			}
+			rejectedAccount.increment();
+			return wait;
+		}
+		return ADMITTED;
+	}
+
+	public void release() {
+		if (maxConcurrent > 0) {
+			inFlight.decrementAndGet();
+		}
+	}
+
+	/**
+	 * The authenticated principal, else the {@code X-Client-Id} header when it
+	 * is trusted, else the remote address.
+	 */
+	public String clientIdOf(String clientIdHeader, HttpServletRequest request) {
+		Principal principal = request.getUserPrincipal();
+		if (principal != null) {
+			return "principal:" + principal.getName();
+		}
+		if (trustClientIdHeader && clientIdHeader != null) {
+			return "client:" + clientIdHeader;
+		}
+		return "address:" + request.getRemoteAddr();
+	}
+
+	/** 429 with the wait as a {@code Retry-After} header in whole seconds, rounded up. */
+	public static ResponseEntity<Object> tooManyRequests(long waitNanos) {
+		return tooManyRequests(waitNanos, "Too many transfers, retry in " + waitMillisOf(waitNanos) + " ms");
+	}
+
+	/** Same as {@link #tooManyRequests(long)} with a body of the caller's own. */
+	public static ResponseEntity<Object> tooManyRequests(long waitNanos, Object body) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.RETRY_AFTER, Long.toString((waitMillisOf(waitNanos) + 999) / 1000));
+		return new ResponseEntity<>(body, headers, HttpStatus.TOO_MANY_REQUESTS);
+	}
+
+	public static long waitMillisOf(long waitNanos) {
+		return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos + 999_999));
+	}
+
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	public long getRejectedBusy() {
+		return rejectedBusy.sum();
+	}
+
+	public long getRejectedClient() {
+		return rejectedClient.sum();
+	}
+
+	public long getRejectedAccount() {
+		return rejectedAccount.sum();
+	}
+
+	private boolean acquirePermit() {
+		if (maxConcurrent <= 0) {
+			return true;
+		}
+		while (true) {
+			int current = inFlight.get();
+			if (current >= maxConcurrent) {
+				return false;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	private static final class Buckets {
+
+		private final ConcurrentHashMap<String, AtomicLong> fullAt = new ConcurrentHashMap<>();
+		private final long intervalNanos;
+		private final long toleranceNanos;
+		private final int maxKeys;
+		private final AtomicBoolean sweeping = new AtomicBoolean();
+
+		private Buckets(double ratePerSecond, int burst, int maxKeys) {
+			this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond));
+			this.toleranceNanos = (Math.max(1, burst) - 1) * intervalNanos;
+			this.maxKeys = maxKeys;
+		}
+
+		/**
+		 * Takes {@code cost} tokens if the bucket is not empty, possibly
+		 * leaving it in debt.
+		 */
+		private long take(String key, long now, int cost) {
+			AtomicLong bucket = fullAt.get(key);
+			if (bucket == null) {
+				bucket = fullAt.computeIfAbsent(key, ignored -> new AtomicLong(NEVER_USED));
+				if (fullAt.size() > maxKeys) {
+					sweep(now);
+				}
+			}
+			while (true) {
+				long current = bucket.get();
+				long start = Math.max(current, now);
+				long wait = start - now - toleranceNanos;
+				if (wait > 0) {
+					return wait;
+				}
+				if (bucket.compareAndSet(current, start + cost * intervalNanos)) {
+					return ADMITTED;
+				}
+			}
+		}
+
+		/** Returns the tokens of a request that another limit turned away. */
+		private void giveBack(String key, int cost) {
+			AtomicLong bucket = fullAt.get(key);
+			if (bucket != null) {
+				bucket.addAndGet(-cost * intervalNanos);
+			}
+		}
+
+		/** Drops buckets that have refilled; a fresh one behaves the same. */
+		private void sweep(long now) {
+			if (!sweeping.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				Iterator<Map.Entry<String, AtomicLong>> entries = fullAt.entrySet().iterator();
+				while (entries.hasNext()) {
+					Map.Entry<String, AtomicLong> entry = entries.next();
+					long full = entry.getValue().get();
+					if (full == NEVER_USED || full - now <= 0) {
+						fullAt.remove(entry.getKey(), entry.getValue());
+					}
+				}
+			} finally {
+				sweeping.set(false);
+			}
+		}
+	}
+}
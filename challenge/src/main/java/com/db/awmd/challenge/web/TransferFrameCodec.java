@@ -0,0 +1,227 @@
+package com.db.awmd.challenge.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.db.awmd.challenge.exception.MalformedFrameException;
+
+/**
+ * Binary framing of transfer requests, all integers big-endian:
+ *
+ * <pre>
+ * int length | byte type | short fromIdLength | fromId | short toIdLength | toId | long amount
+ * </pre>
+ *
+ * where {@code length} counts every byte after itself, ids are UTF-8 and the
+ * amount is in minor units, see
+ * {@link com.db.awmd.challenge.domain.AccountBalance}.
+ *
+ * <p>The decoder reads the channel into one buffer and decodes frames in
+ * place. Account ids are looked up in a small cache of the ids decoded
+ * recently, keyed by their bytes, so a stream that keeps naming the same
+ * accounts decodes without allocating; only an id missing from the cache
+ * costs a string. It returns the same {@link Frame} object every time, so a
+ * frame must be consumed before the next one is decoded.
+ */
+public final class TransferFrameCodec {
+
+	public static final byte TRANSFER = 1;
+
+	/** Longest account id accepted, in UTF-8 bytes. */
+	public static final int MAX_ID_LENGTH = 1024;
+
+	/** Largest frame, two ids of the maximum length. */
+	public static final int MAX_FRAME_LENGTH = 1 + 2 + MAX_ID_LENGTH + 2 + MAX_ID_LENGTH + 8;
+
+	private static final int LENGTH_SIZE = 4;
+	private static final int MIN_FRAME_LENGTH = 1 + 2 + 2 + 8;
+	private static final int ID_CACHE_SIZE = 1024;
+
+	private final ReadableByteChannel channel;
+	private final ByteBuffer buffer;
+	private final Frame frame = new Frame();
+	private final byte[][] cachedIdBytes = new byte[ID_CACHE_SIZE][];
+	private final String[] cachedIds = new String[ID_CACHE_SIZE];
+	private long offset;
+	private boolean endOfStream;
+
+	/**
+	 * @param buffer heap buffer of at least {@code 4 + MAX_FRAME_LENGTH} bytes,
+	 *               reused for the whole stream
+	 */
+	public TransferFrameCodec(ReadableByteChannel channel, ByteBuffer buffer) {
+		if (!buffer.hasArray() || buffer.capacity() < LENGTH_SIZE + MAX_FRAME_LENGTH) {
+			throw new IllegalArgumentException("Frame buffer must be a heap buffer of at least "
+					+ (LENGTH_SIZE + MAX_FRAME_LENGTH) + " bytes");
+		}
+		this.channel = channel;
+		this.buffer = buffer;
+		buffer.clear().flip();
+	}
+
+	/**
+	 * @return the next frame, or null at the end of the stream
+	 * @throws MalformedFrameException if the stream ends inside a frame or a
+	 *                                 frame is not a well-formed transfer
+	 */
+	public Frame next() throws IOException {
+		if (!fill(LENGTH_SIZE)) {
+			if (buffer.hasRemaining()) {
+				throw malformed("stream ends inside a frame header");
+			}
+			return null;
+		}
+		int start = buffer.position();
+		int length = buffer.getInt(start);
+		if (length < MIN_FRAME_LENGTH || length > MAX_FRAME_LENGTH) {
+			throw malformed("invalid frame length " + length);
+		}
+		if (!fill(LENGTH_SIZE + length)) {
+			throw malformed("stream ends inside a frame");
+		}
+		start = buffer.position();
+		int end = start + LENGTH_SIZE + length;
+		buffer.position(start + LENGTH_SIZE);
+		byte type = buffer.get();
+		if (type != TRANSFER) {
+			throw malformed("unknown frame type " + type);
+		}
+		frame.fromAccountId = readId(end);
+		frame.toAccountId = readId(end);
+		if (end - buffer.position() != 8) {
+			throw malformed("frame length does not match its content");
+		}
+		frame.amount = buffer.getLong();
+		offset += LENGTH_SIZE + length;
+		return frame;
+	}
+
+	/** Appends one transfer frame to {@code out}. */
+	public static void encode(ByteBuffer out, String fromAccountId, String toAccountId, long amount) {
+		byte[] from = fromAccountId.getBytes(StandardCharsets.UTF_8);
+		byte[] to = toAccountId.getBytes(StandardCharsets.UTF_8);
+		if (from.length > MAX_ID_LENGTH || to.length > MAX_ID_LENGTH) {
+			throw new IllegalArgumentException("Account ids are limited to " + MAX_ID_LENGTH + " bytes");
+		}
+		out.putInt(1 + 2 + from.length + 2 + to.length + 8);
+		out.put(TRANSFER);
+		out.putShort((short) from.length).put(from);
+		out.putShort((short) to.length).put(to);
+		out.putLong(amount);
+	}
+
+	/**
+	 * Adapts a stream to the decoder, reading straight into the decoder's heap
+	 * buffer instead of through an intermediate array.
+	 */
+	public static ReadableByteChannel channelOf(InputStream in) {
+		return new ReadableByteChannel() {
+
+			private boolean open = true;
+
+			@Override
+			public int read(ByteBuffer dst) throws IOException {
+				int read = in.read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+				if (read > 0) {
+					dst.position(dst.position() + read);
+				}
+				return read;
+			}
+
+			@Override
+			public boolean isOpen() {
+				return open;
+			}
+
+			@Override
+			public void close() throws IOException {
+				open = false;
+				in.close();
+			}
+		};
+	}
+
+	private String readId(int end) {
+		if (end - buffer.position() < 2) {
+			throw malformed("frame length does not match its content");
+		}
+		int length = buffer.getShort() & 0xFFFF;
+		if (length > MAX_ID_LENGTH || end - buffer.position() < length) {
+			throw malformed("frame length does not match its content");
+		}
+		int position = buffer.position();
+		buffer.position(position + length);
+		return idOf(buffer.array(), buffer.arrayOffset() + position, length);
+	}
+
+	/** The cached id with these bytes, or a new one that replaces its cache slot. */
+	private String idOf(byte[] bytes, int from, int length) {
+		int hash = 0x811C9DC5;
+		for (int i = from; i < from + length; i++) {
+			hash = (hash ^ (bytes[i] & 0xFF)) * 0x01000193;
+		}
+		int slot = (hash ^ hash >>> 16) & (ID_CACHE_SIZE - 1);
+		byte[] cached = cachedIdBytes[slot];
+		if (cached != null && cached.length == length && sameBytes(cached, bytes, from)) {
+			return cachedIds[slot];
+		}
+		String id = new String(bytes, from, length, StandardCharsets.UTF_8);
+		cachedIdBytes[slot] = Arrays.copyOfRange(bytes, from, from + length);
+		cachedIds[slot] = id;
+		return id;
+	}
+
+	private static boolean sameBytes(byte[] cached, byte[] bytes, int from) {
+		for (int i = 0; i < cached.length; i++) {
+			if (cached[i] != bytes[from + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Makes at least {@code needed} unread bytes available, unless the stream ends first. */
+	private boolean fill(int needed) throws IOException {
+		if (buffer.remaining() >= needed) {
+			return true;
+		}
+		buffer.compact();
+		try {
+			while (buffer.position() < needed && !endOfStream) {
+				endOfStream = channel.read(buffer) < 0;
+			}
+		} finally {
+			buffer.flip();
+		}
+		return buffer.remaining() >= needed;
+	}
+
+	private MalformedFrameException malformed(String reason) {
+		return new MalformedFrameException("Malformed frame at byte " + offset + ": " + reason);
+	}
+
+	/** A decoded transfer request, reused by the decoder for every frame. */
+	public static final class Frame {
+
+		private String fromAccountId;
+		private String toAccountId;
+		private long amount;
+
+		public String getFromAccountId() {
+			return fromAccountId;
+		}
+
+		public String getToAccountId() {
+			return toAccountId;
+		}
+
+		/** Amount in minor units. */
+		public long getAmount() {
+			return amount;
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package com.db.awmd.challenge.web;
+
+import java.math.BigDecimal;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.NotificationService;
+
+/** The two notifications sent for every completed transfer. */
+final class TransferNotifications {
+
+	private TransferNotifications() {
+	}
+
+	static void notifyAboutTransfer(NotificationService notificationService, Account fromAccount, Account toAccount,
+			BigDecimal transferAmount) {
+		notificationService.notifyAboutTransfer(fromAccount, toAccount, transferAmount, true);
+		notificationService.notifyAboutTransfer(toAccount, fromAccount, transferAmount, false);
+	}
+}
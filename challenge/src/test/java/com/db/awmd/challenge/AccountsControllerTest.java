@@ -4,6 +4,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
@@ -21,7 +22,11 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.web.context.WebApplicationContext;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferHistoryPage;
 import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.MoneyTransferService;
+import com.db.awmd.challenge.service.TransferHistory;
+import com.db.awmd.challenge.web.AccountReadCache;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest
@@ -33,6 +38,12 @@ public class AccountsControllerTest {
 	@Autowired
 	private AccountsService accountsService;
 
+	@Autowired
+	private MoneyTransferService moneyTransferService;
+
+	@Autowired
+	private AccountReadCache accountReadCache;
+
 	@Autowired
 	private WebApplicationContext webApplicationContext;
 
@@ -103,5 +114,181 @@ public class AccountsControllerTest {
 				.andExpect(content().string("{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.45}"));
 	}
 
-	
+	@Test
+	public void getAccount_cachedUntilTheBalanceChanges() throws Exception {
+		accountsService.createAccount(new Account("Id-1", new BigDecimal("10")));
+		accountsService.createAccount(new Account("Id-2", new BigDecimal("20")));
+
+		this.mockMvc.perform(get("/v1/accounts/Id-1")).andExpect(status().isOk())
+				.andExpect(content().string("{\"accountId\":\"Id-1\",\"balance\":10}"));
+		long hits = accountReadCache.getHits();
+		this.mockMvc.perform(get("/v1/accounts/Id-1")).andExpect(status().isOk())
+				.andExpect(content().string("{\"accountId\":\"Id-1\",\"balance\":10}"));
+		assertThat(accountReadCache.getHits()).isEqualTo(hits + 1);
+
+		moneyTransferService.transferMoney(accountsService.getAccount("Id-1"), accountsService.getAccount("Id-2"),
+				new BigDecimal("2.50"));
+		this.mockMvc.perform(get("/v1/accounts/Id-1")).andExpect(status().isOk())
+				.andExpect(content().string("{\"accountId\":\"Id-1\",\"balance\":7.5}"));
+		this.mockMvc.perform(get("/v1/accounts/Id-2")).andExpect(status().isOk())
+				.andExpect(jsonPath("$.balance").value(22.5));
+	}
+
+	@Test
+	public void getAccount_unknownIdIsNotFound() throws Exception {
+		long unknownIds = accountReadCache.getUnknownIds();
+		this.mockMvc.perform(get("/v1/accounts/Id-never-created")).andExpect(status().isNotFound());
+		assertThat(accountReadCache.getUnknownIds()).isEqualTo(unknownIds + 1);
+
+		accountsService.createAccount(new Account("Id-never-created", BigDecimal.ONE));
+		this.mockMvc.perform(get("/v1/accounts/Id-never-created")).andExpect(status().isOk())
+				.andExpect(jsonPath("$.balance").value(1));
+	}
+
+	@Test
+	public void getAccountsAtOneSnapshot() throws Exception {
+		accountsService.createAccount(new Account("Id-1", new BigDecimal("10")));
+		accountsService.createAccount(new Account("Id-2", new BigDecimal("20.50")));
+		moneyTransferService.transferMoney(accountsService.getAccount("Id-1"), accountsService.getAccount("Id-2"),
+				new BigDecimal("2.50"));
+
+		this.mockMvc.perform(get("/v1/accounts?ids=Id-2,Id-unknown,Id-1"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.accounts.length()").value(2))
+				.andExpect(jsonPath("$.accounts[0].accountId").value("Id-2"))
+				.andExpect(jsonPath("$.accounts[0].balance").value(23))
+				.andExpect(jsonPath("$.accounts[1].balance").value(7.5))
+				.andExpect(jsonPath("$.missingAccountIds[0]").value("Id-unknown"));
+	}
+
+	@Test
+	public void getTotalBalance() throws Exception {
+		for (int i = 0; i < 100; i++) {
+			accountsService.createAccount(new Account("Id-" + i, new BigDecimal(i)));
+		}
+		moneyTransferService.transferMoney(accountsService.getAccount("Id-99"), accountsService.getAccount("Id-0"),
+				new BigDecimal("0.01"));
+
+		this.mockMvc.perform(get("/v1/accounts/total-balance"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.accounts").value(100))
+				.andExpect(jsonPath("$.total").value(4950));
+	}
+
+	@Test
+	public void createAccountsInBulk() throws Exception {
+		this.accountsService.createAccount(new Account("Id-1", new BigDecimal("5")));
+
+		this.mockMvc.perform(post("/v1/accounts/bulk").contentType(MediaType.APPLICATION_JSON)
+				.content("[{\"accountId\":\"Id-1\",\"balance\":10},{\"accountId\":\"Id-2\",\"balance\":20.50},"
+						+ "{\"accountId\":\"Id-3\"},{\"accountId\":\"Id-4\",\"balance\":-1}]"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.created").value(1))
+				.andExpect(jsonPath("$.duplicates").value(1))
+				.andExpect(jsonPath("$.invalid").value(2))
+				.andExpect(jsonPath("$.errors[0].row").value(1))
+				.andExpect(jsonPath("$.errors[0].status").value("DUPLICATE"))
+				.andExpect(jsonPath("$.errors[1].accountId").value("Id-3"))
+				.andExpect(jsonPath("$.errors[1].status").value("INVALID"))
+				.andExpect(jsonPath("$.errors[2].accountId").value("Id-4"));
+
+		assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("5");
+		assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("20.50");
+		assertThat(accountsService.getAccount("Id-3")).isNull();
+	}
+
+	@Test
+	public void createAccountsInBulkMalformed() throws Exception {
+		this.mockMvc.perform(post("/v1/accounts/bulk").contentType(MediaType.APPLICATION_JSON).content("[{\"accountId\""))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void importAccountsCsv() throws Exception {
+		StringBuilder csv = new StringBuilder("accountId,balance\n");
+		for (int i = 0; i < 5000; i++) {
+			csv.append("Id-").append(i).append(',').append(i).append(".25\n");
+		}
+		csv.append("Id-42,1\n").append("\n").append("Id-broken,abc\n").append("\"Id-quoted\",\"7\"\n");
+
+		this.mockMvc.perform(post("/v1/accounts/import").contentType("text/csv").content(csv.toString()))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.created").value(5001))
+				.andExpect(jsonPath("$.duplicates").value(1))
+				.andExpect(jsonPath("$.invalid").value(1))
+				.andExpect(jsonPath("$.errors[0].row").value(5002))
+				.andExpect(jsonPath("$.errors[0].accountId").value("Id-42"))
+				.andExpect(jsonPath("$.errors[1].row").value(5004))
+				.andExpect(jsonPath("$.errors[1].accountId").value("Id-broken"));
+
+		assertThat(accountsService.getAccountsRepository().countAccounts()).isEqualTo(5001);
+		assertThat(accountsService.getAccount("Id-42").getBalance()).isEqualByComparingTo("42.25");
+		assertThat(accountsService.getAccount("Id-quoted").getBalance()).isEqualByComparingTo("7");
+	}
+
+	@Test
+	public void importAccountsNdjson() throws Exception {
+		this.mockMvc.perform(post("/v1/accounts/import").contentType("application/x-ndjson")
+				.content("{\"accountId\":\"Id-1\",\"balance\":1}\n{\"accountId\":\"Id-1\",\"balance\":2}\n"
+						+ "not json\n{\"accountId\":\"Id-2\",\"balance\":3}\n"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.created").value(2))
+				.andExpect(jsonPath("$.duplicates").value(1))
+				.andExpect(jsonPath("$.invalid").value(1))
+				.andExpect(jsonPath("$.errors[1].row").value(3));
+
+		assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("3");
+	}
+
+	@Test
+	public void getTransfersPagesNewestFirst() throws Exception {
+		String from = "Id-history-" + System.nanoTime();
+		String to = from + "-to";
+		accountsService.createAccount(new Account(from, new BigDecimal(100)));
+		accountsService.createAccount(new Account(to, new BigDecimal(100)));
+		for (int i = 1; i <= 5; i++) {
+			moneyTransferService.transferMoney(accountsService.getAccount(from), accountsService.getAccount(to),
+					new BigDecimal(i));
+		}
+
+		this.mockMvc.perform(get("/v1/accounts/" + from + "/transfers?limit=2"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.transfers.length()").value(2))
+				.andExpect(jsonPath("$.transfers[0].position").value(4))
+				.andExpect(jsonPath("$.transfers[0].amount").value(-5))
+				.andExpect(jsonPath("$.transfers[0].counterpartyAccountId").value(to))
+				.andExpect(jsonPath("$.transfers[1].amount").value(-4))
+				.andExpect(jsonPath("$.nextCursor").value(3));
+
+		this.mockMvc.perform(get("/v1/accounts/" + from + "/transfers?limit=2&cursor=1"))
+				.andExpect(jsonPath("$.transfers.length()").value(1))
+				.andExpect(jsonPath("$.transfers[0].amount").value(-1))
+				.andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+		this.mockMvc.perform(get("/v1/accounts/" + to + "/transfers"))
+				.andExpect(jsonPath("$.transfers.length()").value(5))
+				.andExpect(jsonPath("$.transfers[4].amount").value(1));
+
+		long later = System.currentTimeMillis() + 60_000;
+		this.mockMvc.perform(get("/v1/accounts/" + to + "/transfers?from=" + later))
+				.andExpect(jsonPath("$.transfers.length()").value(0));
+		this.mockMvc.perform(get("/v1/accounts/Id-unknown/transfers")).andExpect(status().isNotFound());
+	}
+
+	@Test
+	public void transferHistoryKeepsOnlyRecentEntries() throws Exception {
+		TransferHistory history = new TransferHistory(3);
+		Account from = new Account("Id-1", new BigDecimal(100));
+		Account to = new Account("Id-2", new BigDecimal(100));
+		for (int i = 1; i <= 10; i++) {
+			history.moneyTransferred(from, to, i * 100);
+		}
+
+		TransferHistoryPage page = history.getTransfers("Id-2", 0, Long.MAX_VALUE, null, 10);
+		assertThat(page.getTransfers()).hasSize(3);
+		assertThat(page.getTransfers().get(0).getPosition()).isEqualTo(9);
+		assertThat(page.getTransfers().get(2).getAmount()).isEqualByComparingTo("8");
+		assertThat(page.getNextCursor()).isNull();
+	}
+
 }
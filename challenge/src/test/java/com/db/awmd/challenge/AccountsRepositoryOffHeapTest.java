@@ -0,0 +1,138 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.MoneyTransfer;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.OverdraftsAccountException;
+import com.db.awmd.challenge.repository.AccountsRepositoryOffHeap;
+import com.db.awmd.challenge.repository.LockFreeMoneyTransferRepository;
+import com.db.awmd.challenge.repository.MoneyTransferRepository;
+import com.db.awmd.challenge.service.BalanceSnapshots;
+import com.db.awmd.challenge.service.MoneyTransferService;
+
+public class AccountsRepositoryOffHeapTest {
+
+	@Test
+	public void createAccount_findsEveryAccountAcrossPagesAndIndexGrowth() throws Exception {
+		// sized for one account, so the index has to grow many times
+		AccountsRepositoryOffHeap repository = new AccountsRepositoryOffHeap(1);
+		int count = 70_000;
+		for (int i = 0; i < count; i++) {
+			repository.createAccount(new Account("Id-" + i, BigDecimal.valueOf(i, 2)));
+		}
+		repository.createAccount(new Account("Konto-\u017b\u00f3\u0142w-\u20ac", new BigDecimal("12.5")));
+
+		assertThat(repository.countAccounts()).isEqualTo(count + 1);
+		for (int i = 0; i < count; i++) {
+			Account account = repository.getAccount("Id-" + i);
+			assertThat(account.getAccountId()).isEqualTo("Id-" + i);
+			assertThat(account.getBalance()).isEqualByComparingTo(BigDecimal.valueOf(i, 2));
+		}
+		assertThat(repository.getAccount("Konto-\u017b\u00f3\u0142w-\u20ac").getBalance()).isEqualByComparingTo("12.5");
+		assertThat(repository.getAccount("Id-" + count)).isNull();
+		assertThat(repository.getAccount("Konto-\u017b\u00f3\u0142w-$")).isNull();
+
+		try {
+			repository.createAccount(new Account("Id-42", BigDecimal.ONE));
+			fail("Should have failed when adding duplicate account");
+		} catch (DuplicateAccountIdException ex) {
+			assertThat(ex.getMessage()).isEqualTo("Account id Id-42 already exists!");
+		}
+
+		Map<String, BigDecimal> streamed = repository.streamAccounts()
+				.collect(Collectors.toMap(Account::getAccountId, Account::getBalance));
+		assertThat(streamed).hasSize(count + 1);
+		assertThat(streamed.get("Id-69999")).isEqualByComparingTo("699.99");
+		assertThat(streamed.get("Konto-\u017b\u00f3\u0142w-\u20ac")).isEqualByComparingTo("12.5");
+
+		repository.clearAccounts();
+		assertThat(repository.countAccounts()).isZero();
+		assertThat(repository.getAccount("Id-1")).isNull();
+		repository.createAccount(new Account("Id-1", BigDecimal.TEN));
+		assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("10");
+	}
+
+	@Test
+	public void transferMoneyAtomically_netsLookupsOfTheSameAccount() throws Exception {
+		AccountsRepositoryOffHeap repository = new AccountsRepositoryOffHeap(16);
+		repository.createAccount(new Account("Id-a", new BigDecimal(100)));
+		repository.createAccount(new Account("Id-b", BigDecimal.ONE));
+		repository.createAccount(new Account("Id-c", BigDecimal.ZERO));
+		MoneyTransferRepository engine = new LockFreeMoneyTransferRepository();
+
+		// every lookup is a different object over the same balance
+		assertThat(repository.getAccount("Id-b")).isNotSameAs(repository.getAccount("Id-b"));
+		assertThat(engine.transferMoneyAtomically(Arrays.asList(
+				new MoneyTransfer(repository.getAccount("Id-b"), repository.getAccount("Id-c"), 60),
+				new MoneyTransfer(repository.getAccount("Id-b"), repository.getAccount("Id-c"), 60))))
+						.isEqualTo(1);
+		assertThat(engine.transferMoneyAtomically(Arrays.asList(
+				new MoneyTransfer(repository.getAccount("Id-a"), repository.getAccount("Id-b"), 5000),
+				new MoneyTransfer(repository.getAccount("Id-b"), repository.getAccount("Id-c"), 4000))))
+						.isEqualTo(MoneyTransferRepository.ALL_APPLIED);
+
+		assertThat(repository.getAccount("Id-a").getBalance()).isEqualByComparingTo("50");
+		assertThat(repository.getAccount("Id-b").getBalance()).isEqualByComparingTo("11");
+		assertThat(repository.getAccount("Id-c").getBalance()).isEqualByComparingTo("40");
+	}
+
+	@Test
+	public void snapshot_seesMoneyConservedOnViews() throws Exception {
+		AccountsRepositoryOffHeap repository = new AccountsRepositoryOffHeap(16);
+		int accounts = 6;
+		for (int i = 0; i < accounts; i++) {
+			repository.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+		}
+		BalanceSnapshots snapshots = new BalanceSnapshots(64);
+		MoneyTransferService transferService = new MoneyTransferService(new LockFreeMoneyTransferRepository());
+		transferService.setBalanceSnapshots(snapshots);
+		int threads = 4;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		AtomicBoolean running = new AtomicBoolean(true);
+		for (int t = 0; t < threads; t++) {
+			executor.submit(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				while (running.get()) {
+					int from = random.nextInt(accounts);
+					int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+					try {
+						transferService.transferMoney(repository.getAccount("Id-" + from),
+								repository.getAccount("Id-" + to), new BigDecimal(3));
+					} catch (OverdraftsAccountException oae) {
+						// expected once an account runs low
+					}
+				}
+				return null;
+			});
+		}
+		try {
+			for (int i = 0; i < 2000; i++) {
+				try (BalanceSnapshots.Snapshot snapshot = snapshots.open()) {
+					long total = repository.streamAccounts().mapToLong(snapshot::minorUnitsOf).sum();
+					assertThat(total).isEqualTo(accounts * 100000L);
+				}
+			}
+		} finally {
+			running.set(false);
+			executor.shutdown();
+		}
+		assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(repository.streamAccounts().map(Account::getBalance).reduce(BigDecimal.ZERO, BigDecimal::add))
+				.isEqualByComparingTo(new BigDecimal(accounts * 1000));
+	}
+}
@@ -0,0 +1,90 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.AsyncNotificationService;
+import com.db.awmd.challenge.service.AsyncNotificationService.OverflowPolicy;
+
+public class AsyncNotificationServiceTest {
+
+	@Test
+	public void notifyAboutTransfer_deliversOffCallerThreadAndRetries() throws Exception {
+		List<String> delivered = new CopyOnWriteArrayList<>();
+		CountDownLatch allDelivered = new CountDownLatch(10);
+		AtomicInteger calls = new AtomicInteger();
+		AsyncNotificationService service = new AsyncNotificationService((account, description) -> {
+			if (calls.incrementAndGet() == 1) {
+				throw new IllegalStateException("mail server down");
+			}
+			delivered.add(Thread.currentThread().getName() + ":" + description);
+			allDelivered.countDown();
+		}, 100, 2, 4, 3, OverflowPolicy.DROP);
+
+		for (int i = 0; i < 10; i++) {
+			service.notifyAboutTransfer(new Account("Id-" + i), "transfer " + i);
+		}
+
+		assertThat(allDelivered.await(5, TimeUnit.SECONDS)).isTrue();
+		service.shutdown();
+		for (String entry : delivered) {
+			assertThat(entry).startsWith("notification-worker-");
+		}
+		assertThat(service.getDelivered()).isEqualTo(10);
+		assertThat(service.getRetried()).isEqualTo(1);
+	}
+
+	@Test
+	public void notifyAboutTransfer_backsOffBetweenRetries() throws Exception {
+		List<Long> attempts = new CopyOnWriteArrayList<>();
+		CountDownLatch gaveUp = new CountDownLatch(4);
+		AsyncNotificationService service = new AsyncNotificationService((account, description) -> {
+			attempts.add(System.nanoTime());
+			gaveUp.countDown();
+			throw new IllegalStateException("mail server down");
+		}, 100, 1, 4, 3, 50, 120, OverflowPolicy.DROP);
+
+		service.notifyAboutTransfer(new Account("Id-1"), "transfer");
+
+		assertThat(gaveUp.await(5, TimeUnit.SECONDS)).isTrue();
+		service.shutdown();
+		assertThat(attempts).hasSize(4);
+		long[] minimumGaps = { 50, 100, 120 };
+		for (int i = 0; i < minimumGaps.length; i++) {
+			long gap = TimeUnit.NANOSECONDS.toMillis(attempts.get(i + 1) - attempts.get(i));
+			assertThat(gap).isGreaterThanOrEqualTo(minimumGaps[i]);
+		}
+		assertThat(service.getRetried()).isEqualTo(3);
+		assertThat(service.getFailed()).isEqualTo(1);
+	}
+
+	@Test
+	public void notifyAboutTransfer_dropsWhenQueueIsFull() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		AsyncNotificationService service = new AsyncNotificationService((account, description) -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, 2, 1, 1, 0, OverflowPolicy.DROP);
+
+		for (int i = 0; i < 10; i++) {
+			service.notifyAboutTransfer(new Account("Id-" + i), "transfer " + i);
+		}
+
+		assertThat(service.getDropped()).isGreaterThanOrEqualTo(7);
+		assertThat(service.getEnqueued() + service.getDropped()).isEqualTo(10);
+		release.countDown();
+		service.shutdown();
+		assertThat(service.getDelivered()).isEqualTo(service.getEnqueued());
+	}
+}
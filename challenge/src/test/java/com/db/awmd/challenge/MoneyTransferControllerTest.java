@@ -1,24 +1,64 @@
 package com.db.awmd.challenge;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.context.WebApplicationContext;
 
+import com.jayway.jsonpath.JsonPath;
+
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountMoneyTransferRequest;
+import com.db.awmd.challenge.domain.MoneyTransferResult;
+import com.db.awmd.challenge.domain.ScheduledTransfer;
+import com.db.awmd.challenge.domain.ScheduledTransferRequest;
+import com.db.awmd.challenge.domain.ScheduledTransferStatus;
+import com.db.awmd.challenge.domain.TransferBatchMode;
+import com.db.awmd.challenge.domain.TransferIngestResult;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.MoneyTransferRepositoryImpl;
 import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.BatchMoneyTransferService;
+import com.db.awmd.challenge.service.MoneyTransferService;
+import com.db.awmd.challenge.service.TransferScheduler;
+import com.db.awmd.challenge.web.BinaryTransferController;
+import com.db.awmd.challenge.web.IdempotencyCache;
+import com.db.awmd.challenge.web.TransferAdmission;
+import com.db.awmd.challenge.web.TransferFrameCodec;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest
@@ -132,4 +172,568 @@ public class MoneyTransferControllerTest {
 					.andExpect(status().isInternalServerError());
 			
 		}
+
+		@Test
+		public void transferMoneyBatchBestEffort() throws Exception {
+			this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"accountId\":\"Id-1\",\"balance\":1000}")).andExpect(status().isCreated());
+			this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"accountId\":\"Id-2\",\"balance\":100}")).andExpect(status().isCreated());
+			this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"accountId\":\"Id-3\",\"balance\":100}")).andExpect(status().isCreated());
+
+			this.mockMvc
+					.perform(put("/v1/accounts/transfer/batch").contentType(MediaType.APPLICATION_JSON)
+							.content("[{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"transferAmount\":300},"
+									+ "{\"accountFromId\":\"Id-2\",\"accountToId\":\"Id-1\",\"transferAmount\":1000},"
+									+ "{\"accountFromId\":\"Id-3\",\"accountToId\":\"Id-404\",\"transferAmount\":10},"
+									+ "{\"accountFromId\":\"Id-2\",\"accountToId\":\"Id-3\",\"transferAmount\":50}]"))
+					.andExpect(status().isOk())
+					.andExpect(jsonPath("$[0].status").value("COMPLETED"))
+					.andExpect(jsonPath("$[1].status").value("OVERDRAFT"))
+					.andExpect(jsonPath("$[2].status").value("ACCOUNT_NOT_FOUND"))
+					.andExpect(jsonPath("$[3].status").value("COMPLETED"));
+
+			assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualTo("700");
+			assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualTo("350");
+			assertThat(accountsService.getAccount("Id-3").getBalance()).isEqualTo("150");
+		}
+
+		@Test
+		public void transferMoneyBatchAllOrNothing() throws Exception {
+			this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"accountId\":\"Id-1\",\"balance\":1000}")).andExpect(status().isCreated());
+			this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"accountId\":\"Id-2\",\"balance\":100}")).andExpect(status().isCreated());
+
+			this.mockMvc
+					.perform(put("/v1/accounts/transfer/batch?mode=ALL_OR_NOTHING").contentType(MediaType.APPLICATION_JSON)
+							.content("[{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"transferAmount\":300},"
+									+ "{\"accountFromId\":\"Id-2\",\"accountToId\":\"Id-1\",\"transferAmount\":500}]"))
+					.andExpect(status().isBadRequest())
+					.andExpect(jsonPath("$[0].status").value("ABORTED"))
+					.andExpect(jsonPath("$[1].status").value("OVERDRAFT"));
+
+			assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualTo("1000");
+			assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualTo("100");
+
+			this.mockMvc
+					.perform(put("/v1/accounts/transfer/batch?mode=ALL_OR_NOTHING").contentType(MediaType.APPLICATION_JSON)
+							.content("[{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"transferAmount\":500},"
+									+ "{\"accountFromId\":\"Id-2\",\"accountToId\":\"Id-1\",\"transferAmount\":550}]"))
+					.andExpect(status().isOk());
+
+			assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualTo("1050");
+			assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualTo("50");
+		}
+
+		@Test
+		public void transferMoneyMultiLeg() throws Exception {
+			this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"accountId\":\"Id-payer\",\"balance\":1000}")).andExpect(status().isCreated());
+			for (int i = 1; i <= 3; i++) {
+				this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+						.content("{\"accountId\":\"Id-" + i + "\",\"balance\":0}")).andExpect(status().isCreated());
+			}
+
+			this.mockMvc
+					.perform(put("/v1/accounts/transfer/multi-leg").contentType(MediaType.APPLICATION_JSON)
+							.content("{\"accountFromId\":\"Id-payer\",\"legs\":["
+									+ "{\"accountToId\":\"Id-1\",\"transferAmount\":300},"
+									+ "{\"accountToId\":\"Id-2\",\"transferAmount\":300},"
+									+ "{\"accountToId\":\"Id-3\",\"transferAmount\":300.5}]}"))
+					.andExpect(status().isOk())
+					.andExpect(jsonPath("$[2].status").value("COMPLETED"));
+
+			assertThat(accountsService.getAccount("Id-payer").getBalance()).isEqualTo("99.5");
+			assertThat(accountsService.getAccount("Id-3").getBalance()).isEqualTo("300.5");
+
+			// every leg fits on its own, together they overdraw the payer
+			this.mockMvc
+					.perform(put("/v1/accounts/transfer/multi-leg").contentType(MediaType.APPLICATION_JSON)
+							.content("{\"accountFromId\":\"Id-payer\",\"legs\":["
+									+ "{\"accountToId\":\"Id-1\",\"transferAmount\":50},"
+									+ "{\"accountToId\":\"Id-2\",\"transferAmount\":50}]}"))
+					.andExpect(status().isBadRequest())
+					.andExpect(jsonPath("$[0].status").value("ABORTED"))
+					.andExpect(jsonPath("$[1].status").value("OVERDRAFT"));
+			this.mockMvc
+					.perform(put("/v1/accounts/transfer/multi-leg").contentType(MediaType.APPLICATION_JSON)
+							.content("{\"accountFromId\":\"Id-payer\",\"legs\":["
+									+ "{\"accountToId\":\"Id-1\",\"transferAmount\":10},"
+									+ "{\"accountToId\":\"Id-404\",\"transferAmount\":10}]}"))
+					.andExpect(status().isBadRequest())
+					.andExpect(jsonPath("$[0].status").value("ABORTED"))
+					.andExpect(jsonPath("$[1].status").value("ACCOUNT_NOT_FOUND"));
+			this.mockMvc
+					.perform(put("/v1/accounts/transfer/multi-leg").contentType(MediaType.APPLICATION_JSON)
+							.content("{\"accountFromId\":\"Id-payer\",\"legs\":[]}"))
+					.andExpect(status().isBadRequest());
+
+			assertThat(accountsService.getAccount("Id-payer").getBalance()).isEqualTo("99.5");
+			assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualTo("300");
+			assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualTo("300");
+		}
+
+		@Test
+		public void metricsCountTransferOutcomes() throws Exception {
+			this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isCreated());
+			this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"accountId\":\"Id-345\",\"balance\":1000}")).andExpect(status().isCreated());
+			String metrics = this.mockMvc.perform(get("/v1/metrics")).andReturn().getResponse().getContentAsString();
+			int completed = JsonPath.read(metrics, "$.transfers.completed");
+			int overdrafts = JsonPath.read(metrics, "$.transfers.overdrafts");
+			int transferSamples = JsonPath.read(metrics, "$.transfers.latencyMicros.count");
+			int batchSamples = JsonPath.read(metrics, "$.transfers.batchLatencyMicros.count");
+
+			this.mockMvc.perform(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-345\",\"transferAmount\":100}"))
+					.andExpect(status().isOk());
+			this.mockMvc.perform(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-345\",\"transferAmount\":5000}"))
+					.andExpect(status().isBadRequest());
+			this.mockMvc.perform(put("/v1/accounts/transfer/multi-leg").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"accountFromId\":\"Id-123\",\"legs\":[{\"accountToId\":\"Id-345\",\"transferAmount\":1},"
+							+ "{\"accountToId\":\"Id-345\",\"transferAmount\":2},{\"accountToId\":\"Id-345\",\"transferAmount\":3}]}"))
+					.andExpect(status().isOk());
+
+			// the three legs count as transfers, but their latency is one batch sample
+			this.mockMvc.perform(get("/v1/metrics")).andExpect(status().isOk())
+					.andExpect(jsonPath("$.transfers.completed").value(completed + 4))
+					.andExpect(jsonPath("$.transfers.overdrafts").value(overdrafts + 1))
+					.andExpect(jsonPath("$.accounts.count").value(2))
+					.andExpect(jsonPath("$.transfers.latencyMicros.count").value(transferSamples + 2))
+					.andExpect(jsonPath("$.transfers.batchLatencyMicros.count").value(batchSamples + 1))
+					.andExpect(jsonPath("$.transfers.latencyMicros.p99").isNumber());
+		}
+
+		@Test
+		public void transferMoneyWithIdempotencyKeyRunsOnce() throws Exception {
+			this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isCreated());
+			this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"accountId\":\"Id-345\",\"balance\":1000}")).andExpect(status().isCreated());
+			String key = "key-" + System.nanoTime();
+
+			for (int i = 0; i < 3; i++) {
+				this.mockMvc
+						.perform(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON).header("Idempotency-Key", key)
+								.content("{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-345\",\"transferAmount\":100}"))
+						.andExpect(status().isOk());
+			}
+			this.mockMvc
+					.perform(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+							.content("{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-345\",\"transferAmount\":100.00,"
+									+ "\"idempotencyKey\":\"" + key + "\"}"))
+					.andExpect(status().isOk());
+			this.mockMvc
+					.perform(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON).header("Idempotency-Key", key)
+							.content("{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-345\",\"transferAmount\":200}"))
+					.andExpect(status().isUnprocessableEntity());
+
+			assertThat(accountsService.getAccount("Id-123").getBalance()).isEqualTo("900");
+			assertThat(accountsService.getAccount("Id-345").getBalance()).isEqualTo("1100");
+		}
+
+		@Test
+		public void transferMoneyBatchHonoursItemIdempotencyKeys() throws Exception {
+			this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"accountId\":\"Id-1\",\"balance\":1000}")).andExpect(status().isCreated());
+			this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"accountId\":\"Id-2\",\"balance\":1000}")).andExpect(status().isCreated());
+			String key = "item-" + System.nanoTime();
+			String batch = "[{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"transferAmount\":100,"
+					+ "\"idempotencyKey\":\"" + key + "\"},"
+					+ "{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"transferAmount\":100,"
+					+ "\"idempotencyKey\":\"" + key + "\"},"
+					+ "{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"transferAmount\":300,"
+					+ "\"idempotencyKey\":\"" + key + "\"},"
+					+ "{\"accountFromId\":\"Id-2\",\"accountToId\":\"Id-1\",\"transferAmount\":10}]";
+
+			for (int i = 0; i < 2; i++) {
+				this.mockMvc.perform(put("/v1/accounts/transfer/batch").contentType(MediaType.APPLICATION_JSON).content(batch))
+						.andExpect(status().isOk())
+						.andExpect(jsonPath("$[0].status").value("COMPLETED"))
+						.andExpect(jsonPath("$[1].status").value("COMPLETED"))
+						.andExpect(jsonPath("$[1].index").value(1))
+						.andExpect(jsonPath("$[2].status").value("INVALID"))
+						.andExpect(jsonPath("$[3].status").value("COMPLETED"));
+			}
+			// the key is shared with the single transfer endpoint
+			this.mockMvc
+					.perform(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON).header("Idempotency-Key", key)
+							.content("{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"transferAmount\":100}"))
+					.andExpect(status().isOk());
+
+			assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualTo("920");
+			assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualTo("1080");
+		}
+
+		@Test
+		public void transferMoneyBatchAllOrNothingReleasesItemKeysOnFailure() throws Exception {
+			this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"accountId\":\"Id-1\",\"balance\":100}")).andExpect(status().isCreated());
+			this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"accountId\":\"Id-2\",\"balance\":100}")).andExpect(status().isCreated());
+			String key = "item-" + System.nanoTime();
+			String keyed = "{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"transferAmount\":50,"
+					+ "\"idempotencyKey\":\"" + key + "\"}";
+
+			this.mockMvc
+					.perform(put("/v1/accounts/transfer/batch?mode=ALL_OR_NOTHING").contentType(MediaType.APPLICATION_JSON)
+							.content("[" + keyed + ",{\"accountFromId\":\"Id-2\",\"accountToId\":\"Id-1\",\"transferAmount\":500}]"))
+					.andExpect(status().isBadRequest())
+					.andExpect(jsonPath("$[0].status").value("ABORTED"));
+			this.mockMvc
+					.perform(put("/v1/accounts/transfer/batch?mode=ALL_OR_NOTHING").contentType(MediaType.APPLICATION_JSON)
+							.content("[" + keyed + "]"))
+					.andExpect(status().isOk());
+			this.mockMvc
+					.perform(put("/v1/accounts/transfer/batch?mode=ALL_OR_NOTHING").contentType(MediaType.APPLICATION_JSON)
+							.content("[" + keyed + ",{\"accountFromId\":\"Id-2\",\"accountToId\":\"Id-1\",\"transferAmount\":20}]"))
+					.andExpect(status().isOk());
+
+			assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualTo("70");
+			assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualTo("130");
+		}
+
+		@Test
+		public void idempotencyCacheNeverEvictsARunningClaim() {
+			IdempotencyCache cache = new IdempotencyCache(1, 3600);
+			CompletableFuture<ResponseEntity<Object>> running = new CompletableFuture<>();
+			AtomicInteger executions = new AtomicInteger();
+			Supplier<ResponseEntity<Object>> conflict = () -> new ResponseEntity<>(HttpStatus.UNPROCESSABLE_ENTITY);
+
+			cache.executeAsync("running", "a", () -> {
+				executions.incrementAndGet();
+				return running;
+			}, conflict);
+			for (int i = 0; i < 3; i++) {
+				cache.execute("other-" + i, "b", () -> new ResponseEntity<>(HttpStatus.OK), conflict);
+			}
+			CompletableFuture<ResponseEntity<Object>> retry = cache.executeAsync("running", "a", () -> {
+				executions.incrementAndGet();
+				return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.OK));
+			}, conflict);
+
+			assertThat(retry.isDone()).isFalse();
+			running.complete(new ResponseEntity<>(HttpStatus.CREATED));
+			assertThat(retry.join().getStatusCode()).isEqualTo(HttpStatus.CREATED);
+			assertThat(executions.get()).isEqualTo(1);
+		}
+
+		@Test
+		public void idempotencyCacheTellsDuplicatesOfAReleasedClaimToSubmitAgain() {
+			IdempotencyCache cache = new IdempotencyCache(10, 3600);
+			CompletableFuture<ResponseEntity<Object>> running = new CompletableFuture<>();
+			AtomicInteger executions = new AtomicInteger();
+			Supplier<ResponseEntity<Object>> conflict = () -> new ResponseEntity<>(HttpStatus.UNPROCESSABLE_ENTITY);
+			Thread caller = Thread.currentThread();
+			Supplier<CompletableFuture<ResponseEntity<Object>>> request = () -> {
+				executions.incrementAndGet();
+				assertThat(Thread.currentThread()).isSameAs(caller);
+				return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.OK));
+			};
+
+			cache.executeAsync("key", "a", () -> running, conflict);
+			CompletableFuture<ResponseEntity<Object>> duplicate = cache.executeAsync("key", "a", request, conflict);
+			// a server error is not kept: the duplicate is told to submit again instead of run by the completer
+			new Thread(() -> running.complete(new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE))).start();
+
+			assertThat(duplicate.join()).isNull();
+			assertThat(executions.get()).isEqualTo(0);
+			assertThat(cache.size()).isEqualTo(0);
+			assertThat(cache.executeAsync("key", "a", request, conflict).join().getStatusCode())
+					.isEqualTo(HttpStatus.OK);
+			assertThat(executions.get()).isEqualTo(1);
+		}
+
+		@Test
+		public void transferMoneyNonBlocking() throws Exception {
+			accountsService.createAccount(new Account("Id-1", new BigDecimal(100)));
+			accountsService.createAccount(new Account("Id-2", new BigDecimal(100)));
+
+			MvcResult pending = this.mockMvc
+					.perform(put("/v2/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+							.content("{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"transferAmount\":40}"))
+					.andExpect(request().asyncStarted()).andReturn();
+			this.mockMvc.perform(asyncDispatch(pending)).andExpect(status().isOk());
+
+			pending = this.mockMvc
+					.perform(put("/v2/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+							.content("{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"transferAmount\":60}"))
+					.andReturn();
+			this.mockMvc.perform(asyncDispatch(pending)).andExpect(status().isBadRequest());
+
+			pending = this.mockMvc
+					.perform(put("/v2/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+							.content("{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-9\",\"transferAmount\":1}"))
+					.andReturn();
+			this.mockMvc.perform(asyncDispatch(pending)).andExpect(status().isNotFound());
+
+			this.mockMvc.perform(get("/v2/accounts/Id-2")).andExpect(status().isOk())
+					.andExpect(jsonPath("$.balance").value(140));
+		}
+
+		@Test
+		public void transferFrameCodecReusesIdsItHasDecoded() throws Exception {
+			ByteBuffer frames = ByteBuffer.allocate(256);
+			TransferFrameCodec.encode(frames, "Id-1", "Id-2", 1);
+			TransferFrameCodec.encode(frames, "Id-2", "Id-1", 2);
+			TransferFrameCodec codec = new TransferFrameCodec(
+					TransferFrameCodec.channelOf(new ByteArrayInputStream(Arrays.copyOf(frames.array(), frames.position()))),
+					ByteBuffer.allocate(4 + TransferFrameCodec.MAX_FRAME_LENGTH));
+
+			TransferFrameCodec.Frame frame = codec.next();
+			String from = frame.getFromAccountId();
+			String to = frame.getToAccountId();
+			frame = codec.next();
+			assertThat(frame.getFromAccountId()).isSameAs(to);
+			assertThat(frame.getToAccountId()).isSameAs(from);
+			assertThat(frame.getAmount()).isEqualTo(2);
+			assertThat(codec.next()).isNull();
+		}
+
+		@Test
+		public void binaryFramesReportAnUnexpectedFailureAndCapTheStream() throws Exception {
+			AccountsService accounts = new AccountsService(new AccountsRepositoryInMemory());
+			accounts.createAccount(new Account("Id-1", new BigDecimal(100)));
+			accounts.createAccount(new Account("Id-2", new BigDecimal(0)));
+			accounts.createAccount(new Account("Id-3", new BigDecimal(0)));
+			MoneyTransferService failing = new MoneyTransferService(new MoneyTransferRepositoryImpl(16)) {
+				@Override
+				public boolean transferMoney(Account fromAccount, Account toAccount, BigDecimal transferAmount) {
+					if (toAccount.getAccountId().equals("Id-3")) {
+						throw new IllegalStateException("Transfer engine is shut down");
+					}
+					return super.transferMoney(fromAccount, toAccount, transferAmount);
+				}
+			};
+			BinaryTransferController controller = new BinaryTransferController(accounts, failing,
+					(account, description) -> {
+					}, new TransferAdmission(0, 50, 0, 1, 0, 1, 100), 1, 3);
+			ByteBuffer frames = ByteBuffer.allocate(256);
+			TransferFrameCodec.encode(frames, "Id-1", "Id-2", 100);
+			TransferFrameCodec.encode(frames, "Id-1", "Id-3", 100);
+			TransferFrameCodec.encode(frames, "Id-1", "Id-2", 100);
+
+			ResponseEntity<Object> response = controller.ingest(
+					new ByteArrayInputStream(Arrays.copyOf(frames.array(), frames.position())), null,
+					new MockHttpServletRequest());
+			assertThat(response.getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+			TransferIngestResult result = (TransferIngestResult) response.getBody();
+			assertThat(result.getReceived()).isEqualTo(2);
+			assertThat(result.getCompleted()).isEqualTo(1);
+			assertThat(result.getFailures()).hasSize(1);
+			assertThat(result.getFailures().get(0).getIndex()).isEqualTo(1);
+			assertThat(result.getFailures().get(0).getStatus()).isEqualTo(TransferStatus.FAILED);
+			assertThat(accounts.getAccount("Id-2").getBalance()).isEqualTo("1");
+
+			frames.clear();
+			for (int i = 0; i < 4; i++) {
+				TransferFrameCodec.encode(frames, "Id-1", "Id-2", 100);
+			}
+			response = controller.ingest(new ByteArrayInputStream(Arrays.copyOf(frames.array(), frames.position())),
+					null, new MockHttpServletRequest());
+			assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+			result = (TransferIngestResult) response.getBody();
+			assertThat(result.getReceived()).isEqualTo(3);
+			assertThat(result.getCompleted()).isEqualTo(3);
+			assertThat(result.getError()).contains("More than 3 frames");
+			assertThat(accounts.getAccount("Id-2").getBalance()).isEqualTo("4");
+		}
+
+		@Test
+		public void transferMoneyBinaryFrames() throws Exception {
+			accountsService.createAccount(new Account("Id-1", new BigDecimal(100)));
+			accountsService.createAccount(new Account("Id-2", new BigDecimal(100)));
+			ByteBuffer frames = ByteBuffer.allocate(256);
+			TransferFrameCodec.encode(frames, "Id-1", "Id-2", 2550);
+			TransferFrameCodec.encode(frames, "Id-2", "Id-9", 100);
+			TransferFrameCodec.encode(frames, "Id-1", "Id-2", 10000);
+			TransferFrameCodec.encode(frames, "Id-2", "Id-1", 5);
+			TransferFrameCodec.encode(frames, "Id-2", "Id-1", 0);
+
+			this.mockMvc.perform(put("/v1/accounts/transfer/frames").contentType(MediaType.APPLICATION_OCTET_STREAM)
+					.content(Arrays.copyOf(frames.array(), frames.position())))
+					.andExpect(status().isOk())
+					.andExpect(jsonPath("$.received").value(5))
+					.andExpect(jsonPath("$.completed").value(2))
+					.andExpect(jsonPath("$.failures[0].index").value(1))
+					.andExpect(jsonPath("$.failures[0].status").value("ACCOUNT_NOT_FOUND"))
+					.andExpect(jsonPath("$.failures[1].status").value("OVERDRAFT"))
+					.andExpect(jsonPath("$.failures[2].index").value(4))
+					.andExpect(jsonPath("$.failures[2].status").value("INVALID"));
+
+			assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualTo("74.55");
+			assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualTo("125.45");
+
+			// a stream cut off inside the second frame keeps the first transfer
+			frames.clear();
+			TransferFrameCodec.encode(frames, "Id-1", "Id-2", 55);
+			TransferFrameCodec.encode(frames, "Id-1", "Id-2", 55);
+			this.mockMvc.perform(put("/v1/accounts/transfer/frames").contentType(MediaType.APPLICATION_OCTET_STREAM)
+					.content(Arrays.copyOf(frames.array(), frames.position() - 3)))
+					.andExpect(status().isBadRequest())
+					.andExpect(jsonPath("$.received").value(1))
+					.andExpect(jsonPath("$.error").value(containsString("byte 25")));
+
+			assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualTo("74");
+		}
+
+		@Test
+		public void transferAdmission_rejectsOverConcurrencyAndRate() throws Exception {
+			TransferAdmission admission = new TransferAdmission(1, 50, 10, 2, 0, 1, 100);
+
+			assertThat(admission.tryAdmit("client", "Id-1")).isEqualTo(TransferAdmission.ADMITTED);
+			assertThat(admission.tryAdmit("client", "Id-1")).isEqualTo(50_000_000L);
+			admission.release();
+			assertThat(admission.tryAdmit("client", "Id-1")).isEqualTo(TransferAdmission.ADMITTED);
+			admission.release();
+			long wait = admission.tryAdmit("client", "Id-1");
+			assertThat(wait).isBetween(1L, 100_000_000L);
+			assertThat(admission.tryAdmit("other-client", "Id-1")).isEqualTo(TransferAdmission.ADMITTED);
+			admission.release();
+			assertThat(admission.getInFlight()).isEqualTo(0);
+			assertThat(admission.getRejectedBusy()).isEqualTo(1);
+			assertThat(admission.getRejectedClient()).isEqualTo(1);
+
+			ResponseEntity<Object> rejection = TransferAdmission.tooManyRequests(wait);
+			assertThat(rejection.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+			assertThat(rejection.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+		}
+
+		@Test
+		public void transferAdmission_accountLimitGivesBackClientToken() throws Exception {
+			TransferAdmission admission = new TransferAdmission(0, 50, 1, 1, 1, 1, 100);
+
+			assertThat(admission.tryAdmit("client-1", "Id-1")).isEqualTo(TransferAdmission.ADMITTED);
+			assertThat(admission.tryAdmit("client-2", "Id-1")).isPositive();
+			assertThat(admission.getRejectedAccount()).isEqualTo(1);
+			// client-2 was turned away by the account, so its own bucket is still full
+			assertThat(admission.tryAdmit("client-2", "Id-2")).isEqualTo(TransferAdmission.ADMITTED);
+		}
+
+		@Test
+		public void transferAdmission_chargesABatchPerTransfer() throws Exception {
+			TransferAdmission admission = new TransferAdmission(0, 50, 1, 5, 1, 5, 100);
+
+			assertThat(admission.tryAdmit("client", Arrays.asList("Id-1", "Id-1", "Id-2", null, "Id-3", "Id-3",
+					"Id-3", "Id-3"))).isEqualTo(TransferAdmission.ADMITTED);
+			// eight transfers ran the client's bucket of five into debt
+			assertThat(admission.tryAdmit("client", "Id-9")).isGreaterThan(TimeUnit.SECONDS.toNanos(2));
+			assertThat(admission.tryCharge("other-client", "Id-2")).isEqualTo(TransferAdmission.ADMITTED);
+			assertThat(admission.tryAdmit("other-client", Arrays.asList("Id-4", "Id-9", "Id-9", "Id-9", "Id-9",
+					"Id-9"))).isEqualTo(TransferAdmission.ADMITTED);
+			assertThat(admission.tryAdmit("third-client", Arrays.asList("Id-5", "Id-9"))).isPositive();
+			assertThat(admission.getRejectedAccount()).isEqualTo(1);
+			// the rejected batch gave back what it had taken from Id-5 and its client
+			assertThat(admission.tryAdmit("third-client", Arrays.asList("Id-5", "Id-5", "Id-5", "Id-5", "Id-5")))
+					.isEqualTo(TransferAdmission.ADMITTED);
+		}
+
+		@Test
+		public void transferAdmission_trustsClientIdHeaderOnlyWhenConfigured() throws Exception {
+			MockHttpServletRequest request = new MockHttpServletRequest();
+			request.setRemoteAddr("10.0.0.7");
+
+			assertThat(new TransferAdmission(0, 50, 1, 1, 1, 1, 100).clientIdOf("spoofed", request))
+					.isEqualTo("address:10.0.0.7");
+			TransferAdmission behindProxy = new TransferAdmission(0, 50, 1, 1, 1, 1, 100, true);
+			assertThat(behindProxy.clientIdOf("client-7", request)).isEqualTo("client:client-7");
+			request.setUserPrincipal(() -> "alice");
+			assertThat(behindProxy.clientIdOf("client-7", request)).isEqualTo("principal:alice");
+		}
+
+		@Test
+		public void scheduleStandingOrder() throws Exception {
+			accountsService.createAccount(new Account("Id-1", new BigDecimal(100)));
+			accountsService.createAccount(new Account("Id-2", new BigDecimal(0)));
+
+			String created = this.mockMvc.perform(post("/v1/accounts/transfer/scheduled")
+					.contentType(MediaType.APPLICATION_JSON)
+					.content("{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"transferAmount\":10.5,"
+							+ "\"executeAt\":" + System.currentTimeMillis() + ",\"repeatIntervalMillis\":50,\"executions\":3}"))
+					.andExpect(status().isCreated())
+					.andExpect(jsonPath("$.status").value("PENDING"))
+					.andReturn().getResponse().getContentAsString();
+			String id = JsonPath.read(created, "$.id");
+
+			long deadline = System.currentTimeMillis() + 10_000;
+			String status;
+			do {
+				Thread.sleep(20);
+				status = JsonPath.read(this.mockMvc.perform(get("/v1/accounts/transfer/scheduled/" + id))
+						.andReturn().getResponse().getContentAsString(), "$.status");
+			} while ("PENDING".equals(status) && System.currentTimeMillis() < deadline);
+
+			assertThat(status).isEqualTo("COMPLETED");
+			assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualTo("68.5");
+			assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualTo("31.5");
+			this.mockMvc.perform(get("/v1/accounts/transfer/scheduled/" + id))
+					.andExpect(jsonPath("$.remainingExecutions").value(0))
+					.andExpect(jsonPath("$.lastStatus").value("COMPLETED"));
+		}
+
+		@Test
+		public void cancelScheduledTransfer() throws Exception {
+			accountsService.createAccount(new Account("Id-1", new BigDecimal(100)));
+			accountsService.createAccount(new Account("Id-2", new BigDecimal(0)));
+			String body = "{\"accountFromId\":\"Id-1\",\"accountToId\":\"Id-2\",\"transferAmount\":10,"
+					+ "\"executeAt\":" + (System.currentTimeMillis() + 3_600_000) + "}";
+
+			String created = this.mockMvc.perform(post("/v1/accounts/transfer/scheduled")
+					.contentType(MediaType.APPLICATION_JSON).content(body))
+					.andExpect(status().isCreated()).andReturn().getResponse().getContentAsString();
+			String id = JsonPath.read(created, "$.id");
+
+			this.mockMvc.perform(delete("/v1/accounts/transfer/scheduled/" + id)).andExpect(status().isNoContent());
+			this.mockMvc.perform(get("/v1/accounts/transfer/scheduled/" + id))
+					.andExpect(jsonPath("$.status").value("CANCELLED"));
+			this.mockMvc.perform(delete("/v1/accounts/transfer/scheduled/" + id)).andExpect(status().isConflict());
+			this.mockMvc.perform(delete("/v1/accounts/transfer/scheduled/unknown")).andExpect(status().isNotFound());
+			this.mockMvc.perform(post("/v1/accounts/transfer/scheduled").contentType(MediaType.APPLICATION_JSON)
+					.content(body.replace("}", ",\"executions\":2}")))
+					.andExpect(status().isBadRequest());
+		}
+
+		@Test
+		public void scheduledTransfersFailWhenTheirBatchThrows() throws Exception {
+			AccountsService accounts = new AccountsService(new AccountsRepositoryInMemory());
+			accounts.createAccount(new Account("Id-1", new BigDecimal(100)));
+			accounts.createAccount(new Account("Id-2", new BigDecimal(0)));
+			BatchMoneyTransferService failing = new BatchMoneyTransferService(accounts,
+					new MoneyTransferService(new MoneyTransferRepositoryImpl(16)), null, 1) {
+				@Override
+				public List<MoneyTransferResult> transferMoney(List<AccountMoneyTransferRequest> requests,
+						TransferBatchMode mode) {
+					throw new IllegalStateException("Transfer engine is shut down");
+				}
+			};
+			TransferScheduler scheduler = new TransferScheduler(failing, accounts, (account, description) -> {
+			}, 1, 10_000, 60_000);
+			try {
+				ScheduledTransfer transfer = scheduler.schedule(new ScheduledTransferRequest("Id-1", "Id-2",
+						new BigDecimal(10), System.currentTimeMillis(), 20L, 2));
+
+				long deadline = System.currentTimeMillis() + 10_000;
+				while (transfer.getStatus() == ScheduledTransferStatus.PENDING && System.currentTimeMillis() < deadline) {
+					Thread.sleep(10);
+				}
+				synchronized (transfer) {
+					assertThat(transfer.getStatus()).isEqualTo(ScheduledTransferStatus.FAILED);
+					assertThat(transfer.getLastStatus()).isEqualTo(TransferStatus.FAILED);
+					assertThat(transfer.getLastMessage()).contains("shut down");
+					assertThat(transfer.getRemainingExecutions()).isEqualTo(0);
+				}
+				// kept for the retention period like any finished transfer
+				assertThat(scheduler.getScheduledTransfer(transfer.getId())).isSameAs(transfer);
+				assertThat(scheduler.getPending()).isEqualTo(1);
+			} finally {
+				scheduler.shutdown();
+				failing.shutdown();
+			}
+		}
+
 }
@@ -1,8 +1,20 @@
 package com.db.awmd.challenge;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -11,7 +23,18 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountBalance;
+import com.db.awmd.challenge.domain.MoneyTransfer;
+import com.db.awmd.challenge.domain.StripedAccountBalance;
 import com.db.awmd.challenge.exception.OverdraftsAccountException;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.LockFreeMoneyTransferRepository;
+import com.db.awmd.challenge.repository.MoneyTransferRepository;
+import com.db.awmd.challenge.repository.MoneyTransferRepositoryImpl;
+import com.db.awmd.challenge.repository.NettingMoneyTransferRepository;
+import com.db.awmd.challenge.repository.SequencedMoneyTransferRepository;
+import com.db.awmd.challenge.repository.ShardedMoneyTransferRepository;
+import com.db.awmd.challenge.service.BalanceSnapshots;
 import com.db.awmd.challenge.service.MoneyTransferService;
 
 @RunWith(SpringRunner.class)
@@ -46,4 +69,563 @@ public class MoneyTransferServiceTest {
 		}
 	}
 
+	@Test
+	public void transferMoney_opposingStormsNeverDeadlockAndConserveMoney() throws Exception {
+		runOpposingTransferStorm(this.moneyTransferService);
+	}
+
+	@Test
+	public void transferMoney_lockFreeEngineConservesMoney() throws Exception {
+		runOpposingTransferStorm(new MoneyTransferService(new LockFreeMoneyTransferRepository()));
+	}
+
+	@Test
+	public void transferMoney_shardedEngineConservesMoney() throws Exception {
+		ShardedMoneyTransferRepository sharded = new ShardedMoneyTransferRepository(4);
+		try {
+			runOpposingTransferStorm(new MoneyTransferService(sharded));
+		} finally {
+			sharded.shutdown();
+		}
+	}
+
+	@Test
+	public void transferMoney_sequencerEngineConservesMoney() throws Exception {
+		SequencedMoneyTransferRepository sequencer = new SequencedMoneyTransferRepository(16);
+		try {
+			runOpposingTransferStorm(new MoneyTransferService(sequencer));
+
+			Account from = new Account("Id-1", new BigDecimal(100));
+			Account to = new Account("Id-2", new BigDecimal(100));
+			assertThat(sequencer.transferMoneyAtomically(Arrays.asList(new MoneyTransfer(from, to, 6000),
+					new MoneyTransfer(from, to, 6000)))).isEqualTo(1);
+			assertThat(from.getBalance()).isEqualByComparingTo("100");
+		} finally {
+			sequencer.shutdown();
+		}
+	}
+
+	@Test
+	public void transferMoney_sequencerAppliesEveryCommandOnceWhenCallersLapTheRing() throws Exception {
+		SequencedMoneyTransferRepository sequencer = new SequencedMoneyTransferRepository(2);
+		try {
+			int threads = 8;
+			int transfersPerThread = 3000;
+			Account sink = new Account("Id-sink", new BigDecimal(0));
+			Account[] payers = new Account[threads];
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			CountDownLatch start = new CountDownLatch(1);
+			for (int t = 0; t < threads; t++) {
+				Account payer = new Account("Id-" + t, new BigDecimal(100000));
+				BigDecimal amount = new BigDecimal(t + 1);
+				payers[t] = payer;
+				executor.submit(() -> {
+					start.await();
+					for (int i = 0; i < transfersPerThread; i++) {
+						sequencer.transferMoney(payer, sink, amount);
+					}
+					return null;
+				});
+			}
+			start.countDown();
+			executor.shutdown();
+
+			assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+			// every payer pays a different amount, so a command applied twice or lost shows up
+			for (int t = 0; t < threads; t++) {
+				assertThat(payers[t].getBalance()).isEqualByComparingTo(new BigDecimal(100000 - (t + 1) * transfersPerThread));
+			}
+			assertThat(sink.getBalance()).isEqualByComparingTo(new BigDecimal(36 * transfersPerThread));
+		} finally {
+			sequencer.shutdown();
+		}
+	}
+
+	@Test
+	public void transferMoney_sequencerSurvivesAnErrorAndFailsCallersAfterShutdown() throws Exception {
+		SequencedMoneyTransferRepository sequencer = new SequencedMoneyTransferRepository(4);
+		Account broken = new Account("Id-1", new AccountBalance(10000) {
+			@Override
+			public boolean tryDebit(long amount) {
+				throw new AssertionError("corrupt balance");
+			}
+		});
+		Account from = new Account("Id-1", new BigDecimal(100));
+		Account to = new Account("Id-2", new BigDecimal(100));
+		try {
+			sequencer.transferMoney(broken, to, new BigDecimal(10));
+			fail("the error should reach the caller");
+		} catch (AssertionError expected) {
+			assertThat(expected.getMessage()).isEqualTo("corrupt balance");
+		}
+		sequencer.transferMoney(from, to, new BigDecimal(10));
+		assertThat(to.getBalance()).isEqualByComparingTo("110");
+
+		sequencer.shutdown();
+		try {
+			sequencer.transferMoney(from, to, new BigDecimal(10));
+			fail("a shut down engine should refuse transfers");
+		} catch (IllegalStateException expected) {
+			assertThat(from.getBalance()).isEqualByComparingTo("90");
+		}
+	}
+
+	@Test
+	public void transferMoney_nettingEngineSurvivesAnErrorAndFailsCallersAfterShutdown() throws Exception {
+		NettingMoneyTransferRepository netting = new NettingMoneyTransferRepository(0, 4096);
+		Account broken = new Account("Id-1", new AccountBalance(10000) {
+			@Override
+			public boolean tryDebit(long amount) {
+				throw new AssertionError("corrupt balance");
+			}
+		});
+		Account from = new Account("Id-1", new BigDecimal(100));
+		Account to = new Account("Id-2", new BigDecimal(100));
+		try {
+			netting.transferMoney(broken, to, new BigDecimal(10));
+			fail("the error should reach the caller");
+		} catch (AssertionError expected) {
+			assertThat(expected.getMessage()).isEqualTo("corrupt balance");
+		}
+		try {
+			netting.transferMoneyAtomically(Arrays.asList(new MoneyTransfer(broken, to, 1000)));
+			fail("the error should reach the caller");
+		} catch (AssertionError expected) {
+			assertThat(expected.getMessage()).isEqualTo("corrupt balance");
+		}
+		netting.transferMoney(from, to, new BigDecimal(10));
+		assertThat(to.getBalance()).isEqualByComparingTo("110");
+
+		netting.shutdown();
+		try {
+			netting.transferMoney(from, to, new BigDecimal(10));
+			fail("a shut down engine should refuse transfers");
+		} catch (IllegalStateException expected) {
+			assertThat(from.getBalance()).isEqualByComparingTo("90");
+		}
+	}
+
+	@Test
+	public void transferMoney_nettingEngineConservesMoneyAndSavesWrites() throws Exception {
+		NettingMoneyTransferRepository netting = new NettingMoneyTransferRepository(1000, 4096);
+		try {
+			runOpposingTransferStorm(new MoneyTransferService(netting));
+
+			// the opposing transfers share windows, so they cost less than two writes each
+			assertThat(netting.getAppliedTransfers()).isGreaterThan(0);
+			assertThat(netting.getAccountWrites()).isLessThan(2 * netting.getAppliedTransfers());
+			assertThat(netting.getWriteReduction()).isGreaterThan(0.0);
+
+			Account from = new Account("Id-1", new BigDecimal(100));
+			Account to = new Account("Id-2", new BigDecimal(100));
+			assertThat(netting.transferMoneyAtomically(Arrays.asList(new MoneyTransfer(from, to, 6000),
+					new MoneyTransfer(from, to, 6000)))).isEqualTo(1);
+			assertThat(from.getBalance()).isEqualByComparingTo("100");
+			try {
+				netting.transferMoney(from, to, new BigDecimal(100));
+			} catch (OverdraftsAccountException oae) {
+				assertThat(oae.getMessage()).contains("overdafts");
+			}
+			assertThat(from.getBalance()).isEqualByComparingTo("100");
+		} finally {
+			netting.shutdown();
+		}
+	}
+
+	@Test
+	public void transferMoneyAtomically_shardedEngineIsAllOrNothingAcrossShards() throws Exception {
+		ShardedMoneyTransferRepository sharded = new ShardedMoneyTransferRepository(4);
+		try {
+			List<Account> accounts = new ArrayList<>();
+			List<MoneyTransfer> ring = new ArrayList<>();
+			for (int i = 0; i < 16; i++) {
+				accounts.add(new Account("Id-" + i, new BigDecimal(100)));
+			}
+			for (int i = 0; i < 16; i++) {
+				ring.add(new MoneyTransfer(accounts.get(i), accounts.get((i + 1) % 16), 5000));
+			}
+			assertThat(sharded.transferMoneyAtomically(ring)).isEqualTo(MoneyTransferRepository.ALL_APPLIED);
+
+			// the poor account cannot cover its leg, which the check before any shard is asked catches
+			Account poor = new Account("Id-poor", new BigDecimal(1));
+			List<MoneyTransfer> doomed = new ArrayList<>(ring);
+			doomed.add(new MoneyTransfer(poor, accounts.get(0), 200));
+			assertThat(sharded.transferMoneyAtomically(doomed)).isEqualTo(16);
+
+			for (Account account : accounts) {
+				assertThat(account.getBalance()).isEqualByComparingTo("100");
+			}
+			assertThat(poor.getBalance()).isEqualByComparingTo("1");
+
+			assertThat(sharded.transferMoneyAtomically(
+					Arrays.asList(new MoneyTransfer(poor, accounts.get(3), 50)))).isEqualTo(
+							MoneyTransferRepository.ALL_APPLIED);
+			assertThat(poor.getBalance()).isEqualByComparingTo("0.5");
+		} finally {
+			sharded.shutdown();
+		}
+	}
+
+	@Test
+	public void transferMoneyAtomically_shardedEngineRollsBackDebitsTakenByOtherShards() throws Exception {
+		ShardedMoneyTransferRepository sharded = new ShardedMoneyTransferRepository(4);
+		try {
+			AtomicInteger debitsTaken = new AtomicInteger();
+			Account sink = new Account("Id-sink", new BigDecimal(0));
+			List<Account> payers = new ArrayList<>();
+			List<MoneyTransfer> batch = new ArrayList<>();
+			for (int i = 0; i < 16; i++) {
+				Account payer = new Account("Id-" + i, new AccountBalance(10000) {
+					@Override
+					public boolean tryDebit(long amount) {
+						boolean taken = super.tryDebit(amount);
+						if (taken) {
+							debitsTaken.incrementAndGet();
+						}
+						return taken;
+					}
+				});
+				payers.add(payer);
+				batch.add(new MoneyTransfer(payer, sink, 5000));
+			}
+			// passes the check up front, but is emptied by another writer before its shard takes the debit
+			Account drained = new Account("Id-drained", new AccountBalance(10000) {
+				@Override
+				public boolean tryDebit(long amount) {
+					set(0);
+					return super.tryDebit(amount);
+				}
+			});
+			batch.add(new MoneyTransfer(drained, sink, 5000));
+
+			assertThat(sharded.transferMoneyAtomically(batch)).isEqualTo(16);
+			assertThat(debitsTaken.get()).isGreaterThan(0);
+			for (Account payer : payers) {
+				assertThat(payer.getBalance()).isEqualByComparingTo("100");
+			}
+			assertThat(sink.getBalance()).isEqualByComparingTo("0");
+			assertThat(drained.getBalance()).isEqualByComparingTo("0");
+		} finally {
+			sharded.shutdown();
+		}
+	}
+
+	@Test
+	public void transferMoney_shardedEngineSurvivesAnErrorAndFailsCallersAfterShutdown() throws Exception {
+		ShardedMoneyTransferRepository sharded = new ShardedMoneyTransferRepository(2);
+		Account broken = new Account("Id-1", new AccountBalance(10000) {
+			@Override
+			public boolean tryDebit(long amount) {
+				throw new AssertionError("corrupt balance");
+			}
+		});
+		Account from = new Account("Id-1", new BigDecimal(100));
+		Account to = new Account("Id-2", new BigDecimal(100));
+		try {
+			sharded.transferMoney(broken, to, new BigDecimal(10));
+			fail("the error should reach the caller");
+		} catch (AssertionError expected) {
+			assertThat(expected.getMessage()).isEqualTo("corrupt balance");
+		}
+		// the shard that owns Id-1 is still applying commands
+		sharded.transferMoney(from, to, new BigDecimal(10));
+		assertThat(to.getBalance()).isEqualByComparingTo("110");
+
+		sharded.shutdown();
+		try {
+			sharded.transferMoney(from, to, new BigDecimal(10));
+			fail("a shut down engine should refuse transfers");
+		} catch (IllegalStateException expected) {
+			assertThat(from.getBalance()).isEqualByComparingTo("90");
+		}
+	}
+
+	@Test
+	public void transferMoney_shardedEngineNeverLosesACreditAfterTheDebit() throws Exception {
+		// with two shards Id-1 and Id-2 have different owners, so credits cross shards
+		ShardedMoneyTransferRepository sharded = new ShardedMoneyTransferRepository(2);
+		Account from = new Account("Id-1", new BigDecimal(100));
+		Account to = new Account("Id-2", new BigDecimal(100));
+		// the shards stop between the debit and the credit
+		assertThat(sharded.transferMoney(from, to, new BigDecimal(10), sharded::shutdown)).isTrue();
+		assertThat(from.getBalance()).isEqualByComparingTo("90");
+		assertThat(to.getBalance()).isEqualByComparingTo("110");
+
+		sharded = new ShardedMoneyTransferRepository(2);
+		assertThat(sharded.transferMoneyAtomically(
+				Arrays.asList(new MoneyTransfer(from, to, 1000), new MoneyTransfer(to, from, 500)), sharded::shutdown))
+						.isEqualTo(MoneyTransferRepository.ALL_APPLIED);
+		assertThat(from.getBalance()).isEqualByComparingTo("85");
+		assertThat(to.getBalance()).isEqualByComparingTo("115");
+
+		sharded = new ShardedMoneyTransferRepository(2);
+		Account broken = new Account("Id-2", new AccountBalance(10000) {
+			@Override
+			public void credit(long amount) {
+				throw new AssertionError("corrupt balance");
+			}
+		});
+		try {
+			sharded.transferMoney(from, broken, new BigDecimal(10));
+			fail("the error should reach the caller");
+		} catch (AssertionError expected) {
+			assertThat(expected.getMessage()).isEqualTo("corrupt balance");
+		}
+		// the debit was given back
+		assertThat(from.getBalance()).isEqualByComparingTo("85");
+		assertThat(from.getBalance().add(to.getBalance())).isEqualByComparingTo("200");
+		sharded.shutdown();
+	}
+
+	@Test
+	public void transferMoney_hotAccountFanInConservesMoney() throws Exception {
+		AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+		repository.setHotAccounts(new String[] { "Id-treasury" }, 8);
+		Account treasury = new Account("Id-treasury", new BigDecimal(1));
+		repository.createAccount(treasury);
+		assertThat(repository.getAccount("Id-treasury")).isSameAs(treasury);
+		assertThat(treasury.getMinorUnitBalance().isStriped()).isTrue();
+
+		MoneyTransferService transferService = new MoneyTransferService(new MoneyTransferRepositoryImpl(64));
+		int threads = 8;
+		int transfersPerThread = 2000;
+		Account[] clients = new Account[threads];
+		for (int t = 0; t < threads; t++) {
+			clients[t] = new Account("Id-client-" + t, new BigDecimal(100000));
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		for (int t = 0; t < threads; t++) {
+			Account client = clients[t];
+			executor.submit(() -> {
+				start.await();
+				for (int i = 0; i < transfersPerThread; i++) {
+					transferService.transferMoney(client, treasury, new BigDecimal(3));
+					try {
+						transferService.transferMoney(treasury, client, new BigDecimal(2));
+					} catch (OverdraftsAccountException oae) {
+						// a credit may still be landing on another stripe
+					}
+				}
+				return null;
+			});
+		}
+		start.countDown();
+		executor.shutdown();
+
+		assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+		BigDecimal total = treasury.getBalance();
+		for (Account client : clients) {
+			total = total.add(client.getBalance());
+		}
+		assertThat(total).isEqualByComparingTo(new BigDecimal(threads * 100000 + 1));
+		assertThat(treasury.getBalance()).isGreaterThanOrEqualTo(new BigDecimal(threads * transfersPerThread + 1));
+	}
+
+	@Test
+	public void stripedBalance_debitFoldsCreditsIntoTheBase() {
+		StripedAccountBalance balance = new StripedAccountBalance(100, 4);
+		balance.credit(500);
+		balance.credit(300);
+
+		// the base alone holds 100, so the debit has to fold the stripes in first
+		assertThat(balance.tryDebit(700)).isTrue();
+		assertThat(balance.get()).isEqualTo(200);
+		assertThat(balance.tryDebit(200)).isFalse();
+
+		balance.credit(50);
+		balance.set(1000);
+		assertThat(balance.get()).isEqualTo(1000);
+		assertThat(balance.tryDebit(999)).isTrue();
+		assertThat(balance.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void snapshot_seesMoneyConservedWhileTransfersRun() throws Exception {
+		BalanceSnapshots snapshots = new BalanceSnapshots(64);
+		// the lock-free engine debits and credits separately, so live reads can catch money in flight
+		MoneyTransferService transferService = new MoneyTransferService(new LockFreeMoneyTransferRepository());
+		transferService.setBalanceSnapshots(snapshots);
+		Account[] accounts = new Account[6];
+		for (int i = 0; i < accounts.length; i++) {
+			accounts[i] = new Account("Id-" + i, new BigDecimal(1000));
+		}
+		int threads = 4;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		AtomicBoolean running = new AtomicBoolean(true);
+		for (int t = 0; t < threads; t++) {
+			int offset = t;
+			executor.submit(() -> {
+				for (int i = 0; running.get(); i++) {
+					Account from = accounts[(i + offset) % accounts.length];
+					Account to = accounts[(i * 5 + offset + 1) % accounts.length];
+					if (from != to) {
+						try {
+							transferService.transferMoney(from, to, new BigDecimal(3));
+						} catch (OverdraftsAccountException oae) {
+							// fine, the snapshot must still add up
+						}
+					}
+				}
+				return null;
+			});
+		}
+
+		long previousVersion = -1;
+		for (int read = 0; read < 2000; read++) {
+			try (BalanceSnapshots.Snapshot snapshot = snapshots.open()) {
+				long total = 0;
+				for (Account account : accounts) {
+					total += snapshot.minorUnitsOf(account);
+				}
+				assertThat(total).isEqualTo(accounts.length * 100000L);
+				assertThat(snapshot.getVersion()).isGreaterThanOrEqualTo(previousVersion);
+				previousVersion = snapshot.getVersion();
+			}
+		}
+		running.set(false);
+		executor.shutdown();
+
+		assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+		try (BalanceSnapshots.Snapshot snapshot = snapshots.open()) {
+			for (Account account : accounts) {
+				assertThat(snapshot.balanceOf(account)).isEqualByComparingTo(account.getBalance());
+			}
+		}
+	}
+
+	@Test
+	public void snapshot_followsASerialOrderOfTheTransfers() throws Exception {
+		assertSnapshotsFollowASerialOrder(new MoneyTransferRepositoryImpl(64));
+		assertSnapshotsFollowASerialOrder(new LockFreeMoneyTransferRepository());
+	}
+
+	/**
+	 * Money is passed along a ring of accounts that start nearly empty, so most
+	 * transfers spend what an earlier one credited. Replaying the committed
+	 * transfers in version order must cover every debit and pass through every
+	 * state a snapshot showed.
+	 */
+	private static void assertSnapshotsFollowASerialOrder(MoneyTransferRepository engine) throws Exception {
+		BalanceSnapshots snapshots = new BalanceSnapshots(64);
+		Account[] accounts = new Account[4];
+		long[] initial = new long[accounts.length];
+		for (int i = 0; i < accounts.length; i++) {
+			accounts[i] = new Account("Id-" + i, new BigDecimal(i == 0 ? 100 : 1));
+			initial[i] = accounts[i].getMinorUnitBalance().get();
+		}
+		// version -> from, to, amount
+		ConcurrentSkipListMap<Long, long[]> committed = new ConcurrentSkipListMap<>();
+		int threads = 4;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		AtomicBoolean running = new AtomicBoolean(true);
+		for (int t = 0; t < threads; t++) {
+			int offset = t;
+			executor.submit(() -> {
+				for (int i = 0; running.get(); i++) {
+					int from = (i + offset) % accounts.length;
+					int to = (from + 1) % accounts.length;
+					long amount = 50 + (i * 7 + offset) % 100;
+					BalanceSnapshots.Ticket ticket = snapshots.begin(accounts[from], accounts[to]);
+					boolean transferred = false;
+					try {
+						transferred = engine.transferMoney(accounts[from], accounts[to], AccountBalance.toDecimal(amount),
+								ticket);
+					} catch (OverdraftsAccountException oae) {
+						// the money has not arrived yet
+					} finally {
+						if (transferred) {
+							snapshots.commit(ticket, accounts[from], accounts[to], amount);
+							committed.put(ticket.getVersion(), new long[] { from, to, amount });
+						} else {
+							snapshots.abort(ticket);
+						}
+					}
+				}
+				return null;
+			});
+		}
+
+		List<long[]> seen = new ArrayList<>();
+		for (int read = 0; read < 2000; read++) {
+			try (BalanceSnapshots.Snapshot snapshot = snapshots.open()) {
+				long[] state = new long[accounts.length + 1];
+				state[0] = snapshot.getVersion();
+				for (int i = 0; i < accounts.length; i++) {
+					state[i + 1] = snapshot.minorUnitsOf(accounts[i]);
+				}
+				seen.add(state);
+			}
+		}
+		running.set(false);
+		executor.shutdown();
+		assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+		long[] balances = initial.clone();
+		int next = 0;
+		for (Map.Entry<Long, long[]> transfer : committed.entrySet()) {
+			for (; next < seen.size() && seen.get(next)[0] < transfer.getKey(); next++) {
+				assertThat(Arrays.copyOfRange(seen.get(next), 1, accounts.length + 1)).isEqualTo(balances);
+			}
+			int from = (int) transfer.getValue()[0];
+			int to = (int) transfer.getValue()[1];
+			long amount = transfer.getValue()[2];
+			assertThat(AccountBalance.canDebit(balances[from], amount))
+					.as("version %d debits %d from account %d holding %d", transfer.getKey(), amount, from, balances[from])
+					.isTrue();
+			balances[from] -= amount;
+			balances[to] += amount;
+		}
+		for (; next < seen.size(); next++) {
+			assertThat(Arrays.copyOfRange(seen.get(next), 1, accounts.length + 1)).isEqualTo(balances);
+		}
+		for (int i = 0; i < accounts.length; i++) {
+			assertThat(accounts[i].getMinorUnitBalance().get()).isEqualTo(balances[i]);
+		}
+	}
+
+	@Test
+	public void transferMoney_keepsCentPrecision() throws Exception {
+		Account fromAccount = new Account("Id-123", new BigDecimal("10.05"));
+		Account toAccount = new Account("Id-456", new BigDecimal("0.95"));
+		this.moneyTransferService.transferMoney(fromAccount, toAccount, new BigDecimal("0.05"));
+
+		assertThat(fromAccount.getBalance()).isEqualTo("10");
+		assertThat(toAccount.getBalance()).isEqualTo("1");
+	}
+
+	private void runOpposingTransferStorm(MoneyTransferService transferService) throws Exception {
+		Account accountA = new Account("Id-A", new BigDecimal(10000));
+		Account accountB = new Account("Id-B", new BigDecimal(10000));
+		int threads = 8;
+		int transfersPerThread = 5000;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		for (int t = 0; t < threads; t++) {
+			boolean aToB = t % 2 == 0;
+			executor.submit(() -> {
+				start.await();
+				for (int i = 0; i < transfersPerThread; i++) {
+					try {
+						if (aToB) {
+							transferService.transferMoney(accountA, accountB, new BigDecimal(7));
+						} else {
+							transferService.transferMoney(accountB, accountA, new BigDecimal(7));
+						}
+					} catch (OverdraftsAccountException oae) {
+						// expected once one side runs dry
+					}
+				}
+				return null;
+			});
+		}
+		start.countDown();
+		executor.shutdown();
+
+		assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+		assertThat(accountA.getBalance().add(accountB.getBalance())).isEqualByComparingTo("20000");
+		assertThat(accountA.getBalance().signum()).isPositive();
+		assertThat(accountB.getBalance().signum()).isPositive();
+	}
+
 }
@@ -0,0 +1,67 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.db.awmd.challenge.service.TimingWheel;
+
+public class TimingWheelTest {
+
+	@Test
+	public void advanceTo_expiresEachTimerOnItsTickAcrossAllLevels() throws Exception {
+		long start = 1_000_003;
+		TimingWheel<Long> wheel = new TimingWheel<>(start);
+		Random random = new Random(42);
+		List<Long> deadlines = new ArrayList<>();
+		for (int i = 0; i < 100_000; i++) {
+			// spread over every level: up to 64^4 ticks ahead
+			long deadline = start + 1 + (long) Math.pow(random.nextDouble(), 4) * (1L << 24);
+			deadlines.add(deadline);
+			wheel.schedule(deadline, deadline);
+		}
+		wheel.schedule(start + 64, start + 64);
+		wheel.schedule(start + 4096, start + 4096);
+		deadlines.add(start + 64);
+		deadlines.add(start + 4096);
+		assertThat(wheel.size()).isEqualTo(deadlines.size());
+
+		List<Long> expired = new ArrayList<>();
+		long[] lateBy = new long[1];
+		long end = start + (1L << 24) + 1;
+		for (long tick = start + 997; ; tick += 997) {
+			long target = Math.min(tick, end);
+			wheel.advanceTo(target, deadline -> {
+				expired.add(deadline);
+				lateBy[0] = Math.max(lateBy[0], wheel.getCurrentTick() - deadline);
+				assertThat(wheel.getCurrentTick()).isGreaterThanOrEqualTo(deadline);
+			});
+			if (target == end) {
+				break;
+			}
+		}
+
+		assertThat(expired).hasSameSizeAs(deadlines);
+		assertThat(lateBy[0]).isEqualTo(0);
+		assertThat(wheel.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void schedule_pastDeadlineExpiresOnNextTickAndFarFutureWaits() throws Exception {
+		TimingWheel<String> wheel = new TimingWheel<>(100);
+		wheel.schedule("past", 10);
+		wheel.schedule("far", 100 + (1L << 40));
+		List<String> expired = new ArrayList<>();
+
+		wheel.advanceTo(101, expired::add);
+		assertThat(expired).containsExactly("past");
+		// past a full turn of the two lowest levels, far short of the deadline
+		wheel.advanceTo(101 + (1L << 13), expired::add);
+		assertThat(expired).containsExactly("past");
+		assertThat(wheel.size()).isEqualTo(1);
+	}
+}
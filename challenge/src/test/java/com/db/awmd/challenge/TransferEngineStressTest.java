@@ -0,0 +1,84 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.db.awmd.challenge.TransferStressHarness.Result;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountBalance;
+import com.db.awmd.challenge.domain.MoneyTransfer;
+import com.db.awmd.challenge.exception.OverdraftsAccountException;
+import com.db.awmd.challenge.repository.MoneyTransferRepository;
+import com.db.awmd.challenge.repository.MoneyTransferRepositoryImpl;
+
+public class TransferEngineStressTest {
+
+	@Test
+	public void everyEngine_keepsBalancesConsistentUnderContention() throws Exception {
+		for (String engine : new String[] { "locking", "lock-free", "sharded", "sequencer", "netting" }) {
+			Result result = TransferStressHarness.run(engine, 16, 4, 25_000, 7);
+
+			assertThat(result.getViolations()).as(engine).isEmpty();
+			assertThat(result.getCompleted()).as(engine).isGreaterThan(0);
+			assertThat(result.getOverdrawn()).as(engine).isGreaterThan(0);
+		}
+	}
+
+	@Test
+	public void run_reportsRefusalsThatTheBalanceDidNotJustify() throws Exception {
+		MoneyTransferRepository refusesOddAmounts = new DelegatingEngine() {
+			@Override
+			public boolean transferMoney(Account fromAccount, Account toAccount, BigDecimal transferAmount) {
+				if (AccountBalance.toMinorUnits(transferAmount) % 2 == 1) {
+					throw new OverdraftsAccountException("Insufficient funds");
+				}
+				return super.transferMoney(fromAccount, toAccount, transferAmount);
+			}
+		};
+
+		Result result = TransferStressHarness.run(refusesOddAmounts, 16, 2, 10_000, 7);
+
+		assertThat(result.getViolationCount()).isGreaterThan(0);
+		assertThat(result.getViolations().get(0)).contains("was refused although");
+	}
+
+	@Test
+	public void run_reportsLostUpdates() throws Exception {
+		MoneyTransferRepository losesCredits = new DelegatingEngine() {
+			private int calls;
+
+			@Override
+			public synchronized boolean transferMoney(Account fromAccount, Account toAccount, BigDecimal transferAmount) {
+				long amount = AccountBalance.toMinorUnits(transferAmount);
+				if (++calls % 100 == 0 && fromAccount.getMinorUnitBalance().tryDebit(amount)) {
+					return true;
+				}
+				return super.transferMoney(fromAccount, toAccount, transferAmount);
+			}
+		};
+
+		Result result = TransferStressHarness.run(losesCredits, 16, 2, 10_000, 7);
+
+		assertThat(result.getViolations().stream().anyMatch(violation -> violation.startsWith("Total money changed")))
+				.isTrue();
+	}
+
+	private static class DelegatingEngine implements MoneyTransferRepository {
+
+		private final MoneyTransferRepository delegate = new MoneyTransferRepositoryImpl(64);
+
+		@Override
+		public boolean transferMoney(Account fromAccount, Account toAccount, BigDecimal transferAmount) {
+			return delegate.transferMoney(fromAccount, toAccount, transferAmount);
+		}
+
+		@Override
+		public int transferMoneyAtomically(List<MoneyTransfer> transfers) {
+			return delegate.transferMoneyAtomically(transfers);
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.MoneyTransfer;
+import com.db.awmd.challenge.exception.OverdraftsAccountException;
+import com.db.awmd.challenge.metrics.TransferEventLog;
+import com.db.awmd.challenge.repository.MoneyTransferRepositoryImpl;
+import com.db.awmd.challenge.service.MoneyTransferService;
+
+public class TransferEventLogTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void transferOutcomes_areWrittenAsJsonLines() throws Exception {
+		File file = new File(folder.getRoot(), "events/transfers.jsonl");
+		TransferEventLog eventLog = new TransferEventLog(file.getPath(), 16);
+		MoneyTransferService transferService = new MoneyTransferService(new MoneyTransferRepositoryImpl(16));
+		transferService.setTransferEventLog(eventLog);
+		Account from = new Account("Id-\"1\"", new BigDecimal(100));
+		Account to = new Account("Id-\u00e9\u20ac", new BigDecimal(0));
+
+		transferService.transferMoney(from, to, new BigDecimal("12.50"));
+		try {
+			transferService.transferMoney(from, to, new BigDecimal(500));
+		} catch (OverdraftsAccountException expected) {
+			// logged as an overdraft
+		}
+		transferService.transferMoneyAtomically(Collections.singletonList(new MoneyTransfer(to, from, 105)));
+		eventLog.close();
+
+		List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		assertThat(lines).hasSize(3);
+		assertThat(lines.get(0)).matches("\\{\"time\":\\d+,\"outcome\":\"COMPLETED\",\"from\":\"Id-\\\\\"1\\\\\"\","
+				+ "\"to\":\"Id-\u00e9\u20ac\",\"amount\":12.50,\"latencyMicros\":\\d+\\}");
+		assertThat(lines.get(1)).contains("\"outcome\":\"OVERDRAFT\"").contains("\"amount\":500,");
+		assertThat(lines.get(2)).contains("\"from\":\"Id-\u00e9\u20ac\"").contains("\"amount\":1.05,");
+		assertThat(eventLog.getWritten()).isEqualTo(3);
+		assertThat(eventLog.getDropped()).isEqualTo(0);
+	}
+
+	@Test
+	public void record_dropsInsteadOfBlockingWhenTheWriterFallsBehind() throws Exception {
+		TransferEventLog eventLog = new TransferEventLog(new File(folder.getRoot(), "transfers.jsonl").getPath(), 4);
+		Account from = new Account("Id-1", new BigDecimal(100));
+		Account to = new Account("Id-2", new BigDecimal(100));
+		for (int i = 0; i < 100_000; i++) {
+			eventLog.record(TransferEventLog.Outcome.COMPLETED, from, to, 1, 0);
+		}
+		eventLog.close();
+
+		assertThat(eventLog.getDropped()).isGreaterThan(0);
+		assertThat(eventLog.getWritten() + eventLog.getDropped()).isEqualTo(100_000);
+	}
+
+	@Test
+	public void close_givesUpOnAnEventItsRecorderNeverFinished() throws Exception {
+		File file = new File(folder.getRoot(), "transfers.jsonl");
+		TransferEventLog eventLog = new TransferEventLog(file.getPath(), 16);
+		Account from = new Account("Id-1", new BigDecimal(100));
+		Account to = new Account("Id-2", new BigDecimal(100));
+		Account broken = new Account("Id-3", new BigDecimal(100)) {
+			@Override
+			public String getAccountId() {
+				throw new IllegalStateException("broken account");
+			}
+		};
+		eventLog.record(TransferEventLog.Outcome.COMPLETED, from, to, 1, 0);
+		try {
+			eventLog.record(TransferEventLog.Outcome.COMPLETED, broken, to, 1, 0);
+			fail("the recorder should have failed");
+		} catch (IllegalStateException expected) {
+			// its slot stays claimed but is never published
+		}
+		eventLog.record(TransferEventLog.Outcome.COMPLETED, to, from, 1, 0);
+
+		long started = System.nanoTime();
+		eventLog.close();
+
+		assertThat(System.nanoTime() - started).isLessThan(TimeUnit.SECONDS.toNanos(10));
+		assertThat(eventLog.getWritten()).isEqualTo(1);
+		assertThat(eventLog.getDropped()).isEqualTo(2);
+		assertThat(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)).hasSize(1);
+
+		eventLog.record(TransferEventLog.Outcome.COMPLETED, from, to, 1, 0);
+		assertThat(eventLog.getDropped()).isEqualTo(3);
+	}
+}
@@ -0,0 +1,299 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.TransferNotDurableException;
+import com.db.awmd.challenge.journal.JournalSnapshotter;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.MoneyTransferRepositoryImpl;
+import com.db.awmd.challenge.service.AccountEventListener;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.MoneyTransferService;
+
+public class TransferJournalTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void recover_rebuildsBalancesAcrossSegments() throws Exception {
+		String directory = folder.getRoot().getPath();
+		AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+		TransferJournal journal = new TransferJournal(repository, directory, 1024, true, 1);
+		AccountsService accountsService = new AccountsService(repository);
+		MoneyTransferService transferService = new MoneyTransferService(new MoneyTransferRepositoryImpl(16));
+		accountsService.setAccountEventListeners(Collections.singletonList(journal));
+		transferService.setAccountEventListeners(Collections.singletonList(journal));
+
+		accountsService.createAccount(new Account("Id-1", new BigDecimal("1000.50")));
+		accountsService.createAccount(new Account("Id-2", new BigDecimal(10)));
+		for (int i = 0; i < 200; i++) {
+			transferService.transferMoney(accountsService.getAccount("Id-1"), accountsService.getAccount("Id-2"),
+					new BigDecimal("1.25"));
+		}
+		journal.close();
+		assertThat(folder.getRoot().list().length).isGreaterThan(1);
+
+		AccountsRepositoryInMemory recovered = new AccountsRepositoryInMemory();
+		new TransferJournal(recovered, directory, 1024, true, 1).close();
+
+		assertThat(recovered.getAccount("Id-1").getBalance()).isEqualTo("750.5");
+		assertThat(recovered.getAccount("Id-2").getBalance()).isEqualTo("260");
+	}
+
+	@Test
+	public void recover_keepsTheFirstCreationOfAnAccount() throws Exception {
+		String directory = folder.getRoot().getPath();
+		AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+		TransferJournal journal = new TransferJournal(repository, directory, 4096, true, 1);
+		AccountsService accountsService = new AccountsService(repository);
+		accountsService.setAccountEventListeners(Collections.singletonList(journal));
+
+		accountsService.createAccount(new Account("Id-1", new BigDecimal(100)));
+		try {
+			accountsService.createAccount(new Account("Id-1", new BigDecimal(999)));
+		} catch (DuplicateAccountIdException dae) {
+			assertThat(dae.getMessage()).contains("Id-1");
+		}
+		journal.close();
+
+		AccountsRepositoryInMemory recovered = new AccountsRepositoryInMemory();
+		new TransferJournal(recovered, directory, 4096, true, 1).close();
+		assertThat(recovered.getAccount("Id-1").getBalance()).isEqualTo("100");
+	}
+
+	@Test
+	public void transferMoneyAsync_completesOnceJournalIsDurable() throws Exception {
+		String directory = folder.getRoot().getPath();
+		AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+		TransferJournal journal = new TransferJournal(repository, directory, 4096, true, 1);
+		MoneyTransferService transferService = new MoneyTransferService(new MoneyTransferRepositoryImpl(16));
+		transferService.setAccountEventListeners(Collections.singletonList(journal));
+		Account from = new Account("Id-1", new BigDecimal(100));
+		Account to = new Account("Id-2", new BigDecimal(100));
+		journal.accountCreating(from, 10000);
+		journal.accountCreating(to, 10000);
+
+		CompletableFuture<?>[] transfers = new CompletableFuture<?>[50];
+		for (int i = 0; i < transfers.length; i++) {
+			transfers[i] = transferService.transferMoneyAsync(from, to, new BigDecimal(1));
+		}
+		CompletableFuture.allOf(transfers).get(10, TimeUnit.SECONDS);
+		assertThat(from.getBalance()).isEqualTo("50");
+		journal.close();
+
+		AccountsRepositoryInMemory recovered = new AccountsRepositoryInMemory();
+		new TransferJournal(recovered, directory, 4096, true, 1).close();
+		assertThat(recovered.getAccount("Id-1").getBalance()).isEqualTo("50");
+		assertThat(recovered.getAccount("Id-2").getBalance()).isEqualTo("150");
+	}
+
+	@Test
+	public void recover_ignoresTornTail() throws Exception {
+		String directory = folder.getRoot().getPath();
+		AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+		TransferJournal journal = new TransferJournal(repository, directory, 4096, true, 1);
+		Account from = new Account("Id-1", new BigDecimal(100));
+		Account to = new Account("Id-2", new BigDecimal(100));
+		journal.accountCreating(from, 10000);
+		journal.accountCreating(to, 10000);
+		journal.moneyTransferred(from, to, 2500);
+		journal.close();
+
+		File segment = folder.getRoot().listFiles()[0];
+		try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+			// flip a byte of the transfer amount, the last record in the segment
+			long amountOffset = 2 * (4 + 1 + 2 + 4 + 8 + 4) + 4 + 1 + 2 + 4 + 2 + 4 + 7;
+			file.seek(amountOffset);
+			file.write(0x7f);
+			// a page of the torn write that reached the disk ahead of the others
+			file.seek(3001);
+			file.write(0x55);
+		}
+
+		AccountsRepositoryInMemory recovered = new AccountsRepositoryInMemory();
+		TransferJournal reopened = new TransferJournal(recovered, directory, 4096, true, 1);
+		try (RandomAccessFile file = new RandomAccessFile(segment, "r")) {
+			file.seek(3001);
+			assertThat(file.read()).isEqualTo(0);
+		}
+		assertThat(recovered.getAccount("Id-1").getBalance()).isEqualTo("100");
+		assertThat(recovered.getAccount("Id-2").getBalance()).isEqualTo("100");
+
+		reopened.moneyTransferred(from, to, 1000);
+		reopened.close();
+		AccountsRepositoryInMemory again = new AccountsRepositoryInMemory();
+		new TransferJournal(again, directory, 4096, true, 1).close();
+		assertThat(again.getAccount("Id-1").getBalance()).isEqualTo("90");
+		assertThat(again.getAccount("Id-2").getBalance()).isEqualTo("110");
+	}
+
+	@Test
+	public void recover_fromSnapshotPlusTailMatchesFullReplay() throws Exception {
+		int accounts = 50000;
+		File fullReplayDirectory = folder.newFolder("full");
+		File snapshotDirectory = folder.newFolder("snapshot");
+		TransferJournal fullReplayJournal = new TransferJournal(new AccountsRepositoryInMemory(),
+				fullReplayDirectory.getPath(), 1 << 20, false, 1);
+		TransferJournal snapshotJournal = new TransferJournal(new AccountsRepositoryInMemory(),
+				snapshotDirectory.getPath(), 1 << 20, false, 1);
+		for (TransferJournal journal : new TransferJournal[] { fullReplayJournal, snapshotJournal }) {
+			Account[] created = new Account[accounts];
+			for (int i = 0; i < accounts; i++) {
+				created[i] = new Account("Id-" + i, new BigDecimal(100));
+				journal.accountCreating(created[i], 10000);
+			}
+			for (int i = 0; i < accounts * 4; i++) {
+				journal.moneyTransferred(created[i % accounts], created[(i * 7 + 1) % accounts], i % 50);
+			}
+		}
+		assertThat(new JournalSnapshotter(snapshotJournal, 0).snapshot()).isTrue();
+		fullReplayJournal.close();
+		snapshotJournal.close();
+
+		AccountsRepositoryInMemory fromFullReplay = new AccountsRepositoryInMemory();
+		new TransferJournal(fromFullReplay, fullReplayDirectory.getPath(), 1 << 20, false, 1).close();
+
+		AccountsRepositoryInMemory fromSnapshot = new AccountsRepositoryInMemory();
+		new TransferJournal(fromSnapshot, snapshotDirectory.getPath(), 1 << 20, false, 1).close();
+
+		assertThat(snapshotDirectory.list()).hasSize(2);
+		assertThat(fullReplayDirectory.list().length).isGreaterThan(2);
+		for (int i = 0; i < accounts; i += 997) {
+			assertThat(fromSnapshot.getAccount("Id-" + i).getBalance())
+					.isEqualTo(fromFullReplay.getAccount("Id-" + i).getBalance());
+		}
+	}
+
+	@Test
+	public void flushFailure_failsWaitersAndRefusesLaterTransfers() throws Exception {
+		AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+		TransferJournal journal = new TransferJournal(repository, folder.getRoot().getPath(), 4096, true, 1);
+		MoneyTransferService transferService = new MoneyTransferService(new MoneyTransferRepositoryImpl(16));
+		transferService.setAccountEventListeners(Collections.singletonList(journal));
+		Account from = new Account("Id-1", new BigDecimal(100));
+		Account to = new Account("Id-2", new BigDecimal(100));
+		journal.accountCreating(from, 10000);
+		journal.accountCreating(to, 10000);
+
+		// the flusher needs the journal's lock to pick up the segment, and then fails to force it
+		Field current = TransferJournal.class.getDeclaredField("current");
+		current.setAccessible(true);
+		Object segment;
+		CompletableFuture<Boolean> pending;
+		synchronized (journal) {
+			pending = transferService.transferMoneyAsync(from, to, new BigDecimal(10));
+			segment = current.get(journal);
+			current.set(journal, null);
+		}
+		try {
+			pending.get(10, TimeUnit.SECONDS);
+			fail("Transfer reported durable although the flush failed");
+		} catch (ExecutionException e) {
+			assertThat(e.getCause()).isInstanceOf(TransferNotDurableException.class);
+		}
+		// it was applied all the same and must not be reported as failed
+		assertThat(from.getBalance()).isEqualTo("90");
+
+		try {
+			transferService.transferMoney(from, to, new BigDecimal(10));
+			fail("Transfer moved money the broken journal cannot record");
+		} catch (IllegalStateException ise) {
+			assertThat(ise.getMessage()).contains("Journal flush failed");
+		}
+		assertThat(from.getBalance()).isEqualTo("90");
+		try {
+			journal.moneyTransferred(from, to, 1000);
+			fail("Journal accepted a record after its flush failed");
+		} catch (IllegalStateException ise) {
+			assertThat(ise.getMessage()).contains("Journal flush failed");
+		}
+
+		synchronized (journal) {
+			current.set(journal, segment);
+		}
+		journal.close();
+	}
+
+	@Test
+	public void transferMoney_reportsAppliedTransferAsNotDurable() throws Exception {
+		MoneyTransferService transferService = new MoneyTransferService(new MoneyTransferRepositoryImpl(16));
+		transferService.setAccountEventListeners(Collections.singletonList(new AccountEventListener() {
+			@Override
+			public void moneyTransferred(Account fromAccount, Account toAccount, long amount) {
+				throw new IllegalStateException("disk full");
+			}
+		}));
+		Account from = new Account("Id-1", new BigDecimal(100));
+		Account to = new Account("Id-2", new BigDecimal(100));
+
+		try {
+			transferService.transferMoney(from, to, new BigDecimal(25));
+			fail("Listener failure was not reported");
+		} catch (TransferNotDurableException tnde) {
+			assertThat(tnde.getCause()).hasMessage("disk full");
+		}
+		assertThat(from.getBalance()).isEqualTo("75");
+		assertThat(to.getBalance()).isEqualTo("125");
+	}
+
+	@Test
+	public void close_neverReportsLaterRecordsDurable() throws Exception {
+		TransferJournal journal = new TransferJournal(new AccountsRepositoryInMemory(), folder.getRoot().getPath(),
+				4096, true, 1);
+		Account from = new Account("Id-1", new BigDecimal(100));
+		Account to = new Account("Id-2", new BigDecimal(100));
+		journal.accountCreating(from, 10000);
+		journal.accountCreating(to, 10000);
+		journal.close();
+
+		try {
+			journal.moneyTransferred(from, to, 1000);
+			fail("Closed journal accepted a record");
+		} catch (IllegalStateException ise) {
+			assertThat(ise.getMessage()).contains("closed");
+		}
+		try {
+			journal.moneyTransferredAsync(from, to, 1000);
+			fail("Closed journal accepted a record");
+		} catch (IllegalStateException ise) {
+			assertThat(ise.getMessage()).contains("closed");
+		}
+	}
+
+	@Test
+	public void recover_refusesJournalThatLeavesAnAccountOverdrawn() throws Exception {
+		String directory = folder.getRoot().getPath();
+		TransferJournal journal = new TransferJournal(new AccountsRepositoryInMemory(), directory, 4096, true, 1);
+		Account from = new Account("Id-1", new BigDecimal(100));
+		Account to = new Account("Id-2", new BigDecimal(100));
+		journal.accountCreating(from, 10000);
+		journal.accountCreating(to, 10000);
+		journal.moneyTransferred(from, to, 25000);
+		journal.close();
+
+		try {
+			new TransferJournal(new AccountsRepositoryInMemory(), directory, 4096, true, 1).close();
+			fail("Recovered balances that went overdrawn");
+		} catch (IllegalStateException ise) {
+			assertThat(ise.getMessage()).contains("Id-1").contains("-150");
+		}
+	}
+}
@@ -0,0 +1,437 @@
+package com.db.awmd.challenge;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountBalance;
+import com.db.awmd.challenge.exception.OverdraftsAccountException;
+import com.db.awmd.challenge.repository.LockFreeMoneyTransferRepository;
+import com.db.awmd.challenge.repository.MoneyTransferRepository;
+import com.db.awmd.challenge.repository.MoneyTransferRepositoryImpl;
+import com.db.awmd.challenge.repository.NettingMoneyTransferRepository;
+import com.db.awmd.challenge.repository.SequencedMoneyTransferRepository;
+import com.db.awmd.challenge.repository.ShardedMoneyTransferRepository;
+import com.db.awmd.challenge.service.MoneyTransferService;
+
+/**
+ * Drives random concurrent transfers between a small set of accounts through
+ * {@link MoneyTransferService} on any transfer engine, logs every call with
+ * its start and end time, and then checks the engine kept its promises:
+ * <ul>
+ * <li>the total amount of money is unchanged,</li>
+ * <li>no balance is ever negative, watched while the transfers run,</li>
+ * <li>every account ends at its opening balance plus exactly the transfers
+ * reported as completed, so no update was lost or applied twice,</li>
+ * <li>every outcome can be explained at some instant of its own call: a
+ * completed debit had the funds and an overdraft lacked them, counting the
+ * transfers that finished before the call as applied and those that started
+ * after it as not. This is the part of linearizability that can be checked
+ * in linear time; it catches stale reads and lost checks without searching
+ * all orders.</li>
+ * </ul>
+ *
+ * <p>Run as a program it compares the engines' throughput by thread count:
+ *
+ * <pre>
+ * gradle stressTest -Pstress.args="transfers accounts maxThreads"
+ * </pre>
+ */
+public class TransferStressHarness {
+
+	private static final long OPENING_BALANCE = 100_00;
+	private static final int MAX_AMOUNT = 50_00;
+	private static final int AMOUNT_BITS = 20;
+	private static final int MAX_REPORTED_VIOLATIONS = 20;
+	private static final long WATCH_INTERVAL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+	public static void main(String[] args) throws Exception {
+		int transfers = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+		int accounts = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+		int maxThreads = args.length > 2 ? Integer.parseInt(args[2])
+				: Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+		System.out.printf("%,d transfers between %d accounts per run%n", transfers, accounts);
+		System.out.printf("%-10s %8s %14s %12s %12s %11s%n", "engine", "threads", "transfers/s", "completed",
+				"overdrawn", "violations");
+		boolean failed = false;
+		for (String engine : new String[] { "locking", "lock-free", "sharded", "sequencer", "netting" }) {
+			for (int threads = 1; threads <= maxThreads; threads *= 2) {
+				Result result = run(engine, accounts, threads, transfers / threads, 42);
+				System.out.printf("%-10s %8d %14.0f %12d %12d %11d%n", engine, threads, result.getThroughput(),
+						result.completed, result.overdrawn, result.violationCount);
+				for (String violation : result.violations) {
+					System.out.println("  " + violation);
+				}
+				failed |= result.violationCount > 0;
+			}
+		}
+		if (failed) {
+			System.exit(1);
+		}
+	}
+
+	/** Runs against one of the engines by its {@code transfer.engine} name, shutting it down afterwards. */
+	public static Result run(String engine, int accounts, int threads, int transfersPerThread, long seed)
+			throws InterruptedException {
+		switch (engine) {
+		case "locking":
+			return run(new MoneyTransferRepositoryImpl(1024), accounts, threads, transfersPerThread, seed);
+		case "lock-free":
+			return run(new LockFreeMoneyTransferRepository(), accounts, threads, transfersPerThread, seed);
+		case "sharded":
+			ShardedMoneyTransferRepository sharded = new ShardedMoneyTransferRepository(0);
+			try {
+				return run(sharded, accounts, threads, transfersPerThread, seed);
+			} finally {
+				sharded.shutdown();
+			}
+		case "sequencer":
+			SequencedMoneyTransferRepository sequencer = new SequencedMoneyTransferRepository(1024);
+			try {
+				return run(sequencer, accounts, threads, transfersPerThread, seed);
+			} finally {
+				sequencer.shutdown();
+			}
+		case "netting":
+			NettingMoneyTransferRepository netting = new NettingMoneyTransferRepository(200, 4096);
+			try {
+				return run(netting, accounts, threads, transfersPerThread, seed);
+			} finally {
+				netting.shutdown();
+			}
+		default:
+			throw new IllegalArgumentException("Unknown transfer engine " + engine);
+		}
+	}
+
+	public static Result run(MoneyTransferRepository engine, int accountCount, int threads, int transfersPerThread,
+			long seed) throws InterruptedException {
+		MoneyTransferService transferService = new MoneyTransferService(engine);
+		Account[] accounts = new Account[accountCount];
+		long[] opening = new long[accountCount];
+		Random random = new Random(seed);
+		for (int i = 0; i < accountCount; i++) {
+			// some accounts start empty, so overdrafts happen from the start
+			opening[i] = random.nextInt(4) == 0 ? 0 : OPENING_BALANCE;
+			accounts[i] = new Account("Id-" + i, new AccountBalance(opening[i]));
+		}
+		Result result = new Result(threads);
+		OperationLog[] logs = new OperationLog[threads];
+		Thread[] workers = new Thread[threads];
+		CountDownLatch start = new CountDownLatch(1);
+		long origin = System.nanoTime();
+		for (int t = 0; t < threads; t++) {
+			OperationLog log = new OperationLog(transfersPerThread);
+			logs[t] = log;
+			Random workerRandom = new Random(seed * 31 + t);
+			workers[t] = new Thread(() -> {
+				awaitQuietly(start);
+				for (int i = 0; i < transfersPerThread; i++) {
+					int from = workerRandom.nextInt(accountCount);
+					int to = (from + 1 + workerRandom.nextInt(accountCount - 1)) % accountCount;
+					int amount = 1 + workerRandom.nextInt(MAX_AMOUNT);
+					BigDecimal decimal = AccountBalance.toDecimal(amount);
+					long invoked = System.nanoTime();
+					boolean completed;
+					try {
+						completed = transferService.transferMoney(accounts[from], accounts[to], decimal);
+					} catch (OverdraftsAccountException oae) {
+						completed = false;
+					}
+					log.add(from, to, amount, completed, invoked - origin, System.nanoTime() - origin);
+				}
+			}, "stress-" + t);
+			workers[t].start();
+		}
+		Thread watcher = new Thread(() -> {
+			while (!Thread.currentThread().isInterrupted()) {
+				for (Account account : accounts) {
+					long balance = account.getMinorUnitBalance().get();
+					if (balance < 0) {
+						result.violation(account.getAccountId() + " was seen at " + balance);
+					}
+				}
+				// sample rather than spin, so the watcher does not skew the throughput
+				LockSupport.parkNanos(WATCH_INTERVAL_NANOS);
+			}
+		}, "stress-watcher");
+		watcher.setDaemon(true);
+		watcher.start();
+
+		long started = System.nanoTime();
+		start.countDown();
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		result.nanos = System.nanoTime() - started;
+		watcher.interrupt();
+		watcher.join();
+
+		check(accounts, opening, logs, result);
+		return result;
+	}
+
+	private static void check(Account[] accounts, long[] opening, OperationLog[] logs, Result result) {
+		long[] expected = opening.clone();
+		for (OperationLog log : logs) {
+			for (int i = 0; i < log.size; i++) {
+				if (log.completed[i]) {
+					result.completed++;
+					expected[log.from[i]] -= log.amount[i];
+					expected[log.to[i]] += log.amount[i];
+				} else {
+					result.overdrawn++;
+				}
+			}
+		}
+		long openingTotal = 0;
+		long total = 0;
+		for (int i = 0; i < accounts.length; i++) {
+			long balance = accounts[i].getMinorUnitBalance().get();
+			openingTotal += opening[i];
+			total += balance;
+			if (balance != expected[i]) {
+				result.violation(accounts[i].getAccountId() + " ended at " + balance + " but its completed transfers add up to "
+						+ expected[i]);
+			}
+		}
+		if (total != openingTotal) {
+			result.violation("Total money changed from " + openingTotal + " to " + total);
+		}
+
+		IntFunction<Timeline> timelines = timelinesOf(accounts.length, logs);
+		for (OperationLog log : logs) {
+			for (int i = 0; i < log.size; i++) {
+				Timeline from = timelines.apply(log.from[i]);
+				long invoked = log.invoked[i];
+				long responded = log.responded[i];
+				long amount = log.amount[i];
+				if (log.completed[i]) {
+					// at best every credit that started in time came first, and only the debits that had to
+					long highest = opening[log.from[i]] + from.creditsStartedBy(responded)
+							- from.debitsFinishedBefore(invoked);
+					if (!AccountBalance.canDebit(highest, amount)) {
+						result.violation("Debit of " + amount + " from Id-" + log.from[i] + " completed although at most "
+								+ highest + " was available during the call");
+					}
+				} else {
+					// at worst every debit that started in time came first, and only the credits that had to
+					long lowest = opening[log.from[i]] + from.creditsFinishedBefore(invoked)
+							- from.debitsStartedBy(responded);
+					if (AccountBalance.canDebit(lowest, amount)) {
+						result.violation("Debit of " + amount + " from Id-" + log.from[i] + " was refused although at least "
+								+ lowest + " was available during the call");
+					}
+				}
+			}
+		}
+	}
+
+	/** Completed credits and debits per account, sorted by start and by end time. */
+	private static IntFunction<Timeline> timelinesOf(int accountCount, OperationLog[] logs) {
+		int[] credits = new int[accountCount];
+		int[] debits = new int[accountCount];
+		for (OperationLog log : logs) {
+			for (int i = 0; i < log.size; i++) {
+				if (log.completed[i]) {
+					debits[log.from[i]]++;
+					credits[log.to[i]]++;
+				}
+			}
+		}
+		Timeline[] timelines = new Timeline[accountCount];
+		for (int a = 0; a < accountCount; a++) {
+			timelines[a] = new Timeline(credits[a], debits[a]);
+		}
+		for (OperationLog log : logs) {
+			for (int i = 0; i < log.size; i++) {
+				if (log.completed[i]) {
+					timelines[log.from[i]].debits.add(log.invoked[i], log.responded[i], log.amount[i]);
+					timelines[log.to[i]].credits.add(log.invoked[i], log.responded[i], log.amount[i]);
+				}
+			}
+		}
+		for (Timeline timeline : timelines) {
+			timeline.credits.sort();
+			timeline.debits.sort();
+		}
+		return a -> timelines[a];
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public static final class Result {
+
+		private final int threads;
+		private final List<String> violations = new ArrayList<>();
+		private int violationCount;
+		private long completed;
+		private long overdrawn;
+		private long nanos;
+
+		private Result(int threads) {
+			this.threads = threads;
+		}
+
+		private synchronized void violation(String message) {
+			violationCount++;
+			if (violations.size() < MAX_REPORTED_VIOLATIONS) {
+				violations.add(message);
+			}
+		}
+
+		public int getThreads() {
+			return threads;
+		}
+
+		/** The first violations found, at most {@value TransferStressHarness#MAX_REPORTED_VIOLATIONS}. */
+		public synchronized List<String> getViolations() {
+			return new ArrayList<>(violations);
+		}
+
+		public synchronized int getViolationCount() {
+			return violationCount;
+		}
+
+		public long getCompleted() {
+			return completed;
+		}
+
+		public long getOverdrawn() {
+			return overdrawn;
+		}
+
+		public double getThroughput() {
+			return (completed + overdrawn) / (nanos / (double) TimeUnit.SECONDS.toNanos(1));
+		}
+	}
+
+	/** One thread's calls, in primitive arrays so logging does not disturb the run. */
+	private static final class OperationLog {
+
+		private final int[] from;
+		private final int[] to;
+		private final int[] amount;
+		private final boolean[] completed;
+		private final long[] invoked;
+		private final long[] responded;
+		private int size;
+
+		private OperationLog(int capacity) {
+			this.from = new int[capacity];
+			this.to = new int[capacity];
+			this.amount = new int[capacity];
+			this.completed = new boolean[capacity];
+			this.invoked = new long[capacity];
+			this.responded = new long[capacity];
+		}
+
+		private void add(int fromAccount, int toAccount, int transferAmount, boolean transferred, long invokedAt,
+				long respondedAt) {
+			from[size] = fromAccount;
+			to[size] = toAccount;
+			amount[size] = transferAmount;
+			completed[size] = transferred;
+			invoked[size] = invokedAt;
+			responded[size] = respondedAt;
+			size++;
+		}
+	}
+
+	private static final class Timeline {
+
+		private final Changes credits;
+		private final Changes debits;
+
+		private Timeline(int creditCount, int debitCount) {
+			this.credits = new Changes(creditCount);
+			this.debits = new Changes(debitCount);
+		}
+
+		private long creditsStartedBy(long time) {
+			return credits.byStart.sumUpTo(time);
+		}
+
+		private long creditsFinishedBefore(long time) {
+			return credits.byEnd.sumUpTo(time - 1);
+		}
+
+		private long debitsStartedBy(long time) {
+			return debits.byStart.sumUpTo(time);
+		}
+
+		private long debitsFinishedBefore(long time) {
+			return debits.byEnd.sumUpTo(time - 1);
+		}
+	}
+
+	private static final class Changes {
+
+		private final TimeSums byStart;
+		private final TimeSums byEnd;
+
+		private Changes(int count) {
+			this.byStart = new TimeSums(count);
+			this.byEnd = new TimeSums(count);
+		}
+
+		private void add(long invoked, long responded, int amount) {
+			byStart.add(invoked, amount);
+			byEnd.add(responded, amount);
+		}
+
+		private void sort() {
+			byStart.sort();
+			byEnd.sort();
+		}
+	}
+
+	/**
+	 * Amounts by time, packed as {@code time << 20 | amount} so a plain sort
+	 * orders them, with prefix sums for "everything up to this time".
+	 */
+	private static final class TimeSums {
+
+		private final long[] packed;
+		private final long[] prefixSums;
+		private int size;
+
+		private TimeSums(int count) {
+			this.packed = new long[count];
+			this.prefixSums = new long[count + 1];
+		}
+
+		private void add(long time, int amount) {
+			packed[size++] = time << AMOUNT_BITS | amount;
+		}
+
+		private void sort() {
+			Arrays.sort(packed);
+			for (int i = 0; i < packed.length; i++) {
+				prefixSums[i + 1] = prefixSums[i] + (packed[i] & ((1 << AMOUNT_BITS) - 1));
+			}
+		}
+
+		private long sumUpTo(long time) {
+			if (time < 0) {
+				return 0;
+			}
+			int index = Arrays.binarySearch(packed, (time + 1) << AMOUNT_BITS);
+			// the key itself cannot be present, its amount bits are zero
+			return prefixSums[index >= 0 ? index : -index - 1];
+		}
+	}
+}